@@ -0,0 +1,59 @@
+// k6 load script so sánh bản blocking (mặc định) và bản reactive (profile "reactive") của cart API.
+//
+//   k6 run -e BASE_URL=http://localhost:8087/cart -e TOKEN=<jwt> -e VUS=2000 bench/cart-api.js
+//
+// Chạy lần lượt với service khởi động bình thường và với SPRING_PROFILES_ACTIVE=reactive
+// (cùng Redis, cùng product-service stub), rồi so sánh http_req_duration p95/p99 và http_reqs/s.
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8087/cart';
+const TOKEN = __ENV.TOKEN || '';
+const USERS = parseInt(__ENV.USERS || '10000');
+const WRITE_RATIO = parseFloat(__ENV.WRITE_RATIO || '0.05');
+
+export const options = {
+    scenarios: {
+        cart: {
+            executor: 'ramping-vus',
+            startVUs: 0,
+            stages: [
+                { duration: '30s', target: parseInt(__ENV.VUS || '1000') },
+                { duration: __ENV.DURATION || '2m', target: parseInt(__ENV.VUS || '1000') },
+                { duration: '15s', target: 0 },
+            ],
+        },
+    },
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+    },
+};
+
+const headers = {
+    'Authorization': `Bearer ${TOKEN}`,
+    'Content-Type': 'application/json',
+};
+
+export default function () {
+    const userId = `bench-user-${Math.floor(Math.random() * USERS)}`;
+
+    if (Math.random() < WRITE_RATIO) {
+        const res = http.post(`${BASE_URL}/add`, JSON.stringify({
+            userId: userId,
+            productId: __ENV.PRODUCT_ID || 'bench-product',
+            sellerId: 'bench-seller',
+            sellerName: 'Bench Seller',
+            quantity: 1,
+            options: { Size: '41' },
+        }), { headers: headers, tags: { name: 'add' } });
+        check(res, { 'add 200': (r) => r.status === 200 });
+        return;
+    }
+
+    const roll = Math.random();
+    const [name, path] = roll < 0.5 ? ['count', `/${userId}/count`]
+        : roll < 0.8 ? ['cart', `/${userId}`]
+        : ['summary', `/${userId}/summary`];
+    const res = http.get(`${BASE_URL}${path}`, { headers: headers, tags: { name: name } });
+    check(res, { 'read 200': (r) => r.status === 200 });
+}
@@ -0,0 +1,91 @@
+package iuh.fit.se.configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Giới hạn số request đồng thời theo AIMD: khi độ trễ gần đây (trung bình trượt) của route không vượt
+ * {@code tolerance} lần độ trễ nền của chính route đó và giới hạn đang được dùng thì giới hạn tăng 1 mỗi request;
+ * khi chậm hoặc lỗi thì giới hạn nhân {@code backoffRatio}, tối đa một lần mỗi khoảng độ trễ (các request đang
+ * chạy cùng thấy một đợt nghẽn). Độ trễ nền của route là độ trễ nhỏ nhất của cửa sổ {@code baselineWindow} gần
+ * nhất; so theo từng route nên đọc {@code /count} rất nhanh không làm các request ghi (gọi product-service) trông
+ * như quá tải.
+ */
+final class AdaptiveConcurrencyLimiter {
+    private final CartProperties.Concurrency config;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    // chỉ đọc/ghi trong onSample (synchronized)
+    private final Map<String, Latency> routes = new HashMap<>();
+    private long lastDecreaseNanos;
+
+    /** Độ trễ nền và trung bình trượt của một route. */
+    private static final class Latency {
+        long baselineNanos = Long.MAX_VALUE;
+        long windowMinNanos = Long.MAX_VALUE;
+        long windowStartNanos = System.nanoTime();
+        double smoothedNanos;
+    }
+
+    AdaptiveConcurrencyLimiter(CartProperties.Concurrency config) {
+        this.config = config;
+        this.limit = config.getInitialLimit();
+    }
+
+    /** Nhận request nếu số request đang chạy còn dưới phần giới hạn của mức ưu tiên; trả về -1 nếu phải từ chối. */
+    int tryAcquire(double share) {
+        int allowed = Math.max(1, (int) (limit * share));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * Gọi đúng một lần khi request đã nhận kết thúc; {@code route} là nhóm so độ trễ (method + mẫu URL),
+     * {@code inFlightAtStart} là giá trị {@link #tryAcquire} trả về.
+     */
+    void release(String route, long rttNanos, int inFlightAtStart, boolean failed) {
+        inFlight.decrementAndGet();
+        onSample(route, rttNanos, inFlightAtStart, failed);
+    }
+
+    private synchronized void onSample(String route, long rttNanos, int inFlightAtStart, boolean failed) {
+        long now = System.nanoTime();
+        Latency latency = routes.computeIfAbsent(route, r -> new Latency());
+        latency.windowMinNanos = Math.min(latency.windowMinNanos, rttNanos);
+        latency.baselineNanos = Math.min(latency.baselineNanos, rttNanos);
+        if (now - latency.windowStartNanos > config.getBaselineWindow().toNanos()) {
+            // cho độ trễ nền trôi theo thực tế (ví dụ Redis chuyển sang node xa hơn)
+            latency.baselineNanos = latency.windowMinNanos;
+            latency.windowMinNanos = Long.MAX_VALUE;
+            latency.windowStartNanos = now;
+        }
+        latency.smoothedNanos = latency.smoothedNanos == 0 ? rttNanos : latency.smoothedNanos * 0.9 + rttNanos * 0.1;
+
+        double current = limit;
+        if (failed || latency.smoothedNanos > latency.baselineNanos * config.getTolerance()) {
+            if (now - lastDecreaseNanos > latency.smoothedNanos) {
+                limit = Math.max(config.getMinLimit(), current * config.getBackoffRatio());
+                lastDecreaseNanos = now;
+            }
+        } else if (inFlightAtStart * 2 >= current) {
+            // chỉ tăng khi giới hạn thực sự được dùng, tránh giới hạn phình to lúc tải thấp
+            limit = Math.min(config.getMaxLimit(), current + 1);
+        }
+    }
+
+    double limit() {
+        return limit;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+}
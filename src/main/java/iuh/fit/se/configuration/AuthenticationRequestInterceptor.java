@@ -12,6 +12,10 @@ public class AuthenticationRequestInterceptor implements RequestInterceptor {
     @Override
     public void apply(RequestTemplate requestTemplate) {
         ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            // Gọi ngoài request (job nền) -> không có token để chuyển tiếp
+            return;
+        }
         String token = attributes.getRequest().getHeader("Authorization");
         log.info(token);
         if (StringUtils.hasText(token)) {
@@ -0,0 +1,358 @@
+package iuh.fit.se.configuration;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cấu hình lưu trữ giỏ hàng (prefix {@code cart}).
+ */
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@ConfigurationProperties(prefix = "cart")
+public class CartProperties {
+    /** Giỏ hết hạn sau khoảng này kể từ lần ghi cuối (hoặc lần đọc cuối nếu bật sliding-ttl). */
+    long ttlSeconds = 2_592_000;
+    SlidingTtl slidingTtl = new SlidingTtl();
+    Write write = new Write();
+    Batch batch = new Batch();
+    Redis redis = new Redis();
+    Sweeper sweeper = new Sweeper();
+    Tiering tiering = new Tiering();
+    Metadata metadata = new Metadata();
+    Events events = new Events();
+    Reprice reprice = new Reprice();
+    Checkout checkout = new Checkout();
+    Idempotency idempotency = new Idempotency();
+    RateLimit rateLimit = new RateLimit();
+    Concurrency concurrency = new Concurrency();
+    Pricing pricing = new Pricing();
+    Lines lines = new Lines();
+    Summary summary = new Summary();
+    Passthrough passthrough = new Passthrough();
+    Replica replica = new Replica();
+    Reservation reservation = new Reservation();
+    Analytics analytics = new Analytics();
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class SlidingTtl {
+        /** Gia hạn TTL khi đọc giỏ bằng EXPIRE thay vì phải ghi lại cả cart. */
+        boolean enabled = false;
+        /** Mỗi giỏ được gia hạn tối đa một lần trong khoảng này (theo từng instance). */
+        Duration touchInterval = Duration.ofMinutes(5);
+        /** Số giỏ tối đa được ghi nhớ thời điểm gia hạn gần nhất. */
+        long maxTrackedCarts = 100_000;
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Write {
+        /** Số lần đọc lại và áp lại thao tác khi giỏ bị ghi xen giữa lúc đọc và lúc lưu (lỗi 409 khi hết lượt). */
+        int maxAttempts = 10;
+        /** Chờ ngẫu nhiên trước lần thử lại, tăng gấp đôi mỗi lần tới {@code max-backoff}, để các request tranh nhau tản ra. */
+        Duration backoff = Duration.ofMillis(2);
+        Duration maxBackoff = Duration.ofMillis(50);
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Batch {
+        /** Số userId tối đa trong một request đọc hàng loạt. */
+        int maxIds = 1000;
+        /** Số HGETALL trong một pipeline. */
+        int chunkSize = 100;
+        /** Số pipeline chạy song song. */
+        int parallelism = 8;
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Redis {
+        /** Dùng hash tag {userId} làm id để các key của một cart cùng slot trên Redis Cluster. */
+        boolean clusterMode = false;
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Sweeper {
+        boolean enabled = false;
+        /** Khoảng nghỉ giữa hai lần chạy (ISO-8601 vì được đọc trong {@code @Scheduled}). */
+        Duration interval = Duration.ofMinutes(10);
+        /** Số phần tử SSCAN/SCAN mỗi lượt. */
+        int batchSize = 200;
+        /** Ngân sách số key kiểm tra mỗi giây, để không dồn tải lên Redis. */
+        int ratePerSecond = 1000;
+        /** Số key tối đa mỗi lần chạy; lần sau tiếp tục từ cursor đã lưu. */
+        int maxKeysPerRun = 100_000;
+        Duration lockTtl = Duration.ofSeconds(30);
+    }
+
+    public enum MetadataMode {
+        /** Mỗi dòng giỏ lưu kèm tên/ảnh sản phẩm và tên seller (mặc định). */
+        EMBEDDED,
+        /** Dòng giỏ chỉ lưu tham chiếu; tên/ảnh lấy từ bảng metadata dùng chung khi đọc. */
+        REFERENCE
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Metadata {
+        MetadataMode mode = MetadataMode.EMBEDDED;
+        /** Thời gian giữ metadata trong cache cục bộ; đổi tên sản phẩm hiện lên mọi giỏ sau tối đa khoảng này. */
+        Duration localCacheTtl = Duration.ofSeconds(30);
+        long localCacheSize = 50_000;
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Tiering {
+        /** Chuyển giỏ lâu không dùng từ Redis sang kho lạnh và nạp lại khi user truy cập. */
+        boolean enabled = false;
+        /** Giỏ không được ghi (hoặc đọc, nếu bật sliding-ttl) trong khoảng này sẽ bị chuyển; phải nhỏ hơn ttl-seconds. */
+        Duration idleThreshold = Duration.ofDays(3);
+        /** Thời gian giữ giỏ trong kho lạnh. */
+        Duration coldRetention = Duration.ofDays(180);
+        /**
+         * Thư mục của kho lạnh dạng file. Bắt buộc là volume dùng chung (NFS, EFS, PVC ReadWriteMany...) cho mọi
+         * instance khi chạy nhiều instance: giỏ được chuyển bởi instance đang giữ lease nhưng có thể được nạp lại
+         * trên bất kỳ instance nào, thư mục cục bộ thì user sẽ thấy giỏ trống.
+         */
+        String directory = "data/cold-carts";
+        /** Khoảng nghỉ giữa hai lần chạy job chuyển (ISO-8601). */
+        Duration interval = Duration.ofMinutes(15);
+        int batchSize = 200;
+        int maxCartsPerRun = 10_000;
+        Duration lockTtl = Duration.ofSeconds(30);
+    }
+
+    public enum Backpressure {
+        /** Hàng đợi đầy thì bỏ sự kiện mới (request không bao giờ chờ). */
+        DROP_NEWEST,
+        /** Hàng đợi đầy thì bỏ sự kiện cũ nhất để nhận sự kiện mới. */
+        DROP_OLDEST,
+        /** Chờ tối đa {@code block-timeout} để có chỗ trống, hết hạn thì bỏ sự kiện mới. */
+        BLOCK
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Events {
+        /** Ghi mỗi thay đổi dòng giỏ thành một entry trên Redis Stream. */
+        boolean enabled = false;
+        String stream = "cart:events";
+        /** Độ dài gần đúng tối đa của stream (XADD MAXLEN ~). */
+        long maxLength = 1_000_000;
+        int queueCapacity = 10_000;
+        /** Số sự kiện tối đa trong một lần ghi. */
+        int batchSize = 200;
+        /** Thời gian tối đa chờ gom đủ lô trước khi ghi. */
+        Duration linger = Duration.ofMillis(50);
+        Backpressure backpressure = Backpressure.DROP_NEWEST;
+        Duration blockTimeout = Duration.ofMillis(5);
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Reprice {
+        /** Duy trì index ngược biến thể -> giỏ và cập nhật giá các giỏ liên quan khi nhận tin đổi giá. */
+        boolean enabled = false;
+        /** Redis Stream nhận tin đổi giá (field {@code payload} chứa JSON). */
+        String stream = "cart:price-changes";
+        /** Consumer group chung của mọi instance: mỗi tin chỉ được một instance xử lý. */
+        String group = "cart-repricer";
+        /** Tên consumer của instance; để trống thì lấy hostname. Cần cố định qua các lần khởi động. */
+        String consumer = "";
+        /** Tin chưa XACK lâu hơn ngưỡng này được instance khác XCLAIM; nên lớn hơn thời gian cập nhật một biến thể. */
+        Duration claimIdle = Duration.ofMinutes(5);
+        /** Chu kỳ tìm tin cần XCLAIM (ISO-8601 vì được đọc trong {@code @Scheduled}). */
+        Duration claimInterval = Duration.ofMinutes(1);
+        /** Số userId SSCAN mỗi lượt từ index ngược. */
+        int batchSize = 100;
+        /** Số giỏ được cập nhật song song. */
+        int parallelism = 4;
+        /** Ngân sách số giỏ xử lý mỗi giây (mỗi instance). */
+        int ratePerSecond = 500;
+        /** Số lần thử lại khi giỏ bị ghi xen giữa lúc đọc và lúc cập nhật giá. */
+        int maxAttempts = 3;
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Checkout {
+        /** Thời gian sống của checkout snapshot; giỏ thay đổi thì snapshot bị xoá sớm hơn. */
+        Duration ttl = Duration.ofMinutes(10);
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Idempotency {
+        /** Nhận header {@code Idempotency-Key} trên các endpoint thay đổi giỏ. */
+        boolean enabled = true;
+        /** Thời gian giữ response đã lưu để trả lại cho các lần retry. */
+        Duration ttl = Duration.ofHours(24);
+        /** Thời gian giữ khoá khi request đầu tiên đang chạy; hết hạn thì retry được xử lý lại. */
+        Duration inProgressTtl = Duration.ofSeconds(30);
+        /** Body lớn nhất (byte) được đọc vào bộ nhớ để tính fingerprint; lớn hơn thì trả 413. */
+        int maxBodyBytes = 256 * 1024;
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class RateLimit {
+        /** Giới hạn tần suất các endpoint thay đổi giỏ, trả 429 kèm Retry-After khi vượt (chỉ bản servlet). */
+        boolean enabled = false;
+        /** Mỗi user (theo principal). */
+        Limit user = new Limit(5, 20);
+        /** Tổng của instance, bảo vệ Redis và product-service dùng chung. */
+        Limit global = new Limit(500, 1000);
+        /** Số user tối đa được giữ bucket trong bộ nhớ. */
+        long maxTrackedUsers = 100_000;
+        ClusterLimit cluster = new ClusterLimit();
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+        double permitsPerSecond;
+        /** Số request liên tiếp tối đa khi bucket đầy. */
+        int burst;
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class ClusterLimit {
+        /** Thêm giới hạn theo user dùng chung mọi instance qua Redis (một lệnh Redis mỗi request). */
+        boolean enabled = false;
+        int limit = 300;
+        Duration window = Duration.ofMinutes(1);
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Concurrency {
+        /** Giới hạn số request đồng thời, tự điều chỉnh theo độ trễ quan sát được (AIMD); vượt thì trả 503 ngay. */
+        boolean enabled = false;
+        int initialLimit = 50;
+        int minLimit = 10;
+        int maxLimit = 400;
+        /** Hệ số giảm giới hạn khi request chậm hoặc lỗi. */
+        double backoffRatio = 0.9;
+        /** Request chậm hơn {@code tolerance} lần độ trễ nền của cùng route được coi là dấu hiệu quá tải. */
+        double tolerance = 2.0;
+        /** Độ trễ nền của mỗi route là độ trễ nhỏ nhất trong cửa sổ này (cửa sổ trước). */
+        Duration baselineWindow = Duration.ofSeconds(30);
+        /** Phần của giới hạn mà mỗi mức ưu tiên được dùng; mức thấp bị từ chối trước khi hệ thống đầy. */
+        Priorities priorities = new Priorities();
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Priorities {
+        /** Summary và checkout. */
+        double critical = 1.0;
+        /** Các endpoint còn lại. */
+        double normal = 0.9;
+        /** Badge {@code /count}. */
+        double low = 0.5;
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Pricing {
+        /** Key Redis chứa bộ luật giá JSON (xem {@code PricingRuleSet}). */
+        String rulesKey = "cart:pricing:rules";
+        /** Chu kỳ đọc lại bộ luật (ISO-8601 vì được đọc trong {@code @Scheduled}). */
+        Duration refresh = Duration.ofSeconds(10);
+        /** Phí ship mặc định khi chưa có bộ luật (VND): miễn phí khi subtotal của seller từ mức này. */
+        long freeShippingThreshold = 500_000;
+        long shippingFee = 30_000;
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Lines {
+        /** Số dòng mỗi trang của {@code GET /{userId}/items} khi không truyền {@code limit}. */
+        int defaultLimit = 50;
+        int maxLimit = 200;
+        /** Số dòng đọc và ghi mỗi lượt khi stream summary. */
+        int chunkSize = 100;
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Summary {
+        /** Tính summary lúc ghi giỏ và lưu trong hash của cart; {@code GET /{userId}/summary} chỉ đọc lại. */
+        boolean materialized = false;
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Passthrough {
+        /**
+         * Lưu JSON của giỏ lúc ghi; {@code GET /{userId}} (và {@code /summary} nếu bật {@code summary.materialized})
+         * chép nguyên các byte đó vào response.
+         */
+        boolean enabled = false;
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Replica {
+        /** Đọc {@code GET /{userId}}, {@code /summary}, {@code /count} từ replica (xem {@code CartReplica}). */
+        boolean enabled = false;
+        /** Tên {@code io.lettuce.core.ReadFrom}: replicaPreferred, replica, anyReplica, nearest, lowestLatency... */
+        String readFrom = "replicaPreferred";
+        /** host:port của các replica khi không chạy cluster (primary lấy từ spring.data.redis). */
+        List<String> nodes = new ArrayList<>();
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Reservation {
+        /** Giữ hàng tạm trong Redis cho các biến thể đã seed qua {@code PUT /internal/stock} (xem {@code StockReservations}). */
+        boolean enabled = false;
+        /** Dòng giỏ giữ hàng trong khoảng này kể từ lần thêm/sửa cuối (hoặc lần checkout), sau đó được nhả. */
+        Duration holdTtl = Duration.ofMinutes(15);
+        /** Chu kỳ nhả các lượt giữ đã hết hạn. */
+        Duration reapInterval = Duration.ofSeconds(10);
+        /** Số lượt giữ hết hạn được nhả mỗi script (mỗi biến thể). */
+        int reapBatchSize = 500;
+        /** Thời gian nhớ các snapshot đã chốt bán, để order-service thử lại không bán hai lần. */
+        Duration committedTtl = Duration.ofDays(1);
+        Duration lockTtl = Duration.ofSeconds(30);
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Analytics {
+        /**
+         * Cộng dồn sketch (count-min + top-K theo số lượng, HyperLogLog user theo sản phẩm/seller) từ sự kiện giỏ
+         * trên thread nền của {@code CartEventPublisher} (dùng chung hàng đợi/lô của {@code cart.events}).
+         */
+        boolean enabled = false;
+        /** Độ dài một bucket thời gian; mỗi bucket có sketch riêng và hết hạn sau {@code window} bucket. */
+        Duration bucket = Duration.ofHours(1);
+        /** Số bucket được giữ (khoảng truy vấn tối đa = bucket x window). */
+        int window = 24;
+        /** Số hàng và số counter (u32) mỗi hàng của count-min sketch: depth x width x 4 byte mỗi bucket. */
+        int depth = 4;
+        int width = 2048;
+        /** Số sản phẩm được theo dõi trong top-K mỗi bucket; chỉ các sản phẩm này có HyperLogLog user theo bucket. */
+        int topK = 100;
+        /**
+         * Số seller tối đa có HyperLogLog (thêm/checkout) mỗi bucket, theo thứ tự xuất hiện. Cùng {@code top-k} chặn
+         * bộ nhớ HyperLogLog ở {@code (top-k + 2 x max-sellers + 1) x window x 12KB}.
+         */
+        int maxSellers = 1000;
+    }
+}
@@ -0,0 +1,168 @@
+package iuh.fit.se.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.dto.response.ApiResponse;
+import iuh.fit.se.exception.ErrorCode;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Load shedding cho API giỏ bằng {@link AdaptiveConcurrencyLimiter}: request vượt phần giới hạn của mức
+ * ưu tiên bị trả 503 ngay (không xếp hàng trên thread Tomcat). Summary/checkout được dùng toàn bộ giới hạn,
+ * badge {@code /count} chỉ một phần nên bị cắt trước khi quá tải lan tới luồng checkout. Độ trễ được so theo từng
+ * route; request async/stream giữ chỗ tới khi {@link AsyncListener} báo xong.
+ * Chạy trước Spring Security để request bị cắt không tốn công giải mã JWT. Là servlet filter nên profile
+ * {@code reactive} không có giới hạn này.
+ */
+@Component
+@Profile("!reactive")
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    enum Priority { CRITICAL, NORMAL, LOW }
+
+    CartProperties.Concurrency config;
+    AdaptiveConcurrencyLimiter limiter;
+    ObjectMapper objectMapper;
+    MeterRegistry meterRegistry;
+
+    public ConcurrencyLimitFilter(CartProperties cartProperties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.config = cartProperties.getConcurrency();
+        this.limiter = new AdaptiveConcurrencyLimiter(config);
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("cart.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::limit)
+                .description("Current adaptive concurrency limit")
+                .register(meterRegistry);
+        Gauge.builder("cart.concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::inFlight)
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !config.isEnabled() || request.getServletPath().startsWith("/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Priority priority = priority(request);
+        int inFlightAtStart = limiter.tryAcquire(share(priority));
+        if (inFlightAtStart < 0) {
+            shed(response, priority);
+            return;
+        }
+        Slot slot = new Slot(request, priority, inFlightAtStart);
+        try {
+            filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            slot.release(true);
+            throw e;
+        }
+        if (request.isAsyncStarted()) {
+            // response stream/async (vd. /summary/stream) còn chạy sau khi doFilter trả về: nhả khi thật sự xong
+            request.getAsyncContext().addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) {
+                    slot.release(response.getStatus() >= 500);
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                    slot.release(true);
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                    slot.release(true);
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                    event.getAsyncContext().addListener(this);
+                }
+            });
+        } else {
+            slot.release(response.getStatus() >= 500);
+        }
+    }
+
+    /** Chỗ đã nhận của một request; nhả đúng một lần dù kết thúc theo đường nào. */
+    private final class Slot {
+        private final HttpServletRequest request;
+        private final Priority priority;
+        private final int inFlightAtStart;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Slot(HttpServletRequest request, Priority priority, int inFlightAtStart) {
+            this.request = request;
+            this.priority = priority;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        void release(boolean failed) {
+            if (released.compareAndSet(false, true)) {
+                limiter.release(route(request, priority), System.nanoTime() - start, inFlightAtStart, failed);
+            }
+        }
+    }
+
+    // mẫu URL của handler (Spring MVC gán khi dispatch), không phải đường dẫn có userId
+    private static String route(HttpServletRequest request, Priority priority) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : priority.name());
+    }
+
+    static Priority priority(HttpServletRequest request) {
+        String path = request.getServletPath();
+        if (path.endsWith("/summary") || path.endsWith("/summary/stream") || path.endsWith("/checkout")) {
+            return Priority.CRITICAL;
+        }
+        if (path.endsWith("/count")) {
+            return Priority.LOW;
+        }
+        return Priority.NORMAL;
+    }
+
+    private double share(Priority priority) {
+        return switch (priority) {
+            case CRITICAL -> config.getPriorities().getCritical();
+            case NORMAL -> config.getPriorities().getNormal();
+            case LOW -> config.getPriorities().getLow();
+        };
+    }
+
+    private void shed(HttpServletResponse response, Priority priority) throws IOException {
+        meterRegistry.counter("cart.concurrency.rejected", "priority", priority.name().toLowerCase()).increment();
+        ErrorCode errorCode = ErrorCode.SERVICE_OVERLOADED;
+        response.setStatus(errorCode.getHttpStatusCode().value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        ApiResponse<?> apiResponse = ApiResponse.builder()
+                .code(errorCode.getCode())
+                .message(errorCode.getMessage())
+                .build();
+        response.getWriter().write(objectMapper.writeValueAsString(apiResponse));
+        response.flushBuffer();
+    }
+}
@@ -1,35 +1,140 @@
 package iuh.fit.se.configuration;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.context.annotation.Primary;
 import org.springframework.security.oauth2.jwt.Jwt;
-import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtException;
-import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
 
+/**
+ * Giải mã JWT, tuỳ chọn kiểm tra chữ ký ({@code jwt.verification}), và cache {@link Jwt} đã giải mã theo
+ * SHA-256 của token tới đúng {@code exp} của nó: cùng một token gửi lại trong phiên không phải parse
+ * hay kiểm tra chữ ký lần nữa. Verifier được tạo một lần từ signer key.
+ */
 @Component
 @Primary
 public class CustomJwtDecoder implements JwtDecoder {
+    private final JwtProperties properties;
+    private final JWSVerifier verifier;
+    private final Cache<ByteBuffer, Jwt> cache;
 
+    public CustomJwtDecoder(JwtProperties properties, MeterRegistry meterRegistry) throws JOSEException {
+        this.properties = properties;
+        JwtProperties.Verification verification = properties.getVerification();
+        if (verification.isEnabled() && !StringUtils.hasText(verification.getSignerKey())) {
+            throw new IllegalStateException("jwt.verification.signer-key is required when verification is enabled");
+        }
+        this.verifier = verification.isEnabled()
+                ? new MACVerifier(verification.getSignerKey().getBytes(StandardCharsets.UTF_8))
+                : null;
+        this.cache = properties.getCache().isEnabled()
+                ? Caffeine.newBuilder()
+                        .maximumSize(properties.getCache().getMaxSize())
+                        .expireAfter(untilExpiry())
+                        .recordStats()
+                        .build()
+                : null;
+        if (cache != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt.decoded");
+        }
+    }
 
     @Override
     public Jwt decode(String token) throws JwtException {
+        if (cache == null) {
+            return checkExpiry(parse(token));
+        }
+        ByteBuffer key = digest(token);
+        Jwt jwt = cache.getIfPresent(key);
+        if (jwt == null) {
+            jwt = parse(token);
+            // token hết hạn không được đưa vào cache
+            checkExpiry(jwt);
+            cache.put(key, jwt);
+        }
+        return checkExpiry(jwt);
+    }
+
+    private Jwt parse(String token) {
         try {
             SignedJWT signedJWT = SignedJWT.parse(token);
+            if (verifier != null && !signedJWT.verify(verifier)) {
+                throw new JwtException("Invalid JWT signature");
+            }
+            JWTClaimsSet claims = signedJWT.getJWTClaimsSet();
 
             return new Jwt(
                     token,
-                    signedJWT.getJWTClaimsSet().getIssueTime().toInstant(),
-                    signedJWT.getJWTClaimsSet().getExpirationTime().toInstant(),
+                    toInstant(claims.getIssueTime()),
+                    toInstant(claims.getExpirationTime()),
                     signedJWT.getHeader().toJSONObject(),
-                    signedJWT.getJWTClaimsSet().getClaims());
-        } catch (ParseException e) {
+                    claims.getClaims());
+        } catch (ParseException | JOSEException e) {
             throw new JwtException("Invalid JWT token", e);
         }
     }
+
+    private Jwt checkExpiry(Jwt jwt) {
+        Instant expiresAt = jwt.getExpiresAt();
+        if (expiresAt != null && Instant.now().isAfter(expiresAt.plus(properties.getClockSkew()))) {
+            throw new JwtException("JWT token has expired");
+        }
+        return jwt;
+    }
+
+    // mỗi entry sống tới exp (+ clock skew); token không có exp không được giữ
+    private Expiry<ByteBuffer, Jwt> untilExpiry() {
+        return new Expiry<>() {
+            @Override
+            public long expireAfterCreate(ByteBuffer key, Jwt jwt, long currentTime) {
+                if (jwt.getExpiresAt() == null) {
+                    return 0;
+                }
+                return Math.max(0, Duration.between(Instant.now(),
+                        jwt.getExpiresAt().plus(properties.getClockSkew())).toNanos());
+            }
+
+            @Override
+            public long expireAfterUpdate(ByteBuffer key, Jwt jwt, long currentTime, long currentDuration) {
+                return expireAfterCreate(key, jwt, currentTime);
+            }
+
+            @Override
+            public long expireAfterRead(ByteBuffer key, Jwt jwt, long currentTime, long currentDuration) {
+                return currentDuration;
+            }
+        };
+    }
+
+    private static Instant toInstant(Date date) {
+        return date == null ? null : date.toInstant();
+    }
+
+    private static ByteBuffer digest(String token) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
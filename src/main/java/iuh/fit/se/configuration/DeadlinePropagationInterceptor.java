@@ -0,0 +1,18 @@
+package iuh.fit.se.configuration;
+
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+
+/**
+ * Chuyển tiếp phần ngân sách còn lại xuống product-service để phía đó cũng có thể bỏ việc sớm.
+ */
+public class DeadlinePropagationInterceptor implements RequestInterceptor {
+    @Override
+    public void apply(RequestTemplate requestTemplate) {
+        Long deadline = RequestDeadline.currentNanos();
+        if (deadline != null) {
+            long remainingMillis = Math.max(0, (deadline - System.nanoTime()) / 1_000_000);
+            requestTemplate.header(RequestDeadline.HEADER, Long.toString(remainingMillis));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package iuh.fit.se.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
+import org.apache.hc.client5.http.socket.PlainConnectionSocketFactory;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.config.RegistryBuilder;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.openfeign.clientconfig.HttpClient5FeignConfiguration;
+import org.springframework.cloud.openfeign.support.FeignHttpClientProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thay HttpURLConnection mặc định của Feign bằng pool HttpClient 5 có keep-alive và metrics.
+ * Giới hạn chung lấy từ {@code spring.cloud.openfeign.httpclient.*}, giới hạn theo route và keep-alive
+ * từ {@code product-client.pool.*}. Muốn dùng HTTP/2 (java.net.http) thì tắt
+ * {@code spring.cloud.openfeign.httpclient.hc5.enabled} và bật {@code spring.cloud.openfeign.http2client.enabled}.
+ */
+@Configuration
+@ConditionalOnProperty(value = "spring.cloud.openfeign.httpclient.hc5.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class FeignHttpClientConfig {
+
+    @Bean
+    public HttpClientConnectionManager instrumentedHc5ConnectionManager(
+            FeignHttpClientProperties httpClientProperties,
+            ProductClientProperties productClientProperties,
+            MeterRegistry meterRegistry) {
+        FeignHttpClientProperties.Hc5Properties hc5 = httpClientProperties.getHc5();
+
+        InstrumentedConnectionManager connectionManager = new InstrumentedConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .register("https", SSLConnectionSocketFactory.getSocketFactory())
+                        .build(),
+                PoolConcurrencyPolicy.valueOf(hc5.getPoolConcurrencyPolicy().name()),
+                PoolReusePolicy.valueOf(hc5.getPoolReusePolicy().name()),
+                TimeValue.of(httpClientProperties.getTimeToLive(), httpClientProperties.getTimeToLiveUnit()),
+                meterRegistry);
+        connectionManager.setMaxTotal(httpClientProperties.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(httpClientProperties.getMaxConnectionsPerRoute());
+        connectionManager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(httpClientProperties.getConnectionTimeout(), TimeUnit.MILLISECONDS))
+                .setSocketTimeout(Timeout.of(hc5.getSocketTimeout(), hc5.getSocketTimeoutUnit()))
+                // kiểm tra kết nối đã nằm yên trong pool quá lâu trước khi tái sử dụng
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build());
+
+        for (ProductClientProperties.Route route : productClientProperties.getPool().getRoutes()) {
+            connectionManager.setMaxPerRoute(toRoute(route.getUrl()), route.getMaxConnections());
+            log.info("Feign pool route {} limited to {} connections", route.getUrl(), route.getMaxConnections());
+        }
+        return connectionManager;
+    }
+
+    // HttpClient chuẩn hoá route với port mặc định, nên key cũng phải có port tường minh
+    private static HttpRoute toRoute(String url) {
+        URI uri = URI.create(url);
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80);
+        return new HttpRoute(new HttpHost(uri.getScheme(), uri.getHost(), port), null, secure);
+    }
+
+    @Bean
+    public HttpClient5FeignConfiguration.HttpClientBuilderCustomizer keepAliveCustomizer(
+            ProductClientProperties productClientProperties) {
+        ProductClientProperties.Pool pool = productClientProperties.getPool();
+        return builder -> {
+            // Giữ kết nối tối đa keep-alive (server có thể yêu cầu ngắn hơn qua header Keep-Alive)
+            TimeValue keepAlive = TimeValue.of(pool.getKeepAlive().toMillis(), TimeUnit.MILLISECONDS);
+            builder.setKeepAliveStrategy((response, context) -> keepAlive);
+            builder.evictIdleConnections(keepAlive);
+            if (!pool.isCompression()) {
+                // Mặc định HttpClient 5 gửi Accept-Encoding gzip/deflate và tự giải nén response
+                builder.disableContentCompression();
+            }
+        };
+    }
+}
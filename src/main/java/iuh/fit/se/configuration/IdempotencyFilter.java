@@ -0,0 +1,246 @@
+package iuh.fit.se.configuration;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.dto.response.ApiResponse;
+import iuh.fit.se.exception.ErrorCode;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Set;
+
+/**
+ * Header {@value #HEADER} cho các endpoint thay đổi giỏ (POST/PUT/PATCH/DELETE, trừ {@code /internal/**}).
+ * <p>
+ * Request đầu tiên giữ key {@code cart:idem:<hash>} (SET NX) trong {@code in-progress-ttl}, chạy bình thường
+ * rồi lưu status và body của response trong {@code ttl}. Các lần retry cùng key nhận lại đúng response đó mà
+ * không chạm tới giỏ hay product-service; retry khi request đầu còn đang chạy nhận 409, dùng lại key cho
+ * request khác (method/URI/body) nhận 422. Response 5xx, 409 và 429 không được lưu để client có thể thử lại.
+ * Body được đọc vào bộ nhớ để tính fingerprint nên bị giới hạn {@code max-body-bytes}: {@code Content-Length}
+ * lớn hơn bị trả 413 trước khi đọc, body không khai báo độ dài chỉ được đọc tới giới hạn rồi cũng trả 413.
+ * Key được gắn với user đã xác thực nên chạy sau Spring Security.
+ */
+@Component
+@Profile("!reactive")
+@Order(0)
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class IdempotencyFilter extends OncePerRequestFilter {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final String KEY_PREFIX = "cart:idem:";
+    private static final Set<String> MUTATING_METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+    private static final int MAX_KEY_LENGTH = 255;
+
+    /** Giá trị lưu ở Redis; {@code status} null nghĩa là request đầu tiên chưa xong. */
+    record StoredResponse(String fingerprint, Integer status, String contentType, byte[] body) {
+    }
+
+    StringRedisTemplate stringRedisTemplate;
+    ObjectMapper objectMapper;
+    CartProperties cartProperties;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !cartProperties.getIdempotency().isEnabled()
+                || !MUTATING_METHODS.contains(request.getMethod())
+                || !StringUtils.hasText(request.getHeader(HEADER))
+                || request.getServletPath().startsWith("/internal/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String idempotencyKey = request.getHeader(HEADER).trim();
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            writeError(response, ErrorCode.INVALID_REQUEST);
+            return;
+        }
+        CartProperties.Idempotency config = cartProperties.getIdempotency();
+        if (request.getContentLengthLong() > config.getMaxBodyBytes()) {
+            writeError(response, ErrorCode.CONTENT_TOO_LARGE);
+            return;
+        }
+        byte[] body = request.getInputStream().readNBytes(config.getMaxBodyBytes() + 1);
+        if (body.length > config.getMaxBodyBytes()) {
+            writeError(response, ErrorCode.CONTENT_TOO_LARGE);
+            return;
+        }
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request, body);
+        String fingerprint = sha256(request.getMethod() + " " + request.getRequestURI() + "?"
+                + request.getQueryString() + "\n", cachedRequest.body);
+        String redisKey = KEY_PREFIX + sha256(principal() + "\n" + idempotencyKey + "\n", new byte[0]);
+
+        Boolean claimed = stringRedisTemplate.opsForValue().setIfAbsent(redisKey,
+                write(new StoredResponse(fingerprint, null, null, null)), config.getInProgressTtl());
+        if (!Boolean.TRUE.equals(claimed)) {
+            replay(redisKey, fingerprint, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper cachedResponse = new ContentCachingResponseWrapper(response);
+        boolean stored = false;
+        try {
+            filterChain.doFilter(cachedRequest, cachedResponse);
+            int status = cachedResponse.getStatus();
+            if (cacheable(status)) {
+                stringRedisTemplate.opsForValue().set(redisKey, write(new StoredResponse(fingerprint, status,
+                        cachedResponse.getContentType(), cachedResponse.getContentAsByteArray())), config.getTtl());
+                stored = true;
+            }
+        } finally {
+            if (!stored) {
+                // lỗi tạm thời: nhả key để lần retry được xử lý lại
+                stringRedisTemplate.delete(redisKey);
+            }
+            cachedResponse.copyBodyToResponse();
+        }
+    }
+
+    private void replay(String redisKey, String fingerprint, HttpServletResponse response) throws IOException {
+        String json = stringRedisTemplate.opsForValue().get(redisKey);
+        StoredResponse stored = json == null ? null : objectMapper.readValue(json, StoredResponse.class);
+        if (stored == null || stored.status() == null) {
+            // đang chạy (hoặc vừa bị nhả sau lỗi): client thử lại sau
+            writeError(response, ErrorCode.IDEMPOTENCY_KEY_IN_PROGRESS);
+            return;
+        }
+        if (!stored.fingerprint().equals(fingerprint)) {
+            writeError(response, ErrorCode.IDEMPOTENCY_KEY_REUSED);
+            return;
+        }
+        response.setStatus(stored.status());
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+        response.flushBuffer();
+    }
+
+    private static boolean cacheable(int status) {
+        return status < 500
+                && status != HttpStatus.CONFLICT.value()
+                && status != HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    private static String principal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? "" : authentication.getName();
+    }
+
+    private String write(StoredResponse stored) {
+        try {
+            return objectMapper.writeValueAsString(stored);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeError(HttpServletResponse response, ErrorCode errorCode) throws IOException {
+        response.setStatus(errorCode.getHttpStatusCode().value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        ApiResponse<?> apiResponse = ApiResponse.builder()
+                .code(errorCode.getCode())
+                .message(errorCode.getMessage())
+                .build();
+        response.getWriter().write(objectMapper.writeValueAsString(apiResponse));
+        response.flushBuffer();
+    }
+
+    private static String sha256(String prefix, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(prefix.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Body đã đọc trước (trong giới hạn) để tính fingerprint mà controller vẫn đọc lại được. */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // body đã nằm trong bộ nhớ: luôn sẵn sàng, báo có dữ liệu rồi đọc xong ngay
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        if (!isFinished()) {
+                            listener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            listener.onAllDataRead();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        listener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package iuh.fit.se.configuration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
+import org.apache.hc.core5.http.config.Registry;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pool kết nối HttpClient 5 cho Feign, kèm metrics:
+ * <ul>
+ *     <li>{@code feign.pool.connections} (leased/available/pending/max) và {@code feign.pool.saturation} = leased/max</li>
+ *     <li>{@code feign.pool.lease} - thời gian chờ mượn kết nối từ pool</li>
+ *     <li>{@code feign.pool.lease.count{reused=true|false}} và {@code feign.pool.reuse.ratio}</li>
+ * </ul>
+ */
+public class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+    private final Timer leaseTimer;
+    private final Counter reusedLeases;
+    private final Counter newLeases;
+
+    public InstrumentedConnectionManager(Registry<ConnectionSocketFactory> socketFactoryRegistry,
+                                         PoolConcurrencyPolicy concurrencyPolicy,
+                                         PoolReusePolicy reusePolicy,
+                                         TimeValue timeToLive,
+                                         MeterRegistry meterRegistry) {
+        super(socketFactoryRegistry, concurrencyPolicy, reusePolicy, timeToLive);
+
+        this.leaseTimer = Timer.builder("feign.pool.lease")
+                .description("Time spent waiting for a pooled connection")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.reusedLeases = Counter.builder("feign.pool.lease.count").tag("reused", "true").register(meterRegistry);
+        this.newLeases = Counter.builder("feign.pool.lease.count").tag("reused", "false").register(meterRegistry);
+
+        Gauge.builder("feign.pool.connections", this, m -> m.getTotalStats().getLeased()).tag("state", "leased").register(meterRegistry);
+        Gauge.builder("feign.pool.connections", this, m -> m.getTotalStats().getAvailable()).tag("state", "available").register(meterRegistry);
+        Gauge.builder("feign.pool.connections", this, m -> m.getTotalStats().getPending()).tag("state", "pending").register(meterRegistry);
+        Gauge.builder("feign.pool.connections", this, m -> m.getTotalStats().getMax()).tag("state", "max").register(meterRegistry);
+        Gauge.builder("feign.pool.saturation", this, InstrumentedConnectionManager::saturation).register(meterRegistry);
+        Gauge.builder("feign.pool.reuse.ratio", this, InstrumentedConnectionManager::reuseRatio).register(meterRegistry);
+    }
+
+    @Override
+    public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+        LeaseRequest delegate = super.lease(id, route, requestTimeout, state);
+        long start = System.nanoTime();
+        return new LeaseRequest() {
+            @Override
+            public ConnectionEndpoint get(Timeout timeout)
+                    throws InterruptedException, ExecutionException, TimeoutException {
+                ConnectionEndpoint endpoint = delegate.get(timeout);
+                leaseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                // Kết nối mới chỉ được connect sau khi lease; đã connected nghĩa là lấy lại từ pool (keep-alive)
+                (endpoint.isConnected() ? reusedLeases : newLeases).increment();
+                return endpoint;
+            }
+
+            @Override
+            public boolean cancel() {
+                return delegate.cancel();
+            }
+        };
+    }
+
+    double saturation() {
+        var stats = getTotalStats();
+        return stats.getMax() == 0 ? 0 : (double) stats.getLeased() / stats.getMax();
+    }
+
+    double reuseRatio() {
+        double reused = reusedLeases.count();
+        double total = reused + newLeases.count();
+        return total == 0 ? 0 : reused / total;
+    }
+}
@@ -0,0 +1,31 @@
+package iuh.fit.se.configuration;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Đọc cả "roles" và "scopes" từ token thành GrantedAuthority (dùng chung cho servlet và reactive security).
+ */
+public class JwtAuthoritiesConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
+    @Override
+    public Collection<GrantedAuthority> convert(Jwt jwt) {
+        var roles = jwt.getClaimAsStringList("roles");
+        var scopes = jwt.getClaimAsStringList("scopes");
+
+        // Kết hợp tất cả thành danh sách GrantedAuthority
+        return Stream.concat(
+                        roles != null ? roles.stream() : Stream.empty(),
+                        scopes != null ? scopes.stream() : Stream.empty()
+                )
+                .filter(Objects::nonNull)
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toList());
+    }
+}
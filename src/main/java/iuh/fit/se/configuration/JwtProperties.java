@@ -0,0 +1,37 @@
+package iuh.fit.se.configuration;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Giải mã JWT trong {@link CustomJwtDecoder} (prefix {@code jwt}).
+ */
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@ConfigurationProperties(prefix = "jwt")
+public class JwtProperties {
+    /** Độ lệch đồng hồ cho phép khi kiểm tra {@code exp}. */
+    Duration clockSkew = Duration.ofSeconds(30);
+    Verification verification = new Verification();
+    Cache cache = new Cache();
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Verification {
+        /** Kiểm tra chữ ký HMAC (HS256/384/512) bằng {@code signer-key} của identity-service. */
+        boolean enabled = false;
+        String signerKey;
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Cache {
+        /** Giữ Jwt đã giải mã (và đã kiểm tra chữ ký) tới {@code exp} của token. */
+        boolean enabled = true;
+        long maxSize = 100_000;
+    }
+}
@@ -0,0 +1,74 @@
+package iuh.fit.se.configuration;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bảo vệ tail latency cho các lời gọi product-service (prefix {@code product-client}).
+ */
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@ConfigurationProperties(prefix = "product-client")
+public class ProductClientProperties {
+    /** Ngân sách thời gian mặc định cho một request khi caller không gửi header deadline. */
+    Duration deadline = Duration.ofSeconds(2);
+    /** Tuổi tối đa của snapshot biến thể trên CartItem còn được dùng làm fallback. */
+    Duration fallbackMaxAge = Duration.ofHours(24);
+    Hedge hedge = new Hedge();
+    CircuitBreaker circuitBreaker = new CircuitBreaker();
+    Bulkhead bulkhead = new Bulkhead();
+    Pool pool = new Pool();
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Hedge {
+        boolean enabled = true;
+        /** Gửi request thứ hai khi request đầu chậm hơn percentile này của các lời gọi gần đây. */
+        double percentile = 0.95;
+        Duration minDelay = Duration.ofMillis(50);
+        Duration maxDelay = Duration.ofMillis(500);
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class CircuitBreaker {
+        float failureRateThreshold = 50;
+        float slowCallRateThreshold = 80;
+        Duration slowCallDurationThreshold = Duration.ofSeconds(1);
+        int slidingWindowSize = 50;
+        int minimumNumberOfCalls = 20;
+        Duration waitDurationInOpenState = Duration.ofSeconds(10);
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Bulkhead {
+        int maxConcurrentCalls = 64;
+        Duration maxWaitDuration = Duration.ZERO;
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Pool {
+        /** Thời gian giữ kết nối rảnh trong pool trước khi đóng. */
+        Duration keepAlive = Duration.ofSeconds(30);
+        /** Gửi Accept-Encoding gzip/deflate; tắt khi payload nhỏ để tiết kiệm CPU nén/giải nén. */
+        boolean compression = false;
+        /** Giới hạn kết nối riêng theo route, ghi đè max-connections-per-route. */
+        List<Route> routes = new ArrayList<>();
+    }
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Route {
+        /** Base URL của service (chỉ dùng scheme/host/port). */
+        String url;
+        int maxConnections;
+    }
+}
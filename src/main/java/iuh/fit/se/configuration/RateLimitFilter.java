@@ -0,0 +1,125 @@
+package iuh.fit.se.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.dto.response.ApiResponse;
+import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.repository.ClusterRateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Giới hạn tần suất các endpoint thay đổi giỏ (POST/PUT/PATCH/DELETE, trừ {@code /internal/**} và checkout):
+ * một {@link TokenBucket} cho mỗi user, một bucket chung cho cả instance, và tuỳ chọn giới hạn dùng chung
+ * mọi instance qua {@link ClusterRateLimiter}. Bị chặn thì trả 429 kèm {@code Retry-After} (giây) mà không
+ * gọi product-service hay ghi Redis. Chạy sau Spring Security (để biết user) và trước {@link IdempotencyFilter}.
+ * Là servlet filter nên profile {@code reactive} không có giới hạn này.
+ */
+@Component
+@Profile("!reactive")
+@Order(-10)
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RateLimitFilter extends OncePerRequestFilter {
+    private static final Set<String> MUTATING_METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+
+    CartProperties.RateLimit config;
+    ClusterRateLimiter clusterRateLimiter;
+    ObjectMapper objectMapper;
+    MeterRegistry meterRegistry;
+    Cache<String, TokenBucket> userBuckets;
+    TokenBucket globalBucket;
+
+    public RateLimitFilter(CartProperties cartProperties, ClusterRateLimiter clusterRateLimiter,
+                           ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.config = cartProperties.getRateLimit();
+        this.clusterRateLimiter = clusterRateLimiter;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        // bucket không dùng lâu hơn thời gian hồi đầy thì tương đương bucket mới, có thể bỏ
+        this.userBuckets = Caffeine.newBuilder()
+                .expireAfterAccess(refillTime(config.getUser()))
+                .maximumSize(config.getMaxTrackedUsers())
+                .build();
+        this.globalBucket = new TokenBucket(config.getGlobal().getPermitsPerSecond(), config.getGlobal().getBurst());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getServletPath();
+        return !config.isEnabled()
+                || !MUTATING_METHODS.contains(request.getMethod())
+                || path.startsWith("/internal/")
+                || path.endsWith("/checkout");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String user = user(request);
+        CartProperties.Limit userLimit = config.getUser();
+        long waitNanos = userBuckets
+                .get(user, key -> new TokenBucket(userLimit.getPermitsPerSecond(), userLimit.getBurst()))
+                .tryAcquire();
+        if (waitNanos > 0) {
+            reject(response, "user", waitNanos);
+            return;
+        }
+        waitNanos = globalBucket.tryAcquire();
+        if (waitNanos > 0) {
+            reject(response, "global", waitNanos);
+            return;
+        }
+        // giới hạn cục bộ đã chặn phần lớn request vượt mức trước khi tới Redis
+        if (clusterRateLimiter.enabled()) {
+            long waitMillis = clusterRateLimiter.tryAcquire(user);
+            if (waitMillis > 0) {
+                reject(response, "cluster", TimeUnit.MILLISECONDS.toNanos(waitMillis));
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private void reject(HttpServletResponse response, String scope, long waitNanos) throws IOException {
+        meterRegistry.counter("cart.ratelimit.rejected", "scope", scope).increment();
+        ErrorCode errorCode = ErrorCode.RATE_LIMIT_EXCEEDED;
+        response.setStatus(errorCode.getHttpStatusCode().value());
+        response.setHeader(HttpHeaders.RETRY_AFTER,
+                String.valueOf(Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L)));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        ApiResponse<?> apiResponse = ApiResponse.builder()
+                .code(errorCode.getCode())
+                .message(errorCode.getMessage())
+                .build();
+        response.getWriter().write(objectMapper.writeValueAsString(apiResponse));
+        response.flushBuffer();
+    }
+
+    private static String user(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : "ip:" + request.getRemoteAddr();
+    }
+
+    private static Duration refillTime(CartProperties.Limit limit) {
+        return Duration.ofMillis((long) Math.ceil(1000.0 * Math.max(1, limit.getBurst()) / limit.getPermitsPerSecond()));
+    }
+}
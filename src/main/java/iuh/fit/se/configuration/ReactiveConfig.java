@@ -0,0 +1,69 @@
+package iuh.fit.se.configuration;
+
+import io.netty.channel.ChannelOption;
+import iuh.fit.se.repository.httpclient.ReactiveProductClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.support.WebClientAdapter;
+import org.springframework.web.service.invoker.HttpServiceProxyFactory;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Duration;
+
+/**
+ * Hạ tầng non-blocking cho profile "reactive": reactive Redis template và WebClient tới product-service.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfig {
+
+    @Bean
+    public ReactiveRedisTemplate<byte[], byte[]> reactiveBytesRedisTemplate(ReactiveRedisConnectionFactory connectionFactory) {
+        return new ReactiveRedisTemplate<>(connectionFactory, RedisSerializationContext.byteArray());
+    }
+
+    @Bean
+    public ReactiveProductClient reactiveProductClient(
+            WebClient.Builder webClientBuilder,
+            @Value("${spring.cloud.openfeign.client.config.product-service.url}") String baseUrl,
+            @Value("${spring.cloud.openfeign.client.config.product-service.connect-timeout}") int connectTimeoutMillis,
+            @Value("${spring.cloud.openfeign.client.config.product-service.read-timeout}") long readTimeoutMillis) {
+        HttpClient httpClient = HttpClient.create()
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
+                .responseTimeout(Duration.ofMillis(readTimeoutMillis));
+
+        WebClient webClient = webClientBuilder
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter(forwardAuthorization())
+                .build();
+
+        return HttpServiceProxyFactory.builderFor(WebClientAdapter.create(webClient))
+                .build()
+                .createClient(ReactiveProductClient.class);
+    }
+
+    // Tương đương AuthenticationRequestInterceptor: chuyển tiếp Bearer token của request hiện tại
+    private static ExchangeFilterFunction forwardAuthorization() {
+        return (request, next) -> ReactiveSecurityContextHolder.getContext()
+                .mapNotNull(context -> context.getAuthentication())
+                .filter(JwtAuthenticationToken.class::isInstance)
+                .map(auth -> ClientRequest.from(request)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + ((JwtAuthenticationToken) auth).getToken().getTokenValue())
+                        .build())
+                .defaultIfEmpty(request)
+                .flatMap(next::exchange);
+    }
+}
@@ -0,0 +1,77 @@
+package iuh.fit.se.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.dto.response.ApiResponse;
+import iuh.fit.se.exception.ErrorCode;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.ReactiveJwtAuthenticationConverterAdapter;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.ServerAuthenticationEntryPoint;
+import reactor.core.publisher.Mono;
+
+/**
+ * Bản WebFlux của {@link SecurityConfig}: cùng JWT decoder và cách map roles/scopes.
+ */
+@Configuration
+@Profile("reactive")
+@EnableWebFluxSecurity
+@EnableReactiveMethodSecurity
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ReactiveSecurityConfig {
+    CustomJwtDecoder customJwtDecoder;
+    ObjectMapper objectMapper;
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        return http
+                .authorizeExchange(exchange -> exchange.anyExchange().authenticated())
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .oauth2ResourceServer(oauth2 -> oauth2
+                        .jwt(jwt -> jwt
+                                .jwtDecoder(reactiveJwtDecoder())
+                                .jwtAuthenticationConverter(reactiveJwtAuthenticationConverter()))
+                        .authenticationEntryPoint(authenticationEntryPoint()))
+                .build();
+    }
+
+    @Bean
+    ReactiveJwtDecoder reactiveJwtDecoder() {
+        // Decode chỉ là parse CPU-bound, không I/O
+        return token -> Mono.fromCallable(() -> customJwtDecoder.decode(token));
+    }
+
+    @Bean
+    ReactiveJwtAuthenticationConverterAdapter reactiveJwtAuthenticationConverter() {
+        JwtAuthenticationConverter jwtAuthenticationConverter = new JwtAuthenticationConverter();
+        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(new JwtAuthoritiesConverter());
+        return new ReactiveJwtAuthenticationConverterAdapter(jwtAuthenticationConverter);
+    }
+
+    private ServerAuthenticationEntryPoint authenticationEntryPoint() {
+        return (exchange, ex) -> {
+            ErrorCode errorCode = ErrorCode.UNAUTHORIZED;
+            ApiResponse<?> apiResponse = ApiResponse.builder()
+                    .code(errorCode.getCode())
+                    .message(errorCode.getMessage())
+                    .build();
+            var response = exchange.getResponse();
+            response.setStatusCode(errorCode.getHttpStatusCode());
+            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            return Mono.fromCallable(() -> objectMapper.writeValueAsBytes(apiResponse))
+                    .map(bytes -> response.bufferFactory().wrap(bytes))
+                    .flatMap(buffer -> response.writeWith(Mono.just(buffer)));
+        };
+    }
+}
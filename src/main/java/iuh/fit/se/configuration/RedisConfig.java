@@ -4,16 +4,27 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import iuh.fit.se.service.CartRepricer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.repository.configuration.EnableRedisRepositories;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer;
+
+import java.time.Duration;
 
 @Configuration
+@Slf4j
 public class RedisConfig {
     @Bean
     public RedisTemplate<String, String> redisTemplate(RedisConnectionFactory connectionFactory) {
@@ -23,4 +34,27 @@ public class RedisConfig {
         template.setValueSerializer(new StringRedisSerializer());
         return template;
     }
-}
\ No newline at end of file
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(prefix = "cart.reprice", name = "enabled", havingValue = "true")
+    public StreamMessageListenerContainer<String, MapRecord<String, String, String>> priceChangeListenerContainer(
+            RedisConnectionFactory connectionFactory, CartRepricer cartRepricer, CartProperties cartProperties) {
+        CartProperties.Reprice reprice = cartProperties.getReprice();
+        StreamMessageListenerContainer<String, MapRecord<String, String, String>> container =
+                StreamMessageListenerContainer.create(connectionFactory,
+                        StreamMessageListenerContainer.StreamMessageListenerContainerOptions.builder()
+                                .batchSize(reprice.getBatchSize())
+                                .pollTimeout(Duration.ofSeconds(1))
+                                .build());
+        // XACK do CartRepricer gọi sau khi xử lý xong; lỗi đọc (Redis mất kết nối) không huỷ subscription
+        container.register(StreamMessageListenerContainer.StreamReadRequest
+                        .builder(StreamOffset.create(reprice.getStream(), ReadOffset.lastConsumed()))
+                        .consumer(Consumer.from(reprice.getGroup(), cartRepricer.consumer()))
+                        .autoAcknowledge(false)
+                        .cancelOnError(e -> false)
+                        .errorHandler(e -> log.warn("Reading price changes failed: {}", e.getMessage()))
+                        .build(),
+                cartRepricer);
+        return container;
+    }
+}
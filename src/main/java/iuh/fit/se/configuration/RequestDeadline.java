@@ -0,0 +1,47 @@
+package iuh.fit.se.configuration;
+
+import java.time.Duration;
+
+/**
+ * Deadline của request hiện tại (gắn theo thread bởi {@link RequestDeadlineFilter}).
+ * Các lời gọi ra ngoài dùng phần thời gian còn lại thay cho timeout cố định.
+ */
+public final class RequestDeadline {
+    /** Thời gian còn lại (ms) caller cho phép; cart-service nhận vào và chuyển tiếp cho product-service. */
+    public static final String HEADER = "X-Request-Timeout-Ms";
+
+    private static final ThreadLocal<Long> DEADLINE_NANOS = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    public static void set(Duration budget) {
+        DEADLINE_NANOS.set(System.nanoTime() + budget.toNanos());
+    }
+
+    public static void setNanos(Long deadlineNanos) {
+        if (deadlineNanos == null) {
+            DEADLINE_NANOS.remove();
+        } else {
+            DEADLINE_NANOS.set(deadlineNanos);
+        }
+    }
+
+    /** Deadline tuyệt đối (System.nanoTime) hoặc null nếu thread không thuộc một request. */
+    public static Long currentNanos() {
+        return DEADLINE_NANOS.get();
+    }
+
+    public static void clear() {
+        DEADLINE_NANOS.remove();
+    }
+
+    /** Thời gian còn lại; dùng {@code fallbackBudget} khi không có deadline (job nền, test...). */
+    public static Duration remaining(Duration fallbackBudget) {
+        Long deadline = DEADLINE_NANOS.get();
+        if (deadline == null) {
+            return fallbackBudget;
+        }
+        return Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+    }
+}
@@ -0,0 +1,53 @@
+package iuh.fit.se.configuration;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Mở ngân sách thời gian cho mỗi request: lấy từ header {@link RequestDeadline#HEADER} nếu caller gửi
+ * (không vượt quá mặc định), ngược lại dùng {@code product-client.deadline}.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+    ProductClientProperties properties;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestDeadline.set(budget(request.getHeader(RequestDeadline.HEADER)));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestDeadline.clear();
+        }
+    }
+
+    private Duration budget(String header) {
+        Duration defaultBudget = properties.getDeadline();
+        if (!StringUtils.hasText(header)) {
+            return defaultBudget;
+        }
+        try {
+            Duration requested = Duration.ofMillis(Long.parseLong(header.trim()));
+            return requested.isNegative() || requested.compareTo(defaultBudget) > 0 ? defaultBudget : requested;
+        } catch (NumberFormatException e) {
+            return defaultBudget;
+        }
+    }
+}
@@ -3,20 +3,20 @@ package iuh.fit.se.configuration;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.client.RestTemplate;
 
 import javax.crypto.spec.SecretKeySpec;
-import java.util.stream.Collectors;
 
 @Configuration
+@Profile("!reactive")
 @EnableWebSecurity
 @EnableMethodSecurity
 @RequiredArgsConstructor
@@ -54,20 +54,7 @@ public class SecurityConfig {
 
         // customize để nhận roles va scopes
         JwtAuthenticationConverter jwtAuthenticationConverter = new JwtAuthenticationConverter();
-        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(jwt -> {
-            // Đọc cả "roles" và "scopes" từ token
-            var roles = jwt.getClaimAsStringList("roles");
-            var scopes = jwt.getClaimAsStringList("scopes");
-
-            // Kết hợp tất cả thành danh sách GrantedAuthority
-            return java.util.stream.Stream.concat(
-                            roles != null ? roles.stream() : java.util.stream.Stream.empty(),
-                            scopes != null ? scopes.stream() : java.util.stream.Stream.empty()
-                    )
-                    .filter(java.util.Objects::nonNull)
-                    .map(SimpleGrantedAuthority::new)
-                    .collect(Collectors.toList());
-        });
+        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(new JwtAuthoritiesConverter());
         return jwtAuthenticationConverter;
     }
     @Bean
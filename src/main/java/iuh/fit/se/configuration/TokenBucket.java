@@ -0,0 +1,35 @@
+package iuh.fit.se.configuration;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket không khoá (dạng GCRA): chỉ giữ một {@link AtomicLong} là thời điểm lý thuyết mà bucket
+ * đầy trở lại, nên mỗi lần lấy token là một vòng CAS; các user khác nhau không tranh chấp nhau.
+ */
+final class TokenBucket {
+    // khoảng thời gian sinh một token và độ dài "hàng đợi" cho phép (burst - 1 token)
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong theoreticalArrival;
+
+    TokenBucket(double permitsPerSecond, int burst) {
+        this.intervalNanos = (long) (1_000_000_000L / permitsPerSecond);
+        this.toleranceNanos = intervalNanos * Math.max(0, burst - 1);
+        this.theoreticalArrival = new AtomicLong(System.nanoTime());
+    }
+
+    /** Lấy một token; trả về 0 nếu được phép, ngược lại số nano giây phải chờ. */
+    long tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long tat = theoreticalArrival.get();
+            long wait = tat - toleranceNanos - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(tat, Math.max(now, tat) + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+}
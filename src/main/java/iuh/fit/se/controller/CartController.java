@@ -5,23 +5,31 @@ import iuh.fit.se.dto.request.RemoveCartItemsRequest;
 import iuh.fit.se.dto.request.UpdateCartItemRequest;
 import iuh.fit.se.dto.response.ApiResponse;
 import iuh.fit.se.dto.response.CartItemSummaryResponse;
-import iuh.fit.se.dto.response.CartSummaryResponse;
+import iuh.fit.se.dto.response.CartItemsPageResponse;
+import iuh.fit.se.dto.response.CheckoutSnapshotResponse;
 import iuh.fit.se.entity.Cart;
+import iuh.fit.se.repository.CartReplica;
 import iuh.fit.se.service.CartService;
+import iuh.fit.se.service.CartSummaryStreamer;
 import jakarta.validation.Valid;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.Map;
 
 @RestController
+@Profile("!reactive")
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class CartController {
     CartService cartService;
+    CartSummaryStreamer cartSummaryStreamer;
 
     @PostMapping("/add")
     public ApiResponse<Cart> addToCart(@Valid @RequestBody AddToCartRequest addToCartRequest) {
@@ -33,29 +41,84 @@ public class CartController {
     }
 
     @GetMapping("/{userId}")
-    public ApiResponse<Cart> getCartByUserId(@PathVariable("userId") String userId) {
-        return ApiResponse.<Cart>builder()
+    public ApiResponse<Object> getCartByUserId(@PathVariable("userId") String userId,
+                                               @RequestHeader(value = CartReplica.VERSION_HEADER, required = false) Long cartVersion) {
+        // JSON render lúc ghi được chép nguyên vào response, không dựng lại Cart
+        Object cart = cartService.findRenderedCart(userId, cartVersion).<Object>map(json -> json)
+                .orElseGet(() -> cartService.readCart(userId, cartVersion));
+        return ApiResponse.builder()
                 .code(200)
                 .message("Cart retrieved successfully")
-                .result(cartService.getOrCreateCart(userId))
+                .result(cart)
                 .build();
     }
 
     @GetMapping("/{userId}/summary")
-    public ApiResponse<CartSummaryResponse> getCartSummary(@PathVariable("userId") String userId) {
-        return ApiResponse.<CartSummaryResponse>builder()
+    public ApiResponse<Object> getCartSummary(@PathVariable("userId") String userId,
+                                              @RequestHeader(value = CartReplica.VERSION_HEADER, required = false) Long cartVersion) {
+        Object summary = cartService.findRenderedSummary(userId, cartVersion).<Object>map(json -> json)
+                .orElseGet(() -> cartService.getCartSummary(userId, cartVersion));
+        return ApiResponse.builder()
                 .code(200)
                 .message("Cart summary retrieved successfully")
-                .result(cartService.getCartSummary(userId))
+                .result(summary)
+                .build();
+    }
+
+    /** Như {@code /summary} nhưng ghi từng seller ra response, dùng cho giỏ rất nhiều dòng. */
+    @GetMapping(value = "/{userId}/summary/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamCartSummary(@PathVariable("userId") String userId) {
+        CartSummaryStreamer.Summary summary = cartSummaryStreamer.prepare(userId);
+        StreamingResponseBody body = summary::writeTo;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /** Dòng giỏ theo thứ tự thêm vào, từng trang; {@code cursor} lấy từ {@code nextCursor} của trang trước. */
+    @GetMapping("/{userId}/items")
+    public ApiResponse<CartItemsPageResponse> getCartItems(@PathVariable("userId") String userId,
+                                                           @RequestParam(value = "cursor", required = false) String cursor,
+                                                           @RequestParam(value = "limit", required = false) Integer limit) {
+        return ApiResponse.<CartItemsPageResponse>builder()
+                .code(200)
+                .message("Cart items retrieved successfully")
+                .result(cartService.getCartItems(userId, cursor, limit))
+                .build();
+    }
+
+    @PostMapping("/{userId}/checkout")
+    public ApiResponse<CheckoutSnapshotResponse> checkout(@PathVariable("userId") String userId) {
+        return ApiResponse.<CheckoutSnapshotResponse>builder()
+                .code(200)
+                .message("Checkout snapshot retrieved successfully")
+                .result(cartService.checkout(userId))
+                .build();
+    }
+
+    @PostMapping("/{userId}/vouchers/{code}")
+    public ApiResponse<Cart> applyVoucher(@PathVariable("userId") String userId, @PathVariable("code") String code) {
+        return ApiResponse.<Cart>builder()
+                .code(200)
+                .message("Voucher applied successfully")
+                .result(cartService.applyVoucher(userId, code))
+                .build();
+    }
+
+    @DeleteMapping("/{userId}/vouchers/{code}")
+    public ApiResponse<Cart> removeVoucher(@PathVariable("userId") String userId, @PathVariable("code") String code) {
+        return ApiResponse.<Cart>builder()
+                .code(200)
+                .message("Voucher removed successfully")
+                .result(cartService.removeVoucher(userId, code))
                 .build();
     }
 
     @GetMapping("/{userId}/count")
-    public ApiResponse<Integer> getCartItemCount(@PathVariable("userId") String userId) {
+    public ApiResponse<Integer> getCartItemCount(@PathVariable("userId") String userId,
+                                                 @RequestHeader(value = CartReplica.VERSION_HEADER, required = false) Long cartVersion) {
         return ApiResponse.<Integer>builder()
                 .code(200)
                 .message("Cart item count retrieved successfully")
-                .result(cartService.getCartItemCount(userId))
+                .result(cartService.getCartItemCount(userId, cartVersion))
                 .build();
     }
 
@@ -0,0 +1,98 @@
+package iuh.fit.se.controller;
+
+import iuh.fit.se.dto.response.ApiResponse;
+import iuh.fit.se.dto.response.ProductCartCountResponse;
+import iuh.fit.se.dto.response.ProductCartUsersResponse;
+import iuh.fit.se.dto.response.SellerAbandonmentResponse;
+import iuh.fit.se.dto.response.TopCartProductsResponse;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.repository.CartAnalytics;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+
+/**
+ * Số liệu giỏ theo thời gian thực cho merchandising ({@link CartAnalytics}, {@code cart.analytics.enabled}).
+ * {@code window} theo ISO-8601 (vd. {@code PT6H}, {@code PT30M}), bỏ trống thì lấy toàn bộ khoảng còn giữ.
+ */
+@RestController
+@Profile("!reactive")
+@RequestMapping("/internal/analytics")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class InternalAnalyticsController {
+    private static final int MAX_LIMIT = 100;
+
+    CartAnalytics cartAnalytics;
+
+    @GetMapping("/top-products")
+    @PreAuthorize("hasAnyAuthority('ADMIN', 'SERVICE')")
+    public ApiResponse<TopCartProductsResponse> topProducts(@RequestParam(value = "window", required = false) Duration window,
+                                                            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        requireEnabled();
+        TopCartProductsResponse result = TopCartProductsResponse.builder()
+                .window(cartAnalytics.effectiveWindow(window).toString())
+                .distinctUsers(cartAnalytics.distinctUsers(window))
+                .products(cartAnalytics.topProducts(window, Math.max(1, Math.min(limit, MAX_LIMIT))).stream()
+                        .map(count -> ProductCartCountResponse.builder()
+                                .productId(count.productId())
+                                .quantity(count.quantity())
+                                .build())
+                        .toList())
+                .build();
+        return ApiResponse.<TopCartProductsResponse>builder()
+                .code(200)
+                .message("Top products retrieved successfully")
+                .result(result)
+                .build();
+    }
+
+    @GetMapping("/products/{productId}/users")
+    @PreAuthorize("hasAnyAuthority('ADMIN', 'SERVICE')")
+    public ApiResponse<ProductCartUsersResponse> productUsers(@PathVariable("productId") String productId,
+                                                              @RequestParam(value = "window", required = false) Duration window) {
+        requireEnabled();
+        return ApiResponse.<ProductCartUsersResponse>builder()
+                .code(200)
+                .message("Distinct users retrieved successfully")
+                .result(ProductCartUsersResponse.builder()
+                        .productId(productId)
+                        .window(cartAnalytics.effectiveWindow(window).toString())
+                        .distinctUsers(cartAnalytics.distinctUsers(productId, window))
+                        .build())
+                .build();
+    }
+
+    @GetMapping("/sellers/{sellerId}/abandonment")
+    @PreAuthorize("hasAnyAuthority('ADMIN', 'SERVICE')")
+    public ApiResponse<SellerAbandonmentResponse> sellerAbandonment(@PathVariable("sellerId") String sellerId,
+                                                                    @RequestParam(value = "window", required = false) Duration window) {
+        requireEnabled();
+        CartAnalytics.Abandonment abandonment = cartAnalytics.abandonment(sellerId, window);
+        long total = abandonment.abandoned() + abandonment.checkedOut();
+        return ApiResponse.<SellerAbandonmentResponse>builder()
+                .code(200)
+                .message("Abandonment retrieved successfully")
+                .result(SellerAbandonmentResponse.builder()
+                        .sellerId(sellerId)
+                        .window(cartAnalytics.effectiveWindow(window).toString())
+                        .cartedUsers(abandonment.carted())
+                        .checkedOutUsers(abandonment.checkedOut())
+                        .abandonedUsers(abandonment.abandoned())
+                        .abandonmentRate(total == 0 ? 0 : (double) abandonment.abandoned() / total)
+                        .build())
+                .build();
+    }
+
+    private void requireEnabled() {
+        if (!cartAnalytics.enabled()) {
+            throw new AppException(ErrorCode.OPERATION_NOT_ALLOWED);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package iuh.fit.se.controller;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.dto.request.CartBatchRequest;
+import iuh.fit.se.dto.response.ApiResponse;
+import iuh.fit.se.dto.response.CartBatchItemResponse;
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.mapper.CartSummaryMapper;
+import iuh.fit.se.repository.CartBatchReader;
+import iuh.fit.se.repository.CartMetadataStore;
+import iuh.fit.se.service.CartService;
+import iuh.fit.se.service.CartTiering;
+import jakarta.validation.Valid;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * API nội bộ cho order-service và các job định kỳ.
+ */
+@RestController
+@Profile("!reactive")
+@RequestMapping("/internal/carts")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class InternalCartController {
+    CartBatchReader cartBatchReader;
+    CartService cartService;
+    CartSummaryMapper cartSummaryMapper;
+    CartTiering cartTiering;
+    CartMetadataStore cartMetadataStore;
+    CartProperties cartProperties;
+    ObjectMapper objectMapper;
+
+    /**
+     * Summary (đã tính giá) của nhiều giỏ trong một response, stream từng nhóm ngay khi Redis trả về.
+     * Thứ tự phần tử trong {@code result} không theo thứ tự userIds.
+     */
+    @PostMapping(value = "/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAnyAuthority('ADMIN', 'SERVICE')")
+    public ResponseEntity<StreamingResponseBody> getCartsBatch(@Valid @RequestBody CartBatchRequest request) {
+        if (request.getUserIds().size() > cartProperties.getBatch().getMaxIds()) {
+            throw new AppException(ErrorCode.CONTENT_TOO_LARGE);
+        }
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+                json.writeStartObject();
+                json.writeNumberField("code", 200);
+                json.writeStringField("message", "Carts retrieved successfully");
+                json.writeArrayFieldStart("result");
+                for (CartBatchReader.Chunk chunk : cartBatchReader.read(request.getUserIds()).toIterable()) {
+                    for (String userId : chunk.userIds()) {
+                        json.writeObject(toItem(userId, chunk));
+                    }
+                    json.flush();
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Order-service gọi sau khi đặt đơn từ snapshot checkout: chốt bán hàng đang giữ cho flash sale đúng một lần
+     * theo {@code snapshotId} (gọi lại an toàn). Checkout bị bỏ dở không gọi endpoint này nên hàng được nhả khi
+     * lượt giữ hết hạn.
+     */
+    @PostMapping("/{userId}/checkout/{snapshotId}/commit")
+    @PreAuthorize("hasAnyAuthority('ADMIN', 'SERVICE')")
+    public ApiResponse<Void> commitCheckout(@PathVariable String userId, @PathVariable String snapshotId) {
+        cartService.commitCheckout(userId, snapshotId);
+        return ApiResponse.<Void>builder()
+                .code(200)
+                .message("Checkout committed successfully")
+                .build();
+    }
+
+    private CartBatchItemResponse toItem(String userId, CartBatchReader.Chunk chunk) {
+        if (chunk.error() != null) {
+            return CartBatchItemResponse.builder()
+                    .userId(userId)
+                    .error(ErrorCode.DATABASE_ERROR.getMessage())
+                    .build();
+        }
+        Cart cart = chunk.carts().get(userId);
+        if (cart == null) {
+            // giỏ đã chuyển sang kho lạnh: đọc thẳng, không nạp lại vào Redis cho job hàng loạt
+            cart = cartTiering.peek(userId).orElse(null);
+        }
+        return CartBatchItemResponse.builder()
+                .userId(userId)
+                .found(cart != null)
+                .summary(cart != null ? cartSummaryMapper.toSummary(cartMetadataStore.hydrate(cart)) : null)
+                .build();
+    }
+}
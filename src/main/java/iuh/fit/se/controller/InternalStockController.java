@@ -0,0 +1,83 @@
+package iuh.fit.se.controller;
+
+import iuh.fit.se.dto.request.StockItemRequest;
+import iuh.fit.se.dto.request.StockSeedRequest;
+import iuh.fit.se.dto.response.ApiResponse;
+import iuh.fit.se.dto.response.StockResponse;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.repository.StockReservations;
+import iuh.fit.se.service.ProductVariantService;
+import jakarta.validation.Valid;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Quản lý số hàng được giữ trong giỏ cho flash sale ({@link StockReservations}); chỉ có hiệu lực khi
+ * {@code cart.reservation.enabled}.
+ */
+@RestController
+@Profile("!reactive")
+@RequestMapping("/internal/stock")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class InternalStockController {
+    StockReservations stockReservations;
+    ProductVariantService productVariantService;
+
+    /**
+     * Bắt đầu (hoặc đặt lại) giới hạn cho các biến thể; {@code available} bỏ trống thì lấy tồn kho hiện tại từ
+     * product-service. Lượt đang giữ được trừ vào số còn lại.
+     */
+    @PutMapping
+    @PreAuthorize("hasAnyAuthority('ADMIN', 'SERVICE')")
+    public ApiResponse<List<StockResponse>> seed(@Valid @RequestBody StockSeedRequest request) {
+        List<StockResponse> result = request.getItems().stream()
+                .map(item -> toResponse(stockReservations.seed(
+                        StockReservations.variantKey(item.getProductId(), item.getOptions()), total(item))))
+                .toList();
+        return ApiResponse.<List<StockResponse>>builder()
+                .code(200)
+                .message("Stock seeded successfully")
+                .result(result)
+                .build();
+    }
+
+    /** Bỏ giới hạn (kết thúc đợt bán): xoá số còn lại và mọi lượt giữ của các biến thể. */
+    @DeleteMapping
+    @PreAuthorize("hasAnyAuthority('ADMIN', 'SERVICE')")
+    public ApiResponse<Void> unseed(@Valid @RequestBody StockSeedRequest request) {
+        for (StockItemRequest item : request.getItems()) {
+            stockReservations.unseed(StockReservations.variantKey(item.getProductId(), item.getOptions()));
+        }
+        return ApiResponse.<Void>builder()
+                .code(200)
+                .message("Stock released successfully")
+                .build();
+    }
+
+    private long total(StockItemRequest item) {
+        if (item.getAvailable() != null) {
+            return item.getAvailable();
+        }
+        Integer stock = productVariantService.getVariant(item.getProductId(), item.getOptions(), null).getStock();
+        if (stock == null) {
+            throw new AppException(ErrorCode.PRODUCT_NOT_FOUND);
+        }
+        return stock;
+    }
+
+    private static StockResponse toResponse(StockReservations.Stock stock) {
+        return StockResponse.builder()
+                .variantKey(stock.variantKey())
+                .available(stock.available())
+                .held(stock.held())
+                .build();
+    }
+}
@@ -0,0 +1,155 @@
+package iuh.fit.se.controller;
+
+import iuh.fit.se.dto.request.AddToCartRequest;
+import iuh.fit.se.dto.request.RemoveCartItemsRequest;
+import iuh.fit.se.dto.request.UpdateCartItemRequest;
+import iuh.fit.se.dto.response.ApiResponse;
+import iuh.fit.se.dto.response.CartItemsPageResponse;
+import iuh.fit.se.dto.response.CheckoutSnapshotResponse;
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.repository.CartReplica;
+import iuh.fit.se.service.CartSummaryStreamer;
+import iuh.fit.se.service.ReactiveCartService;
+import jakarta.validation.Valid;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * Cùng REST contract với {@link CartController}, chạy trên WebFlux khi bật profile "reactive".
+ */
+@RestController
+@Profile("reactive")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ReactiveCartController {
+    ReactiveCartService cartService;
+    CartSummaryStreamer cartSummaryStreamer;
+
+    @PostMapping("/add")
+    public Mono<ApiResponse<Cart>> addToCart(@Valid @RequestBody AddToCartRequest addToCartRequest) {
+        return cartService.addToCart(addToCartRequest)
+                .map(cart -> ok("Product added to cart successfully", cart));
+    }
+
+    @GetMapping("/{userId}")
+    public Mono<ApiResponse<Object>> getCartByUserId(@PathVariable("userId") String userId,
+                                                     @RequestHeader(value = CartReplica.VERSION_HEADER, required = false) Long cartVersion) {
+        // JSON render lúc ghi được chép nguyên vào response, không dựng lại Cart
+        return cartService.findRenderedCart(userId, cartVersion).cast(Object.class)
+                .switchIfEmpty(cartService.readCart(userId, cartVersion))
+                .map(cart -> ok("Cart retrieved successfully", cart));
+    }
+
+    @GetMapping("/{userId}/summary")
+    public Mono<ApiResponse<Object>> getCartSummary(@PathVariable("userId") String userId,
+                                                    @RequestHeader(value = CartReplica.VERSION_HEADER, required = false) Long cartVersion) {
+        return cartService.findRenderedSummary(userId, cartVersion).cast(Object.class)
+                .switchIfEmpty(cartService.getCartSummary(userId, cartVersion))
+                .map(summary -> ok("Cart summary retrieved successfully", summary));
+    }
+
+    /** Như {@code /summary} nhưng ghi từng seller ra response, dùng cho giỏ rất nhiều dòng. */
+    @GetMapping(value = "/{userId}/summary/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<Void> streamCartSummary(@PathVariable("userId") String userId, ServerHttpResponse response) {
+        // outline và các nhóm dòng đọc bằng StringRedisTemplate (blocking)
+        return Mono.fromCallable(() -> cartSummaryStreamer.prepare(userId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(summary -> {
+                    response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                    return response.writeWith(DataBufferUtils.outputStreamPublisher(out -> {
+                        try {
+                            summary.writeTo(out);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, response.bufferFactory(), Schedulers.boundedElastic()::schedule));
+                });
+    }
+
+    @GetMapping("/{userId}/items")
+    public Mono<ApiResponse<CartItemsPageResponse>> getCartItems(
+            @PathVariable("userId") String userId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        return cartService.getCartItems(userId, cursor, limit)
+                .map(page -> ok("Cart items retrieved successfully", page));
+    }
+
+    @PostMapping("/{userId}/checkout")
+    public Mono<ApiResponse<CheckoutSnapshotResponse>> checkout(@PathVariable("userId") String userId) {
+        return cartService.checkout(userId)
+                .map(snapshot -> ok("Checkout snapshot retrieved successfully", snapshot));
+    }
+
+    @PostMapping("/{userId}/vouchers/{code}")
+    public Mono<ApiResponse<Cart>> applyVoucher(@PathVariable("userId") String userId,
+                                                @PathVariable("code") String code) {
+        return cartService.applyVoucher(userId, code)
+                .map(cart -> ok("Voucher applied successfully", cart));
+    }
+
+    @DeleteMapping("/{userId}/vouchers/{code}")
+    public Mono<ApiResponse<Cart>> removeVoucher(@PathVariable("userId") String userId,
+                                                 @PathVariable("code") String code) {
+        return cartService.removeVoucher(userId, code)
+                .map(cart -> ok("Voucher removed successfully", cart));
+    }
+
+    @GetMapping("/{userId}/count")
+    public Mono<ApiResponse<Integer>> getCartItemCount(@PathVariable("userId") String userId,
+                                                       @RequestHeader(value = CartReplica.VERSION_HEADER, required = false) Long cartVersion) {
+        return cartService.getCartItemCount(userId, cartVersion)
+                .map(count -> ok("Cart item count retrieved successfully", count));
+    }
+
+    @PutMapping("/{userId}/update")
+    public Mono<ApiResponse<Cart>> updateCartItem(@Valid @RequestBody UpdateCartItemRequest request) {
+        return cartService.updateCartItem(request)
+                .map(cart -> ok("Cart item updated successfully", cart));
+    }
+
+    @DeleteMapping("/{userId}/items/{productId}")
+    public Mono<ApiResponse<Cart>> removeCartItem(
+            @PathVariable("userId") String userId,
+            @PathVariable("productId") String productId,
+            @RequestParam("sellerId") String sellerId,
+            @RequestBody(required = false) Map<String,String> options // {"Size":"41","Color":"Black"}
+    ) {
+        return cartService.removeCartItem(userId, productId, sellerId, options)
+                .map(cart -> ok("Cart item removed successfully", cart));
+    }
+
+    @DeleteMapping("/{userId}")
+    public Mono<ApiResponse<Cart>> clearCart(@PathVariable("userId") String userId) {
+        return cartService.clearCart(userId)
+                .map(cart -> ok("Cart cleared successfully", cart));
+    }
+
+    @DeleteMapping("/{userId}/items/batch")
+    public Mono<ApiResponse<Cart>> removeCartItemsBatch(
+            @PathVariable("userId") String userId,
+            @RequestBody RemoveCartItemsRequest request) {
+        return cartService.removeCartItemsBatch(userId, request)
+                .map(cart -> ok("Cart items removed successfully", cart));
+    }
+
+    private static <T> ApiResponse<T> ok(String message, T result) {
+        return ApiResponse.<T>builder()
+                .code(200)
+                .message(message)
+                .result(result)
+                .build();
+    }
+}
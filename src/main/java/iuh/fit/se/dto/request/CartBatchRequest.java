@@ -0,0 +1,17 @@
+package iuh.fit.se.dto.request;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CartBatchRequest {
+    @NotEmpty(message = "INVALID_REQUEST")
+    List<String> userIds;
+}
@@ -0,0 +1,22 @@
+package iuh.fit.se.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Map;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Data
+public class StockItemRequest {
+    @NotBlank(message = "INVALID_REQUEST")
+    String productId;
+    Map<String,String> options;
+    // tổng số hàng của đợt bán; null = lấy tồn kho hiện tại từ product-service
+    @PositiveOrZero(message = "INVALID_REQUEST")
+    Long available;
+}
@@ -0,0 +1,18 @@
+package iuh.fit.se.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockSeedRequest {
+    @NotEmpty(message = "INVALID_REQUEST")
+    List<@Valid StockItemRequest> items;
+}
@@ -0,0 +1,19 @@
+package iuh.fit.se.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CartBatchItemResponse {
+    String userId;
+    boolean found;
+    CartSummaryResponse summary;
+    // lỗi đọc Redis cho nhóm chứa userId này (response đã stream nên không đổi được HTTP status)
+    String error;
+}
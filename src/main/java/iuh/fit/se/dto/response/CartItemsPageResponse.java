@@ -0,0 +1,19 @@
+package iuh.fit.se.dto.response;
+
+import iuh.fit.se.entity.CartItem;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CartItemsPageResponse {
+    List<CartItem> items;
+    Integer totalLines;
+    String nextCursor;   // null khi đã hết; truyền lại qua ?cursor=
+    Long cartVersion;    // đổi giữa hai trang nghĩa là giỏ vừa bị sửa, nên đọc lại từ đầu
+}
@@ -0,0 +1,25 @@
+package iuh.fit.se.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ảnh chụp giỏ đã tính giá tại thời điểm checkout; không đổi trong suốt thời gian sống của nó.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CheckoutSnapshotResponse {
+    String snapshotId;
+    String userId;
+    Long cartVersion;
+    /** SHA-256 (hex) của các dòng và tổng tiền, để order-service so khớp nội dung. */
+    String contentHash;
+    LocalDateTime createdAt;
+    LocalDateTime expiresAt;
+    CartSummaryResponse summary;
+}
@@ -1,9 +1,11 @@
 package iuh.fit.se.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.Map;
 
 @Builder
@@ -16,6 +18,7 @@ public class OrderItemProductResponse {
      String sellerId;
      String name;
      String image;   // chỉ lấy ảnh đầu tiên
+     String categoryId;
      Map<String, String> options;  // các option đã chọn, ví dụ {"Color":"Black","Size":"M"}
      String optionsLabel;
      BigDecimal price;
@@ -23,4 +26,6 @@ public class OrderItemProductResponse {
      Boolean available;
      Integer stock;  // quantity
      String status;  // AVAILABLE, OUT_OF_STOCK...
+     @JsonIgnore
+     LocalDateTime snapshotAt;  // != null khi dựng lại từ snapshot trên CartItem (product-service không phản hồi)
 }
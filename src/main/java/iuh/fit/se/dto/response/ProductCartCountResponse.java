@@ -0,0 +1,15 @@
+package iuh.fit.se.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductCartCountResponse {
+    String productId;
+    // tổng số lượng được thêm vào giỏ (ước lượng count-min, không thấp hơn thực tế)
+    long quantity;
+}
@@ -0,0 +1,16 @@
+package iuh.fit.se.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductCartUsersResponse {
+    String productId;
+    String window;
+    // số user phân biệt đã thêm sản phẩm vào giỏ (ước lượng HyperLogLog, sai số ~0.8%)
+    long distinctUsers;
+}
@@ -0,0 +1,22 @@
+package iuh.fit.se.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SellerAbandonmentResponse {
+    String sellerId;
+    String window;
+    // user phân biệt đã thêm hàng của seller vào giỏ
+    long cartedUsers;
+    // user phân biệt đã checkout giỏ có hàng của seller
+    long checkedOutUsers;
+    // đã thêm nhưng chưa checkout
+    long abandonedUsers;
+    // abandonedUsers / (abandonedUsers + checkedOutUsers), 0 khi chưa có dữ liệu
+    double abandonmentRate;
+}
@@ -19,5 +19,6 @@ public class SellerSummaryResponse {
     BigDecimal shippingFee;
     Boolean freeShipping;
     BigDecimal amountForFreeShipping;
+    BigDecimal discount;   // giảm giá của các luật riêng seller này
     List<CartItemSummaryResponse> items;   // 👈 thêm list item
 }
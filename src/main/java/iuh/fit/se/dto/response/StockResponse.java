@@ -0,0 +1,17 @@
+package iuh.fit.se.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class StockResponse {
+    String variantKey;
+    // số còn có thể giữ
+    long available;
+    // tổng số đang nằm trong giỏ (chưa hết hạn giữ)
+    long held;
+}
@@ -0,0 +1,19 @@
+package iuh.fit.se.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TopCartProductsResponse {
+    // khoảng thời gian thực tế (ISO-8601), làm tròn theo bucket
+    String window;
+    // số user phân biệt đã thêm hàng vào giỏ (ước lượng HyperLogLog)
+    long distinctUsers;
+    List<ProductCartCountResponse> products;
+}
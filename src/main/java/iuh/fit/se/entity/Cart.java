@@ -1,10 +1,14 @@
 package iuh.fit.se.entity;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import iuh.fit.se.pricing.CartPricing;
+import iuh.fit.se.pricing.PriceQuote;
+import iuh.fit.se.pricing.PricingRules;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.redis.core.RedisHash;
 import org.springframework.data.redis.core.TimeToLive;
-import org.springframework.data.redis.core.index.Indexed;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -20,14 +24,17 @@ import java.util.concurrent.TimeUnit;
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class Cart {
     @Id
-    String id; // userIdvbb
+    String id; // userId, hoặc {userId} ở chế độ cluster (xem CartKeys)
 
-    @Indexed
     String userId;
 
     @Builder.Default
     List<CartItem> items = new ArrayList<>();
 
+    // mã voucher đã áp (chuẩn hoá bằng PricingRules#normalizeVoucher)
+    @Builder.Default
+    List<String> vouchers = new ArrayList<>();
+
     BigDecimal subtotal;
     BigDecimal totalDiscount;
     BigDecimal estimatedShipping;
@@ -36,27 +43,36 @@ public class Cart {
     LocalDateTime createdAt;
     LocalDateTime updatedAt;
 
+    // tăng 1 mỗi lần ghi (xem CartEvent#cartVersion)
+    Long version;
 
-    // TTL - giỏ hàng sẽ expire sau 7 ngày không hoạt động
-    @TimeToLive(unit = TimeUnit.DAYS)
-    Long ttl = 7L;
+    // JSON render lúc ghi, không nằm trong hash: CartWriter ghi cùng lần ghi vào key cùng hash tag
+    // cart:<id>:summary (cart.summary.materialized, kèm fingerprint bộ luật giá) và cart:<id>:json
+    // (cart.passthrough.enabled), gắn version của lần ghi (xem CartSummaryMaterializer, CartJsonPassthrough)
+    @Transient
+    @JsonIgnore
+    String summaryJson;
+    @Transient
+    @JsonIgnore
+    String summaryRules;
+    @Transient
+    @JsonIgnore
+    String cartJson;
 
-    public void calculateTotals() {
-        this.subtotal = items.stream()
-                .map(CartItem::getTotalPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    // TTL (giây) - gán từ cart.ttl-seconds mỗi lần lưu (CartExpiry)
+    @TimeToLive(unit = TimeUnit.SECONDS)
+    Long ttl;
 
-        this.totalDiscount = items.stream()
-                .map(item -> {
-                    return BigDecimal.ZERO;
-                })
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    // tính bằng long (xem CartPricing), chỉ đổi ra BigDecimal khi gán field
+    public void calculateTotals(PricingRules rules) {
+        this.subtotal = CartPricing.subtotal(items);
 
-        // Estimate shipping (free if > 500k VND)
-        this.estimatedShipping = subtotal.compareTo(BigDecimal.valueOf(500000)) >= 0
-                ? BigDecimal.ZERO : BigDecimal.valueOf(30000);
+        // phí ship theo từng seller và giảm giá theo bộ luật hiện hành
+        PriceQuote quote = rules.quote(items, vouchers);
+        this.totalDiscount = rules.units().toDecimal(quote.discount());
+        this.estimatedShipping = rules.units().toDecimal(quote.shipping());
 
-        this.totalAmount = subtotal.add(estimatedShipping);
+        this.totalAmount = CartPricing.addSubtract(subtotal, estimatedShipping, totalDiscount);
 
         this.updatedAt = LocalDateTime.now();
     }
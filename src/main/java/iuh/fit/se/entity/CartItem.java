@@ -1,8 +1,11 @@
 package iuh.fit.se.entity;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import iuh.fit.se.pricing.CartPricing;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.stream.Collectors;
@@ -19,14 +22,18 @@ public class CartItem {
     Map<String,String> options;
     String productImage;
     String productName;
+    // danh mục sản phẩm (product-service), dùng để khớp luật giảm giá theo danh mục
+    String categoryId;
     BigDecimal unitPrice;
     Integer quantity;
     BigDecimal totalPrice;
+    // Thời điểm giá/tên/ảnh được lấy từ product-service; snapshot này làm fallback khi product-service lỗi
+    LocalDateTime snapshotAt;
 
 
     public void calculateTotalPrice() {
         if (unitPrice != null && quantity != null) {
-            this.totalPrice = unitPrice.multiply(BigDecimal.valueOf(quantity));
+            this.totalPrice = CartPricing.lineTotal(unitPrice, quantity);
         }
     }
 
@@ -37,6 +44,12 @@ public class CartItem {
                 canonicalizeOptions(options);
     }
 
+    // Biến thể (product + options), không phụ thuộc seller; dùng làm key metadata dùng chung
+    @JsonIgnore
+    public String getVariantKey() {
+        return (productId != null ? productId : "") + "-" + canonicalizeOptions(options);
+    }
+
     // Chuẩn hoá options: sort theo key & nối "k=v|k2=v2"
     private static String canonicalizeOptions(Map<String,String> opts) {
         if (opts == null || opts.isEmpty()) return "";
@@ -0,0 +1,34 @@
+package iuh.fit.se.event;
+
+import iuh.fit.se.repository.CartAnalytics;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Cộng các lô sự kiện giỏ vào sketch của {@link CartAnalytics} ({@code cart.analytics.enabled}).
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CartAnalyticsSink implements CartEventSink {
+    CartAnalytics cartAnalytics;
+
+    @Override
+    public boolean enabled() {
+        return cartAnalytics.enabled();
+    }
+
+    @Override
+    public String name() {
+        return "analytics";
+    }
+
+    @Override
+    public void publish(List<CartEvent> events) {
+        cartAnalytics.record(events);
+    }
+}
@@ -0,0 +1,31 @@
+package iuh.fit.se.event;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+/**
+ * Thay đổi của một dòng giỏ sau một lần ghi cart, hoặc một dòng của giỏ vừa checkout ({@link Type#CHECKED_OUT},
+ * {@code quantityDelta} = 0; chỉ dùng cho analytics, không ghi vào stream).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CartEvent {
+    public enum Type { ADDED, UPDATED, REMOVED, CHECKED_OUT }
+
+    Type type;
+    String userId;
+    /** {@code CartItem#getUniqueKey()} của dòng. */
+    String lineKey;
+    String productId;
+    String sellerId;
+    int quantityDelta;
+    /** Đơn giá sau thay đổi (trước khi xoá, với REMOVED). */
+    BigDecimal unitPrice;
+    long timestamp;
+    long cartVersion;
+}
@@ -0,0 +1,162 @@
+package iuh.fit.se.event;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import iuh.fit.se.configuration.CartProperties;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nhận sự kiện từ request (chỉ đẩy vào hàng đợi có giới hạn) và ghi theo lô xuống các {@link CartEventSink} đang bật
+ * (stream {@code cart.events}, analytics {@code cart.analytics}) trên một thread nền. Khi hàng đợi đầy áp dụng
+ * {@code cart.events.backpressure}. Không sink nào bật thì {@link #publish} là no-op.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class CartEventPublisher implements InitializingBean, DisposableBean {
+    List<CartEventSink> sinks;
+    CartProperties.Events config;
+    BlockingQueue<CartEvent> queue;
+    Counter dropped;
+    // metrics theo từng sink: một lô được ghi xuống mọi sink nên không cộng chung
+    Map<CartEventSink, Counter> published = new HashMap<>();
+    Map<CartEventSink, Counter> failed = new HashMap<>();
+    Map<CartEventSink, Timer> flushTimers = new HashMap<>();
+    Thread worker;
+
+    public CartEventPublisher(List<CartEventSink> sinks, CartProperties cartProperties, MeterRegistry meterRegistry) {
+        this.sinks = sinks.stream().filter(CartEventSink::enabled).toList();
+        this.config = cartProperties.getEvents();
+        this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        this.dropped = meterRegistry.counter("cart.events", "result", "dropped");
+        for (CartEventSink sink : this.sinks) {
+            published.put(sink, meterRegistry.counter("cart.events", "result", "published", "sink", sink.name()));
+            failed.put(sink, meterRegistry.counter("cart.events", "result", "failed", "sink", sink.name()));
+            flushTimers.put(sink, Timer.builder("cart.events.flush")
+                    .description("Time to append one batch of cart events to the sink")
+                    .tag("sink", sink.name())
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry));
+        }
+        meterRegistry.gauge("cart.events.queue", queue, BlockingQueue::size);
+        this.worker = Thread.ofPlatform().name("cart-events").daemon().unstarted(this::drainLoop);
+    }
+
+    public boolean enabled() {
+        return !sinks.isEmpty();
+    }
+
+    public void publish(List<CartEvent> events) {
+        if (!enabled()) {
+            return;
+        }
+        for (CartEvent event : events) {
+            if (!enqueue(event)) {
+                dropped.increment();
+            }
+        }
+    }
+
+    private boolean enqueue(CartEvent event) {
+        switch (config.getBackpressure()) {
+            case DROP_OLDEST -> {
+                while (!queue.offer(event)) {
+                    if (queue.poll() != null) {
+                        dropped.increment();
+                    }
+                }
+                return true;
+            }
+            case BLOCK -> {
+                try {
+                    return queue.offer(event, config.getBlockTimeout().toNanos(), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            default -> {
+                return queue.offer(event);
+            }
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (enabled()) {
+            worker.start();
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (!worker.isAlive()) {
+            return;
+        }
+        worker.interrupt();
+        worker.join(config.getLinger().toMillis() + 5_000);
+    }
+
+    private void drainLoop() {
+        List<CartEvent> batch = new ArrayList<>(config.getBatchSize());
+        long lingerNanos = config.getLinger().toNanos();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                CartEvent first = queue.take();
+                batch.add(first);
+                // gom thêm tới batch-size hoặc hết linger, tuỳ điều kiện nào đến trước
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < config.getBatchSize()) {
+                    queue.drainTo(batch, config.getBatchSize() - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= config.getBatchSize() || remaining <= 0) {
+                        break;
+                    }
+                    CartEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flush(batch);
+        }
+        // tắt ứng dụng: xoá cờ interrupt rồi ghi nốt phần còn lại trong hàng đợi
+        Thread.interrupted();
+        queue.drainTo(batch);
+        flush(batch);
+    }
+
+    private void flush(List<CartEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (CartEventSink sink : sinks) {
+            try {
+                flushTimers.get(sink).record(() -> sink.publish(batch));
+                published.get(sink).increment(batch.size());
+            } catch (RuntimeException e) {
+                // không thử lại: stream/analytics là kênh best-effort, không được chặn hay làm chậm request
+                failed.get(sink).increment(batch.size());
+                log.warn("Failed to publish {} cart events to {}: {}", batch.size(), sink.name(), e.getMessage());
+            }
+        }
+        batch.clear();
+    }
+}
@@ -0,0 +1,16 @@
+package iuh.fit.se.event;
+
+import java.util.List;
+
+/**
+ * Nơi nhận các lô sự kiện từ {@link CartEventPublisher}; được gọi trên thread nền, không bao giờ trên request.
+ */
+public interface CartEventSink {
+    /** Sink tắt không nhận lô nào; mọi sink tắt thì {@link CartEventPublisher#publish} là no-op. */
+    boolean enabled();
+
+    /** Tên ngắn dùng làm tag {@code sink} của metrics. */
+    String name();
+
+    void publish(List<CartEvent> events);
+}
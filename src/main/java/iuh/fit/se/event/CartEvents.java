@@ -0,0 +1,92 @@
+package iuh.fit.se.event;
+
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.entity.CartItem;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Tính sự kiện từng dòng bằng cách so trạng thái giỏ trước và sau một thao tác.
+ */
+public final class CartEvents {
+
+    private CartEvents() {
+    }
+
+    /** Trạng thái các dòng (uniqueKey -> bản sao productId/sellerId/options/quantity/unitPrice) trước khi thay đổi. */
+    public static Map<String, CartItem> snapshot(Cart cart) {
+        Map<String, CartItem> lines = new LinkedHashMap<>();
+        for (CartItem item : cart.getItems()) {
+            lines.put(item.getUniqueKey(), CartItem.builder()
+                    .productId(item.getProductId())
+                    .sellerId(item.getSellerId())
+                    .options(item.getOptions())
+                    .quantity(item.getQuantity())
+                    .unitPrice(item.getUnitPrice())
+                    .build());
+        }
+        return lines;
+    }
+
+    public static List<CartEvent> diff(Cart after, Map<String, CartItem> before) {
+        long now = System.currentTimeMillis();
+        long version = after.getVersion() == null ? 0 : after.getVersion();
+        List<CartEvent> events = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+
+        for (CartItem item : after.getItems()) {
+            String key = item.getUniqueKey();
+            seen.add(key);
+            CartItem old = before.get(key);
+            int qty = quantity(item);
+            if (old == null) {
+                events.add(event(CartEvent.Type.ADDED, after, key, item, qty, item.getUnitPrice(), now, version));
+            } else if (qty != quantity(old) || !samePrice(old.getUnitPrice(), item.getUnitPrice())) {
+                events.add(event(CartEvent.Type.UPDATED, after, key, item, qty - quantity(old),
+                        item.getUnitPrice(), now, version));
+            }
+        }
+        before.forEach((key, old) -> {
+            if (!seen.contains(key)) {
+                events.add(event(CartEvent.Type.REMOVED, after, key, old, -quantity(old),
+                        old.getUnitPrice(), now, version));
+            }
+        });
+        return events;
+    }
+
+    /** Mỗi dòng của giỏ vừa được checkout là một sự kiện {@link CartEvent.Type#CHECKED_OUT}. */
+    public static List<CartEvent> checkout(Cart cart) {
+        long now = System.currentTimeMillis();
+        long version = cart.getVersion() == null ? 0 : cart.getVersion();
+        List<CartEvent> events = new ArrayList<>(cart.getItems().size());
+        for (CartItem item : cart.getItems()) {
+            events.add(event(CartEvent.Type.CHECKED_OUT, cart, item.getUniqueKey(), item, 0, item.getUnitPrice(), now, version));
+        }
+        return events;
+    }
+
+    private static CartEvent event(CartEvent.Type type, Cart cart, String key, CartItem line, int delta,
+                                   BigDecimal price, long now, long version) {
+        return CartEvent.builder()
+                .type(type)
+                .userId(cart.getUserId())
+                .lineKey(key)
+                .productId(line.getProductId())
+                .sellerId(line.getSellerId())
+                .quantityDelta(delta)
+                .unitPrice(price)
+                .timestamp(now)
+                .cartVersion(version)
+                .build();
+    }
+
+    private static int quantity(CartItem item) {
+        return item.getQuantity() == null ? 0 : item.getQuantity();
+    }
+
+    private static boolean samePrice(BigDecimal a, BigDecimal b) {
+        return a == null ? b == null : b != null && a.compareTo(b) == 0;
+    }
+}
@@ -0,0 +1,24 @@
+package iuh.fit.se.event;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Tin đổi giá của một biến thể, field {@code payload} của entry trên stream {@code cart.reprice.stream}, dạng JSON
+ * {@code {"productId":"p1","options":{"size":"M"},"price":129000,"at":1700000000000}}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class PriceChangeMessage {
+    String productId;
+    Map<String, String> options;
+    BigDecimal price;
+    /** Thời điểm giá có hiệu lực (epoch millis); thiếu thì lấy lúc nhận tin. */
+    Long at;
+}
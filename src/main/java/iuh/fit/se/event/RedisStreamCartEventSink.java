@@ -0,0 +1,70 @@
+package iuh.fit.se.event;
+
+import iuh.fit.se.configuration.CartProperties;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ghi cả lô sự kiện vào Redis Stream {@code cart.events.stream} bằng một script (một round trip),
+ * mỗi XADD cắt bớt stream với {@code MAXLEN ~ cart.events.max-length}. Chỉ ghi thay đổi dòng giỏ, bỏ qua
+ * {@link CartEvent.Type#CHECKED_OUT}.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RedisStreamCartEventSink implements CartEventSink {
+    private static final int FIELDS_PER_EVENT = 8;
+    private static final RedisScript<Long> XADD_BATCH = RedisScript.of("""
+            local n = (#ARGV - 1) / 8
+            for i = 0, n - 1 do
+                local b = 1 + i * 8
+                redis.call('XADD', KEYS[1], 'MAXLEN', '~', ARGV[1], '*',
+                        'type', ARGV[b + 1], 'user', ARGV[b + 2], 'line', ARGV[b + 3], 'product', ARGV[b + 4],
+                        'delta', ARGV[b + 5], 'price', ARGV[b + 6], 'ts', ARGV[b + 7], 'version', ARGV[b + 8])
+            end
+            return n
+            """, Long.class);
+
+    StringRedisTemplate stringRedisTemplate;
+    CartProperties cartProperties;
+
+    @Override
+    public boolean enabled() {
+        return cartProperties.getEvents().isEnabled();
+    }
+
+    @Override
+    public String name() {
+        return "stream";
+    }
+
+    @Override
+    public void publish(List<CartEvent> events) {
+        List<String> args = new ArrayList<>(1 + events.size() * FIELDS_PER_EVENT);
+        args.add(String.valueOf(cartProperties.getEvents().getMaxLength()));
+        for (CartEvent e : events) {
+            if (e.getType() == CartEvent.Type.CHECKED_OUT) {
+                continue;
+            }
+            args.add(e.getType().name());
+            args.add(e.getUserId());
+            args.add(e.getLineKey());
+            args.add(e.getProductId() == null ? "" : e.getProductId());
+            args.add(String.valueOf(e.getQuantityDelta()));
+            args.add(e.getUnitPrice() == null ? "" : e.getUnitPrice().toPlainString());
+            args.add(String.valueOf(e.getTimestamp()));
+            args.add(String.valueOf(e.getCartVersion()));
+        }
+        if (args.size() == 1) {
+            return;
+        }
+        stringRedisTemplate.execute(XADD_BATCH, List.of(cartProperties.getEvents().getStream()), args.toArray());
+    }
+}
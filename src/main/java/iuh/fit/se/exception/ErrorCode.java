@@ -76,7 +76,24 @@ public enum ErrorCode {
     SESSION_EXPIRED(1043, "Session expired", HttpStatus.UNAUTHORIZED),
     TOKEN_EXPIRED(1044, "Token expired", HttpStatus.UNAUTHORIZED),
     REFRESH_TOKEN_INVALID(1045, "Refresh token invalid", HttpStatus.UNAUTHORIZED),
-    PRODUCT_NOT_FOUND(1046, "Product not found", HttpStatus.NOT_FOUND);
+    PRODUCT_NOT_FOUND(1046, "Product not found", HttpStatus.NOT_FOUND),
+
+    // Idempotency
+    IDEMPOTENCY_KEY_IN_PROGRESS(1047, "A request with this Idempotency-Key is still in progress", HttpStatus.CONFLICT),
+    IDEMPOTENCY_KEY_REUSED(1048, "Idempotency-Key was already used for a different request", HttpStatus.UNPROCESSABLE_ENTITY),
+
+    // Load shedding
+    SERVICE_OVERLOADED(1049, "Service is overloaded, please retry shortly", HttpStatus.SERVICE_UNAVAILABLE),
+
+    // Pricing
+    VOUCHER_INVALID(1050, "Voucher is not valid for this cart", HttpStatus.BAD_REQUEST),
+
+    // Concurrent writes
+    CART_CONFLICT(1051, "Cart is being modified by another request, please retry", HttpStatus.CONFLICT),
+
+    // Stock reservation
+    OUT_OF_STOCK(1052, "Not enough stock for this item", HttpStatus.CONFLICT),
+    CHECKOUT_SNAPSHOT_NOT_FOUND(1053, "Checkout snapshot not found or expired", HttpStatus.NOT_FOUND);
 
     int code;
     String message;
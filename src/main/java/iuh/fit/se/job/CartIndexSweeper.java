@@ -0,0 +1,227 @@
+package iuh.fit.se.job;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.repository.CartKeys;
+import iuh.fit.se.repository.CartKeyspaceScanner;
+import iuh.fit.se.repository.RedisLeaseLock;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dọn dần các phần tử index mồ côi do cart hết hạn bằng TTL khi không có listener keyspace event:
+ * <ul>
+ *     <li>{@code members}: SSCAN set {@code cart}, SREM các id không còn hash {@code cart:<id>} (kiểm tra bằng
+ *     pipeline EXISTS; id nào có hash trở lại ngay sau SREM, do {@code CartWriter} vừa ghi, được SADD lại), rồi xoá
+ *     {@code cart:<id>:idx}/{@code :summary}/{@code :json} còn sót bằng script chỉ xoá khi hash
+ *     vẫn chưa có.</li>
+ *     <li>{@code legacy} (chỉ standalone): SCAN {@code cart:*}, xoá các set index {@code cart:userId:*} từ trước
+ *     khi bỏ {@code @Indexed}, và {@code cart:<id>:idx} của cart đã mất.</li>
+ * </ul>
+ * Mỗi lần chạy xử lý tối đa {@code cart.sweeper.max-keys-per-run} key với tốc độ {@code rate-per-second},
+ * cursor lưu ở {@code cart:sweeper:state} để lần sau (hoặc instance khác) chạy tiếp. Chỉ một instance chạy
+ * nhờ {@link RedisLeaseLock}. Vì ngủ để giữ tốc độ, một lần chạy chiếm một thread của pool scheduler
+ * ({@code spring.task.scheduling.pool.size}) trong nhiều phút.
+ */
+@Component
+@ConditionalOnProperty(value = "cart.sweeper.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class CartIndexSweeper {
+    private static final String KEYSPACE = CartKeys.KEYSPACE;
+    private static final String LOCK_KEY = "cart:sweeper:lock";
+    private static final String STATE_KEY = "cart:sweeper:state";
+    private static final String LEGACY_USER_INDEX_PREFIX = KEYSPACE + ":userId:";
+
+    // KEYS: hash rồi các key đi kèm (cùng hash tag). Chỉ xoá nếu hash vẫn chưa có, nguyên tử với CartWriter
+    private static final RedisScript<Long> UNLINK_IF_GONE = RedisScript.of("""
+            if redis.call('EXISTS', KEYS[1]) == 1 then
+                return 0
+            end
+            return redis.call('UNLINK', unpack(KEYS, 2))
+            """, Long.class);
+
+    StringRedisTemplate stringRedisTemplate;
+    CartKeyspaceScanner scanner;
+    RedisLeaseLock lock;
+    CartProperties cartProperties;
+    MeterRegistry meterRegistry;
+
+    @Scheduled(fixedDelayString = "${cart.sweeper.interval:PT10M}", initialDelayString = "${cart.sweeper.interval:PT10M}")
+    public void sweep() {
+        CartProperties.Sweeper config = cartProperties.getSweeper();
+        Optional<String> token = lock.tryAcquire(LOCK_KEY, config.getLockTtl());
+        if (token.isEmpty()) {
+            log.debug("Index sweeper is running on another instance");
+            return;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            Run run = new Run(token.get(), config);
+            sweepMembers(run);
+            if (!cartProperties.getRedis().isClusterMode() && run.hasBudget()) {
+                // index userId chỉ tồn tại ở dữ liệu standalone cũ; SCAN trên cluster phải chạy từng node
+                sweepLegacyIndexes(run);
+            }
+            log.info("Index sweeper checked {} keys, removed {}", run.checked, run.removed);
+        } catch (LockLostException e) {
+            log.warn("Index sweeper lost its lock, stopping");
+        } finally {
+            lock.release(LOCK_KEY, token.get());
+            sample.stop(meterRegistry.timer("cart.sweeper.run"));
+        }
+    }
+
+    private void sweepMembers(Run run) {
+        String cursor = loadCursor("members");
+        do {
+            CartKeyspaceScanner.Page page = scanner.scanIds(cursor, run.config.getBatchSize());
+            cursor = page.cursor();
+            List<String> ids = page.items();
+            run.pace(ids.size(), "members");
+
+            List<String> dangling = missing(ids);
+            if (!dangling.isEmpty()) {
+                stringRedisTemplate.opsForSet().remove(KEYSPACE, dangling.toArray());
+                // CartWriter SADD id sau script ghi hash: giỏ được ghi giữa lần kiểm tra và SREM thì thêm lại
+                List<String> revived = new ArrayList<>(dangling);
+                revived.removeAll(missing(dangling));
+                if (!revived.isEmpty()) {
+                    stringRedisTemplate.opsForSet().add(KEYSPACE, revived.toArray(String[]::new));
+                    dangling = dangling.stream().filter(id -> !revived.contains(id)).toList();
+                }
+                for (String id : dangling) {
+                    String key = KEYSPACE + ":" + id;
+                    stringRedisTemplate.execute(UNLINK_IF_GONE, List.of(key, key + ":idx",
+                            key + CartKeys.SUMMARY_SUFFIX, key + CartKeys.JSON_SUFFIX));
+                }
+                run.removed(dangling.size(), "members");
+            }
+            saveCursor("members", cursor, run);
+        } while (!"0".equals(cursor) && run.hasBudget());
+    }
+
+    private void sweepLegacyIndexes(Run run) {
+        String cursor = loadCursor("legacy");
+        do {
+            CartKeyspaceScanner.Page page = scanner.scanKeys(cursor, KEYSPACE + ":*", run.config.getBatchSize());
+            cursor = page.cursor();
+            List<String> keys = page.items();
+            run.pace(keys.size(), "legacy");
+
+            List<String> obsolete = new ArrayList<>();
+            for (String key : keys) {
+                if (key.startsWith(LEGACY_USER_INDEX_PREFIX)) {
+                    obsolete.add(key);
+                } else if (key.endsWith(":idx")
+                        && !exists(key.substring(0, key.length() - ":idx".length()))) {
+                    obsolete.add(key);
+                }
+            }
+            if (!obsolete.isEmpty()) {
+                // UNLINK giải phóng bộ nhớ ở thread nền của Redis, không chặn như DEL với set lớn
+                stringRedisTemplate.unlink(obsolete);
+                run.removed(obsolete.size(), "legacy");
+            }
+            saveCursor("legacy", cursor, run);
+        } while (!"0".equals(cursor) && run.hasBudget());
+    }
+
+    // id trong {@code ids} không còn hash, kiểm tra bằng một pipeline EXISTS
+    private List<String> missing(List<String> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<Object> exists = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String id : ids) {
+                connection.keyCommands().exists((KEYSPACE + ":" + id).getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (!Boolean.TRUE.equals(exists.get(i))) {
+                missing.add(ids.get(i));
+            }
+        }
+        return missing;
+    }
+
+    private boolean exists(String key) {
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(key));
+    }
+
+    private String loadCursor(String phase) {
+        Object cursor = stringRedisTemplate.opsForHash().get(STATE_KEY, phase);
+        return cursor == null ? "0" : cursor.toString();
+    }
+
+    private void saveCursor(String phase, String cursor, Run run) {
+        if (!lock.renew(LOCK_KEY, run.token, run.config.getLockTtl())) {
+            throw new LockLostException();
+        }
+        stringRedisTemplate.opsForHash().put(STATE_KEY, phase, cursor);
+        if ("0".equals(cursor)) {
+            meterRegistry.counter("cart.sweeper.passes", "phase", phase).increment();
+        }
+    }
+
+    /** Trạng thái và ngân sách của một lần chạy. */
+    private final class Run {
+        final String token;
+        final CartProperties.Sweeper config;
+        final long startNanos = System.nanoTime();
+        long checked;
+        long removed;
+
+        Run(String token, CartProperties.Sweeper config) {
+            this.token = token;
+            this.config = config;
+        }
+
+        boolean hasBudget() {
+            return checked < config.getMaxKeysPerRun();
+        }
+
+        /** Ghi nhận {@code count} key đã lấy và ngủ nếu đang vượt {@code rate-per-second}. */
+        void pace(int count, String phase) {
+            checked += count;
+            meterRegistry.counter("cart.sweeper.scanned", "phase", phase).increment(count);
+            long due = TimeUnit.SECONDS.toNanos(checked) / Math.max(1, config.getRatePerSecond());
+            long ahead = due - (System.nanoTime() - startNanos);
+            if (ahead > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(ahead);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new LockLostException();
+                }
+            }
+        }
+
+        void removed(int count, String phase) {
+            removed += count;
+            meterRegistry.counter("cart.sweeper.removed", "phase", phase).increment(count);
+        }
+    }
+
+    private static final class LockLostException extends RuntimeException {
+    }
+}
@@ -0,0 +1,96 @@
+package iuh.fit.se.job;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.repository.CartKeyspaceScanner;
+import iuh.fit.se.repository.ColdCartStore;
+import iuh.fit.se.repository.RedisLeaseLock;
+import iuh.fit.se.service.CartTiering;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Chuyển dần các giỏ không hoạt động quá {@code cart.tiering.idle-threshold} từ Redis sang kho lạnh,
+ * mỗi lần tối đa {@code max-carts-per-run} giỏ, tiếp tục từ cursor đã lưu ở {@code cart:tiering:state}.
+ * Chỉ một instance chạy nhờ {@link RedisLeaseLock}, kể cả bước xoá các giỏ quá {@code cold-retention} trong kho
+ * lạnh (kho dùng chung cho mọi instance, xem {@link iuh.fit.se.repository.FileColdCartStore}).
+ */
+@Component
+@ConditionalOnProperty(value = "cart.tiering.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class CartTieringJob {
+    private static final String LOCK_KEY = "cart:tiering:lock";
+    private static final String STATE_KEY = "cart:tiering:state";
+
+    CartTiering cartTiering;
+    ColdCartStore coldStore;
+    CartKeyspaceScanner scanner;
+    RedisLeaseLock lock;
+    StringRedisTemplate stringRedisTemplate;
+    CartProperties cartProperties;
+    MeterRegistry meterRegistry;
+
+    @Scheduled(fixedDelayString = "${cart.tiering.interval:PT15M}", initialDelayString = "${cart.tiering.interval:PT15M}")
+    public void migrate() {
+        CartProperties.Tiering config = cartProperties.getTiering();
+        Optional<String> token = lock.tryAcquire(LOCK_KEY, config.getLockTtl());
+        if (token.isEmpty()) {
+            log.debug("Cart tiering is running on another instance");
+            return;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        int purged = 0;
+        int scanned = 0;
+        int archived = 0;
+        try {
+            purged = coldStore.purgeOlderThan(config.getColdRetention());
+            if (purged > 0) {
+                meterRegistry.counter("cart.tiering.carts", "direction", "purged").increment(purged);
+            }
+            if (!lock.renew(LOCK_KEY, token.get(), config.getLockTtl())) {
+                log.warn("Cart tiering lost its lock while purging, stopping");
+                return;
+            }
+
+            Object saved = stringRedisTemplate.opsForHash().get(STATE_KEY, "cursor");
+            String cursor = saved == null ? "0" : saved.toString();
+            do {
+                CartKeyspaceScanner.Page page = scanner.scanIds(cursor, config.getBatchSize());
+                cursor = page.cursor();
+                for (String id : page.items()) {
+                    try {
+                        if (cartTiering.archiveIfIdle(id)) {
+                            archived++;
+                        }
+                    } catch (RuntimeException e) {
+                        // một giỏ lỗi (vd. đĩa đầy) không làm dừng cả lượt; giỏ vẫn còn nguyên trong Redis
+                        log.warn("Cannot archive cart {}", id, e);
+                    }
+                }
+                scanned += page.items().size();
+
+                if (!lock.renew(LOCK_KEY, token.get(), config.getLockTtl())) {
+                    log.warn("Cart tiering lost its lock, stopping");
+                    return;
+                }
+                stringRedisTemplate.opsForHash().put(STATE_KEY, "cursor", cursor);
+            } while (!"0".equals(cursor) && scanned < config.getMaxCartsPerRun());
+        } finally {
+            lock.release(LOCK_KEY, token.get());
+            sample.stop(meterRegistry.timer("cart.tiering.run"));
+            log.info("Cart tiering scanned {} carts, archived {}, purged {} from cold store", scanned, archived, purged);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package iuh.fit.se.job;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.repository.RedisLeaseLock;
+import iuh.fit.se.repository.StockReservations;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Trả lại hàng của các lượt giữ quá {@code cart.reservation.hold-ttl} (giỏ bị bỏ, không checkout): SSCAN
+ * {@code cart:stock:variants}, mỗi biến thể trả tối đa {@code reap-batch-size} lượt trong một script. Chỉ một
+ * instance chạy nhờ {@link RedisLeaseLock}.
+ */
+@Component
+@ConditionalOnProperty(value = "cart.reservation.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class StockReservationReaper {
+    private static final String LOCK_KEY = StockReservations.PREFIX + "reaper:lock";
+
+    StringRedisTemplate stringRedisTemplate;
+    StockReservations stockReservations;
+    RedisLeaseLock lock;
+    CartProperties cartProperties;
+    MeterRegistry meterRegistry;
+
+    @Scheduled(fixedDelayString = "${cart.reservation.reap-interval:PT10S}")
+    public void reap() {
+        CartProperties.Reservation config = cartProperties.getReservation();
+        Optional<String> token = lock.tryAcquire(LOCK_KEY, config.getLockTtl());
+        if (token.isEmpty()) {
+            log.debug("Stock reservation reaper is running on another instance");
+            return;
+        }
+
+        long released = 0;
+        long now = System.currentTimeMillis();
+        ScanOptions options = ScanOptions.scanOptions().count(config.getReapBatchSize()).build();
+        try (Cursor<String> variants = stringRedisTemplate.opsForSet().scan(StockReservations.VARIANTS, options)) {
+            while (variants.hasNext()) {
+                released += stockReservations.reap(variants.next(), now, config.getReapBatchSize());
+            }
+        } finally {
+            lock.release(LOCK_KEY, token.get());
+        }
+        if (released > 0) {
+            meterRegistry.counter("cart.reservation.released").increment(released);
+            log.info("Stock reservation reaper released {} units", released);
+        }
+    }
+}
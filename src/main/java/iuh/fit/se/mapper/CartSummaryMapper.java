@@ -0,0 +1,125 @@
+package iuh.fit.se.mapper;
+
+import iuh.fit.se.dto.response.CartItemSummaryResponse;
+import iuh.fit.se.dto.response.CartSummaryResponse;
+import iuh.fit.se.dto.response.SellerSummaryResponse;
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.entity.CartItem;
+import iuh.fit.se.pricing.CartPricing;
+import iuh.fit.se.pricing.PriceQuote;
+import iuh.fit.se.pricing.PricingRules;
+import iuh.fit.se.pricing.PricingRulesRegistry;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Gom nhóm giỏ hàng theo seller và tính phí ship/giảm giá/tổng tiền cho {@link CartSummaryResponse}
+ * theo bộ luật giá hiện hành ({@link PricingRulesRegistry}).
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CartSummaryMapper {
+    public static final String UNKNOWN_SELLER = "Unknown seller";
+
+    PricingRulesRegistry pricingRulesRegistry;
+
+    public CartSummaryResponse toSummary(Cart cart) {
+        if (cart.getItems() == null || cart.getItems().isEmpty()) {
+            return CartSummaryResponse.builder()
+                    .totalItems(0)
+                    .totalSellers(0)
+                    .subtotal(BigDecimal.ZERO)
+                    .totalShipping(BigDecimal.ZERO)
+                    .totalDiscount(BigDecimal.ZERO)
+                    .finalAmount(BigDecimal.ZERO)
+                    .hasOutOfStockItems(false)
+                    .canCheckout(false)
+                    .checkoutMessage("Cart is empty")
+                    .build();
+        }
+
+        // group theo seller, theo thứ tự seller xuất hiện trong giỏ (như CartSummaryStreamer)
+        Map<String, List<CartItem>> itemsBySeller = cart.getItems().stream()
+                .collect(Collectors.groupingBy(CartItem::getSellerId, LinkedHashMap::new, Collectors.toList()));
+
+        // một lượt qua các dòng cho phí ship và giảm giá của mọi seller
+        PricingRules rules = pricingRulesRegistry.current();
+        PriceQuote quote = rules.quote(cart.getItems(), cart.getVouchers());
+
+        List<SellerSummaryResponse> sellerSummaries = itemsBySeller.entrySet().stream()
+                .map(entry -> toSellerSummary(entry.getKey(), entry.getValue(), quote.seller(entry.getKey()), rules))
+                .toList();
+
+        BigDecimal totalShipping = rules.units().toDecimal(quote.shipping());
+        BigDecimal subtotal = cart.getSubtotal() == null ? BigDecimal.ZERO : cart.getSubtotal();
+        BigDecimal totalDiscount = rules.units().toDecimal(quote.discount());
+
+        return CartSummaryResponse.builder()
+                .totalItems(cart.getTotalItems())
+                .totalSellers(itemsBySeller.size())
+                .subtotal(subtotal)
+                .totalShipping(totalShipping)
+                .totalDiscount(totalDiscount)
+                .finalAmount(CartPricing.addSubtract(subtotal, totalShipping, totalDiscount))
+                .sellerSummaries(sellerSummaries)
+                .hasOutOfStockItems(false)
+                .canCheckout(true)
+                .checkoutMessage("Ready to checkout")
+                .build();
+    }
+
+    private SellerSummaryResponse toSellerSummary(String sellerId, List<CartItem> items,
+                                                  PriceQuote.SellerQuote quote, PricingRules rules) {
+        // subtotal theo seller
+        BigDecimal sellerSubtotal = CartPricing.subtotal(items);
+
+        // map từng item (KHÔNG còn field size)
+        List<CartItemSummaryResponse> itemSummaries = items.stream()
+                .map(this::toItemSummary)
+                .toList();
+
+        return SellerSummaryResponse.builder()
+                .sellerId(sellerId)
+                .sellerName(sellerName(items))
+                .itemCount(items.size())
+                .subtotal(sellerSubtotal)
+                .shippingFee(rules.units().toDecimal(quote.shippingFee()))
+                .freeShipping(quote.freeShipping())
+                .amountForFreeShipping(quote.freeShipping()
+                        ? BigDecimal.ZERO
+                        : CartPricing.subtract(rules.units().toDecimal(quote.freeShippingThreshold()), sellerSubtotal))
+                .discount(rules.units().toDecimal(quote.discount()))
+                .items(itemSummaries)
+                .build();
+    }
+
+    // tên ở dòng đầu tiên có tên của seller; CartLineReader.outline dùng cùng quy tắc cho bản streaming
+    private static String sellerName(List<CartItem> items) {
+        return items.stream()
+                .map(CartItem::getSellerName)
+                .filter(name -> name != null && !name.isEmpty())
+                .findFirst()
+                .orElse(UNKNOWN_SELLER);
+    }
+
+    public CartItemSummaryResponse toItemSummary(CartItem i) {
+        return CartItemSummaryResponse.builder()
+                .productId(i.getProductId())
+                .productName(i.getProductName())
+                .quantity(i.getQuantity())
+                .productImage(i.getProductImage())
+                .unitPrice(i.getUnitPrice())
+                .totalPrice(i.getTotalPrice())
+                .options(i.getOptions())   // chỉ trả về options
+                .build();
+    }
+}
@@ -0,0 +1,92 @@
+package iuh.fit.se.mapper;
+
+import iuh.fit.se.dto.response.CartItemSummaryResponse;
+import iuh.fit.se.dto.response.CartSummaryResponse;
+import iuh.fit.se.dto.response.CheckoutSnapshotResponse;
+import iuh.fit.se.dto.response.SellerSummaryResponse;
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.entity.CartItem;
+import iuh.fit.se.repository.StockReservations;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Tạo {@link CheckoutSnapshotResponse} từ giỏ: summary như {@link CartSummaryMapper} cộng với content hash
+ * tính trên các dòng (sắp theo uniqueKey) và tổng tiền, nên cùng nội dung luôn cho cùng hash.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CheckoutSnapshotMapper {
+    CartSummaryMapper cartSummaryMapper;
+
+    public CheckoutSnapshotResponse toSnapshot(Cart cart, Duration ttl) {
+        CartSummaryResponse summary = cartSummaryMapper.toSummary(cart);
+        LocalDateTime now = LocalDateTime.now();
+        return CheckoutSnapshotResponse.builder()
+                .snapshotId(UUID.randomUUID().toString())
+                .userId(cart.getUserId())
+                .cartVersion(cart.getVersion())
+                .contentHash(contentHash(cart, summary))
+                .createdAt(now)
+                .expiresAt(now.plus(ttl))
+                .summary(summary)
+                .build();
+    }
+
+    /** Số lượng theo biến thể ({@link StockReservations#variantKey}) của các dòng trong snapshot. */
+    public static Map<String, Integer> quantities(CheckoutSnapshotResponse snapshot) {
+        Map<String, Integer> quantities = new HashMap<>();
+        if (snapshot.getSummary() == null || snapshot.getSummary().getSellerSummaries() == null) {
+            return quantities;
+        }
+        for (SellerSummaryResponse seller : snapshot.getSummary().getSellerSummaries()) {
+            for (CartItemSummaryResponse item : seller.getItems()) {
+                if (item.getQuantity() != null) {
+                    quantities.merge(StockReservations.variantKey(item.getProductId(), item.getOptions()),
+                            item.getQuantity(), Integer::sum);
+                }
+            }
+        }
+        return quantities;
+    }
+
+    private static String contentHash(Cart cart, CartSummaryResponse summary) {
+        StringBuilder content = new StringBuilder();
+        cart.getItems().stream()
+                .sorted(Comparator.comparing(CartItem::getUniqueKey))
+                .forEach(item -> content.append(item.getUniqueKey()).append('|')
+                        .append(item.getQuantity()).append('|')
+                        .append(plain(item.getUnitPrice())).append('\n'));
+        content.append(plain(summary.getSubtotal())).append('|')
+                .append(plain(summary.getTotalShipping())).append('|')
+                .append(plain(summary.getTotalDiscount())).append('|')
+                .append(plain(summary.getFinalAmount()));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(content.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 1000 và 1000.00 phải cho cùng hash
+    private static String plain(BigDecimal value) {
+        return value == null ? "" : value.stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,86 @@
+package iuh.fit.se.pricing;
+
+import iuh.fit.se.entity.CartItem;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Tính tiền giỏ bằng {@code long} (VND, đơn vị đồng) thay vì chuỗi phép {@link BigDecimal} cấp phát ở mỗi bước.
+ * Kết quả giống hệt cách tính {@link BigDecimal} cũ (cả giá trị lẫn scale): đầu vào có scale khác scale của VND
+ * hoặc phép tính tràn {@code long} thì rơi về cách tính cũ. Phí ship và giảm giá do {@link PricingRules} tính.
+ */
+public final class CartPricing {
+    public static final MinorUnits VND = MinorUnits.of("VND");
+
+    private CartPricing() {
+    }
+
+    /** Tổng tiền dòng; null nếu thiếu giá hoặc số lượng (như trước). */
+    public static BigDecimal lineTotal(BigDecimal unitPrice, Integer quantity) {
+        if (unitPrice == null || quantity == null) {
+            return null;
+        }
+        try {
+            return VND.toDecimal(MinorUnits.times(minor(unitPrice), quantity));
+        } catch (ArithmeticException e) {
+            return unitPrice.multiply(BigDecimal.valueOf(quantity));
+        }
+    }
+
+    /** Tổng {@code totalPrice} của các dòng (dòng null bị bỏ qua). */
+    public static BigDecimal subtotal(List<CartItem> items) {
+        try {
+            long sum = 0;
+            for (CartItem item : items) {
+                if (item.getTotalPrice() != null) {
+                    sum = MinorUnits.add(sum, minor(item.getTotalPrice()));
+                }
+            }
+            return VND.toDecimal(sum);
+        } catch (ArithmeticException e) {
+            BigDecimal sum = BigDecimal.ZERO;
+            for (CartItem item : items) {
+                if (item.getTotalPrice() != null) {
+                    sum = sum.add(item.getTotalPrice());
+                }
+            }
+            return sum;
+        }
+    }
+
+    /** {@code a + b}. */
+    public static BigDecimal add(BigDecimal a, BigDecimal b) {
+        try {
+            return VND.toDecimal(MinorUnits.add(minor(a), minor(b)));
+        } catch (ArithmeticException e) {
+            return a.add(b);
+        }
+    }
+
+    /** {@code a - b}. */
+    public static BigDecimal subtract(BigDecimal a, BigDecimal b) {
+        try {
+            return VND.toDecimal(MinorUnits.subtract(minor(a), minor(b)));
+        } catch (ArithmeticException e) {
+            return a.subtract(b);
+        }
+    }
+
+    /** {@code a + b - c}. */
+    public static BigDecimal addSubtract(BigDecimal a, BigDecimal b, BigDecimal c) {
+        try {
+            return VND.toDecimal(MinorUnits.subtract(MinorUnits.add(minor(a), minor(b)), minor(c)));
+        } catch (ArithmeticException e) {
+            return a.add(b).subtract(c);
+        }
+    }
+
+    // chỉ nhận số đúng scale của VND, để kết quả trả ra cùng scale với cách tính BigDecimal
+    private static long minor(BigDecimal amount) {
+        if (amount.scale() != VND.scale()) {
+            throw new ArithmeticException("scale " + amount.scale());
+        }
+        return VND.toMinor(amount);
+    }
+}
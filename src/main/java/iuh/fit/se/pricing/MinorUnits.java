@@ -0,0 +1,73 @@
+package iuh.fit.se.pricing;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * Số tiền dạng {@code long} theo đơn vị nhỏ nhất của một loại tiền (VND: 1 đồng, USD: 1 cent).
+ * Các phép tính kiểm tra tràn số ({@link ArithmeticException}); chỉ đổi sang/từ {@link BigDecimal} ở biên API.
+ */
+public final class MinorUnits {
+    private final Currency currency;
+    private final int scale;
+    private final long factor;
+
+    private MinorUnits(Currency currency) {
+        this.currency = currency;
+        this.scale = Math.max(0, currency.getDefaultFractionDigits());
+        this.factor = BigDecimal.TEN.pow(scale).longValueExact();
+    }
+
+    public static MinorUnits of(String currencyCode) {
+        return new MinorUnits(Currency.getInstance(currencyCode));
+    }
+
+    public Currency currency() {
+        return currency;
+    }
+
+    /** Số chữ số thập phân của loại tiền (VND: 0). */
+    public int scale() {
+        return scale;
+    }
+
+    /**
+     * Đổi sang đơn vị nhỏ nhất; {@link ArithmeticException} nếu {@code amount} có phần lẻ nhỏ hơn đơn vị
+     * hoặc vượt quá {@code long}.
+     */
+    public long toMinor(BigDecimal amount) {
+        if (amount.scale() == 0) {
+            // trường hợp thường gặp (giá VND nguyên): không cấp phát
+            return Math.multiplyExact(amount.longValueExact(), factor);
+        }
+        return amount.movePointRight(scale).longValueExact();
+    }
+
+    /**
+     * Như {@link #toMinor} nhưng bỏ phần lẻ nhỏ hơn đơn vị (làm tròn xuống) thay vì ném lỗi, nên so sánh
+     * {@code toMinorFloor(x) >= n} cho cùng kết quả với {@code x >= n}.
+     */
+    public long toMinorFloor(BigDecimal amount) {
+        if (amount.scale() <= scale) {
+            return toMinor(amount);
+        }
+        return amount.setScale(scale, RoundingMode.FLOOR).movePointRight(scale).longValueExact();
+    }
+
+    public BigDecimal toDecimal(long minor) {
+        return BigDecimal.valueOf(minor, scale);
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    public static long times(long amount, long quantity) {
+        return Math.multiplyExact(amount, quantity);
+    }
+}
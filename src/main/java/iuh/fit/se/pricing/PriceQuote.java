@@ -0,0 +1,26 @@
+package iuh.fit.se.pricing;
+
+import java.util.List;
+
+/**
+ * Kết quả {@link PricingRules#quote}: phí ship và giảm giá theo seller (đơn vị nhỏ nhất, xem {@link MinorUnits}).
+ * {@code sellers} theo thứ tự seller xuất hiện trong giỏ.
+ */
+public record PriceQuote(long subtotal, long shipping, long discount, List<SellerQuote> sellers) {
+
+    public SellerQuote seller(String sellerId) {
+        for (SellerQuote seller : sellers) {
+            if (seller.sellerId().equals(sellerId)) {
+                return seller;
+            }
+        }
+        return null;
+    }
+
+    public record SellerQuote(String sellerId, long subtotal, long shippingFee, long freeShippingThreshold,
+                              long discount) {
+        public boolean freeShipping() {
+            return subtotal >= freeShippingThreshold;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package iuh.fit.se.pricing;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bộ luật giá dạng JSON lưu ở Redis ({@code cart.pricing.rules-key}), được biên dịch thành {@link PricingRules}.
+ * Số tiền tính bằng VND.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class PricingRuleSet {
+    /** Tăng mỗi lần sửa luật (chỉ để theo dõi, metric {@code cart.pricing.rules.version}). */
+    Long version;
+    /** Phí ship mặc định cho seller không có luật riêng; null thì dùng {@code cart.pricing.*}. */
+    Shipping shipping;
+    /** Phí ship theo sellerId. */
+    Map<String, Shipping> sellerShipping;
+    List<Discount> discounts;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Shipping {
+        /** Subtotal của seller từ mức này trở lên thì miễn phí ship. */
+        BigDecimal freeThreshold;
+        BigDecimal fee;
+    }
+
+    /**
+     * Giảm giá trên các dòng khớp {@code sellerId}/{@code categoryId} (null = mọi seller/danh mục).
+     * Đúng một trong {@code percent} hoặc {@code amount}.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Discount {
+        String id;
+        String sellerId;
+        String categoryId;
+        /** Mã voucher user phải áp vào giỏ; null = tự áp dụng. */
+        String voucher;
+        /** Phần trăm (0, 100] trên tổng các dòng khớp. */
+        BigDecimal percent;
+        /** Số tiền cố định, không vượt tổng các dòng khớp. */
+        BigDecimal amount;
+        /** Tổng các dòng khớp phải đạt mức này. */
+        BigDecimal minSubtotal;
+        /** Trần số tiền giảm (cho {@code percent}). */
+        BigDecimal maxDiscount;
+    }
+}
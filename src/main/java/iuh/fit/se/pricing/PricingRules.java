@@ -0,0 +1,310 @@
+package iuh.fit.se.pricing;
+
+import iuh.fit.se.entity.CartItem;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Bộ luật giá đã biên dịch (bất biến): phí ship theo seller và các giảm giá được index theo sellerId rồi categoryId,
+ * nên mỗi dòng giỏ chỉ tra tối đa bốn bucket (seller/category cụ thể hoặc "mọi") và cả giỏ được tính trong một lượt.
+ * Mọi số tiền là {@code long} theo {@link MinorUnits}; dùng chung giữa các thread, thay bằng bản mới khi luật đổi
+ * (xem {@code PricingRulesRegistry}).
+ */
+public final class PricingRules {
+    private static final String ANY = "";
+    private static final long PERCENT_SCALE = 10_000; // basis point
+    private static final int SELLER_ELIGIBLE = 2;
+
+    private final long version;
+    // SHA-256 của nội dung đã biên dịch: bộ luật đổi mà quên tăng version vẫn có fingerprint khác
+    private final String fingerprint;
+    private final MinorUnits units;
+    private final Tier defaultTier;
+    private final Map<String, Tier> tiers;
+    // sellerId|ANY -> categoryId|ANY -> luật
+    private final Map<String, Map<String, Rule[]>> index;
+    private final Rule[] rules;
+    private final Set<String> vouchers;
+
+    private record Tier(long freeThreshold, long fee) {
+    }
+
+    private record Rule(int slot, String sellerId, String voucher, long basisPoints, long amount,
+                        long minSubtotal, long maxDiscount) {
+    }
+
+    private PricingRules(long version, MinorUnits units, Tier defaultTier, Map<String, Tier> tiers,
+                         Map<String, Map<String, Rule[]>> index, Rule[] rules, Set<String> vouchers) {
+        this.version = version;
+        this.units = units;
+        this.defaultTier = defaultTier;
+        this.tiers = tiers;
+        this.index = index;
+        this.rules = rules;
+        this.vouchers = vouchers;
+        this.fingerprint = fingerprint(units, defaultTier, tiers, index, rules);
+    }
+
+    /** Chỉ có phí ship mặc định, không giảm giá. */
+    public static PricingRules defaults(MinorUnits units, long freeThreshold, long fee) {
+        return new PricingRules(0, units, tier(freeThreshold, fee), Map.of(), Map.of(), new Rule[0], Set.of());
+    }
+
+    /**
+     * Biên dịch {@code set}; {@code fallback} cung cấp phí ship mặc định khi bộ luật không khai báo.
+     *
+     * @throws IllegalArgumentException nếu có luật không hợp lệ (cả bộ luật bị bỏ qua)
+     */
+    public static PricingRules compile(PricingRuleSet set, PricingRules fallback) {
+        MinorUnits units = fallback.units;
+        Tier defaultTier = set.getShipping() != null ? tier(units, set.getShipping(), "default") : fallback.defaultTier;
+
+        Map<String, Tier> tiers = new HashMap<>();
+        if (set.getSellerShipping() != null) {
+            set.getSellerShipping().forEach((sellerId, shipping) -> tiers.put(sellerId, tier(units, shipping, sellerId)));
+        }
+
+        List<PricingRuleSet.Discount> discounts = set.getDiscounts() != null ? set.getDiscounts() : List.of();
+        Rule[] rules = new Rule[discounts.size()];
+        Map<String, Map<String, List<Rule>>> buckets = new HashMap<>();
+        Set<String> vouchers = new HashSet<>();
+        for (int i = 0; i < rules.length; i++) {
+            PricingRuleSet.Discount d = discounts.get(i);
+            String name = d.getId() != null ? d.getId() : "#" + i;
+            if ((d.getPercent() == null) == (d.getAmount() == null)) {
+                throw new IllegalArgumentException("discount " + name + ": exactly one of percent/amount is required");
+            }
+            long basisPoints = 0;
+            if (d.getPercent() != null) {
+                basisPoints = d.getPercent().movePointRight(2).longValueExact();
+                if (basisPoints <= 0 || basisPoints > PERCENT_SCALE) {
+                    throw new IllegalArgumentException("discount " + name + ": percent must be in (0, 100]");
+                }
+            }
+            long amount = d.getAmount() != null ? positive(units, d.getAmount(), name + ".amount") : 0;
+            String voucher = normalizeVoucher(d.getVoucher());
+            rules[i] = new Rule(i, d.getSellerId(), voucher, basisPoints, amount,
+                    d.getMinSubtotal() != null ? nonNegative(units, d.getMinSubtotal(), name + ".minSubtotal") : 0,
+                    d.getMaxDiscount() != null ? positive(units, d.getMaxDiscount(), name + ".maxDiscount") : 0);
+            if (voucher != null) {
+                vouchers.add(voucher);
+            }
+            buckets.computeIfAbsent(d.getSellerId() != null ? d.getSellerId() : ANY, k -> new HashMap<>())
+                    .computeIfAbsent(d.getCategoryId() != null ? d.getCategoryId() : ANY, k -> new ArrayList<>())
+                    .add(rules[i]);
+        }
+
+        Map<String, Map<String, Rule[]>> index = new HashMap<>();
+        buckets.forEach((seller, byCategory) -> {
+            Map<String, Rule[]> compiled = new HashMap<>();
+            byCategory.forEach((category, list) -> compiled.put(category, list.toArray(Rule[]::new)));
+            index.put(seller, Map.copyOf(compiled));
+        });
+
+        return new PricingRules(set.getVersion() != null ? set.getVersion() : 0, units, defaultTier,
+                Map.copyOf(tiers), Map.copyOf(index), rules, Set.copyOf(vouchers));
+    }
+
+    public long version() {
+        return version;
+    }
+
+    /** Hash nội dung của bộ luật (không phụ thuộc {@link #version()}); dùng để biết kết quả tính sẵn đã cũ chưa. */
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    public MinorUnits units() {
+        return units;
+    }
+
+    /** Mã voucher có trong bộ luật hiện tại. */
+    public boolean hasVoucher(String code) {
+        String voucher = normalizeVoucher(code);
+        return voucher != null && vouchers.contains(voucher);
+    }
+
+    // dạng chuẩn (map sắp theo key) của mọi thứ ảnh hưởng tới kết quả tính giá
+    private static String fingerprint(MinorUnits units, Tier defaultTier, Map<String, Tier> tiers,
+                                      Map<String, Map<String, Rule[]>> index, Rule[] rules) {
+        StringBuilder content = new StringBuilder()
+                .append(units.currency()).append(':').append(units.scale())
+                .append('|').append(defaultTier);
+        new TreeMap<>(tiers).forEach((sellerId, tier) -> content.append('|').append(sellerId).append('=').append(tier));
+        for (Rule rule : rules) {
+            content.append('|').append(rule);
+        }
+        new TreeMap<>(index).forEach((sellerId, byCategory) -> new TreeMap<>(byCategory).forEach((categoryId, list) -> {
+            content.append('|').append(sellerId).append('/').append(categoryId).append(':');
+            for (Rule rule : list) {
+                content.append(rule.slot()).append(',');
+            }
+        }));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Mã voucher dạng lưu trên giỏ (bỏ khoảng trắng, chữ hoa); null nếu rỗng. */
+    public static String normalizeVoucher(String code) {
+        if (code == null || code.isBlank()) {
+            return null;
+        }
+        return code.strip().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Tính phí ship theo seller và giảm giá cho các dòng (dòng chưa có {@code totalPrice} bị bỏ qua;
+     * phần lẻ dưới một đơn vị bị bỏ). Giảm giá không gắn seller được chia cho các seller theo giá trị các dòng
+     * khớp luật (phần dư do làm tròn thuộc seller có phần lớn nhất); giảm giá của mỗi seller không vượt subtotal
+     * của seller đó, và tổng giảm giá là tổng giảm giá theo seller.
+     *
+     * @param applied mã voucher user đã áp vào giỏ (có thể null)
+     */
+    public PriceQuote quote(List<CartItem> items, Collection<String> applied) {
+        long[] eligible = new long[rules.length];
+        Map<String, long[]> sellerTotals = new LinkedHashMap<>();
+        Map<String, Rule[]> anySeller = index.get(ANY);
+        // {subtotal, giảm giá, phần khớp của từng luật không gắn seller (theo slot)}
+        int sellerSlots = anySeller != null ? SELLER_ELIGIBLE + rules.length : SELLER_ELIGIBLE;
+        long subtotal = 0;
+
+        for (CartItem item : items) {
+            String sellerId = item.getSellerId() != null ? item.getSellerId() : ANY;
+            long[] totals = sellerTotals.computeIfAbsent(sellerId, k -> new long[sellerSlots]);
+            if (item.getTotalPrice() == null) {
+                continue;
+            }
+            long line = units.toMinorFloor(item.getTotalPrice());
+            totals[0] = MinorUnits.add(totals[0], line);
+            subtotal = MinorUnits.add(subtotal, line);
+
+            if (rules.length > 0) {
+                match(index.get(sellerId), item.getCategoryId(), line, eligible, null);
+                match(anySeller, item.getCategoryId(), line, eligible, totals);
+            }
+        }
+
+        for (Rule rule : rules) {
+            long base = eligible[rule.slot()];
+            if (base == 0 || base < rule.minSubtotal()
+                    || (rule.voucher() != null && (applied == null || !applied.contains(rule.voucher())))) {
+                continue;
+            }
+            long value = rule.amount() > 0
+                    ? Math.min(rule.amount(), base)
+                    : MinorUnits.times(base, rule.basisPoints()) / PERCENT_SCALE;
+            if (rule.maxDiscount() > 0) {
+                value = Math.min(value, rule.maxDiscount());
+            }
+            if (rule.sellerId() != null) {
+                // base > 0 nên seller có trong giỏ
+                long[] totals = sellerTotals.get(rule.sellerId());
+                totals[1] = MinorUnits.add(totals[1], value);
+            } else {
+                distribute(rule.slot(), value, base, sellerTotals.values());
+            }
+        }
+
+        long discount = 0;
+        long shipping = 0;
+        List<PriceQuote.SellerQuote> sellers = new ArrayList<>(sellerTotals.size());
+        for (Map.Entry<String, long[]> entry : sellerTotals.entrySet()) {
+            Tier tier = tiers.getOrDefault(entry.getKey(), defaultTier);
+            long sellerSubtotal = entry.getValue()[0];
+            long fee = sellerSubtotal >= tier.freeThreshold() ? 0 : tier.fee();
+            shipping = MinorUnits.add(shipping, fee);
+            long sellerDiscount = Math.min(entry.getValue()[1], sellerSubtotal);
+            discount = MinorUnits.add(discount, sellerDiscount);
+            sellers.add(new PriceQuote.SellerQuote(entry.getKey(), sellerSubtotal, fee, tier.freeThreshold(),
+                    sellerDiscount));
+        }
+        return new PriceQuote(subtotal, shipping, discount, sellers);
+    }
+
+    private static void match(Map<String, Rule[]> byCategory, String categoryId, long line, long[] eligible,
+                              long[] seller) {
+        if (byCategory == null) {
+            return;
+        }
+        if (categoryId != null) {
+            add(byCategory.get(categoryId), line, eligible, seller);
+        }
+        add(byCategory.get(ANY), line, eligible, seller);
+    }
+
+    // seller != null: luật không gắn seller, ghi thêm phần khớp của seller để chia giảm giá
+    private static void add(Rule[] matched, long line, long[] eligible, long[] seller) {
+        if (matched == null) {
+            return;
+        }
+        for (Rule rule : matched) {
+            eligible[rule.slot()] = MinorUnits.add(eligible[rule.slot()], line);
+            if (seller != null) {
+                seller[SELLER_ELIGIBLE + rule.slot()] = MinorUnits.add(seller[SELLER_ELIGIBLE + rule.slot()], line);
+            }
+        }
+    }
+
+    // chia value theo tỉ lệ phần khớp của từng seller trên base (tổng các phần), phần dư cho seller có phần lớn nhất
+    private static void distribute(int slot, long value, long base, Collection<long[]> sellers) {
+        long assigned = 0;
+        long[] largest = null;
+        for (long[] totals : sellers) {
+            long share = totals[SELLER_ELIGIBLE + slot];
+            if (share == 0) {
+                continue;
+            }
+            long part = value <= Long.MAX_VALUE / share
+                    ? value * share / base
+                    : BigInteger.valueOf(value).multiply(BigInteger.valueOf(share))
+                            .divide(BigInteger.valueOf(base)).longValueExact();
+            totals[1] = MinorUnits.add(totals[1], part);
+            assigned += part;
+            if (largest == null || share > largest[SELLER_ELIGIBLE + slot]) {
+                largest = totals;
+            }
+        }
+        if (largest != null && assigned < value) {
+            largest[1] = MinorUnits.add(largest[1], value - assigned);
+        }
+    }
+
+    private static Tier tier(long freeThreshold, long fee) {
+        if (freeThreshold < 0 || fee < 0) {
+            throw new IllegalArgumentException("shipping threshold/fee must not be negative");
+        }
+        return new Tier(freeThreshold, fee);
+    }
+
+    private static Tier tier(MinorUnits units, PricingRuleSet.Shipping shipping, String name) {
+        if (shipping.getFreeThreshold() == null || shipping.getFee() == null) {
+            throw new IllegalArgumentException("shipping " + name + ": freeThreshold and fee are required");
+        }
+        return tier(units.toMinor(shipping.getFreeThreshold()), units.toMinor(shipping.getFee()));
+    }
+
+    private static long positive(MinorUnits units, BigDecimal value, String name) {
+        long minor = units.toMinor(value);
+        if (minor <= 0) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+        return minor;
+    }
+
+    private static long nonNegative(MinorUnits units, BigDecimal value, String name) {
+        long minor = units.toMinor(value);
+        if (minor < 0) {
+            throw new IllegalArgumentException(name + " must not be negative");
+        }
+        return minor;
+    }
+}
@@ -0,0 +1,85 @@
+package iuh.fit.se.pricing;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.configuration.CartProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Giữ {@link PricingRules} hiện hành. Bộ luật JSON ở {@code cart.pricing.rules-key} được đọc lại mỗi
+ * {@code cart.pricing.refresh}; khi nội dung đổi thì biên dịch bản mới rồi thay bằng một lần ghi
+ * {@link AtomicReference}, nên request đang tính giá vẫn dùng trọn bản cũ và không phải chờ khoá.
+ * Không có key thì dùng phí ship mặc định ({@code cart.pricing.free-shipping-threshold}/{@code shipping-fee});
+ * bộ luật lỗi bị bỏ qua và giữ bản đang chạy.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class PricingRulesRegistry {
+    StringRedisTemplate stringRedisTemplate;
+    ObjectMapper objectMapper;
+    CartProperties.Pricing properties;
+    PricingRules defaults;
+    AtomicReference<PricingRules> current;
+    // JSON đã xử lý lần cuối (kể cả khi lỗi), để không biên dịch/ghi log lại khi chưa đổi
+    AtomicReference<String> loaded = new AtomicReference<>();
+
+    public PricingRulesRegistry(StringRedisTemplate stringRedisTemplate, ObjectMapper objectMapper,
+                                CartProperties cartProperties, MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = cartProperties.getPricing();
+        this.defaults = PricingRules.defaults(CartPricing.VND,
+                properties.getFreeShippingThreshold(), properties.getShippingFee());
+        this.current = new AtomicReference<>(defaults);
+        Gauge.builder("cart.pricing.rules.version", this, registry -> registry.current().version())
+                .register(meterRegistry);
+    }
+
+    public PricingRules current() {
+        return current.get();
+    }
+
+    @PostConstruct
+    void init() {
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${cart.pricing.refresh:PT10S}", initialDelayString = "${cart.pricing.refresh:PT10S}")
+    public void refresh() {
+        String json;
+        try {
+            json = stringRedisTemplate.opsForValue().get(properties.getRulesKey());
+        } catch (RuntimeException e) {
+            log.warn("Could not read pricing rules, keeping version {}: {}", current().version(), e.getMessage());
+            return;
+        }
+        if (Objects.equals(json, loaded.getAndSet(json))) {
+            return;
+        }
+        if (json == null) {
+            current.set(defaults);
+            log.info("No pricing rules at {}, using default shipping", properties.getRulesKey());
+            return;
+        }
+        try {
+            PricingRules rules = PricingRules.compile(objectMapper.readValue(json, PricingRuleSet.class), defaults);
+            current.set(rules);
+            log.info("Loaded pricing rules version {} ({})", rules.version(), rules.fingerprint());
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Ignoring invalid pricing rules at {}, keeping version {}: {}",
+                    properties.getRulesKey(), current().version(), e.getMessage());
+        }
+    }
+}
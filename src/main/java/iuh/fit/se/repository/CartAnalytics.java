@@ -0,0 +1,366 @@
+package iuh.fit.se.repository;
+
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.event.CartEvent;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Số liệu giỏ theo thời gian thực ({@code cart.analytics}), cộng dồn từ sự kiện giỏ thay vì SCAN {@code cart:*}.
+ * Mỗi bucket thời gian ({@code bucket}, giữ {@code window} bucket rồi hết hạn) có:
+ * <ul>
+ *     <li>{@code cart:analytics:{<bucket>}:cms}: count-min sketch số lượng được thêm vào giỏ theo sản phẩm,
+ *     {@code depth} x {@code width} counter u32 trong một string (BITFIELD)</li>
+ *     <li>{@code cart:analytics:{<bucket>}:top}: zset {@code top-k} sản phẩm có ước lượng lớn nhất</li>
+ *     <li>HyperLogLog user đã thêm sản phẩm ({@code users:{<productId>}:<bucket>}), chỉ cho sản phẩm đang nằm trong
+ *     top-K của bucket; user thêm bất kỳ sản phẩm nào ({@code {users}:<bucket>})</li>
+ *     <li>HyperLogLog user thêm hàng của seller và user checkout giỏ có hàng của seller
+ *     ({@code seller:{<sellerId>}:...}), chỉ cho {@code max-sellers} seller đầu tiên của bucket
+ *     ({@code cart:analytics:{<bucket>}:sellers})</li>
+ * </ul>
+ * Mỗi HyperLogLog tối đa 12KB (dense), nên số HyperLogLog được chặn ở {@code (top-k + 2 x max-sellers + 1) x window}
+ * thay vì tăng theo cả catalogue. Các HyperLogLog của cùng sản phẩm/seller chung hash tag qua mọi bucket nên PFCOUNT
+ * nhiều bucket (hợp các tập user) chạy được trên cluster. Chỉ số lượng tăng (thêm hàng) được đếm; xoá dòng và giỏ hết
+ * hạn không trừ lại.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CartAnalytics {
+    public static final String PREFIX = CartKeys.KEYSPACE + ":analytics:";
+
+    /*
+     * KEYS: cms, top. ARGV: TTL giây, top-k, depth, rồi từng sản phẩm: id, số lượng, depth offset (theo u32).
+     * Trả về các sản phẩm của lô còn nằm trong top-K sau khi cộng.
+     */
+    private static final RedisScript<List> ADD = RedisScript.of("""
+            local ttl, k, depth = ARGV[1], tonumber(ARGV[2]), tonumber(ARGV[3])
+            local products = 0
+            for a = 4, #ARGV, depth + 2 do
+                local ops = {'OVERFLOW', 'SAT'}
+                for j = 1, depth do
+                    table.insert(ops, 'INCRBY')
+                    table.insert(ops, 'u32')
+                    table.insert(ops, '#' .. ARGV[a + 1 + j])
+                    table.insert(ops, ARGV[a + 1])
+                end
+                local estimate = math.min(unpack(redis.call('BITFIELD', KEYS[1], unpack(ops))))
+                redis.call('ZADD', KEYS[2], estimate, ARGV[a])
+                if redis.call('ZCARD', KEYS[2]) > k then
+                    redis.call('ZPOPMIN', KEYS[2])
+                end
+            end
+            redis.call('EXPIRE', KEYS[1], ttl)
+            redis.call('EXPIRE', KEYS[2], ttl)
+            local tracked = {}
+            for a = 4, #ARGV, depth + 2 do
+                if redis.call('ZSCORE', KEYS[2], ARGV[a]) then
+                    tracked[#tracked + 1] = ARGV[a]
+                end
+            end
+            return tracked
+            """, List.class);
+
+    // KEYS: sellers của bucket. ARGV: TTL giây, max-sellers, sellerId... Trả về các seller được theo dõi trong bucket
+    private static final RedisScript<List> ADMIT = RedisScript.of("""
+            local max = tonumber(ARGV[2])
+            local admitted = {}
+            for a = 3, #ARGV do
+                if redis.call('SISMEMBER', KEYS[1], ARGV[a]) == 1 or redis.call('SCARD', KEYS[1]) < max then
+                    redis.call('SADD', KEYS[1], ARGV[a])
+                    admitted[#admitted + 1] = ARGV[a]
+                end
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[1])
+            return admitted
+            """, List.class);
+
+    // KEYS: cms. ARGV: depth, rồi depth offset cho từng sản phẩm. Trả về ước lượng của từng sản phẩm
+    private static final RedisScript<List> ESTIMATE = RedisScript.of("""
+            local depth = tonumber(ARGV[1])
+            local estimates = {}
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return estimates
+            end
+            for a = 2, #ARGV, depth do
+                local ops = {}
+                for j = 0, depth - 1 do
+                    table.insert(ops, 'GET')
+                    table.insert(ops, 'u32')
+                    table.insert(ops, '#' .. ARGV[a + j])
+                end
+                table.insert(estimates, math.min(unpack(redis.call('BITFIELD', KEYS[1], unpack(ops)))))
+            end
+            return estimates
+            """, List.class);
+
+    StringRedisTemplate stringRedisTemplate;
+    CartProperties cartProperties;
+
+    /** Số lượng (ước lượng, không thấp hơn thực tế) của một sản phẩm được thêm vào giỏ trong khoảng truy vấn. */
+    public record ProductCount(String productId, long quantity) {
+    }
+
+    /** User phân biệt (ước lượng) đã thêm hàng của seller, đã checkout, và đã thêm nhưng chưa checkout. */
+    public record Abandonment(long carted, long checkedOut, long abandoned) {
+    }
+
+    public boolean enabled() {
+        return cartProperties.getAnalytics().isEnabled();
+    }
+
+    /** Cộng một lô sự kiện vào sketch của bucket tương ứng (gọi trên thread nền của publisher). */
+    public void record(List<CartEvent> events) {
+        CartProperties.Analytics config = cartProperties.getAnalytics();
+        long bucketMillis = config.getBucket().toMillis();
+        Map<Long, Batch> batches = new HashMap<>();
+        for (CartEvent event : events) {
+            Batch batch = batches.computeIfAbsent(event.getTimestamp() / bucketMillis, b -> new Batch());
+            if (event.getType() == CartEvent.Type.CHECKED_OUT) {
+                if (event.getSellerId() != null) {
+                    visit(batch.checkouts, event.getSellerId(), event.getUserId());
+                }
+            } else if (event.getQuantityDelta() > 0 && event.getProductId() != null) {
+                batch.quantities.merge(event.getProductId(), (long) event.getQuantityDelta(), Long::sum);
+                visit(batch.products, event.getProductId(), event.getUserId());
+                batch.users.add(event.getUserId());
+                if (event.getSellerId() != null) {
+                    visit(batch.carts, event.getSellerId(), event.getUserId());
+                }
+            }
+        }
+
+        String ttl = String.valueOf(ttl(config).toSeconds());
+        Map<String, Set<String>> visitors = new HashMap<>();
+        batches.forEach((bucket, batch) -> {
+            for (Object productId : add(bucket, batch.quantities, ttl, config)) {
+                visitors.put(productUsersKey((String) productId, bucket), batch.products.get(productId));
+            }
+            if (!batch.users.isEmpty()) {
+                visitors.put(allUsersKey(bucket), batch.users);
+            }
+            Set<String> sellers = new HashSet<>(batch.carts.keySet());
+            sellers.addAll(batch.checkouts.keySet());
+            if (!sellers.isEmpty()) {
+                List<String> args = new ArrayList<>(sellers.size() + 2);
+                args.add(ttl);
+                args.add(String.valueOf(config.getMaxSellers()));
+                args.addAll(sellers);
+                List<?> admitted = stringRedisTemplate.execute(ADMIT, List.of(sellersKey(bucket)), args.toArray());
+                for (Object sellerId : admitted != null ? admitted : List.of()) {
+                    if (batch.carts.containsKey(sellerId)) {
+                        visitors.put(sellerKey((String) sellerId, "carted", bucket), batch.carts.get(sellerId));
+                    }
+                    if (batch.checkouts.containsKey(sellerId)) {
+                        visitors.put(sellerKey((String) sellerId, "checkout", bucket), batch.checkouts.get(sellerId));
+                    }
+                }
+            }
+        });
+
+        if (!visitors.isEmpty()) {
+            // mỗi HyperLogLog một slot riêng (hash tag theo sản phẩm/seller) nên pipeline thay vì một script
+            long seconds = ttl(config).toSeconds();
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                visitors.forEach((key, users) -> {
+                    redis.pfAdd(key, users.toArray(String[]::new));
+                    redis.expire(key, seconds);
+                });
+                return null;
+            });
+        }
+    }
+
+    // cộng count-min/top-K của bucket; trả về các sản phẩm được theo dõi HyperLogLog (đang trong top-K)
+    private List<?> add(long bucket, Map<String, Long> quantities, String ttl, CartProperties.Analytics config) {
+        if (quantities.isEmpty()) {
+            return List.of();
+        }
+        List<String> args = new ArrayList<>(3 + quantities.size() * (config.getDepth() + 2));
+        args.add(ttl);
+        args.add(String.valueOf(config.getTopK()));
+        args.add(String.valueOf(config.getDepth()));
+        quantities.forEach((productId, quantity) -> {
+            args.add(productId);
+            args.add(String.valueOf(quantity));
+            for (long offset : offsets(productId, config)) {
+                args.add(String.valueOf(offset));
+            }
+        });
+        List<?> tracked = stringRedisTemplate.execute(ADD, List.of(cmsKey(bucket), topKey(bucket)), args.toArray());
+        return tracked != null ? tracked : List.of();
+    }
+
+    /** Sự kiện của một lô trong cùng bucket. */
+    private static final class Batch {
+        final Map<String, Long> quantities = new HashMap<>();
+        final Map<String, Set<String>> products = new HashMap<>();
+        final Set<String> users = new HashSet<>();
+        final Map<String, Set<String>> carts = new HashMap<>();
+        final Map<String, Set<String>> checkouts = new HashMap<>();
+    }
+
+    /** Top {@code limit} sản phẩm theo số lượng được thêm vào giỏ trong {@code window} gần nhất. */
+    public List<ProductCount> topProducts(Duration window, int limit) {
+        CartProperties.Analytics config = cartProperties.getAnalytics();
+        List<Long> buckets = buckets(window);
+        Set<String> candidates = new LinkedHashSet<>();
+        for (long bucket : buckets) {
+            Set<String> top = stringRedisTemplate.opsForZSet().range(topKey(bucket), 0, -1);
+            if (top != null) {
+                candidates.addAll(top);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+
+        // sản phẩm có thể rơi khỏi top của bucket này nhưng vẫn nằm trong top của cả khoảng: cộng ước lượng CMS
+        List<String> products = new ArrayList<>(candidates);
+        List<String> args = new ArrayList<>(1 + products.size() * config.getDepth());
+        args.add(String.valueOf(config.getDepth()));
+        for (String productId : products) {
+            for (long offset : offsets(productId, config)) {
+                args.add(String.valueOf(offset));
+            }
+        }
+        long[] totals = new long[products.size()];
+        for (long bucket : buckets) {
+            List<?> estimates = stringRedisTemplate.execute(ESTIMATE, List.of(cmsKey(bucket)), args.toArray());
+            for (int i = 0; estimates != null && i < estimates.size(); i++) {
+                totals[i] += ((Number) estimates.get(i)).longValue();
+            }
+        }
+
+        List<ProductCount> counts = new ArrayList<>(products.size());
+        for (int i = 0; i < products.size(); i++) {
+            counts.add(new ProductCount(products.get(i), totals[i]));
+        }
+        counts.sort(Comparator.comparingLong(ProductCount::quantity).reversed());
+        return counts.subList(0, Math.min(limit, counts.size()));
+    }
+
+    /**
+     * Số user phân biệt (ước lượng) đã thêm {@code productId} vào giỏ trong {@code window}; chỉ đếm trong các bucket
+     * mà sản phẩm nằm trong top-K, nên là cận dưới với sản phẩm ít được thêm.
+     */
+    public long distinctUsers(String productId, Duration window) {
+        return count(buckets(window).stream().map(bucket -> productUsersKey(productId, bucket)).toList());
+    }
+
+    /** Số user phân biệt (ước lượng) đã thêm bất kỳ sản phẩm nào vào giỏ trong {@code window}. */
+    public long distinctUsers(Duration window) {
+        return count(buckets(window).stream().map(CartAnalytics::allUsersKey).toList());
+    }
+
+    /**
+     * Bỏ giỏ theo seller trong {@code window}: user đã thêm hàng của seller nhưng không checkout giỏ có hàng của
+     * seller, tính bằng |thêm ∪ checkout| - |checkout| trên HyperLogLog. Bucket mà seller không nằm trong
+     * {@code max-sellers} seller đầu tiên không được đếm.
+     */
+    public Abandonment abandonment(String sellerId, Duration window) {
+        List<Long> buckets = buckets(window);
+        List<String> carted = buckets.stream().map(bucket -> sellerKey(sellerId, "carted", bucket)).toList();
+        List<String> checkout = buckets.stream().map(bucket -> sellerKey(sellerId, "checkout", bucket)).toList();
+        List<String> all = new ArrayList<>(carted);
+        all.addAll(checkout);
+        long checkedOut = count(checkout);
+        return new Abandonment(count(carted), checkedOut, Math.max(0, count(all) - checkedOut));
+    }
+
+    /** Khoảng truy vấn thực tế: {@code window} làm tròn lên theo bucket, tối đa {@code bucket} x {@code window}. */
+    public Duration effectiveWindow(Duration window) {
+        return cartProperties.getAnalytics().getBucket().multipliedBy(buckets(window).size());
+    }
+
+    private long count(List<String> keys) {
+        Long size = stringRedisTemplate.opsForHyperLogLog().size(keys.toArray(String[]::new));
+        return size == null ? 0 : size;
+    }
+
+    // bucket hiện tại và các bucket trước đó phủ window
+    private List<Long> buckets(Duration window) {
+        CartProperties.Analytics config = cartProperties.getAnalytics();
+        long bucketMillis = config.getBucket().toMillis();
+        long requested = window == null ? config.getWindow() : (window.toMillis() + bucketMillis - 1) / bucketMillis;
+        int count = (int) Math.max(1, Math.min(config.getWindow(), requested));
+        long current = System.currentTimeMillis() / bucketMillis;
+        List<Long> buckets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            buckets.add(current - i);
+        }
+        return buckets;
+    }
+
+    // bucket cũ nhất vẫn phải còn khi nó nằm trọn trong window
+    private static Duration ttl(CartProperties.Analytics config) {
+        return config.getBucket().multipliedBy(config.getWindow() + 1L);
+    }
+
+    private static void visit(Map<String, Set<String>> visitors, String key, String userId) {
+        visitors.computeIfAbsent(key, k -> new HashSet<>()).add(userId);
+    }
+
+    // double hashing trên một hash 64 bit: hàng i dùng h1 + i * h2, offset tính theo số counter u32
+    private static long[] offsets(String productId, CartProperties.Analytics config) {
+        long hash = hash(productId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long[] offsets = new long[config.getDepth()];
+        for (int i = 0; i < offsets.length; i++) {
+            int combined = h1 + i * h2;
+            offsets[i] = (long) i * config.getWidth() + Math.floorMod(combined, config.getWidth());
+        }
+        return offsets;
+    }
+
+    // FNV-1a rồi trộn bit (finalizer của MurmurHash3) để các bit cao/thấp đều phân tán
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static String cmsKey(long bucket) {
+        return PREFIX + "{" + bucket + "}:cms";
+    }
+
+    private static String topKey(long bucket) {
+        return PREFIX + "{" + bucket + "}:top";
+    }
+
+    private static String sellersKey(long bucket) {
+        return PREFIX + "{" + bucket + "}:sellers";
+    }
+
+    private static String productUsersKey(String productId, long bucket) {
+        return PREFIX + "users:{" + productId + "}:" + bucket;
+    }
+
+    private static String allUsersKey(long bucket) {
+        return PREFIX + "{users}:" + bucket;
+    }
+
+    private static String sellerKey(String sellerId, String kind, long bucket) {
+        return PREFIX + "seller:{" + sellerId + "}:" + kind + ":" + bucket;
+    }
+}
@@ -0,0 +1,105 @@
+package iuh.fit.se.repository;
+
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.entity.Cart;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.data.redis.util.ByteUtils;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Đọc nhiều {@link Cart} một lúc cho API nội bộ.
+ * <p>
+ * HGETALL của cả một nhóm được gửi liền nhau trên kết nối Lettuce dùng chung (pipelining tự nhiên, không
+ * mở kết nối riêng như {@code openPipeline()}). Ở chế độ cluster, userId được sắp theo hash slot trước khi
+ * chia nhóm để mỗi nhóm chủ yếu rơi vào một node; các nhóm chạy song song ({@code cart.batch.parallelism}).
+ */
+@Repository
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class CartBatchReader {
+    private static final String KEYSPACE = CartKeys.KEYSPACE;
+
+    ReactiveRedisConnectionFactory connectionFactory;
+    RedisConverter redisConverter;
+    CartProperties cartProperties;
+    CartKeys cartKeys;
+
+    /** Kết quả một nhóm: cart theo userId ({@code null} nếu không có), hoặc lỗi của cả nhóm. */
+    public record Chunk(List<String> userIds, Map<String, Cart> carts, Throwable error) {
+    }
+
+    /**
+     * Trả về các nhóm theo thứ tự hoàn thành (không theo thứ tự userIds).
+     */
+    public Flux<Chunk> read(Collection<String> userIds) {
+        List<List<String>> chunks = partition(userIds);
+        return Flux.usingWhen(
+                Mono.fromSupplier(connectionFactory::getReactiveConnection),
+                connection -> Flux.fromIterable(chunks)
+                        .flatMap(chunk -> readChunk(connection, chunk), cartProperties.getBatch().getParallelism()),
+                ReactiveRedisConnection::closeLater);
+    }
+
+    List<List<String>> partition(Collection<String> userIds) {
+        List<String> ids = userIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toCollection(ArrayList::new));
+        if (isCluster()) {
+            ids.sort(Comparator.comparingInt(id -> ClusterSlotHashUtil.calculateSlot(cartKeys.hashKey(id))));
+        }
+        int size = Math.max(1, cartProperties.getBatch().getChunkSize());
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += size) {
+            chunks.add(ids.subList(i, Math.min(i + size, ids.size())));
+        }
+        return chunks;
+    }
+
+    private Mono<Chunk> readChunk(ReactiveRedisConnection connection, List<String> userIds) {
+        return Flux.fromIterable(userIds)
+                // flatMapSequential gửi toàn bộ lệnh trước khi chờ kết quả
+                .flatMapSequential(id -> connection.hashCommands()
+                                .hGetAll(ByteBuffer.wrap(cartKeys.hashKey(id).getBytes(StandardCharsets.UTF_8)))
+                                .collectMap(e -> ByteUtils.getBytes(e.getKey()), e -> ByteUtils.getBytes(e.getValue()))
+                                .map(raw -> Map.entry(id, Optional.ofNullable(toCart(cartKeys.idFor(id), raw)))),
+                        userIds.size())
+                .collect(LinkedHashMap<String, Cart>::new, (map, e) -> map.put(e.getKey(), e.getValue().orElse(null)))
+                .map(carts -> new Chunk(userIds, carts, null))
+                .onErrorResume(e -> {
+                    log.error("Batch read failed for {} carts", userIds.size(), e);
+                    return Mono.just(new Chunk(userIds, Map.of(), e));
+                });
+    }
+
+    private Cart toCart(String id, Map<byte[], byte[]> raw) {
+        if (raw.isEmpty()) {
+            return null;
+        }
+        RedisData data = new RedisData(raw);
+        data.setId(id);
+        data.setKeyspace(KEYSPACE);
+        return redisConverter.read(Cart.class, data);
+    }
+
+    private boolean isCluster() {
+        return connectionFactory instanceof LettuceConnectionFactory lettuce && lettuce.isClusterAware();
+    }
+}
@@ -0,0 +1,95 @@
+package iuh.fit.se.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.entity.Cart;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * TTL của giỏ hàng theo {@code cart.ttl-seconds}.
+ * <p>
+ * Mỗi lần lưu, {@link #apply(Cart)} gán TTL cho entity ({@link CartWriter} ghi lại EXPIRE). Khi bật
+ * {@code cart.sliding-ttl.enabled}, các lần đọc gọi {@link #touch(String)} để gia hạn bằng một script
+ * ({@link #script()}): hash của giỏ cùng các key đi kèm ({@code :summary}, {@code :json}, cùng hash tag) được gia hạn
+ * cùng lúc, nên không key nào hết hạn trước hash; giới hạn mỗi giỏ một lần trong {@code touch-interval} để giỏ bị
+ * đọc liên tục không sinh lệnh Redis mỗi request. {@link CartWriter} không ghi phantom key của Spring Data; phantom
+ * còn lại từ dữ liệu cũ tự hết hạn theo TTL của nó.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CartExpiry {
+    // KEYS: hash, summary, JSON. ARGV: TTL giây. Chỉ gia hạn các key đi kèm khi hash còn
+    private static final RedisScript<Long> TOUCH = RedisScript.of("""
+            if redis.call('EXPIRE', KEYS[1], ARGV[1]) == 0 then
+                return 0
+            end
+            redis.call('EXPIRE', KEYS[2], ARGV[1])
+            redis.call('EXPIRE', KEYS[3], ARGV[1])
+            return 1
+            """, Long.class);
+
+    CartProperties cartProperties;
+    CartKeys cartKeys;
+    StringRedisTemplate stringRedisTemplate;
+    // userId -> đã gia hạn trong touch-interval gần đây
+    Cache<String, Boolean> recentlyTouched;
+
+    public CartExpiry(CartProperties cartProperties, CartKeys cartKeys, StringRedisTemplate stringRedisTemplate) {
+        this.cartProperties = cartProperties;
+        this.cartKeys = cartKeys;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.recentlyTouched = Caffeine.newBuilder()
+                .expireAfterWrite(cartProperties.getSlidingTtl().getTouchInterval())
+                .maximumSize(cartProperties.getSlidingTtl().getMaxTrackedCarts())
+                .build();
+    }
+
+    public Duration ttl() {
+        return Duration.ofSeconds(cartProperties.getTtlSeconds());
+    }
+
+    /** Gán TTL trước khi lưu; lần ghi này cũng tính là một lần gia hạn. */
+    public Cart apply(Cart cart) {
+        cart.setTtl(cartProperties.getTtlSeconds());
+        if (cartProperties.getSlidingTtl().isEnabled()) {
+            recentlyTouched.put(cart.getUserId(), Boolean.TRUE);
+        }
+        return cart;
+    }
+
+    /**
+     * True nếu giỏ cần được gia hạn ngay (sliding-ttl bật và chưa gia hạn trong touch-interval).
+     * Dùng trực tiếp ở bản reactive, nơi lệnh EXPIRE được gửi không chặn.
+     */
+    public boolean claimTouch(String userId) {
+        if (!cartProperties.getSlidingTtl().isEnabled()) {
+            return false;
+        }
+        return recentlyTouched.asMap().putIfAbsent(userId, Boolean.TRUE) == null;
+    }
+
+    /** Gia hạn giỏ vừa được đọc (blocking). */
+    public void touch(String userId) {
+        if (claimTouch(userId)) {
+            stringRedisTemplate.execute(TOUCH, keys(cartKeys.hashKey(userId)), String.valueOf(ttl().toSeconds()));
+        }
+    }
+
+    /** Script gia hạn giỏ; KEYS là {@link #keys(String)}, ARGV là TTL giây (bản reactive tự gọi bằng client của nó). */
+    public static RedisScript<Long> script() {
+        return TOUCH;
+    }
+
+    /** Các key gia hạn cùng nhau: hash {@code hashKey} rồi summary, JSON của giỏ. */
+    public static List<String> keys(String hashKey) {
+        return List.of(hashKey, hashKey + CartKeys.SUMMARY_SUFFIX, hashKey + CartKeys.JSON_SUFFIX);
+    }
+}
@@ -0,0 +1,37 @@
+package iuh.fit.se.repository;
+
+import iuh.fit.se.configuration.CartProperties;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+/**
+ * Quy ước id/key của {@code @RedisHash("cart")}.
+ * <p>
+ * Ở chế độ cluster ({@code cart.redis.cluster-mode=true}) id của cart là hash tag {@code {userId}}, nên mọi key
+ * của một user ({@code cart:{userId}}, {@code cart:{userId}:idx}, {@code cart:{userId}:summary}, ...) cùng
+ * nằm trên một slot và có thể dùng chung trong MULTI/Lua. Ở chế độ standalone id giữ nguyên là userId
+ * để tương thích dữ liệu cũ.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CartKeys {
+    public static final String KEYSPACE = "cart";
+    /** Hậu tố key của summary render sẵn ({@code cart:<id>:summary}). */
+    public static final String SUMMARY_SUFFIX = ":summary";
+    /** Hậu tố key của JSON giỏ render sẵn ({@code cart:<id>:json}). */
+    public static final String JSON_SUFFIX = ":json";
+
+    CartProperties cartProperties;
+
+    public String idFor(String userId) {
+        return cartProperties.getRedis().isClusterMode() ? "{" + userId + "}" : userId;
+    }
+
+    /** Key của hash chứa cart. */
+    public String hashKey(String userId) {
+        return KEYSPACE + ":" + idFor(userId);
+    }
+}
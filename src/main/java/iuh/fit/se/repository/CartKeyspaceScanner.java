@@ -0,0 +1,57 @@
+package iuh.fit.se.repository;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * SSCAN set {@code cart} (id của mọi cart) hoặc một set bất kỳ, và SCAN key từ một cursor có sẵn,
+ * cho các job chạy dần qua nhiều lần.
+ * Đi qua Lua vì API Cursor của Spring Data luôn bắt đầu từ 0, không tiếp tục được cursor đã lưu.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CartKeyspaceScanner {
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SSCAN = RedisScript.of(
+            "return redis.call('SSCAN', KEYS[1], ARGV[1], 'COUNT', ARGV[2])", List.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SCAN = RedisScript.of(
+            "return redis.call('SCAN', ARGV[1], 'MATCH', ARGV[2], 'COUNT', ARGV[3])", List.class);
+
+    StringRedisTemplate stringRedisTemplate;
+
+    /** Một trang kết quả; {@code cursor} "0" nghĩa là đã hết một vòng. */
+    public record Page(String cursor, List<String> items) {
+        public boolean last() {
+            return "0".equals(cursor);
+        }
+    }
+
+    /** SSCAN set {@code cart}. */
+    public Page scanIds(String cursor, int count) {
+        return scanSet(CartKeys.KEYSPACE, cursor, count);
+    }
+
+    /** SSCAN một set bất kỳ. */
+    public Page scanSet(String key, String cursor, int count) {
+        return page(stringRedisTemplate.execute(SSCAN, List.of(key), cursor, String.valueOf(count)));
+    }
+
+    /** SCAN key theo pattern (chỉ dùng ở standalone: trên cluster SCAN chỉ chạy trong một node). */
+    public Page scanKeys(String cursor, String pattern, int count) {
+        return page(stringRedisTemplate.execute(SCAN, List.of(), cursor, pattern, String.valueOf(count)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Page page(List<?> reply) {
+        List<String> items = reply.get(1) == null ? List.of() : (List<String>) reply.get(1);
+        return new Page((String) reply.get(0), items);
+    }
+}
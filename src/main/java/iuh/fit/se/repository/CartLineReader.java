@@ -0,0 +1,373 @@
+package iuh.fit.se.repository;
+
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.entity.CartItem;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Đọc một phần các dòng của giỏ lớn thay vì cả hash {@code cart:<id>}, để bộ nhớ mỗi request không tăng theo
+ * số dòng. Dòng được đánh số theo thứ tự thêm vào giỏ ({@code items.[i].*} của {@code @RedisHash}).
+ * <p>
+ * Tên các option của một dòng chỉ biết được qua tên field, nên {@link CartWriter} ghi kèm index trong cùng hash:
+ * {@code lineIndex} (số dòng), {@code lineIndex.[i]} (tên option của dòng i) và {@code voucherCount}. Một trang
+ * chỉ đọc các field của dòng trong trang; giỏ ghi trước khi có index được đọc bằng một lượt {@code HKEYS}.
+ */
+@Repository
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CartLineReader {
+    private static final String KEYSPACE = CartKeys.KEYSPACE;
+    private static final String LINE_INDEX = "lineIndex";
+    private static final String VOUCHER_COUNT = "voucherCount";
+    // phân cách trong mô tả dòng của outline và trong lineIndex.[i] (không xuất hiện trong tên option)
+    private static final String LINE_SEPARATOR = "\u001e";
+    private static final String FIELD_SEPARATOR = "\u001f";
+    // field vô hướng của CartItem (ngoài map options), theo tên field mà RedisConverter ghi
+    private static final List<String> LINE_FIELDS = Arrays.stream(CartItem.class.getDeclaredFields())
+            .filter(f -> !Modifier.isStatic(f.getModifiers()) && !Map.class.isAssignableFrom(f.getType()))
+            .map(Field::getName)
+            .toList();
+
+    /*
+     * Hàm dùng chung của các script:
+     * hmget: HMGET theo nhóm 1000 field (giới hạn unpack của Lua), giá trị thiếu là false.
+     * lineIndex(key, from, to): số dòng, số voucher và tên option của các dòng from..to-1 (options[i]).
+     */
+    private static final String FUNCTIONS = """
+            local function hmget(key, fields)
+                local values = {}
+                for i = 1, #fields, 1000 do
+                    for _, v in ipairs(redis.call('HMGET', key, unpack(fields, i, math.min(i + 999, #fields)))) do
+                        values[#values + 1] = v
+                    end
+                end
+                return values
+            end
+            local function lineIndex(key, from, to)
+                local index = redis.call('HMGET', key, 'lineIndex', 'voucherCount')
+                local options = {}
+                if index[1] then
+                    local total = tonumber(index[1])
+                    local fields = {}
+                    for i = from, math.min(to, total) - 1 do
+                        fields[#fields + 1] = 'lineIndex.[' .. i .. ']'
+                    end
+                    for j, names in ipairs(hmget(key, fields)) do
+                        if names and names ~= '' then
+                            local list = {}
+                            for name in string.gmatch(names, '[^\\31]+') do
+                                list[#list + 1] = name
+                            end
+                            options[from + j - 1] = list
+                        end
+                    end
+                    return total, tonumber(index[2] or '0'), options
+                end
+                local total, vouchers = 0, 0
+                for _, f in ipairs(redis.call('HKEYS', key)) do
+                    local i, rest = string.match(f, '^items%.%[(%d+)%]%.(.+)$')
+                    if i then
+                        i = tonumber(i)
+                        if i >= total then total = i + 1 end
+                        local name = string.match(rest, '^options%.%[(.+)%]$')
+                        if name and i >= from and i < to then
+                            local list = options[i] or {}
+                            list[#list + 1] = name
+                            options[i] = list
+                        end
+                    elseif string.match(f, '^vouchers%.%[%d+%]$') then
+                        vouchers = vouchers + 1
+                    end
+                end
+                return total, vouchers, options
+            end
+            """;
+
+    /*
+     * ARGV: from, limit, tên field vô hướng...
+     * Trả về {tổng số dòng, version, field, value, ...} cho các dòng from..from+limit-1; rỗng nếu không có giỏ.
+     */
+    private static final RedisScript<List> PAGE = RedisScript.of(FUNCTIONS + """
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return {}
+            end
+            local from = tonumber(ARGV[1])
+            local to = from + tonumber(ARGV[2])
+            local total, _, options = lineIndex(KEYS[1], from, to)
+            local fields = {}
+            for i = from, math.min(to, total) - 1 do
+                for a = 3, #ARGV do
+                    fields[#fields + 1] = 'items.[' .. i .. '].' .. ARGV[a]
+                end
+                for _, name in ipairs(options[i] or {}) do
+                    fields[#fields + 1] = 'items.[' .. i .. '].options.[' .. name .. ']'
+                end
+            end
+            local result = {tostring(total), redis.call('HGET', KEYS[1], 'version') or ''}
+            local values = hmget(KEYS[1], fields)
+            for j, f in ipairs(fields) do
+                if values[j] then
+                    result[#result + 1] = f
+                    result[#result + 1] = values[j]
+                end
+            end
+            return result
+            """, List.class);
+
+    /*
+     * Gom theo seller (thứ tự seller xuất hiện đầu tiên) trong một lượt:
+     * {version, exact, số voucher, voucher..., số seller, rồi mỗi seller:
+     *  sellerId, tên seller (dòng đầu tiên có tên), số dòng, tổng số lượng, mô tả dòng, số danh mục,
+     *  (danh mục, tổng tiền)...}.
+     * Mô tả dòng: "i<US>option<US>option<RS>i..." (US/RS = \\31/\\30). Tổng tiền cộng bằng số của Lua nên
+     * exact = 0 nếu có totalPrice không nguyên hoặc tổng vượt 2^53; khi đó bên gọi phải đọc cả giỏ.
+     */
+    private static final RedisScript<List> OUTLINE = RedisScript.of(FUNCTIONS + """
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return {}
+            end
+            local n, voucherCount, options = lineIndex(KEYS[1], 0, math.huge)
+            local fields = {}
+            for i = 0, n - 1 do
+                local prefix = 'items.[' .. i .. '].'
+                fields[#fields + 1] = prefix .. 'sellerId'
+                fields[#fields + 1] = prefix .. 'sellerName'
+                fields[#fields + 1] = prefix .. 'categoryId'
+                fields[#fields + 1] = prefix .. 'totalPrice'
+                fields[#fields + 1] = prefix .. 'quantity'
+            end
+            local values = hmget(KEYS[1], fields)
+            local exact = 1
+            local order, sellers = {}, {}
+            for i = 0, n - 1 do
+                local base = i * 5
+                local id = values[base + 1] or ''
+                local s = sellers[id]
+                if not s then
+                    s = {name = '', count = 0, quantity = 0, lines = {}, cats = {}, catOrder = {}}
+                    sellers[id] = s
+                    order[#order + 1] = id
+                end
+                if s.name == '' and values[base + 2] then
+                    s.name = values[base + 2]
+                end
+                s.count = s.count + 1
+                s.quantity = s.quantity + (tonumber(values[base + 5]) or 0)
+                local line = tostring(i)
+                if options[i] then
+                    line = line .. '\\31' .. table.concat(options[i], '\\31')
+                end
+                s.lines[#s.lines + 1] = line
+                if values[base + 4] then
+                    local price = tonumber(values[base + 4])
+                    if not price or price ~= math.floor(price) then
+                        exact = 0
+                        price = 0
+                    end
+                    local cat = values[base + 3] or ''
+                    if not s.cats[cat] then
+                        s.cats[cat] = 0
+                        s.catOrder[#s.catOrder + 1] = cat
+                    end
+                    s.cats[cat] = s.cats[cat] + price
+                    if s.cats[cat] >= 9007199254740992 then exact = 0 end
+                end
+            end
+            local result = {redis.call('HGET', KEYS[1], 'version') or '', tostring(exact), tostring(voucherCount)}
+            local vouchers = {}
+            for k = 0, voucherCount - 1 do
+                vouchers[#vouchers + 1] = 'vouchers.[' .. k .. ']'
+            end
+            for _, v in ipairs(hmget(KEYS[1], vouchers)) do
+                result[#result + 1] = v or ''
+            end
+            result[#result + 1] = tostring(#order)
+            for _, id in ipairs(order) do
+                local s = sellers[id]
+                result[#result + 1] = id
+                result[#result + 1] = s.name
+                result[#result + 1] = tostring(s.count)
+                result[#result + 1] = string.format('%.0f', s.quantity)
+                result[#result + 1] = table.concat(s.lines, '\\30')
+                result[#result + 1] = tostring(#s.catOrder)
+                for _, cat in ipairs(s.catOrder) do
+                    result[#result + 1] = cat
+                    result[#result + 1] = string.format('%.0f', s.cats[cat])
+                end
+            end
+            return result
+            """, List.class);
+
+    StringRedisTemplate stringRedisTemplate;
+    RedisConverter redisConverter;
+    CartKeys cartKeys;
+
+    /** Một trang dòng; {@code nextCursor} null khi đã hết. */
+    public record Page(List<CartItem> items, int totalLines, Integer nextCursor, Long version) {
+    }
+
+    /** Một dòng trong outline: vị trí trong giỏ và tên các option (để đọc lại đúng các field). */
+    public record LineRef(int index, List<String> options) {
+    }
+
+    /**
+     * Tổng hợp một seller: {@code totals} là tổng tiền theo danh mục ({@code ""} = không có danh mục).
+     * Các dòng được giữ dạng mô tả gọn và chỉ tách khi đọc từng nhóm ({@link #lines}).
+     */
+    public record SellerOutline(String sellerId, String sellerName, int lineCount, int quantity,
+                                Map<String, BigDecimal> totals, String lineRefs) {
+        public List<LineRef> lines() {
+            List<LineRef> refs = new ArrayList<>(lineCount);
+            for (String line : lineRefs.split(LINE_SEPARATOR)) {
+                String[] parts = line.split(FIELD_SEPARATOR);
+                refs.add(new LineRef(Integer.parseInt(parts[0]),
+                        parts.length == 1 ? List.of() : List.of(parts).subList(1, parts.length)));
+            }
+            return refs;
+        }
+    }
+
+    /** {@code exact} false: có số tiền không cộng chính xác được trong Redis, cần tính trên cả giỏ. */
+    public record Outline(Long version, boolean exact, List<String> vouchers, List<SellerOutline> sellers) {
+    }
+
+    /** Cặp field/giá trị của index dòng cho {@code cart}, {@link CartWriter} ghi cùng hash của giỏ. */
+    static List<String> indexFields(Cart cart) {
+        List<CartItem> items = cart.getItems() != null ? cart.getItems() : List.of();
+        List<String> fields = new ArrayList<>(items.size() * 2 + 4);
+        fields.add(LINE_INDEX);
+        fields.add(String.valueOf(items.size()));
+        for (int i = 0; i < items.size(); i++) {
+            Map<String, String> options = items.get(i).getOptions();
+            fields.add(LINE_INDEX + ".[" + i + "]");
+            fields.add(options == null ? "" : String.join(FIELD_SEPARATOR, options.keySet()));
+        }
+        fields.add(VOUCHER_COUNT);
+        fields.add(String.valueOf(cart.getVouchers() != null ? cart.getVouchers().size() : 0));
+        return fields;
+    }
+
+    /** Dòng {@code from..from+limit-1}; empty nếu không có giỏ trong Redis. */
+    public Optional<Page> page(String userId, int from, int limit) {
+        List<String> args = new ArrayList<>(LINE_FIELDS.size() + 2);
+        args.add(String.valueOf(from));
+        args.add(String.valueOf(limit));
+        args.addAll(LINE_FIELDS);
+        List<?> reply = stringRedisTemplate.execute(PAGE, List.of(key(userId)), args.toArray());
+        if (reply == null || reply.isEmpty()) {
+            return Optional.empty();
+        }
+        int total = Integer.parseInt((String) reply.get(0));
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 2; i + 1 < reply.size(); i += 2) {
+            fields.put((String) reply.get(i), (String) reply.get(i + 1));
+        }
+        List<CartItem> items = read(fields);
+        Integer next = from + limit < total ? from + limit : null;
+        return Optional.of(new Page(items, total, next, version((String) reply.get(1))));
+    }
+
+    /** Outline của giỏ; empty nếu không có giỏ trong Redis. */
+    public Optional<Outline> outline(String userId) {
+        List<?> reply = stringRedisTemplate.execute(OUTLINE, List.of(key(userId)));
+        if (reply == null || reply.isEmpty()) {
+            return Optional.empty();
+        }
+        Iterator<?> it = reply.iterator();
+        Long version = version((String) it.next());
+        boolean exact = "1".equals(it.next());
+        int voucherCount = Integer.parseInt((String) it.next());
+        List<String> vouchers = new ArrayList<>(voucherCount);
+        for (int i = 0; i < voucherCount; i++) {
+            vouchers.add((String) it.next());
+        }
+        int sellerCount = Integer.parseInt((String) it.next());
+        List<SellerOutline> sellers = new ArrayList<>(sellerCount);
+        for (int s = 0; s < sellerCount; s++) {
+            String sellerId = (String) it.next();
+            String sellerName = (String) it.next();
+            int lineCount = Integer.parseInt((String) it.next());
+            int quantity = Integer.parseInt((String) it.next());
+            String lineRefs = (String) it.next();
+            int categoryCount = Integer.parseInt((String) it.next());
+            Map<String, BigDecimal> totals = new LinkedHashMap<>();
+            for (int c = 0; c < categoryCount; c++) {
+                totals.put((String) it.next(), new BigDecimal((String) it.next()));
+            }
+            sellers.add(new SellerOutline(sellerId, sellerName.isEmpty() ? null : sellerName, lineCount, quantity,
+                    totals, lineRefs));
+        }
+        return Optional.of(new Outline(version, exact, vouchers, sellers));
+    }
+
+    /** Đọc các dòng {@code refs} (một HMGET), theo đúng thứ tự của {@code refs}. */
+    public List<CartItem> lines(String userId, List<LineRef> refs) {
+        List<Object> fields = new ArrayList<>(refs.size() * (LINE_FIELDS.size() + 2));
+        for (LineRef ref : refs) {
+            String prefix = "items.[" + ref.index() + "].";
+            for (String field : LINE_FIELDS) {
+                fields.add(prefix + field);
+            }
+            for (String option : ref.options()) {
+                fields.add(prefix + "options.[" + option + "]");
+            }
+        }
+        List<Object> values = stringRedisTemplate.opsForHash().multiGet(key(userId), fields);
+        Map<String, String> found = new HashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            if (values.get(i) != null) {
+                found.put((String) fields.get(i), (String) values.get(i));
+            }
+        }
+        return read(found);
+    }
+
+    // Đánh số lại các dòng từ 0 theo thứ tự vị trí gốc rồi để RedisConverter dựng CartItem như khi đọc cả giỏ
+    private List<CartItem> read(Map<String, String> fields) {
+        TreeMap<Integer, Integer> positions = new TreeMap<>();
+        for (String field : fields.keySet()) {
+            positions.putIfAbsent(index(field), 0);
+        }
+        int next = 0;
+        for (Map.Entry<Integer, Integer> entry : positions.entrySet()) {
+            entry.setValue(next++);
+        }
+        Map<byte[], byte[]> raw = new HashMap<>();
+        for (Map.Entry<String, String> entry : fields.entrySet()) {
+            String field = entry.getKey();
+            int close = field.indexOf(']');
+            String renumbered = "items.[" + positions.get(index(field)) + field.substring(close);
+            raw.put(renumbered.getBytes(StandardCharsets.UTF_8), entry.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+        if (raw.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Cart cart = redisConverter.read(Cart.class, new RedisData(raw));
+        return cart.getItems() != null ? cart.getItems() : new ArrayList<>();
+    }
+
+    private static int index(String field) {
+        return Integer.parseInt(field.substring("items.[".length(), field.indexOf(']')));
+    }
+
+    private static Long version(String value) {
+        return value == null || value.isEmpty() ? null : Long.valueOf(value);
+    }
+
+    private String key(String userId) {
+        return KEYSPACE + ":" + cartKeys.idFor(userId);
+    }
+}
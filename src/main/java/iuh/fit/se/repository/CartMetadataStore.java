@@ -0,0 +1,162 @@
+package iuh.fit.se.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.entity.CartItem;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Chế độ {@code cart.metadata.mode=REFERENCE}: dòng giỏ không lưu tên, ảnh sản phẩm; hai field này (lấy từ
+ * product-service) nằm trong bảng dùng chung {@code cart:meta:v:<productId>-<options>}: {@code name},
+ * {@code image}, {@code version}. {@code version} là thời điểm snapshot (epoch millis) nên snapshot cũ (fallback)
+ * không ghi đè dữ liệu mới hơn. Tên seller do client gửi nên chỉ ở lại trên dòng của chính giỏ đó, không bao giờ
+ * vào bảng dùng chung (một request không được đổi tên seller hiện trên giỏ người khác).
+ * Đọc qua cache Caffeine cục bộ. Ở chế độ EMBEDDED mọi thao tác là no-op.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CartMetadataStore {
+    private static final String VARIANT_PREFIX = CartKeys.KEYSPACE + ":meta:v:";
+    private static final RedisScript<Long> UPSERT_IF_NEWER = RedisScript.of("""
+            local current = tonumber(redis.call('HGET', KEYS[1], 'version') or '0')
+            if tonumber(ARGV[1]) >= current then
+                redis.call('HSET', KEYS[1], 'version', ARGV[1], unpack(ARGV, 2))
+                return 1
+            end
+            return 0
+            """, Long.class);
+
+    StringRedisTemplate stringRedisTemplate;
+    boolean referenceMode;
+    // key metadata -> các field (không có key = chưa từng ghi)
+    Cache<String, Map<String, String>> localCache;
+
+    public CartMetadataStore(CartProperties cartProperties, StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.referenceMode = cartProperties.getMetadata().getMode() == CartProperties.MetadataMode.REFERENCE;
+        this.localCache = Caffeine.newBuilder()
+                .expireAfterWrite(cartProperties.getMetadata().getLocalCacheTtl())
+                .maximumSize(cartProperties.getMetadata().getLocalCacheSize())
+                .build();
+    }
+
+    public boolean referenceMode() {
+        return referenceMode;
+    }
+
+    /**
+     * Lưu giỏ không kèm tên/ảnh: ghi metadata của các dòng vào bảng chung, bỏ các field hiển thị khỏi dòng,
+     * gọi {@code saver}, rồi trả lại các field cho object đang được trả về client.
+     */
+    public Cart saveStripped(Cart cart, Function<Cart, Cart> saver) {
+        if (!referenceMode) {
+            return saver.apply(cart);
+        }
+        List<CartItem> display = strip(cart);
+        try {
+            return saver.apply(cart);
+        } finally {
+            restore(cart, display);
+        }
+    }
+
+    /** Ghi metadata sản phẩm và bỏ tên/ảnh khỏi dòng; trả về bản sao các field để {@link #restore}. */
+    public List<CartItem> strip(Cart cart) {
+        List<CartItem> display = new ArrayList<>(cart.getItems().size());
+        for (CartItem item : cart.getItems()) {
+            publish(item);
+            display.add(CartItem.builder()
+                    .productName(item.getProductName())
+                    .productImage(item.getProductImage())
+                    .build());
+            item.setProductName(null);
+            item.setProductImage(null);
+        }
+        return display;
+    }
+
+    public void restore(Cart cart, List<CartItem> display) {
+        for (int i = 0; i < cart.getItems().size() && i < display.size(); i++) {
+            CartItem item = cart.getItems().get(i);
+            item.setProductName(display.get(i).getProductName());
+            item.setProductImage(display.get(i).getProductImage());
+        }
+    }
+
+    /** Điền tên/ảnh còn thiếu của các dòng từ bảng metadata. */
+    public Cart hydrate(Cart cart) {
+        if (!referenceMode || cart == null || cart.getItems() == null) {
+            return cart;
+        }
+        for (CartItem item : cart.getItems()) {
+            if (item.getProductName() == null || item.getProductImage() == null) {
+                Map<String, String> variant = load(VARIANT_PREFIX + item.getVariantKey());
+                if (item.getProductName() == null) {
+                    item.setProductName(variant.get("name"));
+                }
+                if (item.getProductImage() == null) {
+                    item.setProductImage(variant.get("image"));
+                }
+            }
+        }
+        return cart;
+    }
+
+    // tên/ảnh trên dòng luôn lấy từ phản hồi product-service (hoặc snapshot của nó), không từ request
+    private void publish(CartItem item) {
+        if (item.getProductName() != null || item.getProductImage() != null) {
+            upsert(VARIANT_PREFIX + item.getVariantKey(), version(item.getSnapshotAt()),
+                    "name", item.getProductName(), "image", item.getProductImage());
+        }
+    }
+
+    private void upsert(String key, long version, String... fieldsAndValues) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (int i = 0; i < fieldsAndValues.length; i += 2) {
+            fields.put(fieldsAndValues[i], fieldsAndValues[i + 1] == null ? "" : fieldsAndValues[i + 1]);
+        }
+        Map<String, String> cached = localCache.getIfPresent(key);
+        if (cached != null && fields.entrySet().stream()
+                .allMatch(e -> e.getValue().equals(cached.getOrDefault(e.getKey(), "")))) {
+            // không đổi so với bản đang biết: không ghi lại (phần lớn các lần lưu giỏ)
+            return;
+        }
+
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(version));
+        fields.forEach((field, value) -> {
+            args.add(field);
+            args.add(value);
+        });
+        stringRedisTemplate.execute(UPSERT_IF_NEWER, List.of(key), args.toArray());
+        localCache.invalidate(key);
+    }
+
+    private Map<String, String> load(String key) {
+        return localCache.get(key, k -> {
+            Map<String, String> fields = new HashMap<>();
+            stringRedisTemplate.<String, String>opsForHash().entries(k).forEach((field, value) -> {
+                if (!value.isEmpty()) {
+                    fields.put(field, value);
+                }
+            });
+            return Collections.unmodifiableMap(fields);
+        });
+    }
+
+    private static long version(LocalDateTime snapshotAt) {
+        return (snapshotAt != null ? snapshotAt : LocalDateTime.now())
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,201 @@
+package iuh.fit.se.repository;
+
+import io.lettuce.core.ReadFrom;
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.entity.Cart;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
+import org.springframework.data.redis.connection.RedisConfiguration;
+import org.springframework.data.redis.connection.RedisStaticMasterReplicaConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Đọc giỏ từ replica ({@code cart.replica}) cho các endpoint chỉ đọc, qua một kết nối Lettuce riêng với
+ * {@link ReadFrom} ({@code read-from}); mọi lệnh ghi và các lần đọc trước khi sửa giỏ vẫn đi qua kết nối mặc định
+ * tới primary. Client gửi {@link #VERSION_HEADER} là {@code version} của giỏ trong response của lần ghi gần nhất:
+ * replica chưa tới version đó (hoặc chưa có giỏ) thì kết quả bị bỏ và caller đọc lại từ primary, nên user không
+ * thấy giỏ cũ hơn thay đổi của chính mình.
+ * <p>
+ * Kết nối không được đăng ký thành bean {@code RedisConnectionFactory} để không thay kết nối mặc định của Spring Boot.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CartReplica implements DisposableBean {
+    public static final String VERSION_HEADER = "X-Cart-Version";
+    private static final byte[] VERSION = bytes("version");
+
+    LettuceConnectionFactory connectionFactory; // null khi tắt
+    StringRedisTemplate template;
+    ReactiveRedisTemplate<byte[], byte[]> reactiveTemplate;
+    CartKeys cartKeys;
+    RedisConverter redisConverter;
+    MeterRegistry meterRegistry;
+
+    public CartReplica(CartProperties cartProperties, RedisProperties redisProperties, CartKeys cartKeys,
+                       RedisConverter redisConverter, MeterRegistry meterRegistry) {
+        this.cartKeys = cartKeys;
+        this.redisConverter = redisConverter;
+        this.meterRegistry = meterRegistry;
+        CartProperties.Replica config = cartProperties.getReplica();
+        if (!config.isEnabled()) {
+            this.connectionFactory = null;
+            this.template = null;
+            this.reactiveTemplate = null;
+            return;
+        }
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder client = LettuceClientConfiguration.builder()
+                .readFrom(ReadFrom.valueOf(config.getReadFrom()));
+        if (redisProperties.getTimeout() != null) {
+            client.commandTimeout(redisProperties.getTimeout());
+        }
+        this.connectionFactory = new LettuceConnectionFactory(topology(config, redisProperties), client.build());
+        this.connectionFactory.afterPropertiesSet();
+        this.template = new StringRedisTemplate(connectionFactory);
+        this.reactiveTemplate = new ReactiveRedisTemplate<>(connectionFactory, RedisSerializationContext.byteArray());
+    }
+
+    public boolean enabled() {
+        return connectionFactory != null;
+    }
+
+    public ReactiveRedisTemplate<byte[], byte[]> reactiveTemplate() {
+        return reactiveTemplate;
+    }
+
+    /** Giỏ đọc từ replica; empty nếu tắt, replica chưa có giỏ hoặc chưa tới {@code minVersion}. */
+    public Optional<Cart> find(String userId, Long minVersion) {
+        if (!enabled()) {
+            return Optional.empty();
+        }
+        byte[] key = bytes(cartKeys.hashKey(userId));
+        Map<byte[], byte[]> raw = template.execute((RedisCallback<Map<byte[], byte[]>>) connection ->
+                connection.hashCommands().hGetAll(key));
+        Cart cart = raw == null || raw.isEmpty() ? null : read(cartKeys.idFor(userId), raw);
+        return accept(cart, minVersion) ? Optional.of(cart) : Optional.empty();
+    }
+
+    /**
+     * Như {@link #rendered(StringRedisTemplate, String, String, List)} nhưng đọc từ replica. Empty nếu tắt,
+     * replica chưa có giỏ hoặc chưa tới {@code minVersion}.
+     */
+    public Optional<List<byte[]>> rendered(String userId, String suffix, List<byte[]> fields, Long minVersion) {
+        if (!enabled()) {
+            return Optional.empty();
+        }
+        List<byte[]> values = rendered(template, cartKeys.hashKey(userId), suffix, fields);
+        return accept(values, minVersion) ? Optional.of(values) : Optional.empty();
+    }
+
+    /**
+     * {@code version} của giỏ ({@code hashKey}) rồi giá trị (byte nguyên bản, null nếu không có) của {@code fields}
+     * trong key render sẵn {@code hashKey + suffix} (vd. {@link CartKeys#SUMMARY_SUFFIX}), gửi pipeline một lượt.
+     * Hai lệnh không nguyên tử, nhưng key render sẵn mang version của lần ghi đã render nó nên caller so với
+     * version của giỏ và bỏ nếu lệch.
+     */
+    public static List<byte[]> rendered(StringRedisTemplate template, String hashKey, String suffix,
+                                        List<byte[]> fields) {
+        byte[] key = bytes(hashKey);
+        byte[] rendered = bytes(hashKey + suffix);
+        List<Object> read = template.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hashCommands().hGet(key, VERSION);
+            connection.hashCommands().hMGet(rendered, fields.toArray(byte[][]::new));
+            return null;
+        }, RedisSerializer.byteArray());
+        List<byte[]> values = new ArrayList<>(fields.size() + 1);
+        values.add((byte[]) read.get(0));
+        for (Object value : (List<?>) read.get(1)) {
+            values.add((byte[]) value);
+        }
+        return values;
+    }
+
+    /** True nếu giỏ đọc từ replica dùng được ({@code cart} null là replica chưa có giỏ). */
+    public boolean accept(Cart cart, Long minVersion) {
+        return accept(cart != null, cart != null ? cart.getVersion() : null, minVersion);
+    }
+
+    /** Như {@link #accept(Cart, Long)} cho giá trị các field, field đầu tiên là {@code version}. */
+    public boolean accept(List<byte[]> values, Long minVersion) {
+        byte[] version = values != null && !values.isEmpty() ? values.get(0) : null;
+        return accept(version != null,
+                version != null ? Long.valueOf(new String(version, StandardCharsets.US_ASCII)) : null, minVersion);
+    }
+
+    /** Chuyển hash đọc từ replica thành {@link Cart} như Spring Data. */
+    public Cart read(String id, Map<byte[], byte[]> raw) {
+        RedisData data = new RedisData(raw);
+        data.setId(id);
+        data.setKeyspace(CartKeys.KEYSPACE);
+        return redisConverter.read(Cart.class, data);
+    }
+
+    @Override
+    public void destroy() {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+    }
+
+    private boolean accept(boolean present, Long version, Long minVersion) {
+        if (!present) {
+            count("missing");
+            return false;
+        }
+        if (minVersion != null && (version == null || version < minVersion)) {
+            count("stale");
+            return false;
+        }
+        count("replica");
+        return true;
+    }
+
+    // profile cluster: đọc topology như kết nối mặc định; standalone: primary + các replica khai báo trong nodes
+    private static RedisConfiguration topology(CartProperties.Replica config, RedisProperties redisProperties) {
+        if (redisProperties.getCluster() != null && redisProperties.getCluster().getNodes() != null) {
+            RedisClusterConfiguration cluster = new RedisClusterConfiguration(redisProperties.getCluster().getNodes());
+            if (redisProperties.getCluster().getMaxRedirects() != null) {
+                cluster.setMaxRedirects(redisProperties.getCluster().getMaxRedirects());
+            }
+            cluster.setUsername(redisProperties.getUsername());
+            cluster.setPassword(redisProperties.getPassword());
+            return cluster;
+        }
+        RedisStaticMasterReplicaConfiguration nodes =
+                new RedisStaticMasterReplicaConfiguration(redisProperties.getHost(), redisProperties.getPort());
+        for (String node : config.getNodes()) {
+            int colon = node.lastIndexOf(':');
+            nodes.addNode(node.substring(0, colon), Integer.parseInt(node.substring(colon + 1)));
+        }
+        nodes.setUsername(redisProperties.getUsername());
+        nodes.setPassword(redisProperties.getPassword());
+        nodes.setDatabase(redisProperties.getDatabase());
+        return nodes;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void count(String result) {
+        meterRegistry.counter("cart.replica.reads", "result", result).increment();
+    }
+}
@@ -4,13 +4,7 @@ import iuh.fit.se.entity.Cart;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
-
 @Repository
 public interface CartRepository extends CrudRepository<Cart, String> {
-    Optional<Cart> findByUserId(String userId);
-
-    void deleteByUserId(String userId);
-
-    boolean existsByUserId(String userId);
+    // Tra cứu theo id (CartKeys.idFor(userId)); không dùng index userId vì index set nằm khác slot với cart
 }
\ No newline at end of file
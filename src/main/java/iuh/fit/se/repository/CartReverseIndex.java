@@ -0,0 +1,67 @@
+package iuh.fit.se.repository;
+
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.entity.CartItem;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Index ngược biến thể -> giỏ: set {@code cart:rev:<variantKey>} chứa userId của các giỏ đang có biến thể đó.
+ * Được cập nhật sau mỗi lần ghi giỏ (chỉ với biến thể được thêm/bỏ) khi bật {@code cart.reprice.enabled}.
+ * Set không có TTL; phần tử của giỏ đã hết hạn được {@code CartRepricer} dọn khi gặp.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CartReverseIndex {
+    public static final String PREFIX = CartKeys.KEYSPACE + ":rev:";
+
+    StringRedisTemplate stringRedisTemplate;
+    CartProperties cartProperties;
+
+    public boolean enabled() {
+        return cartProperties.getReprice().isEnabled();
+    }
+
+    public static String key(String variantKey) {
+        return PREFIX + variantKey;
+    }
+
+    /** Đồng bộ index theo các dòng trước và sau một lần ghi giỏ. */
+    public void sync(String userId, Collection<CartItem> before, Collection<CartItem> after) {
+        if (!enabled()) {
+            return;
+        }
+        Set<String> oldVariants = variants(before);
+        Set<String> newVariants = variants(after);
+        for (String variant : newVariants) {
+            if (!oldVariants.contains(variant)) {
+                stringRedisTemplate.opsForSet().add(key(variant), userId);
+            }
+        }
+        for (String variant : oldVariants) {
+            if (!newVariants.contains(variant)) {
+                stringRedisTemplate.opsForSet().remove(key(variant), userId);
+            }
+        }
+    }
+
+    public void remove(String variantKey, String userId) {
+        stringRedisTemplate.opsForSet().remove(key(variantKey), userId);
+    }
+
+    private static Set<String> variants(Collection<CartItem> items) {
+        Set<String> variants = new HashSet<>();
+        for (CartItem item : items) {
+            variants.add(item.getVariantKey());
+        }
+        return variants;
+    }
+}
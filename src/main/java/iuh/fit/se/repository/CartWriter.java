@@ -0,0 +1,188 @@
+package iuh.fit.se.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.convert.IndexedData;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.data.redis.core.convert.SimpleIndexedPropertyValue;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Ghi {@link Cart} có kiểm tra version (compare-and-set) thay cho {@code CrudRepository#save}: hash của giỏ chỉ
+ * được thay nếu {@code version} trong Redis vẫn là version lúc đọc, nên hai request sửa cùng một giỏ không ghi đè
+ * thay đổi của nhau. Bên thua nhận {@link Conflict} và {@link #retrying} đọc lại giỏ, áp lại thao tác
+ * (tối đa {@code cart.write.max-attempts} lần, chờ ngẫu nhiên giữa các lần, hết lượt thì
+ * {@link ErrorCode#CART_CONFLICT}).
+ * <p>
+ * Layout giống Spring Data ({@code cart:<id>}, set {@code cart}, index nếu có {@code @Indexed}), kèm các field
+ * index dòng của {@link CartLineReader} trong cùng hash; summary/JSON render sẵn ({@code cart:<id>:summary},
+ * {@code cart:<id>:json}) được ghi trong cùng script. Chỉ hash (và hai key trên) được ghi
+ * trong script, set/index nằm khác slot ở chế độ cluster nên được thêm sau (idempotent).
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CartWriter {
+    /*
+     * KEYS: hash, summary, JSON giỏ (cùng hash tag). ARGV: version mong đợi ('' = giỏ chưa có version), TTL giây
+     * (0 = không hết hạn), version mới, fingerprint bộ luật của summary, summary JSON, JSON giỏ ('' = không có,
+     * xoá key), rồi từng cặp field/giá trị của hash.
+     */
+    private static final RedisScript<Long> SAVE_IF_VERSION = RedisScript.of("""
+            if (redis.call('HGET', KEYS[1], 'version') or '') ~= ARGV[1] then
+                return 0
+            end
+            redis.call('DEL', KEYS[1])
+            for i = 7, #ARGV, 1000 do
+                redis.call('HSET', KEYS[1], unpack(ARGV, i, math.min(i + 999, #ARGV)))
+            end
+            local ttl = tonumber(ARGV[2])
+            if ttl > 0 then
+                redis.call('EXPIRE', KEYS[1], ttl)
+            end
+            local rendered = {
+                {KEYS[2], ARGV[5], {'version', ARGV[3], 'rules', ARGV[4], 'json', ARGV[5]}},
+                {KEYS[3], ARGV[6], {'version', ARGV[3], 'json', ARGV[6]}}
+            }
+            for _, r in ipairs(rendered) do
+                if r[2] == '' then
+                    redis.call('DEL', r[1])
+                else
+                    redis.call('HSET', r[1], unpack(r[3]))
+                    if ttl > 0 then
+                        redis.call('EXPIRE', r[1], ttl)
+                    else
+                        redis.call('PERSIST', r[1])
+                    end
+                end
+            end
+            return 1
+            """, Long.class);
+
+    StringRedisTemplate stringRedisTemplate;
+    RedisConverter redisConverter;
+    CartProperties cartProperties;
+    MeterRegistry meterRegistry;
+
+    /** Giỏ đã bị ghi xen giữa lúc đọc và lúc lưu; không mang stack trace vì chỉ dùng để thử lại. */
+    public static final class Conflict extends RuntimeException {
+        Conflict() {
+            super("cart version changed", null, false, false);
+        }
+    }
+
+    /** Nội dung một lần ghi: các key của {@link #script()} (hash trước), tham số, các key set/index cần thêm id. */
+    public record Write(String id, List<String> keys, List<String> args, List<String> sets) {
+    }
+
+    public static RedisScript<Long> script() {
+        return SAVE_IF_VERSION;
+    }
+
+    /**
+     * Ghi {@code cart} nếu version trong Redis vẫn là {@code expectedVersion} (version lúc đọc, null nếu giỏ mới);
+     * ném {@link Conflict} nếu không.
+     */
+    public Cart save(Cart cart, Long expectedVersion) {
+        Write write = prepare(cart, expectedVersion);
+        Long result = stringRedisTemplate.execute(SAVE_IF_VERSION, write.keys(), write.args().toArray());
+        if (result == null || result != 1) {
+            throw conflict();
+        }
+        for (String set : write.sets()) {
+            stringRedisTemplate.opsForSet().add(set, write.id());
+        }
+        return cart;
+    }
+
+    /** Chuyển {@code cart} thành tham số của {@link #script()} như Spring Data ghi hash (bản reactive dùng chung). */
+    public Write prepare(Cart cart, Long expectedVersion) {
+        RedisData data = new RedisData();
+        redisConverter.write(cart, data);
+
+        List<String> args = new ArrayList<>();
+        args.add(expectedVersion == null ? "" : expectedVersion.toString());
+        Long ttl = data.getTimeToLive();
+        args.add(ttl != null && ttl > 0 ? ttl.toString() : "0");
+        args.add(cart.getVersion() == null ? "" : cart.getVersion().toString());
+        args.add(cart.getSummaryJson() != null && cart.getSummaryRules() != null ? cart.getSummaryRules() : "");
+        args.add(cart.getSummaryJson() != null ? cart.getSummaryJson() : "");
+        args.add(cart.getCartJson() != null ? cart.getCartJson() : "");
+        data.getBucket().rawMap().forEach((field, value) -> {
+            args.add(new String(field, StandardCharsets.UTF_8));
+            args.add(new String(value, StandardCharsets.UTF_8));
+        });
+        // index dòng để CartLineReader đọc một trang mà không duyệt cả hash
+        args.addAll(CartLineReader.indexFields(cart));
+
+        String key = CartKeys.KEYSPACE + ":" + data.getId();
+        List<String> sets = new ArrayList<>();
+        sets.add(CartKeys.KEYSPACE);
+        // giá trị được index không đổi trong vòng đời cart nên chỉ cần SADD, không phải dọn index cũ
+        for (IndexedData index : data.getIndexedData()) {
+            if (index instanceof SimpleIndexedPropertyValue value) {
+                sets.add(index.getKeyspace() + ":" + index.getIndexName() + ":" + value.getValue());
+            }
+        }
+        return new Write(data.getId(), List.of(key, key + CartKeys.SUMMARY_SUFFIX, key + CartKeys.JSON_SUFFIX),
+                args, sets);
+    }
+
+    /** Đánh dấu một lần ghi thua (metric {@code cart.write.conflicts}). */
+    public Conflict conflict() {
+        meterRegistry.counter("cart.write.conflicts").increment();
+        return new Conflict();
+    }
+
+    /** Chạy lại cả thao tác đọc-sửa-ghi khi gặp {@link Conflict}, chờ ngẫu nhiên giữa các lần. */
+    public <T> T retrying(Supplier<T> mutation) {
+        CartProperties.Write config = cartProperties.getWrite();
+        int maxAttempts = Math.max(1, config.getMaxAttempts());
+        long backoff = config.getBackoff().toNanos();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return mutation.get();
+            } catch (Conflict e) {
+                if (attempt >= maxAttempts) {
+                    throw new AppException(ErrorCode.CART_CONFLICT);
+                }
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(backoff + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AppException(ErrorCode.CART_CONFLICT);
+            }
+            backoff = Math.min(backoff * 2, config.getMaxBackoff().toNanos());
+        }
+    }
+
+    /** Như {@link #retrying(Supplier)}: đăng ký lại {@code mutation} (đọc lại giỏ) khi gặp {@link Conflict}. */
+    public <T> Mono<T> retrying(Mono<T> mutation) {
+        CartProperties.Write config = cartProperties.getWrite();
+        int maxAttempts = Math.max(1, config.getMaxAttempts());
+        return mutation.retryWhen(Retry.backoff(maxAttempts - 1, config.getBackoff())
+                .maxBackoff(config.getMaxBackoff())
+                .jitter(1.0)
+                .filter(Conflict.class::isInstance)
+                .onRetryExhaustedThrow((spec, signal) -> new AppException(ErrorCode.CART_CONFLICT)));
+    }
+}
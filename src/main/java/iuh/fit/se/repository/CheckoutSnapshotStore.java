@@ -0,0 +1,98 @@
+package iuh.fit.se.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.dto.response.CheckoutSnapshotResponse;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Lưu checkout snapshot dạng JSON ở {@code cart:<id>:checkout} (cùng slot với hash của cart ở chế độ cluster),
+ * sống {@code cart.checkout.ttl} và bị xoá mỗi lần giỏ thay đổi.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class CheckoutSnapshotStore {
+    // Chỉ lưu nếu cart vẫn ở version đã dùng để tính snapshot; nếu đã có snapshot (request song song) thì trả bản đó
+    private static final RedisScript<String> SAVE_IF_CURRENT = RedisScript.of("""
+            if (redis.call('HGET', KEYS[1], 'version') or '') ~= ARGV[1] then
+                return false
+            end
+            if redis.call('SET', KEYS[2], ARGV[2], 'NX', 'PX', ARGV[3]) then
+                return ARGV[2]
+            end
+            return redis.call('GET', KEYS[2])
+            """, String.class);
+
+    StringRedisTemplate stringRedisTemplate;
+    CartKeys cartKeys;
+    CartProperties cartProperties;
+    ObjectMapper objectMapper;
+
+    public Duration ttl() {
+        return cartProperties.getCheckout().getTtl();
+    }
+
+    public Optional<CheckoutSnapshotResponse> find(String userId) {
+        String json = stringRedisTemplate.opsForValue().get(key(userId));
+        return json == null ? Optional.empty() : Optional.ofNullable(read(json));
+    }
+
+    /** Kết quả {@link #store}: snapshot đang được lưu, và {@code created} nếu chính lần gọi này đã lưu nó. */
+    public record Stored(CheckoutSnapshotResponse snapshot, boolean created) {
+    }
+
+    /**
+     * Lưu snapshot nếu giỏ chưa đổi kể từ lúc tính; trả snapshot đang được lưu (của request này hoặc của
+     * request song song đến trước), hoặc chính {@code snapshot} nếu giỏ đã đổi và không lưu.
+     */
+    public Stored store(CheckoutSnapshotResponse snapshot) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(snapshot);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        String version = snapshot.getCartVersion() == null ? "" : snapshot.getCartVersion().toString();
+        String stored = stringRedisTemplate.execute(SAVE_IF_CURRENT,
+                List.of(cartKeys.hashKey(snapshot.getUserId()), key(snapshot.getUserId())),
+                version, json, String.valueOf(ttl().toMillis()));
+        if (stored == null) {
+            return new Stored(snapshot, false);
+        }
+        if (stored.equals(json)) {
+            return new Stored(snapshot, true);
+        }
+        CheckoutSnapshotResponse existing = read(stored);
+        return existing != null ? new Stored(existing, false) : new Stored(snapshot, false);
+    }
+
+    public void invalidate(String userId) {
+        stringRedisTemplate.delete(key(userId));
+    }
+
+    private String key(String userId) {
+        return cartKeys.hashKey(userId) + ":checkout";
+    }
+
+    private CheckoutSnapshotResponse read(String json) {
+        try {
+            return objectMapper.readValue(json, CheckoutSnapshotResponse.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Discarding unreadable checkout snapshot: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package iuh.fit.se.repository;
+
+import iuh.fit.se.configuration.CartProperties;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Giới hạn theo user dùng chung giữa các instance: cửa sổ trượt xấp xỉ bằng hai bộ đếm cửa sổ cố định
+ * {@code cart:rl:{user}:<window>} (hash tag để cả hai cùng slot trên cluster).
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ClusterRateLimiter {
+    // ARGV: độ dài cửa sổ (ms), trọng số cửa sổ trước (phần còn nằm trong cửa sổ trượt), giới hạn
+    private static final RedisScript<Long> ACQUIRE = RedisScript.of("""
+            local current = redis.call('INCR', KEYS[1])
+            if current == 1 then
+                redis.call('PEXPIRE', KEYS[1], ARGV[1] * 2)
+            end
+            local previous = tonumber(redis.call('GET', KEYS[2]) or '0')
+            if previous * tonumber(ARGV[2]) + current > tonumber(ARGV[3]) then
+                redis.call('DECR', KEYS[1])
+                return 0
+            end
+            return 1
+            """, Long.class);
+
+    StringRedisTemplate stringRedisTemplate;
+    CartProperties cartProperties;
+
+    public boolean enabled() {
+        return cartProperties.getRateLimit().getCluster().isEnabled();
+    }
+
+    /** Trả về 0 nếu được phép, ngược lại số mili giây tới khi cửa sổ hiện tại kết thúc. */
+    public long tryAcquire(String user) {
+        CartProperties.ClusterLimit config = cartProperties.getRateLimit().getCluster();
+        long windowMillis = config.getWindow().toMillis();
+        long now = System.currentTimeMillis();
+        long window = now / windowMillis;
+        long elapsed = now - window * windowMillis;
+        double previousWeight = 1.0 - (double) elapsed / windowMillis;
+        String prefix = CartKeys.KEYSPACE + ":rl:{" + user + "}:";
+        Long allowed = stringRedisTemplate.execute(ACQUIRE, List.of(prefix + window, prefix + (window - 1)),
+                String.valueOf(windowMillis), String.valueOf(previousWeight), String.valueOf(config.getLimit()));
+        return allowed != null && allowed == 1 ? 0 : windowMillis - elapsed;
+    }
+}
@@ -0,0 +1,20 @@
+package iuh.fit.se.repository;
+
+import iuh.fit.se.entity.Cart;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Kho lạnh cho giỏ hàng lâu không dùng, rẻ hơn Redis (xem {@code cart.tiering}).
+ */
+public interface ColdCartStore {
+    void put(Cart cart);
+
+    Optional<Cart> get(String userId);
+
+    void delete(String userId);
+
+    /** Xoá các giỏ đã nằm trong kho lâu hơn {@code retention}; trả về số giỏ đã xoá. */
+    int purgeOlderThan(Duration retention);
+}
@@ -0,0 +1,107 @@
+package iuh.fit.se.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.entity.Cart;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Kho lạnh trên đĩa cục bộ: mỗi giỏ là một file JSON {@code <dir>/<2 hex>/<userId hex>.json}
+ * (chia thư mục con để không dồn hàng triệu file vào một thư mục). Ghi qua file tạm + ATOMIC_MOVE nên
+ * không bao giờ đọc phải file ghi dở.
+ * <p>
+ * Job chuyển chạy trên một instance nhưng instance nào cũng có thể phải nạp lại giỏ, nên khi chạy nhiều
+ * instance {@code cart.tiering.directory} bắt buộc là volume dùng chung; thư mục cục bộ của từng instance làm
+ * giỏ đã chuyển "biến mất" với mọi instance khác.
+ */
+@Repository
+@ConditionalOnProperty(value = "cart.tiering.enabled", havingValue = "true")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class FileColdCartStore implements ColdCartStore {
+    Path root;
+    ObjectMapper objectMapper;
+
+    public FileColdCartStore(CartProperties cartProperties, ObjectMapper objectMapper) throws IOException {
+        this.root = Files.createDirectories(Path.of(cartProperties.getTiering().getDirectory()));
+        this.objectMapper = objectMapper;
+        log.info("Cold cart store at {}", root.toAbsolutePath());
+    }
+
+    @Override
+    public void put(Cart cart) {
+        Path file = fileFor(cart.getUserId());
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), "cart", ".tmp");
+            objectMapper.writeValue(tmp.toFile(), cart);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Optional<Cart> get(String userId) {
+        Path file = fileFor(userId);
+        try {
+            return Optional.of(objectMapper.readValue(file.toFile(), Cart.class));
+        } catch (NoSuchFileException | java.io.FileNotFoundException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void delete(String userId) {
+        try {
+            Files.deleteIfExists(fileFor(userId));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int purgeOlderThan(Duration retention) {
+        FileTime cutoff = FileTime.from(Instant.now().minus(retention));
+        AtomicInteger purged = new AtomicInteger();
+        try (Stream<Path> files = Files.walk(root, 2)) {
+            files.filter(f -> f.toString().endsWith(".json")).forEach(f -> {
+                try {
+                    if (Files.getLastModifiedTime(f).compareTo(cutoff) < 0 && Files.deleteIfExists(f)) {
+                        purged.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    log.warn("Cannot purge cold cart {}", f, e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return purged.get();
+    }
+
+    private Path fileFor(String userId) {
+        // hex để userId bất kỳ (có "/", "..", ...) vẫn là tên file hợp lệ và không thoát khỏi thư mục gốc
+        String name = HexFormat.of().formatHex(userId.getBytes(StandardCharsets.UTF_8));
+        String shard = Integer.toHexString(userId.hashCode() & 0xff);
+        return root.resolve(shard).resolve(name + ".json");
+    }
+}
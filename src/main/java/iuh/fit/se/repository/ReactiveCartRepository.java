@@ -0,0 +1,131 @@
+package iuh.fit.se.repository;
+
+import iuh.fit.se.entity.Cart;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Đọc/ghi {@link Cart} qua {@link ReactiveRedisTemplate} với đúng layout của {@code @RedisHash("cart")}
+ * (hash {@code cart:<id>}, set {@code cart}, và index {@code cart:<id>:idx} nếu entity có {@code @Indexed}),
+ * nên bản reactive và bản blocking dùng chung dữ liệu. {@code id} là {@link CartKeys#idFor(String)}.
+ */
+@Repository
+@Profile("reactive")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ReactiveCartRepository {
+    private static final String KEYSPACE = CartKeys.KEYSPACE;
+
+    ReactiveRedisTemplate<byte[], byte[]> reactiveBytesRedisTemplate;
+    RedisConverter redisConverter;
+    CartReplica cartReplica;
+    CartWriter cartWriter;
+
+    public Mono<Cart> findById(String id) {
+        return find(reactiveBytesRedisTemplate, id);
+    }
+
+    /** Giỏ đọc từ replica ({@link CartReplica}); empty nếu tắt, replica chưa có giỏ hoặc chưa tới {@code minVersion}. */
+    public Mono<Cart> findOnReplica(String id, Long minVersion) {
+        if (!cartReplica.enabled()) {
+            return Mono.empty();
+        }
+        return find(cartReplica.reactiveTemplate(), id)
+                .singleOptional()
+                .filter(cart -> cartReplica.accept(cart.orElse(null), minVersion))
+                .map(Optional::get);
+    }
+
+    private Mono<Cart> find(ReactiveRedisTemplate<byte[], byte[]> template, String id) {
+        return template.<byte[], byte[]>opsForHash()
+                .entries(bytes(KEYSPACE + ":" + id))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .filter(raw -> !raw.isEmpty())
+                .map(raw -> {
+                    RedisData data = new RedisData(raw);
+                    data.setId(id);
+                    data.setKeyspace(KEYSPACE);
+                    return redisConverter.read(Cart.class, data);
+                });
+    }
+
+    /**
+     * Ghi {@code cart} nếu version trong Redis vẫn là {@code expectedVersion}, cùng script với bản blocking
+     * ({@link CartWriter}); lỗi {@link CartWriter.Conflict} nếu giỏ đã bị ghi xen giữa.
+     */
+    public Mono<Cart> save(Cart cart, Long expectedVersion) {
+        CartWriter.Write write = cartWriter.prepare(cart, expectedVersion);
+        List<byte[]> args = write.args().stream().map(ReactiveCartRepository::bytes).toList();
+        List<byte[]> keys = write.keys().stream().map(ReactiveCartRepository::bytes).toList();
+        return reactiveBytesRedisTemplate.execute(CartWriter.script(), keys, args)
+                .next()
+                .flatMap(result -> result == 1
+                        ? Flux.fromIterable(write.sets())
+                                .concatMap(set -> reactiveBytesRedisTemplate.opsForSet().add(bytes(set), bytes(write.id())))
+                                .then(Mono.just(cart))
+                        : Mono.error(cartWriter.conflict()));
+    }
+
+    /**
+     * {@code version} của giỏ rồi giá trị (byte nguyên bản, null nếu không có) của vài field trong key render sẵn
+     * {@code cart:<id><suffix>} (xem {@link CartReplica#rendered}).
+     */
+    public Mono<List<byte[]>> rendered(String id, String suffix, List<byte[]> fields) {
+        return rendered(reactiveBytesRedisTemplate, id, suffix, fields);
+    }
+
+    /**
+     * Như {@link #rendered(String, String, List)} nhưng đọc từ replica nếu replica đã tới {@code minVersion},
+     * không thì từ primary.
+     */
+    public Mono<List<byte[]>> rendered(String id, String suffix, List<byte[]> fields, Long minVersion) {
+        if (!cartReplica.enabled()) {
+            return rendered(id, suffix, fields);
+        }
+        return rendered(cartReplica.reactiveTemplate(), id, suffix, fields)
+                .filter(values -> cartReplica.accept(values, minVersion))
+                .switchIfEmpty(Mono.defer(() -> rendered(id, suffix, fields)));
+    }
+
+    private static Mono<List<byte[]>> rendered(ReactiveRedisTemplate<byte[], byte[]> template, String id,
+                                               String suffix, List<byte[]> fields) {
+        String key = KEYSPACE + ":" + id;
+        return Mono.zip(template.<byte[], byte[]>opsForHash().get(bytes(key), bytes("version")).singleOptional(),
+                        template.<byte[], byte[]>opsForHash().multiGet(bytes(key + suffix), fields))
+                .map(read -> {
+                    List<byte[]> values = new ArrayList<>(fields.size() + 1);
+                    values.add(read.getT1().orElse(null));
+                    values.addAll(read.getT2());
+                    return values;
+                });
+    }
+
+    /** Gia hạn TTL của giỏ và các key đi kèm ({@link CartExpiry#keys}) mà không ghi lại hash. */
+    public Mono<Boolean> touch(String id, Duration ttl) {
+        List<byte[]> keys = CartExpiry.keys(KEYSPACE + ":" + id).stream().map(ReactiveCartRepository::bytes).toList();
+        List<byte[]> args = List.of(bytes(String.valueOf(ttl.toSeconds())));
+        return reactiveBytesRedisTemplate.execute(CartExpiry.script(), keys, args)
+                .next()
+                .map(touched -> touched == 1)
+                .defaultIfEmpty(false);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,54 @@
+package iuh.fit.se.repository;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Khoá có thời hạn trên Redis cho job chạy một instance ({@code SET key token NX PX}).
+ * Gia hạn và nhả khoá so khớp token bằng Lua, để instance đã mất khoá (hết hạn) không xoá khoá của instance khác.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RedisLeaseLock {
+    private static final RedisScript<Long> RELEASE = RedisScript.of("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+    private static final RedisScript<Long> RENEW = RedisScript.of("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0
+            """, Long.class);
+
+    StringRedisTemplate stringRedisTemplate;
+
+    /** Token của khoá nếu lấy được, rỗng nếu instance khác đang giữ. */
+    public Optional<String> tryAcquire(String key, Duration ttl) {
+        String token = UUID.randomUUID().toString();
+        Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(key, token, ttl);
+        return Boolean.TRUE.equals(acquired) ? Optional.of(token) : Optional.empty();
+    }
+
+    /** Gia hạn khoá; false nếu khoá đã hết hạn hoặc thuộc về instance khác. */
+    public boolean renew(String key, String token, Duration ttl) {
+        Long result = stringRedisTemplate.execute(RENEW, List.of(key), token, String.valueOf(ttl.toMillis()));
+        return result != null && result == 1L;
+    }
+
+    public void release(String key, String token) {
+        stringRedisTemplate.execute(RELEASE, List.of(key), token);
+    }
+}
@@ -0,0 +1,297 @@
+package iuh.fit.se.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.entity.CartItem;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Giữ hàng tạm cho flash sale ({@code cart.reservation.enabled}). Với mỗi biến thể đã seed
+ * ({@code PUT /internal/stock}, số lượng lấy từ product-service) Redis giữ:
+ * <ul>
+ *     <li>{@code cart:stock:{<variantKey>}}: số còn có thể giữ</li>
+ *     <li>{@code cart:stock:{<variantKey>}:holds}: userId -> số lượng đang giữ (bằng số lượng biến thể trong giỏ)</li>
+ *     <li>{@code cart:stock:{<variantKey>}:expiry}: userId -> thời điểm hết hạn (epoch millis)</li>
+ * </ul>
+ * Ba key cùng hash tag nên mỗi thay đổi là một script: số còn lại + tổng đang giữ + số đã bán luôn bằng số đã seed,
+ * không bao giờ giữ quá. Mỗi lần ghi giỏ đặt lượt giữ bằng số lượng mới của các biến thể vừa đổi (idempotent, an
+ * toàn khi {@link CartWriter} thử lại), checkout giữ lại (gia hạn) mọi dòng ({@link #confirm}) nhưng chưa bán.
+ * Hàng chỉ được chốt bán ({@link #commit}) khi order-service xác nhận đơn của một snapshot checkout: số lượng của
+ * snapshot bị trừ khỏi lượt giữ mà không trả vào số còn lại, mỗi snapshot đúng một lần, nên xoá dòng sau đó hay
+ * reaper không trả lại hàng đã bán, còn checkout bị bỏ dở chỉ giữ hàng tới khi reaper nhả. Không đủ hàng thì
+ * {@link ErrorCode#OUT_OF_STOCK}. Lượt giữ quá {@code hold-ttl} được {@code StockReservationReaper} trả lại.
+ * Biến thể chưa seed không bị giới hạn.
+ * Kiểm tra tồn kho chỉ dùng Redis của cart-service, không gọi product-service.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class StockReservations {
+    public static final String PREFIX = CartKeys.KEYSPACE + ":stock:";
+    /** Set các biến thể đã seed, để reaper duyệt. */
+    public static final String VARIANTS = PREFIX + "variants";
+
+    // ARGV: userId, số lượng muốn giữ (tuyệt đối), hết hạn (epoch millis). -1: chưa seed, 0: không đủ hàng, 1: đã giữ
+    private static final RedisScript<Long> HOLD = RedisScript.of("""
+            local available = redis.call('GET', KEYS[1])
+            if not available then
+                return -1
+            end
+            local wanted = tonumber(ARGV[2])
+            local delta = wanted - tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '0')
+            if delta > 0 and tonumber(available) < delta then
+                return 0
+            end
+            if delta ~= 0 then
+                redis.call('DECRBY', KEYS[1], delta)
+            end
+            if wanted > 0 then
+                redis.call('HSET', KEYS[2], ARGV[1], wanted)
+                redis.call('ZADD', KEYS[3], ARGV[3], ARGV[1])
+            else
+                redis.call('HDEL', KEYS[2], ARGV[1])
+                redis.call('ZREM', KEYS[3], ARGV[1])
+            end
+            return 1
+            """, Long.class);
+
+    /*
+     * ARGV: userId, số lượng đã bán. Trừ khỏi lượt giữ (không trả vào số còn lại); phần không còn được giữ (reaper
+     * đã nhả) lấy từ số còn lại nếu còn. Trả về số lượng đã chốt, -1 nếu biến thể chưa seed
+     */
+    private static final RedisScript<Long> COMMIT = RedisScript.of("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return -1
+            end
+            local held = tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '0')
+            local sold = tonumber(ARGV[2])
+            local taken = math.min(held, sold)
+            if held > taken then
+                redis.call('HSET', KEYS[2], ARGV[1], held - taken)
+            else
+                redis.call('HDEL', KEYS[2], ARGV[1])
+                redis.call('ZREM', KEYS[3], ARGV[1])
+            end
+            local available = tonumber(redis.call('GET', KEYS[1]) or '0')
+            local missing = math.min(sold - taken, available)
+            if missing > 0 then
+                redis.call('DECRBY', KEYS[1], missing)
+                taken = taken + missing
+            end
+            return taken
+            """, Long.class);
+
+    // ARGV: bây giờ (epoch millis), số lượt tối đa. Trả về số lượng đã trả lại
+    private static final RedisScript<Long> REAP = RedisScript.of("""
+            local expired = redis.call('ZRANGEBYSCORE', KEYS[3], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2]))
+            local released = 0
+            for _, user in ipairs(expired) do
+                local held = tonumber(redis.call('HGET', KEYS[2], user) or '0')
+                if held > 0 and redis.call('EXISTS', KEYS[1]) == 1 then
+                    redis.call('INCRBY', KEYS[1], held)
+                    released = released + held
+                end
+                redis.call('HDEL', KEYS[2], user)
+                redis.call('ZREM', KEYS[3], user)
+            end
+            return released
+            """, Long.class);
+
+    // ARGV: tổng số hàng của đợt bán; số còn lại = tổng - đang giữ (không âm). Trả về {còn lại, đang giữ}
+    private static final RedisScript<List> SEED = RedisScript.of("""
+            local held = 0
+            for _, quantity in ipairs(redis.call('HVALS', KEYS[2])) do
+                held = held + tonumber(quantity)
+            end
+            local available = math.max(0, tonumber(ARGV[1]) - held)
+            redis.call('SET', KEYS[1], available)
+            return {available, held}
+            """, List.class);
+
+    StringRedisTemplate stringRedisTemplate;
+    CartKeys cartKeys;
+    CartProperties cartProperties;
+    MeterRegistry meterRegistry;
+
+    /** Tồn kho của một biến thể đã seed. */
+    public record Stock(String variantKey, long available, long held) {
+    }
+
+    public boolean enabled() {
+        return cartProperties.getReservation().isEnabled();
+    }
+
+    public static String variantKey(String productId, Map<String, String> options) {
+        return CartItem.builder().productId(productId).options(options).build().getVariantKey();
+    }
+
+    /** Bắt đầu (hoặc đặt lại) giới hạn cho biến thể với tổng {@code total}; các lượt đang giữ được trừ ra. */
+    public Stock seed(String variantKey, long total) {
+        List<?> result = stringRedisTemplate.execute(SEED, keys(variantKey), String.valueOf(total));
+        stringRedisTemplate.opsForSet().add(VARIANTS, variantKey);
+        return new Stock(variantKey, ((Number) result.get(0)).longValue(), ((Number) result.get(1)).longValue());
+    }
+
+    /** Bỏ giới hạn của biến thể (hết đợt bán): xoá số còn lại và mọi lượt giữ. */
+    public void unseed(String variantKey) {
+        stringRedisTemplate.opsForSet().remove(VARIANTS, variantKey);
+        stringRedisTemplate.unlink(keys(variantKey));
+    }
+
+    /**
+     * Đặt lượt giữ theo số lượng mới của các biến thể đổi giữa {@code before} và {@code after} (gọi trước khi lưu
+     * giỏ). Không đủ hàng thì trả các lượt vừa đặt về như cũ và ném {@link ErrorCode#OUT_OF_STOCK}.
+     */
+    public void hold(String userId, Collection<CartItem> before, Collection<CartItem> after) {
+        if (!enabled()) {
+            return;
+        }
+        Map<String, Integer> previous = quantities(before);
+        Map<String, Integer> current = quantities(after);
+        Set<String> variants = new HashSet<>(previous.keySet());
+        variants.addAll(current.keySet());
+        // trả hàng trước khi giữ thêm (đổi size trong cùng một lần ghi)
+        List<String> changed = variants.stream()
+                .filter(variant -> !previous.getOrDefault(variant, 0).equals(current.getOrDefault(variant, 0)))
+                .sorted(Comparator.comparingInt(variant -> current.getOrDefault(variant, 0) - previous.getOrDefault(variant, 0)))
+                .toList();
+
+        long expiry = expiry();
+        List<String> held = new ArrayList<>();
+        for (String variant : changed) {
+            long result = execute(variant, userId, current.getOrDefault(variant, 0), expiry);
+            if (result == 0) {
+                for (String done : held) {
+                    execute(done, userId, previous.getOrDefault(done, 0), expiry);
+                }
+                count("rejected");
+                throw new AppException(ErrorCode.OUT_OF_STOCK);
+            }
+            if (result == 1) {
+                held.add(variant);
+                count("held");
+            }
+        }
+    }
+
+    /**
+     * Trả các lượt giữ của {@link #hold} về số lượng của {@code before} khi giỏ không được lưu (thua
+     * {@link CartWriter} hoặc lỗi ghi); lượt nào không giữ lại được thì bỏ qua, checkout sẽ giữ lại theo giỏ thực tế.
+     */
+    public void revert(String userId, Collection<CartItem> before, Collection<CartItem> after) {
+        if (!enabled()) {
+            return;
+        }
+        Map<String, Integer> previous = quantities(before);
+        Map<String, Integer> current = quantities(after);
+        Set<String> variants = new HashSet<>(previous.keySet());
+        variants.addAll(current.keySet());
+        long expiry = expiry();
+        for (String variant : variants) {
+            int quantity = previous.getOrDefault(variant, 0);
+            if (quantity != current.getOrDefault(variant, 0)) {
+                execute(variant, userId, quantity, expiry);
+            }
+        }
+    }
+
+    /** Giữ lại (gia hạn) đúng số lượng của mọi dòng trước checkout; ném {@link ErrorCode#OUT_OF_STOCK} nếu thiếu. */
+    public void confirm(String userId, Collection<CartItem> items) {
+        if (!enabled()) {
+            return;
+        }
+        long expiry = expiry();
+        for (Map.Entry<String, Integer> line : quantities(items).entrySet()) {
+            if (execute(line.getKey(), userId, line.getValue(), expiry) == 0) {
+                count("rejected");
+                throw new AppException(ErrorCode.OUT_OF_STOCK);
+            }
+        }
+    }
+
+    /**
+     * Chốt bán {@code sold} (biến thể -> số lượng, từ snapshot checkout của đơn đã đặt): trừ khỏi lượt giữ của user,
+     * số lượng không quay lại số còn lại. Mỗi {@code snapshotId} chỉ được chốt một lần (đánh dấu ở
+     * {@code cart:<userId>:committed}, kể cả khi tắt giữ hàng), nên order-service thử lại không bán hai lần. Trả
+     * false nếu đã chốt trước đó.
+     */
+    public boolean commit(String userId, String snapshotId, Map<String, Integer> sold) {
+        String marker = committedKey(userId);
+        if (!Boolean.TRUE.equals(stringRedisTemplate.opsForHash().putIfAbsent(marker, snapshotId, "1"))) {
+            return false;
+        }
+        stringRedisTemplate.expire(marker, cartProperties.getReservation().getCommittedTtl());
+        if (!enabled()) {
+            return true;
+        }
+        for (Map.Entry<String, Integer> line : sold.entrySet()) {
+            Long committed = stringRedisTemplate.execute(COMMIT, keys(line.getKey()),
+                    userId, String.valueOf(line.getValue()));
+            if (committed == null || committed < 0) {
+                continue;
+            }
+            if (committed > 0) {
+                meterRegistry.counter("cart.reservation.committed").increment(committed);
+            }
+            if (committed < line.getValue()) {
+                // lượt giữ đã bị nhả và hàng đã giữ cho người khác: đơn vượt số seed, cần order-service xử lý
+                count("short");
+            }
+        }
+        return true;
+    }
+
+    /** True nếu {@code snapshotId} đã được chốt bán bởi {@link #commit}. */
+    public boolean committed(String userId, String snapshotId) {
+        return stringRedisTemplate.opsForHash().hasKey(committedKey(userId), snapshotId);
+    }
+
+    /** Trả lại tối đa {@code limit} lượt giữ đã hết hạn của biến thể; trả về số lượng đã trả. */
+    public long reap(String variantKey, long nowMillis, int limit) {
+        Long released = stringRedisTemplate.execute(REAP, keys(variantKey),
+                String.valueOf(nowMillis), String.valueOf(limit));
+        return released == null ? 0 : released;
+    }
+
+    private long execute(String variantKey, String userId, int quantity, long expiry) {
+        Long result = stringRedisTemplate.execute(HOLD, keys(variantKey),
+                userId, String.valueOf(quantity), String.valueOf(expiry));
+        return result == null ? -1 : result;
+    }
+
+    private long expiry() {
+        return System.currentTimeMillis() + cartProperties.getReservation().getHoldTtl().toMillis();
+    }
+
+    private static List<String> keys(String variantKey) {
+        String base = PREFIX + "{" + variantKey + "}";
+        return List.of(base, base + ":holds", base + ":expiry");
+    }
+
+    private static Map<String, Integer> quantities(Collection<CartItem> items) {
+        Map<String, Integer> quantities = new HashMap<>();
+        for (CartItem item : items) {
+            if (item.getQuantity() != null) {
+                quantities.merge(item.getVariantKey(), item.getQuantity(), Integer::sum);
+            }
+        }
+        return quantities;
+    }
+
+    private String committedKey(String userId) {
+        return cartKeys.hashKey(userId) + ":committed";
+    }
+
+    private void count(String result) {
+        meterRegistry.counter("cart.reservation.holds", "result", result).increment();
+    }
+}
@@ -1,7 +1,9 @@
 package iuh.fit.se.repository.httpclient;
 
 
+import feign.Request;
 import iuh.fit.se.configuration.AuthenticationRequestInterceptor;
+import iuh.fit.se.configuration.DeadlinePropagationInterceptor;
 import iuh.fit.se.dto.request.SearchSizeAndIDRequest;
 import iuh.fit.se.dto.response.ApiResponse;
 import iuh.fit.se.dto.response.OrderItemProductResponse;
@@ -11,11 +13,15 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 
-@FeignClient(name = "product-service", configuration = {AuthenticationRequestInterceptor.class})
+@FeignClient(name = "product-service", configuration = {AuthenticationRequestInterceptor.class, DeadlinePropagationInterceptor.class})
 public interface ProductClient {
     @PostMapping(value = "/searchBySizeAndID")
     ApiResponse<OrderItemProductResponse> searchBySizeAndID( @RequestBody SearchSizeAndIDRequest request);
 
+    // Timeout theo deadline còn lại của request thay cho connect/read-timeout cố định
+    @PostMapping(value = "/searchBySizeAndID")
+    ApiResponse<OrderItemProductResponse> searchBySizeAndID(@RequestBody SearchSizeAndIDRequest request, Request.Options options);
+
     @PostMapping(value= "/search")
     ApiResponse<ProductResponse> searchById(@RequestParam("id") String id);
-}
\ No newline at end of file
+}
@@ -0,0 +1,16 @@
+package iuh.fit.se.repository.httpclient;
+
+import iuh.fit.se.dto.request.SearchSizeAndIDRequest;
+import iuh.fit.se.dto.response.ApiResponse;
+import iuh.fit.se.dto.response.OrderItemProductResponse;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.service.annotation.PostExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Bản non-blocking của {@link ProductClient} cho profile "reactive" (WebClient qua HTTP interface).
+ */
+public interface ReactiveProductClient {
+    @PostExchange("/searchBySizeAndID")
+    Mono<ApiResponse<OrderItemProductResponse>> searchBySizeAndID(@RequestBody SearchSizeAndIDRequest request);
+}
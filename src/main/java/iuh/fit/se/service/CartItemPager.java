@@ -0,0 +1,75 @@
+package iuh.fit.se.service;
+
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.dto.response.CartItemsPageResponse;
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.entity.CartItem;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.repository.CartExpiry;
+import iuh.fit.se.repository.CartLineReader;
+import iuh.fit.se.repository.CartMetadataStore;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Phân trang dòng giỏ theo thứ tự thêm vào ({@code cursor} là vị trí dòng kế tiếp), chỉ đọc các dòng của trang
+ * từ Redis. Dùng chung cho bản blocking và reactive (I/O blocking, bản reactive gọi trên boundedElastic).
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CartItemPager {
+    CartLineReader cartLineReader;
+    CartTiering cartTiering;
+    CartExpiry cartExpiry;
+    CartMetadataStore cartMetadataStore;
+    CartProperties cartProperties;
+
+    public CartItemsPageResponse page(String userId, String cursor, Integer limit) {
+        int from = parseCursor(cursor);
+        CartProperties.Lines config = cartProperties.getLines();
+        if (limit != null && limit <= 0) {
+            throw new AppException(ErrorCode.INVALID_ARGUMENT);
+        }
+        int size = Math.min(limit != null ? limit : config.getDefaultLimit(), config.getMaxLimit());
+
+        Optional<CartLineReader.Page> page = cartLineReader.page(userId, from, size);
+        if (page.isEmpty() && cartTiering.rehydrate(userId).isPresent()) {
+            page = cartLineReader.page(userId, from, size);
+        }
+        if (page.isEmpty()) {
+            return CartItemsPageResponse.builder().items(List.of()).totalLines(0).build();
+        }
+        cartExpiry.touch(userId);
+
+        List<CartItem> items = page.get().items();
+        cartMetadataStore.hydrate(Cart.builder().items(items).build());
+        return CartItemsPageResponse.builder()
+                .items(items)
+                .totalLines(page.get().totalLines())
+                .nextCursor(page.get().nextCursor() != null ? String.valueOf(page.get().nextCursor()) : null)
+                .cartVersion(page.get().version())
+                .build();
+    }
+
+    private static int parseCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+        try {
+            int from = Integer.parseInt(cursor);
+            if (from < 0) {
+                throw new AppException(ErrorCode.INVALID_ARGUMENT);
+            }
+            return from;
+        } catch (NumberFormatException e) {
+            throw new AppException(ErrorCode.INVALID_ARGUMENT);
+        }
+    }
+}
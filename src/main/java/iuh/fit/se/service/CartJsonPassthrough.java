@@ -0,0 +1,109 @@
+package iuh.fit.se.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.dto.response.RawJson;
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.repository.CartExpiry;
+import iuh.fit.se.repository.CartKeys;
+import iuh.fit.se.repository.CartReplica;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JSON của giỏ render sẵn lúc ghi ({@code cart.passthrough.enabled}), được {@code CartWriter} lưu cùng lần ghi vào
+ * {@code cart:<id>:json} (cùng hash tag, cùng TTL với giỏ; không nằm trong hash nên đọc/ghi giỏ không phải kéo theo
+ * một bản sao của chính nó) kèm version của cart. {@code GET /{userId}} đọc nguyên các byte đó bằng một pipeline
+ * HGET + HMGET và chép vào
+ * {@link iuh.fit.se.dto.response.ApiResponse} qua {@link RawJson}, không dựng {@link Cart}. Version không khớp
+ * (giỏ được ghi bởi đường khác như {@code CartRepricer}) thì đọc giỏ như thường.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CartJsonPassthrough {
+    // version của JSON, JSON trong cart:<id>:json
+    private static final List<byte[]> FIELDS = List.of(bytes("version"), bytes("json"));
+
+    StringRedisTemplate stringRedisTemplate;
+    CartKeys cartKeys;
+    CartReplica cartReplica;
+    CartExpiry cartExpiry;
+    CartProperties cartProperties;
+    ObjectMapper objectMapper;
+    MeterRegistry meterRegistry;
+
+    public boolean enabled() {
+        return cartProperties.getPassthrough().isEnabled();
+    }
+
+    /**
+     * Render {@code cart} (đã tính tổng tiền, tăng version và gán TTL) để được lưu cùng lần ghi; khi tắt thì lần
+     * ghi xoá JSON cũ. Gọi trước khi bỏ tên/ảnh ở chế độ metadata reference.
+     */
+    public void apply(Cart cart) {
+        if (!enabled()) {
+            clear(cart);
+            return;
+        }
+        try {
+            cart.setCartJson(objectMapper.writeValueAsString(cart));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Bỏ JSON đã render khỏi giỏ; lần ghi xoá {@code cart:<id>:json}, các lần đọc sau đọc giỏ như thường. */
+    public static void clear(Cart cart) {
+        cart.setCartJson(null);
+    }
+
+    /**
+     * JSON của giỏ nếu còn khớp version; gia hạn giỏ như khi đọc giỏ. Đọc từ replica nếu replica đã tới
+     * {@code minVersion} (xem {@link CartReplica}), không thì từ primary.
+     */
+    public Optional<RawJson> find(String userId, Long minVersion) {
+        List<byte[]> values = cartReplica.rendered(userId, CartKeys.JSON_SUFFIX, FIELDS, minVersion).orElseGet(() ->
+                CartReplica.rendered(stringRedisTemplate, cartKeys.hashKey(userId), CartKeys.JSON_SUFFIX, FIELDS));
+        Optional<RawJson> json = select(values);
+        json.ifPresent(found -> cartExpiry.touch(userId));
+        return json;
+    }
+
+    /** Field cần đọc từ {@code cart:<id>:json} cho {@link #select} (bản reactive tự đọc bằng client của nó). */
+    public static List<byte[]> fields() {
+        return FIELDS;
+    }
+
+    /**
+     * JSON trong {@code values} (version của giỏ rồi giá trị của {@link #fields()}) nếu được render đúng version
+     * hiện tại của giỏ.
+     */
+    public Optional<RawJson> select(List<byte[]> values) {
+        byte[] version = values != null ? values.get(0) : null;
+        if (version == null || !Arrays.equals(version, values.get(1)) || values.get(2) == null) {
+            count("miss");
+            return Optional.empty();
+        }
+        count("hit");
+        return Optional.of(new RawJson(values.get(2)));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void count(String result) {
+        meterRegistry.counter("cart.passthrough", "result", result).increment();
+    }
+}
@@ -0,0 +1,410 @@
+package iuh.fit.se.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.entity.CartItem;
+import iuh.fit.se.event.CartEventPublisher;
+import iuh.fit.se.event.CartEvents;
+import iuh.fit.se.event.PriceChangeMessage;
+import iuh.fit.se.pricing.PricingRulesRegistry;
+import iuh.fit.se.repository.CartKeys;
+import iuh.fit.se.repository.CartKeyspaceScanner;
+import iuh.fit.se.repository.CartRepository;
+import iuh.fit.se.repository.CartReverseIndex;
+import iuh.fit.se.repository.CheckoutSnapshotStore;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.stream.StreamListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cập nhật giá cho các giỏ đang chứa một biến thể khi nhận tin đổi giá từ Redis Stream {@code cart.reprice.stream}.
+ * <p>
+ * Các instance đọc stream qua cùng consumer group {@code cart.reprice.group} nên mỗi tin chỉ được một instance xử lý.
+ * Tin chỉ được XACK sau khi đã cập nhật xong mọi giỏ của biến thể; tin của instance dừng giữa chừng nằm lại trong
+ * pending list: instance cùng tên consumer đọc lại khi khởi động, instance khác XCLAIM sau {@code claim-idle}.
+ * <p>
+ * Tin được gom theo biến thể (chỉ giữ giá mới nhất) và xử lý tuần tự trên thread nền: đọc userId từ
+ * {@link CartReverseIndex} theo từng lượt SSCAN, cập nhật song song {@code parallelism} giỏ, giới hạn
+ * {@code rate-per-second}. Mỗi giỏ chỉ ghi các field đã đổi bằng một script kiểm tra {@code version}
+ * (giỏ bị ghi xen giữa thì đọc lại, tối đa {@code max-attempts} lần). Dòng có {@code snapshotAt} mới hơn
+ * thời điểm của tin được giữ nguyên, nên tin đến trễ hay bị xử lý lại sau XCLAIM không ghi đè giá mới.
+ */
+@Component
+@ConditionalOnProperty(prefix = "cart.reprice", name = "enabled", havingValue = "true")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class CartRepricer implements StreamListener<String, MapRecord<String, String, String>>,
+        InitializingBean, DisposableBean {
+    /** Field của entry trên stream chứa JSON {@link PriceChangeMessage}. */
+    public static final String PAYLOAD_FIELD = "payload";
+
+    private static final RedisScript<Long> HSET_IF_VERSION = RedisScript.of("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return -1
+            end
+            if (redis.call('HGET', KEYS[1], 'version') or '') ~= ARGV[1] then
+                return 0
+            end
+            local n = tonumber(ARGV[2])
+            for i = 0, n - 1 do
+                redis.call('HSET', KEYS[1], ARGV[3 + i * 2], ARGV[4 + i * 2])
+            end
+            for i = 3 + n * 2, #ARGV do
+                redis.call('HDEL', KEYS[1], ARGV[i])
+            end
+            return 1
+            """, Long.class);
+
+    record PriceChange(BigDecimal price, long at) {
+    }
+
+    // giá mới nhất của một biến thể cùng id các entry đã gom vào, XACK cùng lúc khi xử lý xong
+    record Pending(PriceChange change, List<RecordId> ids) {
+    }
+
+    CartRepository cartRepository;
+    CartKeys cartKeys;
+    CartReverseIndex cartReverseIndex;
+    CartKeyspaceScanner scanner;
+    CartEventPublisher cartEventPublisher;
+    CheckoutSnapshotStore checkoutSnapshotStore;
+    PricingRulesRegistry pricingRulesRegistry;
+    RedisConverter redisConverter;
+    StringRedisTemplate stringRedisTemplate;
+    ObjectMapper objectMapper;
+    CartProperties.Reprice config;
+    MeterRegistry meterRegistry;
+    Timer variantTimer;
+    String consumer;
+    // variantKey -> giá mới nhất chưa xử lý; queue giữ thứ tự các variantKey đang chờ
+    ConcurrentMap<String, Pending> pending = new ConcurrentHashMap<>();
+    BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    ExecutorService pool;
+    Thread worker;
+
+    public CartRepricer(CartRepository cartRepository, CartKeys cartKeys, CartReverseIndex cartReverseIndex,
+                        CartKeyspaceScanner scanner, CartEventPublisher cartEventPublisher,
+                        CheckoutSnapshotStore checkoutSnapshotStore, PricingRulesRegistry pricingRulesRegistry,
+                        RedisConverter redisConverter, StringRedisTemplate stringRedisTemplate,
+                        ObjectMapper objectMapper, CartProperties cartProperties, MeterRegistry meterRegistry) {
+        this.cartRepository = cartRepository;
+        this.cartKeys = cartKeys;
+        this.cartReverseIndex = cartReverseIndex;
+        this.scanner = scanner;
+        this.cartEventPublisher = cartEventPublisher;
+        this.checkoutSnapshotStore = checkoutSnapshotStore;
+        this.pricingRulesRegistry = pricingRulesRegistry;
+        this.redisConverter = redisConverter;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.config = cartProperties.getReprice();
+        this.meterRegistry = meterRegistry;
+        this.consumer = StringUtils.hasText(config.getConsumer()) ? config.getConsumer() : hostName();
+        this.variantTimer = Timer.builder("cart.reprice.variant")
+                .description("Time to reprice every cart holding one variant")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        meterRegistry.gauge("cart.reprice.pending", queue, BlockingQueue::size);
+        this.pool = Executors.newFixedThreadPool(config.getParallelism(),
+                Thread.ofPlatform().name("cart-reprice-", 0).daemon().factory());
+        this.worker = Thread.ofPlatform().name("cart-reprice").daemon().unstarted(this::drainLoop);
+    }
+
+    /** Tên consumer của instance trong group, cố định qua các lần khởi động để đọc lại pending list của mình. */
+    public String consumer() {
+        return consumer;
+    }
+
+    @Override
+    public void onMessage(MapRecord<String, String, String> record) {
+        PriceChangeMessage change;
+        try {
+            change = objectMapper.readValue(record.getValue().getOrDefault(PAYLOAD_FIELD, ""), PriceChangeMessage.class);
+        } catch (IOException e) {
+            log.warn("Ignoring malformed price change {}: {}", record.getId(), e.getMessage());
+            acknowledge(List.of(record.getId()));
+            return;
+        }
+        // tin chỉ có tồn kho (không có giá) bị bỏ qua: giỏ không lưu trạng thái tồn kho
+        if (change.getProductId() == null || change.getPrice() == null) {
+            acknowledge(List.of(record.getId()));
+            return;
+        }
+        String variantKey = CartItem.builder()
+                .productId(change.getProductId())
+                .options(change.getOptions())
+                .build()
+                .getVariantKey();
+        // thiếu at thì lấy thời điểm ghi entry (id của stream) để lần xử lý lại cho cùng kết quả
+        submit(variantKey, new PriceChange(change.getPrice(),
+                change.getAt() != null ? change.getAt() : record.getId().getTimestamp()), record.getId());
+    }
+
+    void submit(String variantKey, PriceChange change, RecordId id) {
+        AtomicBoolean fresh = new AtomicBoolean();
+        pending.compute(variantKey, (key, queued) -> {
+            if (queued == null) {
+                fresh.set(true);
+                return new Pending(change, List.of(id));
+            }
+            List<RecordId> ids = new ArrayList<>(queued.ids());
+            if (!ids.contains(id)) {
+                ids.add(id);
+            }
+            return new Pending(queued.change().at() > change.at() ? queued.change() : change, ids);
+        });
+        if (fresh.get()) {
+            queue.add(variantKey);
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        StreamOperations<String, String, String> stream = stringRedisTemplate.opsForStream();
+        try {
+            // MKSTREAM; group mới đọc từ đầu stream để không bỏ sót tin ghi trước lần khởi động đầu tiên
+            stream.createGroup(config.getStream(), ReadOffset.from("0"), config.getGroup());
+        } catch (RuntimeException e) {
+            if (!String.valueOf(e.getMessage()).contains("BUSYGROUP")
+                    && !(e.getCause() != null && String.valueOf(e.getCause().getMessage()).contains("BUSYGROUP"))) {
+                throw e;
+            }
+        }
+        readOwnPending(stream);
+        worker.start();
+    }
+
+    // tin instance này (cùng tên consumer) đã nhận nhưng chưa XACK trước lần dừng trước
+    private void readOwnPending(StreamOperations<String, String, String> stream) {
+        Consumer self = Consumer.from(config.getGroup(), consumer);
+        String offset = "0";
+        while (true) {
+            List<MapRecord<String, String, String>> records = stream.read(self,
+                    StreamReadOptions.empty().count(config.getBatchSize()),
+                    StreamOffset.create(config.getStream(), ReadOffset.from(offset)));
+            if (records == null || records.isEmpty()) {
+                return;
+            }
+            records.forEach(this::onMessage);
+            offset = records.get(records.size() - 1).getId().getValue();
+        }
+    }
+
+    /**
+     * Nhận lại các tin đã giao cho một consumer quá {@code claim-idle} mà chưa XACK (instance đã dừng hoặc
+     * lần xử lý trước lỗi). XCLAIM có điều kiện idle nên hai instance không cùng nhận một tin.
+     */
+    @Scheduled(fixedDelayString = "${cart.reprice.claim-interval:PT1M}",
+            initialDelayString = "${cart.reprice.claim-interval:PT1M}")
+    public void claimIdle() {
+        StreamOperations<String, String, String> stream = stringRedisTemplate.opsForStream();
+        Range<String> range = Range.unbounded();
+        int claimed = 0;
+        while (true) {
+            PendingMessages page = stream.pending(config.getStream(), config.getGroup(), range, config.getBatchSize());
+            if (page.isEmpty()) {
+                break;
+            }
+            RecordId[] idle = page.stream()
+                    .filter(message -> message.getElapsedTimeSinceLastDelivery().compareTo(config.getClaimIdle()) >= 0)
+                    .map(PendingMessage::getId)
+                    .toArray(RecordId[]::new);
+            if (idle.length > 0) {
+                List<MapRecord<String, String, String>> records = stream.claim(config.getStream(), config.getGroup(),
+                        consumer, config.getClaimIdle(), idle);
+                records.forEach(this::onMessage);
+                claimed += records.size();
+            }
+            if (page.size() < config.getBatchSize()) {
+                break;
+            }
+            range = Range.rightUnbounded(Range.Bound.exclusive(page.get(page.size() - 1).getIdAsString()));
+        }
+        if (claimed > 0) {
+            log.info("Claimed {} idle price changes from {}", claimed, config.getStream());
+        }
+    }
+
+    private void acknowledge(List<RecordId> ids) {
+        stringRedisTemplate.opsForStream().acknowledge(config.getStream(), config.getGroup(),
+                ids.toArray(RecordId[]::new));
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        worker.interrupt();
+        pool.shutdownNow();
+    }
+
+    private void drainLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                String variantKey = queue.take();
+                Pending next = pending.remove(variantKey);
+                if (next != null) {
+                    repriceVariant(variantKey, next.change());
+                    // lỗi giữa chừng thì không XACK: tin nằm lại pending list và được claimIdle nhận lại
+                    acknowledge(next.ids());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.warn("Repricing failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    void repriceVariant(String variantKey, PriceChange change) throws InterruptedException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        long startNanos = System.nanoTime();
+        long processed = 0;
+        String cursor = "0";
+        do {
+            CartKeyspaceScanner.Page page = scanner.scanSet(CartReverseIndex.key(variantKey), cursor, config.getBatchSize());
+            cursor = page.cursor();
+            List<Future<?>> batch = new ArrayList<>(page.items().size());
+            for (String userId : page.items()) {
+                batch.add(pool.submit(() -> repriceCart(userId, variantKey, change)));
+            }
+            for (Future<?> future : batch) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    log.warn("Repricing a cart for {} failed: {}", variantKey, e.getCause().getMessage());
+                }
+            }
+            processed += page.items().size();
+            // giới hạn rate-per-second như CartIndexSweeper
+            long due = TimeUnit.SECONDS.toNanos(processed) / Math.max(1, config.getRatePerSecond());
+            long ahead = due - (System.nanoTime() - startNanos);
+            if (ahead > 0) {
+                TimeUnit.NANOSECONDS.sleep(ahead);
+            }
+        } while (!"0".equals(cursor));
+        sample.stop(variantTimer);
+        log.info("Repriced variant {} to {} across {} carts", variantKey, change.price(), processed);
+    }
+
+    void repriceCart(String userId, String variantKey, PriceChange change) {
+        LocalDateTime at = LocalDateTime.ofInstant(Instant.ofEpochMilli(change.at()), ZoneId.systemDefault());
+        for (int attempt = 1; attempt <= config.getMaxAttempts(); attempt++) {
+            Optional<Cart> found = cartRepository.findById(cartKeys.idFor(userId));
+            List<CartItem> lines = found.map(cart -> cart.getItems().stream()
+                            .filter(item -> variantKey.equals(item.getVariantKey()))
+                            .toList())
+                    .orElse(List.of());
+            if (lines.isEmpty()) {
+                // giỏ đã hết hạn/chuyển kho lạnh hoặc đã bỏ biến thể
+                cartReverseIndex.remove(variantKey, userId);
+                count("missing");
+                return;
+            }
+            List<CartItem> stale = lines.stream()
+                    .filter(item -> item.getUnitPrice() == null || item.getUnitPrice().compareTo(change.price()) != 0)
+                    .filter(item -> item.getSnapshotAt() == null || item.getSnapshotAt().isBefore(at))
+                    .toList();
+            if (stale.isEmpty()) {
+                count("unchanged");
+                return;
+            }
+
+            Cart cart = found.get();
+            Map<String, String> original = fields(cart);
+            Map<String, CartItem> before = CartEvents.snapshot(cart);
+            Long expectedVersion = cart.getVersion();
+            for (CartItem item : stale) {
+                item.setUnitPrice(change.price());
+                item.setSnapshotAt(at);
+                item.calculateTotalPrice();
+            }
+            cart.calculateTotals(pricingRulesRegistry.current());
+            cart.setVersion(expectedVersion == null ? 1 : expectedVersion + 1);
+            // summary/JSON render sẵn (cart:<id>:summary, :json) lệch version nên được tính lại ở lần đọc sau,
+            // không tính cho mọi giỏ bị đổi giá
+
+            if (compareAndSet(cart, original, expectedVersion)) {
+                count("repriced");
+                checkoutSnapshotStore.invalidate(userId);
+                if (cartEventPublisher.enabled()) {
+                    cartEventPublisher.publish(CartEvents.diff(cart, before));
+                }
+                return;
+            }
+            count("conflict");
+        }
+    }
+
+    private boolean compareAndSet(Cart cart, Map<String, String> original, Long expectedVersion) {
+        Map<String, String> updated = fields(cart);
+        List<String> changed = new ArrayList<>();
+        updated.forEach((field, value) -> {
+            if (!value.equals(original.get(field))) {
+                changed.add(field);
+                changed.add(value);
+            }
+        });
+        List<String> args = new ArrayList<>(changed.size() + 2);
+        args.add(expectedVersion == null ? "" : expectedVersion.toString());
+        args.add(String.valueOf(changed.size() / 2));
+        args.addAll(changed);
+        for (String field : original.keySet()) {
+            if (!updated.containsKey(field)) {
+                args.add(field);
+            }
+        }
+        Long result = stringRedisTemplate.execute(HSET_IF_VERSION,
+                List.of(CartKeys.KEYSPACE + ":" + cart.getId()), args.toArray());
+        return result != null && result == 1;
+    }
+
+    // field của hash đúng như Spring Data ghi cho cart
+    private Map<String, String> fields(Cart cart) {
+        RedisData data = new RedisData();
+        redisConverter.write(cart, data);
+        Map<String, String> fields = new HashMap<>();
+        data.getBucket().rawMap().forEach((field, value) ->
+                fields.put(new String(field, StandardCharsets.UTF_8), new String(value, StandardCharsets.UTF_8)));
+        return fields;
+    }
+
+    private void count(String result) {
+        meterRegistry.counter("cart.reprice.carts", "result", result).increment();
+    }
+}
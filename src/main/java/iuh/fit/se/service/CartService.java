@@ -4,10 +4,14 @@ import iuh.fit.se.dto.request.AddToCartRequest;
 import iuh.fit.se.dto.request.RemoveCartItemsRequest;
 import iuh.fit.se.dto.request.UpdateCartItemRequest;
 import iuh.fit.se.dto.response.CartItemSummaryResponse;
+import iuh.fit.se.dto.response.CartItemsPageResponse;
 import iuh.fit.se.dto.response.CartSummaryResponse;
+import iuh.fit.se.dto.response.CheckoutSnapshotResponse;
+import iuh.fit.se.dto.response.RawJson;
 import iuh.fit.se.entity.Cart;
 
 import java.util.Map;
+import java.util.Optional;
 
 public interface CartService {
     Cart addToCart(AddToCartRequest request);
@@ -16,15 +20,43 @@ public interface CartService {
 
     Cart getOrCreateCart(String userId);
 
+    /**
+     * Giỏ cho endpoint chỉ đọc: từ replica nếu bật {@code cart.replica} và replica đã có giỏ từ {@code minVersion}
+     * (version trong response của lần ghi gần nhất, có thể null) trở lên, không thì từ primary như {@link #getOrCreateCart}.
+     */
+    Cart readCart(String userId, Long minVersion);
+
     Cart updateCartItem(UpdateCartItemRequest request);
 
     Cart removeCartItem(String userId, String productId, String sellerId, Map<String,String> options);
 
     Cart clearCart(String userId);
 
-    CartSummaryResponse getCartSummary(String userId);
+    /** Như {@link #readCart}, {@code minVersion} quyết định có đọc được từ replica không. */
+    CartSummaryResponse getCartSummary(String userId, Long minVersion);
+
+    CartItemsPageResponse getCartItems(String userId, String cursor, Integer limit);
+
+    /** JSON của giỏ render lúc ghi ({@code cart.passthrough.enabled}); empty nếu tắt, chưa có hoặc đã cũ. */
+    Optional<RawJson> findRenderedCart(String userId, Long minVersion);
+
+    /** JSON của summary tính lúc ghi (cần thêm {@code cart.summary.materialized}); empty nếu không dùng được. */
+    Optional<RawJson> findRenderedSummary(String userId, Long minVersion);
 
-    int getCartItemCount(String userId);
+    int getCartItemCount(String userId, Long minVersion);
 
     Cart removeCartItemsBatch(String userId, RemoveCartItemsRequest request);
+
+    CheckoutSnapshotResponse checkout(String userId);
+
+    /**
+     * Order-service đã đặt đơn từ snapshot {@code snapshotId}: chốt bán số lượng của snapshot (giữ hàng flash sale)
+     * đúng một lần và bỏ snapshot. Gọi lại với cùng {@code snapshotId} không làm gì; snapshot không còn (hết hạn,
+     * giỏ đã đổi) thì {@link iuh.fit.se.exception.ErrorCode#CHECKOUT_SNAPSHOT_NOT_FOUND}.
+     */
+    void commitCheckout(String userId, String snapshotId);
+
+    Cart applyVoucher(String userId, String code);
+
+    Cart removeVoucher(String userId, String code);
 }
\ No newline at end of file
@@ -0,0 +1,170 @@
+package iuh.fit.se.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.dto.response.CartSummaryResponse;
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.mapper.CartSummaryMapper;
+import iuh.fit.se.pricing.PricingRules;
+import iuh.fit.se.pricing.PricingRulesRegistry;
+import iuh.fit.se.repository.CartExpiry;
+import iuh.fit.se.repository.CartKeys;
+import iuh.fit.se.repository.CartReplica;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Summary tính sẵn lúc ghi giỏ ({@code cart.summary.materialized}): JSON của {@link CartSummaryResponse} được
+ * {@code CartWriter} lưu cùng lần ghi vào {@code cart:<id>:summary} (cùng hash tag, cùng TTL với giỏ, không nằm
+ * trong hash nên đọc/ghi giỏ không phải kéo theo nó), kèm version của cart và fingerprint của bộ luật giá đã dùng
+ * ({@link PricingRules#fingerprint()}), nên đọc summary chỉ là một pipeline HGET + HMGET và không bao giờ lệch với
+ * giỏ: version không khớp (giỏ được ghi bởi đường khác như {@code CartRepricer}) hoặc nội dung bộ luật giá đã đổi
+ * (kể cả khi version của registry bị đánh lại sau restart) thì tính lại từ giỏ và ghi bù nếu giỏ chưa đổi.
+ * Dùng chung cho bản blocking và reactive (I/O blocking, bản reactive gọi trên boundedElastic).
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class CartSummaryMaterializer {
+    // version/bộ luật của summary, JSON trong cart:<id>:summary (đọc dạng byte, xem select)
+    private static final List<byte[]> FIELDS = List.of(bytes("version"), bytes("rules"), bytes("json"));
+
+    // KEYS: hash, summary. Chỉ ghi bù nếu cart vẫn ở version đã dùng để tính summary; summary hết hạn cùng giỏ
+    private static final RedisScript<Long> SAVE_IF_CURRENT = RedisScript.of("""
+            if redis.call('HGET', KEYS[1], 'version') ~= ARGV[1] then
+                return 0
+            end
+            redis.call('HSET', KEYS[2], 'version', ARGV[1], 'rules', ARGV[2], 'json', ARGV[3])
+            local ttl = redis.call('PTTL', KEYS[1])
+            if ttl > 0 then
+                redis.call('PEXPIRE', KEYS[2], ttl)
+            else
+                redis.call('PERSIST', KEYS[2])
+            end
+            return 1
+            """, Long.class);
+
+    StringRedisTemplate stringRedisTemplate;
+    CartKeys cartKeys;
+    CartReplica cartReplica;
+    CartExpiry cartExpiry;
+    CartSummaryMapper cartSummaryMapper;
+    PricingRulesRegistry pricingRulesRegistry;
+    CartProperties cartProperties;
+    ObjectMapper objectMapper;
+    MeterRegistry meterRegistry;
+
+    public boolean enabled() {
+        return cartProperties.getSummary().isMaterialized();
+    }
+
+    /**
+     * Gán summary của {@code cart} (đã tính tổng tiền và tăng version) để được lưu cùng lần ghi; khi tắt thì
+     * lần ghi xoá summary cũ. Gọi trước khi bỏ tên/ảnh ở chế độ metadata reference.
+     */
+    public void apply(Cart cart) {
+        if (!enabled()) {
+            clear(cart);
+            return;
+        }
+        // lấy bộ luật trước khi tính: bộ luật đổi giữa chừng thì summary chỉ bị coi là cũ và được tính lại
+        String rules = pricingRulesRegistry.current().fingerprint();
+        cart.setSummaryJson(write(cartSummaryMapper.toSummary(cart)));
+        cart.setSummaryRules(rules);
+    }
+
+    /** Bỏ summary khỏi giỏ; lần ghi xoá {@code cart:<id>:summary}, lần đọc sau sẽ tính lại. */
+    public static void clear(Cart cart) {
+        cart.setSummaryJson(null);
+        cart.setSummaryRules(null);
+    }
+
+    /**
+     * Summary đã lưu nếu còn khớp với giỏ và bộ luật giá hiện hành; gia hạn giỏ như khi đọc giỏ. Đọc từ replica
+     * nếu replica đã tới {@code minVersion} (xem {@link CartReplica}), không thì từ primary.
+     */
+    public Optional<CartSummaryResponse> find(String userId, Long minVersion) {
+        return findJson(userId, minVersion).map(this::read);
+    }
+
+    /** Như {@link #find} nhưng trả nguyên JSON (UTF-8) đọc từ Redis. */
+    public Optional<byte[]> findJson(String userId, Long minVersion) {
+        List<byte[]> values = cartReplica.rendered(userId, CartKeys.SUMMARY_SUFFIX, FIELDS, minVersion).orElseGet(() ->
+                CartReplica.rendered(stringRedisTemplate, cartKeys.hashKey(userId), CartKeys.SUMMARY_SUFFIX, FIELDS));
+        Optional<byte[]> json = select(values);
+        json.ifPresent(found -> cartExpiry.touch(userId));
+        return json;
+    }
+
+    /** Field cần đọc từ {@code cart:<id>:summary} cho {@link #select} (bản reactive tự đọc bằng client của nó). */
+    public static List<byte[]> fields() {
+        return FIELDS;
+    }
+
+    /**
+     * JSON trong {@code values} (version của giỏ rồi giá trị của {@link #fields()}) nếu summary còn khớp với giỏ và
+     * bộ luật giá.
+     */
+    public Optional<byte[]> select(List<byte[]> values) {
+        byte[] version = values != null ? values.get(0) : null;
+        if (version == null || !Arrays.equals(version, values.get(1))
+                || !Arrays.equals(bytes(pricingRulesRegistry.current().fingerprint()), values.get(2))
+                || values.get(3) == null) {
+            count("miss");
+            return Optional.empty();
+        }
+        count("hit");
+        return Optional.of(values.get(3));
+    }
+
+    /** Tính summary từ giỏ đã đọc (sau khi {@link #find} trượt) và ghi bù nếu giỏ chưa đổi. */
+    public CartSummaryResponse materialize(Cart cart) {
+        String rules = pricingRulesRegistry.current().fingerprint();
+        CartSummaryResponse summary = cartSummaryMapper.toSummary(cart);
+        if (enabled() && cart.getVersion() != null) {
+            String key = cartKeys.hashKey(cart.getUserId());
+            stringRedisTemplate.execute(SAVE_IF_CURRENT, List.of(key, key + CartKeys.SUMMARY_SUFFIX),
+                    cart.getVersion().toString(), rules, write(summary));
+        }
+        return summary;
+    }
+
+    private String write(CartSummaryResponse summary) {
+        try {
+            return objectMapper.writeValueAsString(summary);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private CartSummaryResponse read(byte[] json) {
+        try {
+            return objectMapper.readValue(json, CartSummaryResponse.class);
+        } catch (IOException e) {
+            log.warn("Discarding unreadable materialized summary: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void count(String result) {
+        meterRegistry.counter("cart.summary.materialized", "result", result).increment();
+    }
+}
@@ -0,0 +1,176 @@
+package iuh.fit.se.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.dto.response.ApiResponse;
+import iuh.fit.se.dto.response.CartSummaryResponse;
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.entity.CartItem;
+import iuh.fit.se.mapper.CartSummaryMapper;
+import iuh.fit.se.pricing.CartPricing;
+import iuh.fit.se.pricing.PriceQuote;
+import iuh.fit.se.pricing.PricingRules;
+import iuh.fit.se.pricing.PricingRulesRegistry;
+import iuh.fit.se.repository.CartExpiry;
+import iuh.fit.se.repository.CartKeys;
+import iuh.fit.se.repository.CartLineReader;
+import iuh.fit.se.repository.CartMetadataStore;
+import iuh.fit.se.repository.CartRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Summary của giỏ rất nhiều dòng, ghi ra response theo từng seller thay vì dựng cả {@link CartSummaryResponse}.
+ * <p>
+ * {@link #prepare} đọc outline của giỏ (tổng tiền theo seller/danh mục, không đọc nội dung dòng) và tính phí ship,
+ * giảm giá, tổng tiền bằng {@link PricingRules}; {@link Summary#writeTo} sau đó đọc và ghi dòng của từng seller
+ * theo nhóm {@code cart.lines.chunk-size}, nên bộ nhớ mỗi request chỉ phụ thuộc kích thước nhóm. JSON giống
+ * {@code GET /{userId}/summary}. Các nhóm được đọc sau outline nên có thể phản ánh lần ghi giỏ xảy ra giữa chừng;
+ * cần số liệu chốt thì dùng checkout snapshot.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class CartSummaryStreamer {
+    private static final String MESSAGE = "Cart summary retrieved successfully";
+
+    CartLineReader cartLineReader;
+    CartRepository cartRepository;
+    CartKeys cartKeys;
+    CartTiering cartTiering;
+    CartExpiry cartExpiry;
+    CartMetadataStore cartMetadataStore;
+    CartSummaryMapper cartSummaryMapper;
+    PricingRulesRegistry pricingRulesRegistry;
+    CartProperties cartProperties;
+    ObjectMapper objectMapper;
+
+    /** Phần body còn lại sau {@link #prepare}; ghi trên thread của response. */
+    public interface Summary {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /** Đọc outline và tính tổng tiền (I/O blocking); lỗi ở bước này vẫn trả được response lỗi bình thường. */
+    public Summary prepare(String userId) {
+        Optional<CartLineReader.Outline> outline = cartLineReader.outline(userId);
+        if (outline.isEmpty() && cartTiering.rehydrate(userId).isPresent()) {
+            outline = cartLineReader.outline(userId);
+        }
+        if (outline.isEmpty()) {
+            CartSummaryResponse empty = cartSummaryMapper.toSummary(Cart.builder().userId(userId).build());
+            return out -> objectMapper.writeValue(out, wrap(empty));
+        }
+        cartExpiry.touch(userId);
+        if (!outline.get().exact()) {
+            // tổng tiền không cộng chính xác được trong Redis: tính trên cả giỏ như /summary
+            log.info("Cart {} has non-integral amounts, summary is computed on the full cart", userId);
+            Cart cart = cartRepository.findById(cartKeys.idFor(userId)).map(cartMetadataStore::hydrate)
+                    .orElseGet(() -> Cart.builder().userId(userId).build());
+            CartSummaryResponse summary = cartSummaryMapper.toSummary(cart);
+            return out -> objectMapper.writeValue(out, wrap(summary));
+        }
+        CartLineReader.Outline o = outline.get();
+        if (o.sellers().isEmpty()) {
+            CartSummaryResponse empty = cartSummaryMapper.toSummary(Cart.builder().userId(userId).build());
+            return out -> objectMapper.writeValue(out, wrap(empty));
+        }
+        PricingRules rules = pricingRulesRegistry.current();
+        PriceQuote quote = rules.quote(groups(o), o.vouchers());
+        return out -> write(userId, o, quote, rules, out);
+    }
+
+    private void write(String userId, CartLineReader.Outline outline, PriceQuote quote, PricingRules rules,
+                       OutputStream out) throws IOException {
+        int chunkSize = cartProperties.getLines().getChunkSize();
+        BigDecimal subtotal = rules.units().toDecimal(quote.subtotal());
+        BigDecimal shipping = rules.units().toDecimal(quote.shipping());
+        BigDecimal discount = rules.units().toDecimal(quote.discount());
+
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeNumberField("code", 200);
+            json.writeStringField("message", MESSAGE);
+            json.writeObjectFieldStart("result");
+            json.writeNumberField("totalItems", outline.sellers().stream().mapToInt(CartLineReader.SellerOutline::quantity).sum());
+            json.writeNumberField("totalSellers", outline.sellers().size());
+            json.writeNumberField("subtotal", subtotal);
+            json.writeNumberField("totalShipping", shipping);
+            json.writeNumberField("totalDiscount", discount);
+            json.writeNumberField("finalAmount", CartPricing.addSubtract(subtotal, shipping, discount));
+            json.writeArrayFieldStart("sellerSummaries");
+            for (CartLineReader.SellerOutline seller : outline.sellers()) {
+                PriceQuote.SellerQuote sellerQuote = quote.seller(seller.sellerId());
+                BigDecimal sellerSubtotal = rules.units().toDecimal(sellerQuote.subtotal());
+                json.writeStartObject();
+                json.writeStringField("sellerId", seller.sellerId());
+                json.writeStringField("sellerName", seller.sellerName() != null ? seller.sellerName() : CartSummaryMapper.UNKNOWN_SELLER);
+                json.writeNumberField("itemCount", seller.lineCount());
+                json.writeNumberField("subtotal", sellerSubtotal);
+                json.writeNumberField("shippingFee", rules.units().toDecimal(sellerQuote.shippingFee()));
+                json.writeBooleanField("freeShipping", sellerQuote.freeShipping());
+                json.writeNumberField("amountForFreeShipping", sellerQuote.freeShipping()
+                        ? BigDecimal.ZERO
+                        : CartPricing.subtract(rules.units().toDecimal(sellerQuote.freeShippingThreshold()), sellerSubtotal));
+                json.writeNumberField("discount", rules.units().toDecimal(sellerQuote.discount()));
+                json.writeArrayFieldStart("items");
+                List<CartLineReader.LineRef> lines = seller.lines();
+                for (int from = 0; from < lines.size(); from += chunkSize) {
+                    List<CartItem> chunk = cartLineReader.lines(userId, lines.subList(from, Math.min(from + chunkSize, lines.size())));
+                    cartMetadataStore.hydrate(Cart.builder().items(chunk).build());
+                    for (CartItem item : chunk) {
+                        json.writeObject(cartSummaryMapper.toItemSummary(item));
+                    }
+                    json.flush();
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeBooleanField("hasOutOfStockItems", false);
+            json.writeBooleanField("canCheckout", true);
+            json.writeStringField("checkoutMessage", "Ready to checkout");
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+    }
+
+    // một dòng giả cho mỗi (seller, danh mục) mang tổng tiền của nhóm: đủ cho PricingRules vì luật chỉ cộng theo nhóm
+    private static List<CartItem> groups(CartLineReader.Outline outline) {
+        List<CartItem> groups = new ArrayList<>();
+        for (CartLineReader.SellerOutline seller : outline.sellers()) {
+            if (seller.totals().isEmpty()) {
+                groups.add(CartItem.builder().sellerId(seller.sellerId()).build());
+            }
+            for (Map.Entry<String, BigDecimal> total : seller.totals().entrySet()) {
+                groups.add(CartItem.builder()
+                        .sellerId(seller.sellerId())
+                        .categoryId(total.getKey().isEmpty() ? null : total.getKey())
+                        .totalPrice(total.getValue())
+                        .build());
+            }
+        }
+        return groups;
+    }
+
+    private static ApiResponse<CartSummaryResponse> wrap(CartSummaryResponse summary) {
+        return ApiResponse.<CartSummaryResponse>builder()
+                .code(200)
+                .message(MESSAGE)
+                .result(summary)
+                .build();
+    }
+}
@@ -0,0 +1,166 @@
+package iuh.fit.se.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import iuh.fit.se.configuration.CartProperties;
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.repository.CartExpiry;
+import iuh.fit.se.repository.CartKeys;
+import iuh.fit.se.repository.CartMetadataStore;
+import iuh.fit.se.repository.CartRepository;
+import iuh.fit.se.repository.CartReverseIndex;
+import iuh.fit.se.repository.CartWriter;
+import iuh.fit.se.repository.ColdCartStore;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Chuyển giỏ giữa Redis (nóng) và {@link ColdCartStore} (lạnh) khi bật {@code cart.tiering.enabled}.
+ * Khi tắt, mọi thao tác là no-op.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class CartTiering {
+    // Chỉ xoá hash nếu updatedAt vẫn là giá trị đã đọc lúc lưu sang kho lạnh, tránh mất lần ghi xen giữa
+    private static final RedisScript<Long> DELETE_IF_UNCHANGED = RedisScript.of("""
+            if (redis.call('HGET', KEYS[1], 'updatedAt') or '') == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    ColdCartStore coldStore;
+    CartRepository cartRepository;
+    CartWriter cartWriter;
+    CartKeys cartKeys;
+    CartExpiry cartExpiry;
+    CartMetadataStore cartMetadataStore;
+    CartReverseIndex cartReverseIndex;
+    CartProperties cartProperties;
+    StringRedisTemplate stringRedisTemplate;
+    Timer migrateTimer;
+    Timer rehydrateHitTimer;
+    Timer rehydrateMissTimer;
+    MeterRegistry meterRegistry;
+
+    public CartTiering(ObjectProvider<ColdCartStore> coldStore, CartRepository cartRepository, CartWriter cartWriter,
+                       CartKeys cartKeys, CartExpiry cartExpiry, CartMetadataStore cartMetadataStore,
+                       CartReverseIndex cartReverseIndex,
+                       CartProperties cartProperties, StringRedisTemplate stringRedisTemplate,
+                       MeterRegistry meterRegistry) {
+        this.coldStore = coldStore.getIfAvailable();
+        this.cartRepository = cartRepository;
+        this.cartWriter = cartWriter;
+        this.cartKeys = cartKeys;
+        this.cartExpiry = cartExpiry;
+        this.cartMetadataStore = cartMetadataStore;
+        this.cartReverseIndex = cartReverseIndex;
+        this.cartProperties = cartProperties;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.migrateTimer = Timer.builder("cart.tiering.migrate")
+                .description("Time to move one idle cart from Redis to the cold store")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.rehydrateHitTimer = rehydrateTimer("hit", meterRegistry);
+        this.rehydrateMissTimer = rehydrateTimer("miss", meterRegistry);
+    }
+
+    public boolean enabled() {
+        return coldStore != null;
+    }
+
+    /**
+     * Nạp lại giỏ từ kho lạnh vào Redis (gọi khi Redis không có giỏ). Ghi qua {@link CartWriter} chỉ khi Redis vẫn
+     * chưa có giỏ: nếu request khác đã nạp (hoặc tạo giỏ) trước thì đọc lại bản trong Redis và để bên thắng dọn
+     * kho lạnh, không ghi đè thay đổi của nó.
+     */
+    public Optional<Cart> rehydrate(String userId) {
+        if (!enabled()) {
+            return Optional.empty();
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Optional<Cart> cold = coldStore.get(userId);
+        if (cold.isEmpty()) {
+            sample.stop(rehydrateMissTimer);
+            return Optional.empty();
+        }
+        Cart cart = cold.get();
+        cart.setId(cartKeys.idFor(userId));
+        Cart saved;
+        try {
+            saved = cartMetadataStore.saveStripped(cartExpiry.apply(cart), toSave -> cartWriter.save(toSave, null));
+        } catch (CartWriter.Conflict e) {
+            sample.stop(rehydrateHitTimer);
+            return cartRepository.findById(cart.getId()).map(cartMetadataStore::hydrate);
+        }
+        coldStore.delete(userId);
+        // phần tử index ngược có thể đã bị dọn khi giỏ nằm ở kho lạnh
+        cartReverseIndex.sync(userId, List.of(), saved.getItems());
+        sample.stop(rehydrateHitTimer);
+        meterRegistry.counter("cart.tiering.carts", "direction", "rehydrated").increment();
+        log.info("Rehydrated cart for user {} from cold store", userId);
+        return Optional.of(saved);
+    }
+
+    private static Timer rehydrateTimer(String result, MeterRegistry meterRegistry) {
+        return Timer.builder("cart.tiering.rehydrate")
+                .description("Cold store lookup when a cart is missing from Redis, and reload on hit")
+                .tag("result", result)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    /** Đọc giỏ trong kho lạnh mà không nạp lại vào Redis (API đọc nội bộ). */
+    public Optional<Cart> peek(String userId) {
+        return enabled() ? coldStore.get(userId) : Optional.empty();
+    }
+
+    /**
+     * Chuyển cart {@code id} sang kho lạnh nếu đã không hoạt động quá {@code idle-threshold}.
+     * Hoạt động gần nhất suy ra từ TTL còn lại: mỗi lần ghi (và đọc, nếu bật sliding-ttl) đặt lại TTL về ttl-seconds.
+     */
+    public boolean archiveIfIdle(String id) {
+        String key = CartKeys.KEYSPACE + ":" + id;
+        Long remaining = stringRedisTemplate.getExpire(key);
+        if (remaining == null || remaining < 0) {
+            return false;
+        }
+        Duration idle = Duration.ofSeconds(cartProperties.getTtlSeconds() - remaining);
+        if (idle.compareTo(cartProperties.getTiering().getIdleThreshold()) < 0) {
+            return false;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        // đọc updatedAt TRƯỚC entity: nếu có lần ghi xen giữa, so khớp lúc xoá sẽ thất bại thay vì xoá bản mới
+        Object updatedAt = stringRedisTemplate.opsForHash().get(key, "updatedAt");
+        Optional<Cart> cart = cartRepository.findById(id);
+        if (cart.isEmpty() || cart.get().getItems() == null || cart.get().getItems().isEmpty()) {
+            // giỏ trống không cần giữ lâu, để TTL tự dọn
+            return false;
+        }
+
+        coldStore.put(cart.get());
+        Long deleted = stringRedisTemplate.execute(DELETE_IF_UNCHANGED, List.of(key),
+                updatedAt == null ? "" : updatedAt.toString());
+        if (deleted == null || deleted == 0) {
+            coldStore.delete(cart.get().getUserId());
+            return false;
+        }
+        stringRedisTemplate.opsForSet().remove(CartKeys.KEYSPACE, id);
+        stringRedisTemplate.unlink(List.of(key + ":idx", key + CartKeys.SUMMARY_SUFFIX, key + CartKeys.JSON_SUFFIX));
+        sample.stop(migrateTimer);
+        meterRegistry.counter("cart.tiering.carts", "direction", "archived").increment();
+        return true;
+    }
+}
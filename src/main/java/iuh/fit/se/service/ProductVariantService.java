@@ -0,0 +1,17 @@
+package iuh.fit.se.service;
+
+import iuh.fit.se.dto.response.OrderItemProductResponse;
+import iuh.fit.se.entity.CartItem;
+
+import java.util.Map;
+
+/**
+ * Tra cứu biến thể sản phẩm từ product-service có deadline, hedging, circuit breaker và bulkhead.
+ */
+public interface ProductVariantService {
+    /**
+     * @param snapshot dòng giỏ hàng đã có cùng biến thể (có thể null); dùng làm fallback khi product-service
+     *                 không phản hồi kịp hoặc circuit đang mở.
+     */
+    OrderItemProductResponse getVariant(String productId, Map<String, String> options, CartItem snapshot);
+}
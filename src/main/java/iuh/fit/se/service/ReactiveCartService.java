@@ -0,0 +1,57 @@
+package iuh.fit.se.service;
+
+import iuh.fit.se.dto.request.AddToCartRequest;
+import iuh.fit.se.dto.request.RemoveCartItemsRequest;
+import iuh.fit.se.dto.request.UpdateCartItemRequest;
+import iuh.fit.se.dto.response.CartItemsPageResponse;
+import iuh.fit.se.dto.response.CartSummaryResponse;
+import iuh.fit.se.dto.response.CheckoutSnapshotResponse;
+import iuh.fit.se.dto.response.RawJson;
+import iuh.fit.se.entity.Cart;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Cùng hợp đồng với {@link CartService} nhưng non-blocking end to end (profile "reactive").
+ */
+public interface ReactiveCartService {
+    Mono<Cart> addToCart(AddToCartRequest request);
+
+    Mono<Cart> getCartByUserId(String userId);
+
+    Mono<Cart> getOrCreateCart(String userId);
+
+    /**
+     * Giỏ cho endpoint chỉ đọc: từ replica nếu bật {@code cart.replica} và replica đã có giỏ từ {@code minVersion}
+     * (version trong response của lần ghi gần nhất, có thể null) trở lên, không thì từ primary như {@link #getOrCreateCart}.
+     */
+    Mono<Cart> readCart(String userId, Long minVersion);
+
+    Mono<Cart> updateCartItem(UpdateCartItemRequest request);
+
+    Mono<Cart> removeCartItem(String userId, String productId, String sellerId, Map<String,String> options);
+
+    Mono<Cart> clearCart(String userId);
+
+    /** Như {@link #readCart}, {@code minVersion} quyết định có đọc được từ replica không. */
+    Mono<CartSummaryResponse> getCartSummary(String userId, Long minVersion);
+
+    Mono<CartItemsPageResponse> getCartItems(String userId, String cursor, Integer limit);
+
+    /** JSON của giỏ render lúc ghi ({@code cart.passthrough.enabled}); empty nếu tắt, chưa có hoặc đã cũ. */
+    Mono<RawJson> findRenderedCart(String userId, Long minVersion);
+
+    /** JSON của summary tính lúc ghi (cần thêm {@code cart.summary.materialized}); empty nếu không dùng được. */
+    Mono<RawJson> findRenderedSummary(String userId, Long minVersion);
+
+    Mono<Integer> getCartItemCount(String userId, Long minVersion);
+
+    Mono<Cart> removeCartItemsBatch(String userId, RemoveCartItemsRequest request);
+
+    Mono<CheckoutSnapshotResponse> checkout(String userId);
+
+    Mono<Cart> applyVoucher(String userId, String code);
+
+    Mono<Cart> removeVoucher(String userId, String code);
+}
@@ -0,0 +1,19 @@
+package iuh.fit.se.service;
+
+import iuh.fit.se.dto.response.OrderItemProductResponse;
+import iuh.fit.se.entity.CartItem;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Bản non-blocking của {@link ProductVariantService} cho profile "reactive": cùng deadline, hedging, circuit breaker,
+ * bulkhead và fallback theo snapshot.
+ */
+public interface ReactiveProductVariantService {
+    /**
+     * @param snapshot dòng giỏ hàng đã có cùng biến thể (có thể rỗng); chỉ được subscribe khi cần fallback,
+     *                 tức product-service không phản hồi kịp hoặc circuit đang mở.
+     */
+    Mono<OrderItemProductResponse> getVariant(String productId, Map<String, String> options, Mono<CartItem> snapshot);
+}
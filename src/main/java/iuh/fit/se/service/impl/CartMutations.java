@@ -0,0 +1,311 @@
+package iuh.fit.se.service.impl;
+
+import iuh.fit.se.dto.request.AddToCartRequest;
+import iuh.fit.se.dto.request.RemoveCartItemsRequest;
+import iuh.fit.se.dto.request.SearchSizeAndIDRequest;
+import iuh.fit.se.dto.request.UpdateCartItemRequest;
+import iuh.fit.se.dto.response.ApiResponse;
+import iuh.fit.se.dto.response.OrderItemProductResponse;
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.entity.CartItem;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.pricing.PricingRules;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Thao tác thuần trên {@link Cart} (không I/O), dùng chung cho bản blocking và reactive của CartService.
+ * Việc gọi product-service và lưu Redis do service gọi bên ngoài đảm nhận; tổng tiền được tính lại
+ * một lần khi service lưu giỏ ({@link Cart#calculateTotals} với bộ luật giá hiện hành).
+ */
+@Slf4j
+final class CartMutations {
+
+    private CartMutations() {
+    }
+
+    static Cart newCart(String id, String userId) {
+        return Cart.builder()
+                .id(id)
+                .userId(userId)
+                .createdAt(LocalDateTime.now())
+                .items(new ArrayList<>()) // đảm bảo không null
+                .build();
+    }
+
+    static SearchSizeAndIDRequest variantLookup(String productId, Map<String, String> options) {
+        return SearchSizeAndIDRequest.builder()
+                .id(productId)
+                .options(options)
+                .build();
+    }
+
+    static OrderItemProductResponse requireProduct(ApiResponse<OrderItemProductResponse> productResponse) {
+        if (productResponse == null || productResponse.getResult() == null) {
+            throw new AppException(ErrorCode.PRODUCT_NOT_FOUND);
+        }
+        return productResponse.getResult();
+    }
+
+    /* ================= Add ================= */
+
+    static void applyAdd(Cart cart, AddToCartRequest request, OrderItemProductResponse p) {
+        CartItem newItem = CartItem.builder()
+                .productId(request.getProductId())
+                .sellerId(request.getSellerId())
+                .sellerName(request.getSellerName())
+                .options(request.getOptions())  // << sử dụng options
+                .unitPrice(p.getPrice())
+                .productImage(p.getImage())
+                .productName(p.getName())
+                .categoryId(p.getCategoryId())
+                .quantity(request.getQuantity())
+                .snapshotAt(snapshotTime(p))
+                .build();
+
+        newItem.calculateTotalPrice();
+        log.info("New item details: {}", newItem);
+
+        // So khớp item trùng (cùng seller + product + options)
+        Optional<CartItem> existingItem = findLine(cart, newItem.getUniqueKey());
+
+        if (existingItem.isPresent()) {
+            CartItem existing = existingItem.get();
+            existing.setQuantity(existing.getQuantity() + request.getQuantity());
+            // cập nhật info mới nhất
+            existing.setProductImage(newItem.getProductImage());
+            existing.setProductName(newItem.getProductName());
+            existing.setCategoryId(newItem.getCategoryId());
+            if (newItem.getSellerName() != null) {
+                existing.setSellerName(newItem.getSellerName());
+            }
+            existing.calculateTotalPrice();
+            log.info("Updated existing item quantity to: {}", existing.getQuantity());
+        } else {
+            cart.getItems().add(newItem);
+            log.info("Added new item to cart: {}", newItem.getProductId());
+        }
+
+    }
+
+    /* ================= Update ================= */
+
+    static Map<String, String> newOptions(UpdateCartItemRequest request) {
+        return Optional.ofNullable(request.getOptions())
+                .orElse(Collections.emptyMap());
+    }
+
+    /**
+     * Có cần tra cứu biến thể mới từ product-service cho request này không
+     * (tạo dòng mới hoặc đổi biến thể); quyết định trước khi gọi {@link #applyUpdate}.
+     */
+    static boolean updateNeedsProduct(Cart cart, UpdateCartItemRequest request) {
+        Map<String, String> newOpts = newOptions(request);
+        Map<String, String> oldOpts = Optional.ofNullable(request.getOriginalOptions()).orElse(newOpts);
+        String oldKey = createUniqueKey(request.getSellerId(), request.getProductId(), oldOpts);
+        String newKey = createUniqueKey(request.getSellerId(), request.getProductId(), newOpts);
+        int reqQty = Optional.ofNullable(request.getQuantity()).orElse(0);
+
+        if (reqQty <= 0) {
+            return false;
+        }
+        return findLine(cart, oldKey).isEmpty() || !oldKey.equals(newKey);
+    }
+
+    /**
+     * Áp dụng cập nhật lên giỏ. {@code p} chỉ được dùng (và phải khác null) khi
+     * {@link #updateNeedsProduct} trả về true.
+     */
+    static void applyUpdate(Cart cart, UpdateCartItemRequest request, OrderItemProductResponse p) {
+        Map<String, String> newOpts = newOptions(request);
+        Map<String, String> oldOpts = Optional.ofNullable(request.getOriginalOptions())
+                .orElse(newOpts); // nếu FE không gửi originalOptions, coi như không đổi options
+
+        String oldKey = createUniqueKey(request.getSellerId(), request.getProductId(), oldOpts);
+        String newKey = createUniqueKey(request.getSellerId(), request.getProductId(), newOpts);
+
+        int reqQty = Optional.ofNullable(request.getQuantity()).orElse(0);
+
+        // 1) Tìm dòng GỐC theo oldKey
+        Optional<CartItem> srcOpt = findLine(cart, oldKey);
+
+        // Nếu không tìm thấy dòng gốc mà qty <= 0 -> no-op
+        if (srcOpt.isEmpty() && reqQty <= 0) {
+            log.info("No source line & non-positive qty -> no-op");
+            return;
+        }
+
+        // Nếu không tìm thấy dòng gốc mà qty > 0 -> coi như ADD mới vào newKey
+        if (srcOpt.isEmpty()) {
+            Optional<CartItem> dstOpt = findLine(cart, newKey);
+            if (dstOpt.isPresent()) {
+                // dòng gốc vừa bị xoá/đổi bởi request khác nhưng newKey đã có: cộng vào, không tạo dòng trùng
+                CartItem dst = dstOpt.get();
+                dst.setQuantity(dst.getQuantity() + reqQty);
+                dst.setUnitPrice(p.getPrice());
+                dst.setProductImage(p.getImage());
+                dst.setProductName(p.getName());
+                dst.setCategoryId(p.getCategoryId());
+                dst.setSnapshotAt(snapshotTime(p));
+                dst.calculateTotalPrice();
+                log.info("Source not found -> added {} to existing line {}", reqQty, dst.getUniqueKey());
+                return;
+            }
+            CartItem newItem = CartItem.builder()
+                    .productId(request.getProductId())
+                    .sellerId(request.getSellerId())
+                    .sellerName(request.getSellerName()) // null: placeholder chỉ gắn khi hiển thị
+                    .options(newOpts)
+                    .unitPrice(p.getPrice())
+                    .productImage(p.getImage())
+                    .productName(p.getName())
+                    .categoryId(p.getCategoryId())
+                    .quantity(reqQty)
+                    .snapshotAt(snapshotTime(p))
+                    .build();
+            newItem.calculateTotalPrice();
+            cart.getItems().add(newItem);
+            log.info("Source not found -> created new line {}", newItem.getUniqueKey());
+            return;
+        }
+
+        // Có dòng gốc
+        CartItem src = srcOpt.get();
+
+        // 2) Nếu reqQty <= 0 -> xoá dòng gốc
+        if (reqQty <= 0) {
+            cart.getItems().remove(src);
+            log.info("Removed source line {}", src.getUniqueKey());
+            return;
+        }
+
+        boolean changingOptions = !oldKey.equals(newKey);
+        if (!changingOptions) {
+            // 3) Không đổi biến thể -> chỉ update số lượng
+            src.setQuantity(reqQty);
+            src.calculateTotalPrice();
+            log.info("Updated qty on same variant to {}", reqQty);
+        } else {
+            // 4) Đổi biến thể -> chuyển (hoặc gộp) sang newKey
+            // 4.2 Kiểm tra có dòng đích trùng newKey chưa
+            Optional<CartItem> conflictOpt = findLine(cart, newKey);
+
+            if (conflictOpt.isPresent()) {
+                // GỘP: giữ dòng đích, cộng số lượng (giữ nguyên chính sách: qty đích += reqQty)
+                CartItem dst = conflictOpt.get();
+                int mergedQty = dst.getQuantity() + reqQty; // hoặc: dst.getQuantity() + src.getQuantity()
+                dst.setQuantity(mergedQty);
+                dst.setUnitPrice(p.getPrice());
+                dst.setProductImage(p.getImage());
+                dst.setProductName(p.getName());
+                dst.setCategoryId(p.getCategoryId());
+                dst.setSnapshotAt(snapshotTime(p));
+                dst.calculateTotalPrice();
+
+                // Xoá dòng gốc
+                cart.getItems().remove(src);
+                log.info("Merged into existing line {}, new qty={}", dst.getUniqueKey(), mergedQty);
+            } else {
+                // Không có xung đột -> chuyển dòng gốc sang biến thể mới
+                src.setOptions(newOpts);
+                src.setUnitPrice(p.getPrice());
+                src.setProductImage(p.getImage());
+                src.setProductName(p.getName());
+                src.setCategoryId(p.getCategoryId());
+                src.setSnapshotAt(snapshotTime(p));
+                src.setQuantity(reqQty); // giữ qty theo yêu cầu
+                src.calculateTotalPrice();
+                log.info("Moved line from {} -> {}", oldKey, newKey);
+            }
+        }
+
+    }
+
+    /* ================= Remove ================= */
+
+    static void applyRemove(Cart cart, String productId, String sellerId, Map<String, String> options) {
+        // Tạo key duy nhất theo seller + product + options
+        String key = createUniqueKey(sellerId, productId, options == null ? Collections.emptyMap() : options);
+
+        boolean removed = cart.getItems().removeIf(item -> item.getUniqueKey().equals(key));
+
+        if (!removed) {
+            throw new AppException(ErrorCode.USER_NOT_FOUND);
+        }
+
+    }
+
+    static void applyClear(Cart cart) {
+        cart.getItems().clear();
+    }
+
+    static void applyRemoveBatch(Cart cart, RemoveCartItemsRequest request) {
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            throw new AppException(ErrorCode.USER_NOT_FOUND);
+        }
+
+        // Tạo list uniqueKey từ request (đã chuyển sang OPTIONS)
+        List<String> uniqueKeysToRemove = request.getItems().stream()
+                .map(item -> createUniqueKey(item.getSellerId(), item.getProductId(), item.getOptions()))
+                .toList();
+
+        boolean removedAny = cart.getItems().removeIf(ci -> uniqueKeysToRemove.contains(ci.getUniqueKey()));
+        if (!removedAny) {
+            throw new AppException(ErrorCode.SELLER_NOT_FOUND);
+        }
+
+        log.info("Removed batch items");
+    }
+
+    /* ================= Voucher ================= */
+
+    static void applyVoucher(Cart cart, String code, PricingRules rules) {
+        if (!rules.hasVoucher(code)) {
+            throw new AppException(ErrorCode.VOUCHER_INVALID);
+        }
+        String voucher = PricingRules.normalizeVoucher(code);
+        if (cart.getVouchers() == null) {
+            cart.setVouchers(new ArrayList<>());
+        }
+        if (!cart.getVouchers().contains(voucher)) {
+            cart.getVouchers().add(voucher);
+        }
+    }
+
+    static void applyRemoveVoucher(Cart cart, String code) {
+        String voucher = PricingRules.normalizeVoucher(code);
+        if (cart.getVouchers() == null || !cart.getVouchers().remove(voucher)) {
+            throw new AppException(ErrorCode.VOUCHER_INVALID);
+        }
+    }
+
+    /* ================= Helpers ================= */
+
+    // Dữ liệu lấy từ snapshot (fallback) giữ nguyên mốc thời gian cũ của nó
+    private static LocalDateTime snapshotTime(OrderItemProductResponse p) {
+        return p.getSnapshotAt() != null ? p.getSnapshotAt() : LocalDateTime.now();
+    }
+
+    /** Dòng hiện có cùng biến thể (snapshot dự phòng khi product-service lỗi), hoặc null. */
+    static CartItem snapshotLine(Cart cart, String sellerId, String productId, Map<String, String> options) {
+        return findLine(cart, createUniqueKey(sellerId, productId, options)).orElse(null);
+    }
+
+    static Optional<CartItem> findLine(Cart cart, String uniqueKey) {
+        return cart.getItems().stream()
+                .filter(item -> item.getUniqueKey().equals(uniqueKey))
+                .findFirst();
+    }
+
+    static String createUniqueKey(String sellerId, String productId, Map<String, String> options) {
+        CartItem tmp = CartItem.builder()
+                .sellerId(sellerId)
+                .productId(productId)
+                .options(options)
+                .build();
+        return tmp.getUniqueKey();
+    }
+}
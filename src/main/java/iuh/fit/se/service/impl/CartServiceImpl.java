@@ -2,26 +2,39 @@ package iuh.fit.se.service.impl;
 
 import iuh.fit.se.dto.request.AddToCartRequest;
 import iuh.fit.se.dto.request.RemoveCartItemsRequest;
-import iuh.fit.se.dto.request.SearchSizeAndIDRequest;
 import iuh.fit.se.dto.request.UpdateCartItemRequest;
 import iuh.fit.se.dto.response.*;
 import iuh.fit.se.entity.Cart;
 import iuh.fit.se.entity.CartItem;
+import iuh.fit.se.event.CartEventPublisher;
+import iuh.fit.se.event.CartEvents;
 import iuh.fit.se.exception.AppException;
 import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.mapper.CartSummaryMapper;
+import iuh.fit.se.mapper.CheckoutSnapshotMapper;
+import iuh.fit.se.pricing.PricingRulesRegistry;
+import iuh.fit.se.repository.CartExpiry;
+import iuh.fit.se.repository.CartKeys;
+import iuh.fit.se.repository.CartMetadataStore;
+import iuh.fit.se.repository.CartReplica;
 import iuh.fit.se.repository.CartRepository;
-import iuh.fit.se.repository.httpclient.ProductClient;
+import iuh.fit.se.repository.CartReverseIndex;
+import iuh.fit.se.repository.CartWriter;
+import iuh.fit.se.repository.CheckoutSnapshotStore;
+import iuh.fit.se.repository.StockReservations;
+import iuh.fit.se.service.CartItemPager;
+import iuh.fit.se.service.CartJsonPassthrough;
 import iuh.fit.se.service.CartService;
+import iuh.fit.se.service.CartSummaryMaterializer;
+import iuh.fit.se.service.CartTiering;
+import iuh.fit.se.service.ProductVariantService;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
@@ -29,213 +42,88 @@ import java.util.stream.Collectors;
 @Slf4j
 public class CartServiceImpl implements CartService {
     CartRepository cartRepository;
-    ProductClient productClient;
-
-    // Constants
-    private static final BigDecimal FREE_SHIPPING_THRESHOLD = BigDecimal.valueOf(500_000);
-    private static final BigDecimal SHIPPING_FEE = BigDecimal.valueOf(30_000);
+    CartWriter cartWriter;
+    CartReplica cartReplica;
+    CartKeys cartKeys;
+    CartExpiry cartExpiry;
+    CartTiering cartTiering;
+    CartMetadataStore cartMetadataStore;
+    CartEventPublisher cartEventPublisher;
+    CartReverseIndex cartReverseIndex;
+    CheckoutSnapshotStore checkoutSnapshotStore;
+    StockReservations stockReservations;
+    ProductVariantService productVariantService;
+    CartSummaryMapper cartSummaryMapper;
+    CheckoutSnapshotMapper checkoutSnapshotMapper;
+    PricingRulesRegistry pricingRulesRegistry;
+    CartItemPager cartItemPager;
+    CartSummaryMaterializer cartSummaryMaterializer;
+    CartJsonPassthrough cartJsonPassthrough;
 
     @Override
     public Cart addToCart(AddToCartRequest request) {
         log.info("Adding item to cart for user: {}; {}", request.getUserId(), request.getSellerId());
 
-        Cart cart = getOrCreateCart(request.getUserId());
-
-        // Lấy thông tin sản phẩm/biến thể theo OPTIONS
-        ApiResponse<OrderItemProductResponse> productResponse =
-                productClient.searchBySizeAndID(
-                        SearchSizeAndIDRequest.builder()
-                                .id(request.getProductId())
-                                .options(request.getOptions())
-                                .build()
-                );
-        log.info("Product response: {}", productResponse.getResult());
-        if (productResponse == null || productResponse.getResult() == null) {
-            throw new AppException(ErrorCode.PRODUCT_NOT_FOUND);
-        }
+        return cartWriter.retrying(() -> {
+            Cart cart = getOrCreateCart(request.getUserId());
 
-        OrderItemProductResponse p = productResponse.getResult();
-
-        CartItem newItem = CartItem.builder()
-                .productId(request.getProductId())
-                .sellerId(request.getSellerId())
-                .sellerName(request.getSellerName())
-                .options(request.getOptions())  // << sử dụng options
-                .unitPrice(p.getPrice())
-                .productImage(p.getImage())
-                .productName(p.getName())
-                .quantity(request.getQuantity())
-                .build();
-
-        newItem.calculateTotalPrice();
-        log.info("New item details: {}", newItem);
-
-        // So khớp item trùng (cùng seller + product + options)
-        String uniqueKey = newItem.getUniqueKey();
-        Optional<CartItem> existingItem = cart.getItems().stream()
-                .filter(item -> item.getUniqueKey().equals(uniqueKey))
-                .findFirst();
-
-        if (existingItem.isPresent()) {
-            CartItem existing = existingItem.get();
-            existing.setQuantity(existing.getQuantity() + request.getQuantity());
-            // cập nhật info mới nhất
-            existing.setProductImage(newItem.getProductImage());
-            existing.setProductName(newItem.getProductName());
-            existing.setSellerName(newItem.getSellerName());
-            existing.calculateTotalPrice();
-            log.info("Updated existing item quantity to: {}", existing.getQuantity());
-        } else {
-            cart.getItems().add(newItem);
-            log.info("Added new item to cart: {}", newItem.getProductId());
-        }
+            // Lấy thông tin sản phẩm/biến thể theo OPTIONS
+            OrderItemProductResponse p = productVariantService.getVariant(
+                    request.getProductId(),
+                    request.getOptions(),
+                    CartMutations.snapshotLine(cart, request.getSellerId(), request.getProductId(), request.getOptions()));
+            log.info("Product response: {}", p);
 
-        cart.calculateTotals();
-        return cartRepository.save(cart);
+            Map<String, CartItem> before = CartEvents.snapshot(cart);
+            CartMutations.applyAdd(cart, request, p);
+            return save(cart, before);
+        });
     }
 
     @Override
     public Cart getCartByUserId(String userId) {
         log.info("Getting cart for user: {}", userId);
-        return cartRepository.findByUserId(userId)
+        return findCart(userId)
+                .map(cartMetadataStore::hydrate)
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
     }
 
     @Override
     public Cart getOrCreateCart(String userId) {
         log.info("Getting or creating cart for user: {}", userId);
-        return cartRepository.findById(userId)
-                .orElse(Cart.builder()
-                        .id(userId)
-                        .userId(userId)
-                        .createdAt(LocalDateTime.now())
-                        .items(new ArrayList<>()) // đảm bảo không null
-                        .build());
+        return findCart(userId)
+                .map(cartMetadataStore::hydrate)
+                .orElseGet(() -> CartMutations.newCart(cartKeys.idFor(userId), userId));
+    }
+
+    @Override
+    public Cart readCart(String userId, Long minVersion) {
+        log.info("Reading cart for user: {}", userId);
+        return findForRead(userId, minVersion)
+                .map(cartMetadataStore::hydrate)
+                .orElseGet(() -> CartMutations.newCart(cartKeys.idFor(userId), userId));
     }
 
     @Override
     public Cart updateCartItem(UpdateCartItemRequest request) {
         log.info("Updating cart item for user: {}", request.getUserId());
-        Cart cart = getOrCreateCart(request.getUserId());
-
-        Map<String, String> newOpts = Optional.ofNullable(request.getOptions())
-                .orElse(Collections.emptyMap());
-        Map<String, String> oldOpts = Optional.ofNullable(request.getOriginalOptions())
-                .orElse(newOpts); // nếu FE không gửi originalOptions, coi như không đổi options
-
-        String oldKey = createUniqueKey(request.getSellerId(), request.getProductId(), oldOpts);
-        String newKey = createUniqueKey(request.getSellerId(), request.getProductId(), newOpts);
-
-        int reqQty = Optional.ofNullable(request.getQuantity()).orElse(0);
-
-        // 1) Tìm dòng GỐC theo oldKey
-        Optional<CartItem> srcOpt = cart.getItems().stream()
-                .filter(ci -> ci.getUniqueKey().equals(oldKey))
-                .findFirst();
-
-        // Nếu không tìm thấy dòng gốc mà qty <= 0 -> no-op
-        if (srcOpt.isEmpty() && reqQty <= 0) {
-            log.info("No source line & non-positive qty -> no-op");
-            cart.calculateTotals();
-            return cartRepository.save(cart);
-        }
-
-        // Nếu không tìm thấy dòng gốc mà qty > 0 -> coi như ADD mới vào newKey
-        if (srcOpt.isEmpty()) {
-            ApiResponse<OrderItemProductResponse> productResponse =
-                    productClient.searchBySizeAndID(
-                            SearchSizeAndIDRequest.builder()
-                                    .id(request.getProductId())
-                                    .options(newOpts)
-                                    .build()
-                    );
-            if (productResponse == null || productResponse.getResult() == null) {
-                throw new AppException(ErrorCode.PRODUCT_NOT_FOUND);
+        return cartWriter.retrying(() -> {
+            Cart cart = getOrCreateCart(request.getUserId());
+
+            OrderItemProductResponse p = null;
+            if (CartMutations.updateNeedsProduct(cart, request)) {
+                // Lấy info biến thể mới (tạo dòng mới hoặc đổi biến thể)
+                Map<String, String> newOpts = CartMutations.newOptions(request);
+                p = productVariantService.getVariant(
+                        request.getProductId(),
+                        newOpts,
+                        CartMutations.snapshotLine(cart, request.getSellerId(), request.getProductId(), newOpts));
             }
-            OrderItemProductResponse p = productResponse.getResult();
-
-            CartItem newItem = CartItem.builder()
-                    .productId(request.getProductId())
-                    .sellerId(request.getSellerId())
-                    .sellerName(Optional.ofNullable(request.getSellerName()).orElse("Unknown seller"))
-                    .options(newOpts)
-                    .unitPrice(p.getPrice())
-                    .productImage(p.getImage())
-                    .productName(p.getName())
-                    .quantity(reqQty)
-                    .build();
-            newItem.calculateTotalPrice();
-            cart.getItems().add(newItem);
-            log.info("Source not found -> created new line {}", newItem.getUniqueKey());
-
-            cart.calculateTotals();
-            return cartRepository.save(cart);
-        }
 
-        // Có dòng gốc
-        CartItem src = srcOpt.get();
-
-        // 2) Nếu reqQty <= 0 -> xoá dòng gốc
-        if (reqQty <= 0) {
-            cart.getItems().remove(src);
-            log.info("Removed source line {}", src.getUniqueKey());
-            cart.calculateTotals();
-            return cartRepository.save(cart);
-        }
-
-        boolean changingOptions = !oldKey.equals(newKey);
-        if (!changingOptions) {
-            // 3) Không đổi biến thể -> chỉ update số lượng
-            src.setQuantity(reqQty);
-            src.calculateTotalPrice();
-            log.info("Updated qty on same variant to {}", reqQty);
-        } else {
-            // 4) Đổi biến thể -> chuyển (hoặc gộp) sang newKey
-            // 4.1 Lấy info biến thể mới
-            ApiResponse<OrderItemProductResponse> productResponse =
-                    productClient.searchBySizeAndID(
-                            SearchSizeAndIDRequest.builder()
-                                    .id(request.getProductId())
-                                    .options(newOpts)
-                                    .build()
-                    );
-            if (productResponse == null || productResponse.getResult() == null) {
-                throw new AppException(ErrorCode.PRODUCT_NOT_FOUND);
-            }
-            OrderItemProductResponse p = productResponse.getResult();
-
-            // 4.2 Kiểm tra có dòng đích trùng newKey chưa
-            Optional<CartItem> conflictOpt = cart.getItems().stream()
-                    .filter(ci -> ci.getUniqueKey().equals(newKey))
-                    .findFirst();
-
-            if (conflictOpt.isPresent()) {
-                // GỘP: giữ dòng đích, cộng số lượng (giữ nguyên chính sách: qty đích += reqQty)
-                CartItem dst = conflictOpt.get();
-                int mergedQty = dst.getQuantity() + reqQty; // hoặc: dst.getQuantity() + src.getQuantity()
-                dst.setQuantity(mergedQty);
-                dst.setUnitPrice(p.getPrice());
-                dst.setProductImage(p.getImage());
-                dst.setProductName(p.getName());
-                dst.calculateTotalPrice();
-
-                // Xoá dòng gốc
-                cart.getItems().remove(src);
-                log.info("Merged into existing line {}, new qty={}", dst.getUniqueKey(), mergedQty);
-            } else {
-                // Không có xung đột -> chuyển dòng gốc sang biến thể mới
-                src.setOptions(newOpts);
-                src.setUnitPrice(p.getPrice());
-                src.setProductImage(p.getImage());
-                src.setProductName(p.getName());
-                src.setQuantity(reqQty); // giữ qty theo yêu cầu
-                src.calculateTotalPrice();
-                log.info("Moved line from {} -> {}", oldKey, newKey);
-            }
-        }
-
-        cart.calculateTotals();
-        return cartRepository.save(cart);
+            Map<String, CartItem> before = CartEvents.snapshot(cart);
+            CartMutations.applyUpdate(cart, request, p);
+            return save(cart, before);
+        });
     }
 
 
@@ -243,130 +131,60 @@ public class CartServiceImpl implements CartService {
     public Cart removeCartItem(String userId, String productId, String sellerId, Map<String,String> options) {
         log.info("Removing cart item for user: {}", userId);
 
-        Cart cart = getCartByUserId(userId);
-
-        // Tạo key duy nhất theo seller + product + options
-        String key = createUniqueKey(sellerId, productId, options == null ? Collections.emptyMap() : options);
-
-        boolean removed = cart.getItems().removeIf(item -> item.getUniqueKey().equals(key));
-
-        if (!removed) {
-            throw new AppException(ErrorCode.USER_NOT_FOUND);
-        }
-
-        cart.calculateTotals();
-        return cartRepository.save(cart);
+        return cartWriter.retrying(() -> {
+            Cart cart = getCartByUserId(userId);
+            Map<String, CartItem> before = CartEvents.snapshot(cart);
+            CartMutations.applyRemove(cart, productId, sellerId, options);
+            return save(cart, before);
+        });
     }
 
 
     @Override
     public Cart clearCart(String userId) {
         log.info("Clearing cart for user: {}", userId);
-        Cart cart = getCartByUserId(userId);
-        cart.getItems().clear();
-        cart.calculateTotals();
-        return cartRepository.save(cart);
+        return cartWriter.retrying(() -> {
+            Cart cart = getCartByUserId(userId);
+            Map<String, CartItem> before = CartEvents.snapshot(cart);
+            CartMutations.applyClear(cart);
+            return save(cart, before);
+        });
     }
 
     @Override
-    public CartSummaryResponse getCartSummary(String userId) {
+    public CartSummaryResponse getCartSummary(String userId, Long minVersion) {
         log.info("Getting cart summary for user: {}", userId);
-
-        Cart cart = getOrCreateCart(userId);
-
-        if (cart.getItems() == null || cart.getItems().isEmpty()) {
-            return CartSummaryResponse.builder()
-                    .totalItems(0)
-                    .totalSellers(0)
-                    .subtotal(BigDecimal.ZERO)
-                    .totalShipping(BigDecimal.ZERO)
-                    .totalDiscount(BigDecimal.ZERO)
-                    .finalAmount(BigDecimal.ZERO)
-                    .hasOutOfStockItems(false)
-                    .canCheckout(false)
-                    .checkoutMessage("Cart is empty")
-                    .build();
+        if (cartSummaryMaterializer.enabled()) {
+            return cartSummaryMaterializer.find(userId, minVersion)
+                    .orElseGet(() -> cartSummaryMaterializer.materialize(readCart(userId, minVersion)));
         }
+        return cartSummaryMapper.toSummary(readCart(userId, minVersion));
+    }
+
+    @Override
+    public CartItemsPageResponse getCartItems(String userId, String cursor, Integer limit) {
+        log.info("Getting cart items page for user: {}, cursor: {}", userId, cursor);
+        return cartItemPager.page(userId, cursor, limit);
+    }
+
+    @Override
+    public Optional<RawJson> findRenderedCart(String userId, Long minVersion) {
+        return cartJsonPassthrough.enabled() ? cartJsonPassthrough.find(userId, minVersion) : Optional.empty();
+    }
 
-        // group theo seller
-        Map<String, List<CartItem>> itemsBySeller = cart.getItems().stream()
-                .collect(Collectors.groupingBy(CartItem::getSellerId));
-
-        List<SellerSummaryResponse> sellerSummaries = itemsBySeller.entrySet().stream()
-                .map(entry -> {
-                    String sellerId = entry.getKey();
-                    List<CartItem> items = entry.getValue();
-
-                    // subtotal theo seller
-                    BigDecimal sellerSubtotal = items.stream()
-                            .map(CartItem::getTotalPrice)
-                            .filter(Objects::nonNull)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                    boolean freeShipping = sellerSubtotal.compareTo(FREE_SHIPPING_THRESHOLD) >= 0;
-                    BigDecimal shippingFee = freeShipping ? BigDecimal.ZERO : SHIPPING_FEE;
-                    BigDecimal amountForFreeShipping = freeShipping
-                            ? BigDecimal.ZERO
-                            : FREE_SHIPPING_THRESHOLD.subtract(sellerSubtotal);
-
-                    // map từng item (KHÔNG còn field size)
-                    List<CartItemSummaryResponse> itemSummaries = items.stream()
-                            .map(i -> CartItemSummaryResponse.builder()
-                                    .productId(i.getProductId())
-                                    .productName(i.getProductName())
-                                    .quantity(i.getQuantity())
-                                    .productImage(i.getProductImage())
-                                    .unitPrice(i.getUnitPrice())
-                                    .totalPrice(i.getTotalPrice())
-                                    .options(i.getOptions())   // chỉ trả về options
-                                    .build()
-                            )
-                            .toList();
-
-                    String sellerName = (items.isEmpty() || items.get(0).getSellerName() == null)
-                            ? "Unknown seller"
-                            : items.get(0).getSellerName();
-
-                    return SellerSummaryResponse.builder()
-                            .sellerId(sellerId)
-                            .sellerName(sellerName)
-                            .itemCount(items.size())
-                            .subtotal(sellerSubtotal)
-                            .shippingFee(shippingFee)
-                            .freeShipping(freeShipping)
-                            .amountForFreeShipping(amountForFreeShipping)
-                            .items(itemSummaries)
-                            .build();
-                })
-                .toList();
-
-        BigDecimal totalShipping = sellerSummaries.stream()
-                .map(SellerSummaryResponse::getShippingFee)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        return CartSummaryResponse.builder()
-                .totalItems(cart.getTotalItems())
-                .totalSellers(itemsBySeller.size())
-                .subtotal(cart.getSubtotal() == null ? BigDecimal.ZERO : cart.getSubtotal())
-                .totalShipping(totalShipping)
-                .totalDiscount(cart.getTotalDiscount() == null ? BigDecimal.ZERO : cart.getTotalDiscount())
-                .finalAmount(
-                        (cart.getSubtotal() == null ? BigDecimal.ZERO : cart.getSubtotal())
-                                .add(totalShipping)
-                                .subtract(cart.getTotalDiscount() == null ? BigDecimal.ZERO : cart.getTotalDiscount())
-                )
-                .sellerSummaries(sellerSummaries)
-                .hasOutOfStockItems(false)
-                .canCheckout(true)
-                .checkoutMessage("Ready to checkout")
-                .build();
+    @Override
+    public Optional<RawJson> findRenderedSummary(String userId, Long minVersion) {
+        if (!cartJsonPassthrough.enabled() || !cartSummaryMaterializer.enabled()) {
+            return Optional.empty();
+        }
+        return cartSummaryMaterializer.findJson(userId, minVersion).map(RawJson::new);
     }
 
 
     @Override
-    public int getCartItemCount(String userId) {
+    public int getCartItemCount(String userId, Long minVersion) {
         log.info("Getting cart item count for user: {}", userId);
-        return cartRepository.findByUserId(userId)
+        return findForRead(userId, minVersion)
                 .map(Cart::getTotalItems)
                 .orElse(0);
     }
@@ -375,35 +193,117 @@ public class CartServiceImpl implements CartService {
     public Cart removeCartItemsBatch(String userId, RemoveCartItemsRequest request) {
         log.info("Removing batch cart items for user: {}", userId);
 
-        Cart cart = getCartByUserId(userId);
+        return cartWriter.retrying(() -> {
+            Cart cart = getCartByUserId(userId);
+            Map<String, CartItem> before = CartEvents.snapshot(cart);
+            CartMutations.applyRemoveBatch(cart, request);
+            return save(cart, before);
+        });
+    }
 
-        if (request.getItems() == null || request.getItems().isEmpty()) {
-            throw new AppException(ErrorCode.USER_NOT_FOUND);
+    @Override
+    public CheckoutSnapshotResponse checkout(String userId) {
+        log.info("Checkout snapshot for user: {}", userId);
+        // lần thử lại trả đúng snapshot đã lưu, không đọc giỏ hay tính lại
+        return checkoutSnapshotStore.find(userId).orElseGet(() -> {
+            Cart cart = getCartByUserId(userId);
+            if (cart.getItems().isEmpty()) {
+                throw new AppException(ErrorCode.OPERATION_NOT_ALLOWED);
+            }
+            // chỉ giữ lại (gia hạn) hàng; chốt bán khi order-service xác nhận đơn (commitCheckout)
+            stockReservations.confirm(userId, cart.getItems());
+            CheckoutSnapshotStore.Stored stored = checkoutSnapshotStore.store(
+                    checkoutSnapshotMapper.toSnapshot(cart, checkoutSnapshotStore.ttl()));
+            if (stored.created()) {
+                if (cartEventPublisher.enabled()) {
+                    cartEventPublisher.publish(CartEvents.checkout(cart));
+                }
+            }
+            return stored.snapshot();
+        });
+    }
+
+    @Override
+    public void commitCheckout(String userId, String snapshotId) {
+        log.info("Committing checkout {} for user: {}", snapshotId, userId);
+        if (stockReservations.committed(userId, snapshotId)) {
+            return;
         }
+        CheckoutSnapshotResponse snapshot = checkoutSnapshotStore.find(userId)
+                .filter(found -> snapshotId.equals(found.getSnapshotId()))
+                .orElseThrow(() -> new AppException(ErrorCode.CHECKOUT_SNAPSHOT_NOT_FOUND));
+        stockReservations.commit(userId, snapshotId, CheckoutSnapshotMapper.quantities(snapshot));
+        // snapshot đã thành đơn: lần checkout sau tính snapshot mới và giữ lại hàng cho nó
+        checkoutSnapshotStore.invalidate(userId);
+    }
 
-        // Tạo list uniqueKey từ request (đã chuyển sang OPTIONS)
-        List<String> uniqueKeysToRemove = request.getItems().stream()
-                .map(item -> createUniqueKey(item.getSellerId(), item.getProductId(), item.getOptions()))
-                .toList();
+    @Override
+    public Cart applyVoucher(String userId, String code) {
+        log.info("Applying voucher {} for user: {}", code, userId);
+        return cartWriter.retrying(() -> {
+            Cart cart = getCartByUserId(userId);
+            Map<String, CartItem> before = CartEvents.snapshot(cart);
+            CartMutations.applyVoucher(cart, code, pricingRulesRegistry.current());
+            return save(cart, before);
+        });
+    }
 
-        boolean removedAny = cart.getItems().removeIf(ci -> uniqueKeysToRemove.contains(ci.getUniqueKey()));
-        if (!removedAny) {
-            throw new AppException(ErrorCode.SELLER_NOT_FOUND);
-        }
+    @Override
+    public Cart removeVoucher(String userId, String code) {
+        log.info("Removing voucher {} for user: {}", code, userId);
+        return cartWriter.retrying(() -> {
+            Cart cart = getCartByUserId(userId);
+            Map<String, CartItem> before = CartEvents.snapshot(cart);
+            CartMutations.applyRemoveVoucher(cart, code);
+            return save(cart, before);
+        });
+    }
 
-        log.info("Removed batch items");
-        cart.calculateTotals();
-        return cartRepository.save(cart);
+    private Optional<Cart> findCart(String userId) {
+        Optional<Cart> cart = cartRepository.findById(cartKeys.idFor(userId));
+        if (cart.isEmpty()) {
+            // giỏ có thể đã được chuyển sang kho lạnh
+            return cartTiering.rehydrate(userId);
+        }
+        cartExpiry.touch(userId);
+        return cart;
     }
 
-    /* ================= Helpers ================= */
+    // endpoint chỉ đọc: replica nếu đã tới minVersion, không thì primary (kể cả kho lạnh)
+    private Optional<Cart> findForRead(String userId, Long minVersion) {
+        Optional<Cart> cart = cartReplica.find(userId, minVersion);
+        if (cart.isEmpty()) {
+            return findCart(userId);
+        }
+        cartExpiry.touch(userId);
+        return cart;
+    }
 
-    private String createUniqueKey(String sellerId, String productId, Map<String, String> options) {
-        CartItem tmp = CartItem.builder()
-                .sellerId(sellerId)
-                .productId(productId)
-                .options(options)
-                .build();
-        return tmp.getUniqueKey();
+    // before: trạng thái dòng trước thao tác, dùng để phát sự kiện thay đổi sau khi lưu thành công.
+    // Giỏ bị ghi xen giữa từ lúc đọc thì ném CartWriter.Conflict, caller (retrying) đọc lại và áp lại thao tác
+    private Cart save(Cart cart, Map<String, CartItem> before) {
+        Long expectedVersion = cart.getVersion();
+        cart.calculateTotals(pricingRulesRegistry.current());
+        cart.setVersion(expectedVersion == null ? 1 : expectedVersion + 1);
+        cartExpiry.apply(cart);
+        // summary/JSON render trước khi bỏ tên/ảnh (metadata reference) và sau khi đã gán TTL
+        cartSummaryMaterializer.apply(cart);
+        cartJsonPassthrough.apply(cart);
+        // giữ hàng trước khi ghi: không đủ hàng thì giỏ không đổi
+        stockReservations.hold(cart.getUserId(), before.values(), cart.getItems());
+        Cart saved;
+        try {
+            saved = cartMetadataStore.saveStripped(cart, toSave -> cartWriter.save(toSave, expectedVersion));
+        } catch (RuntimeException e) {
+            // giỏ không được lưu (thua CAS hoặc lỗi Redis): trả lượt giữ vừa đặt
+            stockReservations.revert(cart.getUserId(), before.values(), cart.getItems());
+            throw e;
+        }
+        cartReverseIndex.sync(saved.getUserId(), before.values(), saved.getItems());
+        checkoutSnapshotStore.invalidate(saved.getUserId());
+        if (cartEventPublisher.enabled()) {
+            cartEventPublisher.publish(CartEvents.diff(saved, before));
+        }
+        return saved;
     }
 }
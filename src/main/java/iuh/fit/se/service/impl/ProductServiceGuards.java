@@ -0,0 +1,78 @@
+package iuh.fit.se.service.impl;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import iuh.fit.se.configuration.ProductClientProperties;
+import iuh.fit.se.dto.response.OrderItemProductResponse;
+import iuh.fit.se.entity.CartItem;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Circuit breaker, bulkhead và fallback theo snapshot dùng chung cho bản blocking ({@link ProductVariantServiceImpl})
+ * và reactive ({@link ReactiveProductVariantServiceImpl}) của lời gọi product-service, cùng cấu hình
+ * {@code product-client.*}.
+ */
+@Slf4j
+final class ProductServiceGuards {
+
+    private ProductServiceGuards() {
+    }
+
+    /** @param clientError lỗi 4xx (sản phẩm không tồn tại...) không phải dấu hiệu product-service ốm */
+    static CircuitBreaker circuitBreaker(ProductClientProperties properties, Predicate<Throwable> clientError) {
+        ProductClientProperties.CircuitBreaker cb = properties.getCircuitBreaker();
+        return CircuitBreaker.of("product-service", CircuitBreakerConfig.custom()
+                .failureRateThreshold(cb.getFailureRateThreshold())
+                .slowCallRateThreshold(cb.getSlowCallRateThreshold())
+                .slowCallDurationThreshold(cb.getSlowCallDurationThreshold())
+                .slidingWindowSize(cb.getSlidingWindowSize())
+                .minimumNumberOfCalls(cb.getMinimumNumberOfCalls())
+                .waitDurationInOpenState(cb.getWaitDurationInOpenState())
+                .ignoreException(clientError)
+                .build());
+    }
+
+    static Bulkhead bulkhead(ProductClientProperties properties, Duration maxWaitDuration) {
+        return Bulkhead.of("product-service", BulkheadConfig.custom()
+                .maxConcurrentCalls(properties.getBulkhead().getMaxConcurrentCalls())
+                .maxWaitDuration(maxWaitDuration)
+                .build());
+    }
+
+    /** Độ trễ trước khi gửi hedge: percentile cấu hình của các lần gọi gần nhất, kẹp trong [min-delay, max-delay]. */
+    static Duration hedgeDelay(ProductClientProperties.Hedge hedge, ProductVariantServiceImpl.LatencyWindow latencies) {
+        long percentile = latencies.percentile(hedge.getPercentile());
+        long delay = percentile < 0 ? hedge.getMaxDelay().toNanos() : percentile;
+        delay = Math.max(hedge.getMinDelay().toNanos(), Math.min(hedge.getMaxDelay().toNanos(), delay));
+        return Duration.ofNanos(delay);
+    }
+
+    /** Dòng giỏ đã có cùng biến thể, nếu snapshot giá chưa cũ hơn {@code product-client.fallback-max-age}. */
+    static Optional<OrderItemProductResponse> fromSnapshot(CartItem snapshot, Duration maxAge) {
+        if (snapshot == null || snapshot.getUnitPrice() == null) {
+            return Optional.empty();
+        }
+        LocalDateTime takenAt = snapshot.getSnapshotAt();
+        if (takenAt == null || takenAt.isBefore(LocalDateTime.now().minus(maxAge))) {
+            return Optional.empty();
+        }
+        log.info("Using cart snapshot of {} taken at {}", snapshot.getUniqueKey(), takenAt);
+        return Optional.of(OrderItemProductResponse.builder()
+                .productId(snapshot.getProductId())
+                .sellerId(snapshot.getSellerId())
+                .name(snapshot.getProductName())
+                .image(snapshot.getProductImage())
+                .categoryId(snapshot.getCategoryId())
+                .options(snapshot.getOptions())
+                .price(snapshot.getUnitPrice())
+                .snapshotAt(takenAt)
+                .build());
+    }
+}
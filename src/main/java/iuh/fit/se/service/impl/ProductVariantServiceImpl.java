@@ -0,0 +1,229 @@
+package iuh.fit.se.service.impl;
+
+import feign.FeignException;
+import feign.Request;
+import feign.RetryableException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import iuh.fit.se.configuration.ProductClientProperties;
+import iuh.fit.se.configuration.RequestDeadline;
+import iuh.fit.se.dto.request.SearchSizeAndIDRequest;
+import iuh.fit.se.dto.response.ApiResponse;
+import iuh.fit.se.dto.response.OrderItemProductResponse;
+import iuh.fit.se.entity.CartItem;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.repository.httpclient.ProductClient;
+import iuh.fit.se.service.ProductVariantService;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.openfeign.FeignClientProperties;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+@Service
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class ProductVariantServiceImpl implements ProductVariantService {
+    ProductClient productClient;
+    ProductClientProperties properties;
+    CircuitBreaker circuitBreaker;
+    Bulkhead bulkhead;
+    // trần connect/read-timeout của client product-service (spring.cloud.openfeign.client.config), mili giây
+    long connectTimeoutCap;
+    long readTimeoutCap;
+    LatencyWindow latencies = new LatencyWindow(512);
+    // Virtual thread: mỗi attempt (kể cả hedge) chỉ block chính nó, không chiếm thread Tomcat
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ProductVariantServiceImpl(ProductClient productClient, ProductClientProperties properties,
+                                     FeignClientProperties feignProperties) {
+        this.productClient = productClient;
+        this.properties = properties;
+        this.connectTimeoutCap = timeoutCap(feignProperties,
+                FeignClientProperties.FeignClientConfiguration::getConnectTimeout);
+        this.readTimeoutCap = timeoutCap(feignProperties,
+                FeignClientProperties.FeignClientConfiguration::getReadTimeout);
+        this.circuitBreaker = ProductServiceGuards.circuitBreaker(properties,
+                FeignException.FeignClientException.class::isInstance);
+        this.bulkhead = ProductServiceGuards.bulkhead(properties, properties.getBulkhead().getMaxWaitDuration());
+    }
+
+    @Override
+    public OrderItemProductResponse getVariant(String productId, Map<String, String> options, CartItem snapshot) {
+        SearchSizeAndIDRequest request = CartMutations.variantLookup(productId, options);
+        try {
+            return CartMutations.requireProduct(hedgedCall(request));
+        } catch (CallNotPermittedException | BulkheadFullException | TimeoutException | RetryableException
+                 | FeignException.FeignServerException e) {
+            log.warn("product-service unavailable for {} ({}), circuit={}",
+                    productId, e.getClass().getSimpleName(), circuitBreaker.getState());
+            return ProductServiceGuards.fromSnapshot(snapshot, properties.getFallbackMaxAge())
+                    .orElseThrow(() -> new AppException(e instanceof TimeoutException
+                            ? ErrorCode.EXTERNAL_SERVICE_TIMEOUT
+                            : ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE));
+        }
+    }
+
+    /**
+     * Gửi attempt đầu; nếu chưa xong sau độ trễ ~p95 và còn ngân sách thì gửi thêm một attempt (hedge),
+     * lấy kết quả thành công đầu tiên. Tất cả nằm trong deadline của request.
+     */
+    private ApiResponse<OrderItemProductResponse> hedgedCall(SearchSizeAndIDRequest request) throws TimeoutException {
+        long deadline = System.nanoTime() + RequestDeadline.remaining(properties.getDeadline()).toNanos();
+        if (deadline - System.nanoTime() <= 0) {
+            throw new TimeoutException("Request deadline already exceeded");
+        }
+
+        CompletableFuture<ApiResponse<OrderItemProductResponse>> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger();
+        Future<?> primary = launch(request, deadline, winner, pending);
+        Future<?> hedge = null;
+        try {
+            ProductClientProperties.Hedge hedgeProps = properties.getHedge();
+            long hedgeDelay = ProductServiceGuards.hedgeDelay(hedgeProps, latencies).toNanos();
+            if (hedgeProps.isEnabled() && deadline - System.nanoTime() > hedgeDelay) {
+                try {
+                    return winner.get(hedgeDelay, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException slow) {
+                    log.debug("Hedging product-service call for {}", request.getId());
+                    hedge = launch(request, deadline, winner, pending);
+                }
+            }
+            return winner.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new AppException(ErrorCode.FEIGN_CLIENT_ERROR);
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    private Future<?> launch(SearchSizeAndIDRequest request, long deadline,
+                             CompletableFuture<ApiResponse<OrderItemProductResponse>> winner, AtomicInteger pending) {
+        pending.incrementAndGet();
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        return executor.submit(() -> {
+            RequestContextHolder.setRequestAttributes(requestAttributes);
+            RequestDeadline.setNanos(deadline);
+            try {
+                winner.complete(attempt(request, deadline, winner));
+            } catch (RuntimeException e) {
+                // Chỉ báo lỗi khi không còn attempt nào đang chạy
+                if (pending.decrementAndGet() == 0) {
+                    winner.completeExceptionally(e);
+                }
+            } finally {
+                RequestDeadline.clear();
+                RequestContextHolder.resetRequestAttributes();
+            }
+        });
+    }
+
+    private ApiResponse<OrderItemProductResponse> attempt(SearchSizeAndIDRequest request, long deadline,
+                                                          CompletableFuture<?> winner) {
+        bulkhead.acquirePermission();
+        try {
+            circuitBreaker.acquirePermission();
+            long start = System.nanoTime();
+            try {
+                ApiResponse<OrderItemProductResponse> response = productClient.searchBySizeAndID(request, options(deadline));
+                long elapsed = System.nanoTime() - start;
+                circuitBreaker.onSuccess(elapsed, TimeUnit.NANOSECONDS);
+                latencies.record(elapsed);
+                return response;
+            } catch (RuntimeException e) {
+                if (winner.isDone()) {
+                    // Attempt thua bị huỷ sau khi đã có kết quả -> không tính là lỗi của product-service
+                    circuitBreaker.releasePermission();
+                } else {
+                    circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+                }
+                throw e;
+            }
+        } finally {
+            bulkhead.onComplete();
+        }
+    }
+
+    // deadline còn lại của request, không vượt trần timeout cấu hình cho client
+    private Request.Options options(long deadline) {
+        long remainingMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+        return new Request.Options(Math.min(remainingMillis, connectTimeoutCap), TimeUnit.MILLISECONDS,
+                Math.min(remainingMillis, readTimeoutCap), TimeUnit.MILLISECONDS, true);
+    }
+
+    // cấu hình riêng của product-service, không có thì cấu hình default; không khai báo thì không giới hạn
+    private static long timeoutCap(FeignClientProperties feignProperties,
+                                   Function<FeignClientProperties.FeignClientConfiguration, Integer> timeout) {
+        for (String name : List.of("product-service", feignProperties.getDefaultConfig())) {
+            FeignClientProperties.FeignClientConfiguration config = feignProperties.getConfig().get(name);
+            Integer millis = config != null ? timeout.apply(config) : null;
+            if (millis != null && millis > 0) {
+                return millis;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Cửa sổ vòng các latency thành công gần nhất; percentile tính lại thưa (mỗi 32 mẫu) để rẻ trên hot path.
+     */
+    static final class LatencyWindow {
+        private final long[] samples;
+        private int next;
+        private int size;
+        private long recorded;
+        private volatile long[] sorted = new long[0];
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+            if (++recorded % 32 == 0 || size < 32) {
+                long[] copy = Arrays.copyOf(samples, size);
+                Arrays.sort(copy);
+                sorted = copy;
+            }
+        }
+
+        /** @return percentile (ns) hoặc -1 khi chưa có mẫu nào. */
+        long percentile(double p) {
+            long[] snapshot = sorted;
+            if (snapshot.length == 0) {
+                return -1;
+            }
+            int index = (int) Math.ceil(p * snapshot.length) - 1;
+            return snapshot[Math.max(0, Math.min(snapshot.length - 1, index))];
+        }
+    }
+}
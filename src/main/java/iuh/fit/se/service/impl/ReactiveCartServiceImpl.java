@@ -0,0 +1,367 @@
+package iuh.fit.se.service.impl;
+
+import iuh.fit.se.dto.request.AddToCartRequest;
+import iuh.fit.se.dto.request.RemoveCartItemsRequest;
+import iuh.fit.se.dto.request.UpdateCartItemRequest;
+import iuh.fit.se.dto.response.CartItemsPageResponse;
+import iuh.fit.se.dto.response.CartSummaryResponse;
+import iuh.fit.se.dto.response.CheckoutSnapshotResponse;
+import iuh.fit.se.dto.response.OrderItemProductResponse;
+import iuh.fit.se.dto.response.RawJson;
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.entity.CartItem;
+import iuh.fit.se.event.CartEventPublisher;
+import iuh.fit.se.event.CartEvents;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.mapper.CartSummaryMapper;
+import iuh.fit.se.mapper.CheckoutSnapshotMapper;
+import iuh.fit.se.pricing.PricingRulesRegistry;
+import iuh.fit.se.repository.CartExpiry;
+import iuh.fit.se.repository.CartKeys;
+import iuh.fit.se.repository.CartMetadataStore;
+import iuh.fit.se.repository.CartReverseIndex;
+import iuh.fit.se.repository.CartWriter;
+import iuh.fit.se.repository.CheckoutSnapshotStore;
+import iuh.fit.se.repository.ReactiveCartRepository;
+import iuh.fit.se.repository.StockReservations;
+import iuh.fit.se.service.CartItemPager;
+import iuh.fit.se.service.CartJsonPassthrough;
+import iuh.fit.se.service.CartSummaryMaterializer;
+import iuh.fit.se.service.CartTiering;
+import iuh.fit.se.service.ReactiveCartService;
+import iuh.fit.se.service.ReactiveProductVariantService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+
+@Service
+@Profile("reactive")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveCartServiceImpl implements ReactiveCartService {
+    ReactiveCartRepository cartRepository;
+    CartWriter cartWriter;
+    CartKeys cartKeys;
+    CartExpiry cartExpiry;
+    CartTiering cartTiering;
+    CartMetadataStore cartMetadataStore;
+    CartEventPublisher cartEventPublisher;
+    CartReverseIndex cartReverseIndex;
+    CheckoutSnapshotStore checkoutSnapshotStore;
+    StockReservations stockReservations;
+    ReactiveProductVariantService productVariantService;
+    CartSummaryMapper cartSummaryMapper;
+    CheckoutSnapshotMapper checkoutSnapshotMapper;
+    PricingRulesRegistry pricingRulesRegistry;
+    CartItemPager cartItemPager;
+    CartSummaryMaterializer cartSummaryMaterializer;
+    CartJsonPassthrough cartJsonPassthrough;
+
+    @Override
+    public Mono<Cart> addToCart(AddToCartRequest request) {
+        log.info("Adding item to cart for user: {}; {}", request.getUserId(), request.getSellerId());
+
+        // Tra cứu biến thể và đọc giỏ chạy song song; dòng cũ trong giỏ chỉ được đọc lại khi cần fallback
+        return cartWriter.retrying(Mono.defer(() -> {
+            Mono<Cart> cart = getOrCreateCart(request.getUserId()).cache();
+            Mono<OrderItemProductResponse> product = productVariantService.getVariant(
+                    request.getProductId(),
+                    request.getOptions(),
+                    cart.mapNotNull(c -> CartMutations.snapshotLine(
+                            c, request.getSellerId(), request.getProductId(), request.getOptions())));
+            return Mono.zip(cart, product)
+                    .flatMap(tuple -> {
+                        Map<String, CartItem> before = CartEvents.snapshot(tuple.getT1());
+                        CartMutations.applyAdd(tuple.getT1(), request, tuple.getT2());
+                        return save(tuple.getT1(), before);
+                    });
+        }));
+    }
+
+    @Override
+    public Mono<Cart> getCartByUserId(String userId) {
+        log.info("Getting cart for user: {}", userId);
+        return findCart(userId)
+                .flatMap(this::hydrate)
+                .switchIfEmpty(Mono.error(() -> new AppException(ErrorCode.USER_NOT_FOUND)));
+    }
+
+    @Override
+    public Mono<Cart> getOrCreateCart(String userId) {
+        log.info("Getting or creating cart for user: {}", userId);
+        return findCart(userId)
+                .flatMap(this::hydrate)
+                .switchIfEmpty(Mono.fromSupplier(() -> CartMutations.newCart(cartKeys.idFor(userId), userId)));
+    }
+
+    @Override
+    public Mono<Cart> readCart(String userId, Long minVersion) {
+        log.info("Reading cart for user: {}", userId);
+        return findForRead(userId, minVersion)
+                .flatMap(this::hydrate)
+                .switchIfEmpty(Mono.fromSupplier(() -> CartMutations.newCart(cartKeys.idFor(userId), userId)));
+    }
+
+    @Override
+    public Mono<Cart> updateCartItem(UpdateCartItemRequest request) {
+        log.info("Updating cart item for user: {}", request.getUserId());
+        return cartWriter.retrying(getOrCreateCart(request.getUserId())
+                .flatMap(cart -> {
+                    Map<String, CartItem> before = CartEvents.snapshot(cart);
+                    if (!CartMutations.updateNeedsProduct(cart, request)) {
+                        CartMutations.applyUpdate(cart, request, null);
+                        return save(cart, before);
+                    }
+                    Map<String, String> newOpts = CartMutations.newOptions(request);
+                    return productVariantService.getVariant(
+                                    request.getProductId(),
+                                    newOpts,
+                                    Mono.justOrEmpty(CartMutations.snapshotLine(
+                                            cart, request.getSellerId(), request.getProductId(), newOpts)))
+                            .flatMap(p -> {
+                                CartMutations.applyUpdate(cart, request, p);
+                                return save(cart, before);
+                            });
+                }));
+    }
+
+    @Override
+    public Mono<Cart> removeCartItem(String userId, String productId, String sellerId, Map<String, String> options) {
+        log.info("Removing cart item for user: {}", userId);
+        return cartWriter.retrying(getCartByUserId(userId)
+                .flatMap(cart -> {
+                    Map<String, CartItem> before = CartEvents.snapshot(cart);
+                    CartMutations.applyRemove(cart, productId, sellerId, options);
+                    return save(cart, before);
+                }));
+    }
+
+    @Override
+    public Mono<Cart> clearCart(String userId) {
+        log.info("Clearing cart for user: {}", userId);
+        return cartWriter.retrying(getCartByUserId(userId)
+                .flatMap(cart -> {
+                    Map<String, CartItem> before = CartEvents.snapshot(cart);
+                    CartMutations.applyClear(cart);
+                    return save(cart, before);
+                }));
+    }
+
+    @Override
+    public Mono<CartSummaryResponse> getCartSummary(String userId, Long minVersion) {
+        log.info("Getting cart summary for user: {}", userId);
+        if (cartSummaryMaterializer.enabled()) {
+            // summary lưu sẵn đọc bằng StringRedisTemplate (blocking)
+            return Mono.fromCallable(() -> cartSummaryMaterializer.find(userId, minVersion).orElse(null))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .switchIfEmpty(readCart(userId, minVersion)
+                            .flatMap(cart -> Mono.fromCallable(() -> cartSummaryMaterializer.materialize(cart))
+                                    .subscribeOn(Schedulers.boundedElastic())));
+        }
+        return readCart(userId, minVersion).map(cartSummaryMapper::toSummary);
+    }
+
+    @Override
+    public Mono<CartItemsPageResponse> getCartItems(String userId, String cursor, Integer limit) {
+        log.info("Getting cart items page for user: {}, cursor: {}", userId, cursor);
+        // đọc trang bằng StringRedisTemplate (blocking)
+        return Mono.fromCallable(() -> cartItemPager.page(userId, cursor, limit))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<RawJson> findRenderedCart(String userId, Long minVersion) {
+        if (!cartJsonPassthrough.enabled()) {
+            return Mono.empty();
+        }
+        return cartRepository.rendered(cartKeys.idFor(userId), CartKeys.JSON_SUFFIX,
+                        CartJsonPassthrough.fields(), minVersion)
+                .flatMap(values -> Mono.justOrEmpty(cartJsonPassthrough.select(values)))
+                .flatMap(json -> touch(userId).thenReturn(json));
+    }
+
+    @Override
+    public Mono<RawJson> findRenderedSummary(String userId, Long minVersion) {
+        if (!cartJsonPassthrough.enabled() || !cartSummaryMaterializer.enabled()) {
+            return Mono.empty();
+        }
+        return cartRepository.rendered(cartKeys.idFor(userId), CartKeys.SUMMARY_SUFFIX,
+                        CartSummaryMaterializer.fields(), minVersion)
+                .flatMap(values -> Mono.justOrEmpty(cartSummaryMaterializer.select(values)))
+                .flatMap(json -> touch(userId).thenReturn(new RawJson(json)));
+    }
+
+    @Override
+    public Mono<Integer> getCartItemCount(String userId, Long minVersion) {
+        log.info("Getting cart item count for user: {}", userId);
+        return findForRead(userId, minVersion)
+                .map(Cart::getTotalItems)
+                .defaultIfEmpty(0);
+    }
+
+    @Override
+    public Mono<Cart> removeCartItemsBatch(String userId, RemoveCartItemsRequest request) {
+        log.info("Removing batch cart items for user: {}", userId);
+        return cartWriter.retrying(getCartByUserId(userId)
+                .flatMap(cart -> {
+                    Map<String, CartItem> before = CartEvents.snapshot(cart);
+                    CartMutations.applyRemoveBatch(cart, request);
+                    return save(cart, before);
+                }));
+    }
+
+    @Override
+    public Mono<CheckoutSnapshotResponse> checkout(String userId) {
+        log.info("Checkout snapshot for user: {}", userId);
+        // snapshot store dùng StringRedisTemplate (blocking)
+        Mono<CheckoutSnapshotResponse> stored = Mono.fromCallable(() -> checkoutSnapshotStore.find(userId).orElse(null))
+                .subscribeOn(Schedulers.boundedElastic());
+        return stored.switchIfEmpty(getCartByUserId(userId)
+                .flatMap(cart -> {
+                    if (cart.getItems().isEmpty()) {
+                        return Mono.error(new AppException(ErrorCode.OPERATION_NOT_ALLOWED));
+                    }
+                    return Mono.fromCallable(() -> {
+                                stockReservations.confirm(userId, cart.getItems());
+                                CheckoutSnapshotStore.Stored saved = checkoutSnapshotStore.store(
+                                        checkoutSnapshotMapper.toSnapshot(cart, checkoutSnapshotStore.ttl()));
+                                // chốt bán khi order-service xác nhận đơn (chỉ có ở bản servlet)
+                                if (saved.created()) {
+                                    if (cartEventPublisher.enabled()) {
+                                        cartEventPublisher.publish(CartEvents.checkout(cart));
+                                    }
+                                }
+                                return saved.snapshot();
+                            })
+                            .subscribeOn(Schedulers.boundedElastic());
+                }));
+    }
+
+    @Override
+    public Mono<Cart> applyVoucher(String userId, String code) {
+        log.info("Applying voucher {} for user: {}", code, userId);
+        return cartWriter.retrying(getCartByUserId(userId)
+                .flatMap(cart -> {
+                    Map<String, CartItem> before = CartEvents.snapshot(cart);
+                    CartMutations.applyVoucher(cart, code, pricingRulesRegistry.current());
+                    return save(cart, before);
+                }));
+    }
+
+    @Override
+    public Mono<Cart> removeVoucher(String userId, String code) {
+        log.info("Removing voucher {} for user: {}", code, userId);
+        return cartWriter.retrying(getCartByUserId(userId)
+                .flatMap(cart -> {
+                    Map<String, CartItem> before = CartEvents.snapshot(cart);
+                    CartMutations.applyRemoveVoucher(cart, code);
+                    return save(cart, before);
+                }));
+    }
+
+    private Mono<Cart> findCart(String userId) {
+        return cartRepository.findById(cartKeys.idFor(userId))
+                .flatMap(cart -> touch(userId).thenReturn(cart))
+                .switchIfEmpty(rehydrate(userId));
+    }
+
+    // endpoint chỉ đọc: replica nếu đã tới minVersion, không thì primary (kể cả kho lạnh)
+    private Mono<Cart> findForRead(String userId, Long minVersion) {
+        return cartRepository.findOnReplica(cartKeys.idFor(userId), minVersion)
+                .flatMap(cart -> touch(userId).thenReturn(cart))
+                .switchIfEmpty(Mono.defer(() -> findCart(userId)));
+    }
+
+    private Mono<Boolean> touch(String userId) {
+        return cartExpiry.claimTouch(userId)
+                ? cartRepository.touch(cartKeys.idFor(userId), cartExpiry.ttl())
+                : Mono.just(true);
+    }
+
+    // Kho lạnh là I/O blocking (file), chạy trên boundedElastic
+    private Mono<Cart> rehydrate(String userId) {
+        if (!cartTiering.enabled()) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> cartTiering.rehydrate(userId).orElse(null))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // giỏ bị ghi xen giữa từ lúc đọc thì lỗi CartWriter.Conflict, caller (retrying) đăng ký lại để đọc lại giỏ
+    private Mono<Cart> save(Cart cart, Map<String, CartItem> before) {
+        Long expectedVersion = cart.getVersion();
+        cart.calculateTotals(pricingRulesRegistry.current());
+        cart.setVersion(expectedVersion == null ? 1 : expectedVersion + 1);
+        cartExpiry.apply(cart);
+        // summary/JSON render trước khi bỏ tên/ảnh (metadata reference) và sau khi đã gán TTL
+        cartSummaryMaterializer.apply(cart);
+        cartJsonPassthrough.apply(cart);
+        return hold(cart, before)
+                .then(persist(cart, expectedVersion)
+                        .onErrorResume(e -> release(cart, before).then(Mono.error(e))))
+                .flatMap(saved -> afterSave(saved, before))
+                .doOnSuccess(saved -> {
+                    // publish chỉ đẩy vào hàng đợi, không chặn event loop
+                    if (cartEventPublisher.enabled()) {
+                        cartEventPublisher.publish(CartEvents.diff(saved, before));
+                    }
+                });
+    }
+
+    // index ngược và checkout snapshot ghi bằng StringRedisTemplate (blocking)
+    private Mono<Cart> afterSave(Cart saved, Map<String, CartItem> before) {
+        return Mono.fromRunnable(() -> {
+                    cartReverseIndex.sync(saved.getUserId(), before.values(), saved.getItems());
+                    checkoutSnapshotStore.invalidate(saved.getUserId());
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .thenReturn(saved);
+    }
+
+    // giữ hàng (StringRedisTemplate, blocking) trước khi ghi; không đủ hàng thì giỏ không đổi
+    private Mono<Void> hold(Cart cart, Map<String, CartItem> before) {
+        if (!stockReservations.enabled()) {
+            return Mono.empty();
+        }
+        return Mono.fromRunnable(() -> stockReservations.hold(cart.getUserId(), before.values(), cart.getItems()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    private Mono<Void> release(Cart cart, Map<String, CartItem> before) {
+        if (!stockReservations.enabled()) {
+            return Mono.empty();
+        }
+        return Mono.fromRunnable(() -> stockReservations.revert(cart.getUserId(), before.values(), cart.getItems()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    private Mono<Cart> persist(Cart cart, Long expectedVersion) {
+        if (!cartMetadataStore.referenceMode()) {
+            return cartRepository.save(cart, expectedVersion);
+        }
+        // ghi metadata dùng StringRedisTemplate (blocking) nên chạy trên boundedElastic
+        return Mono.fromCallable(() -> cartMetadataStore.strip(cart))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(display -> cartRepository.save(cart, expectedVersion)
+                        .doOnSuccess(saved -> cartMetadataStore.restore(cart, display)));
+    }
+
+    private Mono<Cart> hydrate(Cart cart) {
+        if (!cartMetadataStore.referenceMode()) {
+            return Mono.just(cart);
+        }
+        return Mono.fromCallable(() -> cartMetadataStore.hydrate(cart))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,147 @@
+package iuh.fit.se.service.impl;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import iuh.fit.se.configuration.ProductClientProperties;
+import iuh.fit.se.dto.request.SearchSizeAndIDRequest;
+import iuh.fit.se.dto.response.ApiResponse;
+import iuh.fit.se.dto.response.OrderItemProductResponse;
+import iuh.fit.se.entity.CartItem;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.repository.httpclient.ReactiveProductClient;
+import iuh.fit.se.service.ReactiveProductVariantService;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tra cứu biến thể qua {@link ReactiveProductClient} với cùng bảo vệ như {@link ProductVariantServiceImpl}:
+ * toàn bộ lời gọi (kể cả hedge) nằm trong {@code product-client.deadline}, hedge sau độ trễ ~p95 nếu attempt đầu
+ * chưa xong, circuit breaker và bulkhead riêng của bản reactive (cùng cấu hình), và fallback theo snapshot khi
+ * product-service không phản hồi. Bulkhead không chờ ({@code max-wait-duration} bị bỏ qua) để không block event loop;
+ * bản reactive không có {@code RequestDeadlineFilter} nên không nhận ngân sách từ header của caller.
+ */
+@Service
+@Profile("reactive")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class ReactiveProductVariantServiceImpl implements ReactiveProductVariantService {
+    ReactiveProductClient productClient;
+    ProductClientProperties properties;
+    CircuitBreaker circuitBreaker;
+    Bulkhead bulkhead;
+    ProductVariantServiceImpl.LatencyWindow latencies = new ProductVariantServiceImpl.LatencyWindow(512);
+
+    public ReactiveProductVariantServiceImpl(ReactiveProductClient productClient, ProductClientProperties properties) {
+        this.productClient = productClient;
+        this.properties = properties;
+        this.circuitBreaker = ProductServiceGuards.circuitBreaker(properties,
+                e -> e instanceof WebClientResponseException response && response.getStatusCode().is4xxClientError());
+        this.bulkhead = ProductServiceGuards.bulkhead(properties, Duration.ZERO);
+    }
+
+    @Override
+    public Mono<OrderItemProductResponse> getVariant(String productId, Map<String, String> options,
+                                                     Mono<CartItem> snapshot) {
+        SearchSizeAndIDRequest request = CartMutations.variantLookup(productId, options);
+        return hedgedCall(request)
+                .map(CartMutations::requireProduct)
+                .switchIfEmpty(Mono.error(() -> new AppException(ErrorCode.PRODUCT_NOT_FOUND)))
+                .onErrorResume(ReactiveProductVariantServiceImpl::unavailable, e -> {
+                    log.warn("product-service unavailable for {} ({}), circuit={}",
+                            productId, e.getClass().getSimpleName(), circuitBreaker.getState());
+                    return snapshot
+                            .flatMap(line -> Mono.justOrEmpty(
+                                    ProductServiceGuards.fromSnapshot(line, properties.getFallbackMaxAge())))
+                            .switchIfEmpty(Mono.error(() -> new AppException(e instanceof TimeoutException
+                                    ? ErrorCode.EXTERNAL_SERVICE_TIMEOUT
+                                    : ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE)));
+                });
+    }
+
+    /**
+     * Gửi attempt đầu; nếu chưa xong sau độ trễ hedge thì gửi thêm một attempt, lấy kết quả thành công đầu tiên.
+     * Attempt đầu lỗi trước lúc hedge thì trả lỗi ngay, như bản blocking.
+     */
+    private Mono<ApiResponse<OrderItemProductResponse>> hedgedCall(SearchSizeAndIDRequest request) {
+        return Mono.defer(() -> {
+            AtomicBoolean settled = new AtomicBoolean();
+            // lỗi của attempt kết thúc sau cùng; firstWithValue chỉ báo "không attempt nào có kết quả"
+            AtomicReference<Throwable> lastError = new AtomicReference<>();
+            Sinks.Empty<Void> primaryDone = Sinks.empty();
+            Mono<ApiResponse<OrderItemProductResponse>> primary = attempt(request, settled, lastError)
+                    .doOnTerminate(primaryDone::tryEmitEmpty);
+
+            Mono<ApiResponse<OrderItemProductResponse>> call = primary;
+            ProductClientProperties.Hedge hedgeProps = properties.getHedge();
+            Duration hedgeDelay = ProductServiceGuards.hedgeDelay(hedgeProps, latencies);
+            if (hedgeProps.isEnabled() && properties.getDeadline().compareTo(hedgeDelay) > 0) {
+                Mono<ApiResponse<OrderItemProductResponse>> hedge = Mono.delay(hedgeDelay)
+                        .takeUntilOther(primaryDone.asMono())
+                        .doOnNext(tick -> log.debug("Hedging product-service call for {}", request.getId()))
+                        .flatMap(tick -> attempt(request, settled, lastError));
+                call = Mono.firstWithValue(primary, hedge)
+                        .onErrorMap(e -> lastError.get() != null ? lastError.get() : e);
+            }
+            return call.timeout(properties.getDeadline());
+        });
+    }
+
+    private Mono<ApiResponse<OrderItemProductResponse>> attempt(SearchSizeAndIDRequest request, AtomicBoolean settled,
+                                                                AtomicReference<Throwable> lastError) {
+        return Mono.defer(() -> {
+            if (!bulkhead.tryAcquirePermission()) {
+                return Mono.error(BulkheadFullException.createBulkheadFullException(bulkhead));
+            }
+            if (!circuitBreaker.tryAcquirePermission()) {
+                bulkhead.onComplete();
+                return Mono.error(CallNotPermittedException.createCallNotPermittedException(circuitBreaker));
+            }
+            long start = System.nanoTime();
+            return productClient.searchBySizeAndID(request)
+                    .doOnSuccess(response -> {
+                        // đánh dấu trước khi firstWithValue huỷ attempt còn lại
+                        if (response != null) {
+                            settled.set(true);
+                        }
+                        long elapsed = System.nanoTime() - start;
+                        circuitBreaker.onSuccess(elapsed, TimeUnit.NANOSECONDS);
+                        latencies.record(elapsed);
+                    })
+                    .doOnError(e -> circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e))
+                    .doOnCancel(() -> {
+                        if (settled.get()) {
+                            // attempt thua bị huỷ sau khi đã có kết quả -> không tính là lỗi của product-service
+                            circuitBreaker.releasePermission();
+                        } else {
+                            circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS,
+                                    new TimeoutException("Request deadline exceeded"));
+                        }
+                    })
+                    .doFinally(signal -> bulkhead.onComplete());
+        }).doOnError(lastError::set);
+    }
+
+    // như bản blocking: lỗi mạng, 5xx, timeout, circuit mở hay bulkhead đầy thì dùng snapshot; 4xx trả nguyên
+    private static boolean unavailable(Throwable e) {
+        return e instanceof CallNotPermittedException || e instanceof BulkheadFullException
+                || e instanceof TimeoutException || e instanceof WebClientRequestException
+                || e instanceof WebClientResponseException response && response.getStatusCode().is5xxServerError();
+    }
+}
@@ -0,0 +1,148 @@
+package iuh.fit.se.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import feign.hc5.ApacheHttp5Client;
+import iuh.fit.se.configuration.InstrumentedConnectionManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
+import org.apache.hc.client5.http.socket.PlainConnectionSocketFactory;
+import org.apache.hc.core5.http.config.RegistryBuilder;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * So sánh Feign client mặc định (HttpURLConnection) với pool HttpClient 5 trên một product-service giả lập.
+ * Không nằm trong bộ test mặc định (tên không khớp *Test/*Tests), chạy thủ công:
+ * <pre>mvn test -Dtest=FeignClientBenchmark</pre>
+ */
+class FeignClientBenchmark {
+    private static final int THREADS = 64;
+    private static final int REQUESTS_PER_THREAD = 500;
+    private static final byte[] BODY = """
+            {"code":1000,"result":{"name":"Áo thun","price":199000,"image":"https://cdn/img.png"}}
+            """.getBytes(StandardCharsets.UTF_8);
+
+    private static HttpServer server;
+    // mỗi kết nối TCP mới có một cổng nguồn khác nhau
+    private static final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext("/product/searchBySizeAndID", exchange -> {
+            connections.add(exchange.getRemoteAddress());
+            try (InputStream in = exchange.getRequestBody()) {
+                in.readAllBytes();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, BODY.length);
+            exchange.getResponseBody().write(BODY);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newFixedThreadPool(THREADS));
+        server.start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void defaultClient() throws Exception {
+        run("HttpURLConnection", new Client.Default(null, null));
+    }
+
+    @Test
+    void pooledHc5Client() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        InstrumentedConnectionManager connectionManager = new InstrumentedConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .build(),
+                PoolConcurrencyPolicy.LAX, PoolReusePolicy.LIFO, TimeValue.ofMinutes(15), registry);
+        connectionManager.setMaxTotal(200);
+        connectionManager.setDefaultMaxPerRoute(THREADS);
+
+        try (CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .disableContentCompression()
+                .build()) {
+            run("HttpClient5 pool", new ApacheHttp5Client(httpClient));
+        }
+        System.out.printf("  pool reuse ratio %.3f, lease p99 %.3f ms%n",
+                registry.get("feign.pool.reuse.ratio").gauge().value(),
+                registry.get("feign.pool.lease").timer().takeSnapshot().percentileValues()[2].value(TimeUnit.MILLISECONDS));
+    }
+
+    private void run(String label, Client client) throws Exception {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/product/searchBySizeAndID";
+        Request.Options options = new Request.Options(1, TimeUnit.SECONDS, 3, TimeUnit.SECONDS, true);
+        byte[] payload = "{\"id\":\"p1\",\"options\":{\"size\":\"M\"}}".getBytes(StandardCharsets.UTF_8);
+        Map<String, Collection<String>> headers = Map.of("Content-Type", List.of("application/json"));
+
+        // warm-up để JIT và pool ổn định
+        call(client, url, headers, payload, options);
+        connections.clear();
+
+        long[][] latencies = new long[THREADS][REQUESTS_PER_THREAD];
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long[] samples = latencies[t];
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                    long begin = System.nanoTime();
+                    call(client, url, headers, payload, options);
+                    samples[i] = System.nanoTime() - begin;
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        pool.shutdown();
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        int total = THREADS * REQUESTS_PER_THREAD;
+        System.out.printf("%-18s %8.0f req/s  p50 %6.2f ms  p99 %6.2f ms  connections %d%n",
+                label,
+                total / (elapsed / 1e9),
+                all[total / 2] / 1e6,
+                all[(int) (total * 0.99)] / 1e6,
+                connections.size());
+    }
+
+    private static void call(Client client, String url, Map<String, Collection<String>> headers,
+                             byte[] payload, Request.Options options) throws Exception {
+        Request request = Request.create(Request.HttpMethod.POST, url, headers, payload, StandardCharsets.UTF_8, null);
+        try (Response response = client.execute(request, options);
+             InputStream body = response.body().asInputStream()) {
+            assertEquals(200, response.status());
+            body.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package iuh.fit.se.benchmark;
+
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.entity.CartItem;
+import iuh.fit.se.pricing.CartPricing;
+import iuh.fit.se.pricing.PricingRuleSet;
+import iuh.fit.se.pricing.PricingRules;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh thông lượng và lượng cấp phát (gc.alloc.rate.norm) giữa cách tính tiền giỏ bằng {@link BigDecimal}
+ * cũ và {@link CartPricing} (long), và đo {@link PricingRules#quote} với vài luật giảm giá/phí ship.
+ * Không nằm trong bộ test mặc định, chạy thủ công:
+ * <pre>mvn test -Dtest=PricingBenchmark</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingBenchmark {
+    private static final BigDecimal THRESHOLD = BigDecimal.valueOf(500_000);
+    private static final BigDecimal FEE = BigDecimal.valueOf(30_000);
+
+    @Param({"5", "100"})
+    int lines;
+
+    List<CartItem> items;
+    Cart cart;
+    PricingRules rules;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(7);
+        items = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            CartItem item = CartItem.builder()
+                    .productId("p" + i)
+                    .sellerId("s" + random.nextInt(3))
+                    .categoryId("c" + random.nextInt(5))
+                    .unitPrice(BigDecimal.valueOf(1_000L * (1 + random.nextInt(999))))
+                    .quantity(1 + random.nextInt(5))
+                    .build();
+            item.calculateTotalPrice();
+            items.add(item);
+        }
+        cart = Cart.builder().userId("u").items(items).vouchers(new ArrayList<>(List.of("SALE10"))).build();
+        rules = PricingRules.compile(PricingRuleSet.builder()
+                .version(1L)
+                .sellerShipping(Map.of("s1", new PricingRuleSet.Shipping(BigDecimal.valueOf(300_000), BigDecimal.valueOf(20_000))))
+                .discounts(List.of(
+                        PricingRuleSet.Discount.builder().sellerId("s0").percent(BigDecimal.valueOf(5)).build(),
+                        PricingRuleSet.Discount.builder().categoryId("c1").amount(BigDecimal.valueOf(50_000))
+                                .minSubtotal(BigDecimal.valueOf(200_000)).build(),
+                        PricingRuleSet.Discount.builder().voucher("SALE10").percent(BigDecimal.TEN)
+                                .maxDiscount(BigDecimal.valueOf(100_000)).build()))
+                .build(), PricingRules.defaults(CartPricing.VND, 500_000, 30_000));
+        cart.calculateTotals(rules);
+    }
+
+    @Benchmark
+    public void totalsBigDecimal(Blackhole bh) {
+        BigDecimal subtotal = BigDecimal.ZERO;
+        for (CartItem item : items) {
+            BigDecimal line = item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity()));
+            subtotal = subtotal.add(line);
+            bh.consume(line);
+        }
+        BigDecimal shipping = subtotal.compareTo(THRESHOLD) >= 0 ? BigDecimal.ZERO : FEE;
+        bh.consume(subtotal.add(shipping));
+    }
+
+    @Benchmark
+    public void totalsMinorUnits(Blackhole bh) {
+        long subtotal = 0;
+        for (CartItem item : items) {
+            long line = Math.multiplyExact(CartPricing.VND.toMinor(item.getUnitPrice()), item.getQuantity());
+            subtotal = Math.addExact(subtotal, line);
+            bh.consume(line);
+        }
+        long shipping = subtotal >= 500_000 ? 0 : 30_000;
+        bh.consume(Math.addExact(subtotal, shipping));
+    }
+
+    @Benchmark
+    public void calculateTotals(Blackhole bh) {
+        for (CartItem item : items) {
+            item.calculateTotalPrice();
+        }
+        cart.calculateTotals(rules);
+        bh.consume(cart.getTotalAmount());
+    }
+
+    @Benchmark
+    public void quote(Blackhole bh) {
+        bh.consume(rules.quote(items, cart.getVouchers()));
+    }
+
+    @Test
+    void run() throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(PricingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
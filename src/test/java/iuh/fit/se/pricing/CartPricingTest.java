@@ -0,0 +1,148 @@
+package iuh.fit.se.pricing;
+
+import iuh.fit.se.dto.response.CartSummaryResponse;
+import iuh.fit.se.dto.response.SellerSummaryResponse;
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.entity.CartItem;
+import iuh.fit.se.mapper.CartSummaryMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * So sánh {@link CartPricing} với cách tính {@link BigDecimal} cũ trên dữ liệu ngẫu nhiên (seed cố định):
+ * kết quả phải bằng nhau cả giá trị lẫn scale.
+ */
+class CartPricingTest {
+    private static final BigDecimal THRESHOLD = BigDecimal.valueOf(500_000);
+    private static final BigDecimal FEE = BigDecimal.valueOf(30_000);
+    private static final int RUNS = 20_000;
+
+    private final Random random = new Random(42);
+    private final PricingRules rules = PricingRules.defaults(CartPricing.VND, 500_000, 30_000);
+
+    @Test
+    void lineTotalMatchesBigDecimal() {
+        for (int i = 0; i < RUNS; i++) {
+            BigDecimal price = randomPrice();
+            int quantity = randomQuantity();
+            assertEquals(price.multiply(BigDecimal.valueOf(quantity)), CartPricing.lineTotal(price, quantity),
+                    () -> price + " x " + quantity);
+        }
+        assertNull(CartPricing.lineTotal(null, 1));
+        assertNull(CartPricing.lineTotal(BigDecimal.TEN, null));
+    }
+
+    @Test
+    void overflowFallsBackToBigDecimal() {
+        BigDecimal price = BigDecimal.valueOf(Long.MAX_VALUE / 2);
+        assertEquals(price.multiply(BigDecimal.valueOf(3)), CartPricing.lineTotal(price, 3));
+
+        BigDecimal big = BigDecimal.valueOf(Long.MAX_VALUE);
+        assertEquals(big.add(big), CartPricing.add(big, big));
+    }
+
+    @Test
+    void cartTotalsMatchBigDecimal() {
+        for (int i = 0; i < RUNS / 10; i++) {
+            Cart cart = randomCart();
+            cart.calculateTotals(rules);
+
+            BigDecimal subtotal = cart.getItems().stream()
+                    .map(CartItem::getTotalPrice)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            // phí ship tính theo từng seller
+            BigDecimal shipping = cart.getItems().stream()
+                    .collect(Collectors.groupingBy(CartItem::getSellerId,
+                            Collectors.reducing(BigDecimal.ZERO, CartItem::getTotalPrice, BigDecimal::add)))
+                    .values().stream()
+                    .map(sellerSubtotal -> sellerSubtotal.compareTo(THRESHOLD) >= 0 ? BigDecimal.ZERO : FEE)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            assertEquals(subtotal, cart.getSubtotal());
+            assertEquals(shipping, cart.getEstimatedShipping());
+            assertEquals(subtotal.add(shipping), cart.getTotalAmount());
+            assertEquals(BigDecimal.ZERO, cart.getTotalDiscount());
+        }
+    }
+
+    @Test
+    void summaryMatchesBigDecimal() {
+        PricingRulesRegistry registry = mock(PricingRulesRegistry.class);
+        when(registry.current()).thenReturn(rules);
+        CartSummaryMapper mapper = new CartSummaryMapper(registry);
+        for (int i = 0; i < RUNS / 10; i++) {
+            Cart cart = randomCart();
+            cart.calculateTotals(rules);
+            if (cart.getItems().isEmpty()) {
+                continue;
+            }
+            CartSummaryResponse summary = mapper.toSummary(cart);
+
+            Map<String, List<CartItem>> bySeller = cart.getItems().stream()
+                    .collect(Collectors.groupingBy(CartItem::getSellerId));
+            BigDecimal totalShipping = BigDecimal.ZERO;
+            for (SellerSummaryResponse seller : summary.getSellerSummaries()) {
+                BigDecimal sellerSubtotal = bySeller.get(seller.getSellerId()).stream()
+                        .map(CartItem::getTotalPrice)
+                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+                boolean free = sellerSubtotal.compareTo(THRESHOLD) >= 0;
+                assertEquals(sellerSubtotal, seller.getSubtotal());
+                assertEquals(free, seller.getFreeShipping());
+                assertEquals(free ? BigDecimal.ZERO : FEE, seller.getShippingFee());
+                assertEquals(free ? BigDecimal.ZERO : THRESHOLD.subtract(sellerSubtotal), seller.getAmountForFreeShipping());
+                totalShipping = totalShipping.add(seller.getShippingFee());
+            }
+            assertEquals(totalShipping, summary.getTotalShipping());
+            assertEquals(cart.getSubtotal().add(totalShipping).subtract(BigDecimal.ZERO), summary.getFinalAmount());
+        }
+    }
+
+    @Test
+    void minorUnitsFollowCurrencyScale() {
+        assertEquals(0, CartPricing.VND.scale());
+        assertEquals(199_000, CartPricing.VND.toMinor(BigDecimal.valueOf(199_000)));
+        assertThrows(ArithmeticException.class, () -> CartPricing.VND.toMinor(new BigDecimal("1.5")));
+
+        MinorUnits usd = MinorUnits.of("USD");
+        assertEquals(1999, usd.toMinor(new BigDecimal("19.99")));
+        assertEquals(new BigDecimal("19.99"), usd.toDecimal(1999));
+        assertThrows(ArithmeticException.class, () -> usd.toMinor(new BigDecimal("0.001")));
+        assertThrows(ArithmeticException.class, () -> MinorUnits.times(Long.MAX_VALUE, 2));
+    }
+
+    private Cart randomCart() {
+        int lines = random.nextInt(12);
+        List<CartItem> items = new ArrayList<>();
+        for (int j = 0; j < lines; j++) {
+            CartItem item = CartItem.builder()
+                    .productId("p" + j)
+                    .sellerId("s" + random.nextInt(3))
+                    .unitPrice(randomPrice())
+                    .quantity(randomQuantity())
+                    .build();
+            item.calculateTotalPrice();
+            items.add(item);
+        }
+        return Cart.builder().userId("u").items(items).build();
+    }
+
+    // chủ yếu giá VND nguyên, thỉnh thoảng giá có phần lẻ/scale khác để đi qua nhánh dự phòng
+    private BigDecimal randomPrice() {
+        return switch (random.nextInt(10)) {
+            case 0 -> BigDecimal.valueOf(random.nextInt(1_000_000), 2);
+            case 1 -> BigDecimal.valueOf(random.nextInt(1_000)).setScale(2);
+            case 2 -> BigDecimal.ZERO;
+            default -> BigDecimal.valueOf(1_000L * random.nextInt(1_000));
+        };
+    }
+
+    private int randomQuantity() {
+        return random.nextInt(10) == 0 ? random.nextInt(1_000_000) : 1 + random.nextInt(10);
+    }
+}
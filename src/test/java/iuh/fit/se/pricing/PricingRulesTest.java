@@ -0,0 +1,157 @@
+package iuh.fit.se.pricing;
+
+import iuh.fit.se.entity.CartItem;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Biên dịch và tính giá của {@link PricingRules}: luật không hợp lệ bị từ chối, voucher/minSubtotal/maxDiscount
+ * giới hạn giảm giá, luật theo danh mục chỉ tính các dòng khớp, và giảm giá không gắn seller được chia cho các seller
+ * sao cho tổng theo seller bằng tổng giảm giá.
+ */
+class PricingRulesTest {
+    private static final PricingRules FALLBACK = PricingRules.defaults(CartPricing.VND, 500_000, 30_000);
+
+    @Test
+    void compileRejectsInvalidDiscounts() {
+        assertInvalid(PricingRuleSet.Discount.builder().id("both")
+                .percent(BigDecimal.TEN).amount(BigDecimal.valueOf(1_000)).build());
+        assertInvalid(PricingRuleSet.Discount.builder().id("none").build());
+        assertInvalid(PricingRuleSet.Discount.builder().id("zero").percent(BigDecimal.ZERO).build());
+        assertInvalid(PricingRuleSet.Discount.builder().id("over").percent(BigDecimal.valueOf(101)).build());
+        assertInvalid(PricingRuleSet.Discount.builder().id("negative").amount(BigDecimal.valueOf(-1)).build());
+        assertInvalid(PricingRuleSet.Discount.builder().id("cap")
+                .percent(BigDecimal.TEN).maxDiscount(BigDecimal.ZERO).build());
+        assertInvalid(PricingRuleSet.Discount.builder().id("min")
+                .percent(BigDecimal.TEN).minSubtotal(BigDecimal.valueOf(-1)).build());
+
+        PricingRuleSet noFee = PricingRuleSet.builder()
+                .shipping(PricingRuleSet.Shipping.builder().freeThreshold(BigDecimal.ONE).build())
+                .build();
+        assertThrows(IllegalArgumentException.class, () -> PricingRules.compile(noFee, FALLBACK));
+    }
+
+    @Test
+    void voucherDiscountNeedsAppliedCode() {
+        PricingRules rules = compile(PricingRuleSet.Discount.builder()
+                .voucher(" sale10 ").percent(BigDecimal.TEN).build());
+        List<CartItem> items = List.of(line("s1", null, 200_000));
+
+        assertTrue(rules.hasVoucher("Sale10"));
+        assertFalse(rules.hasVoucher("OTHER"));
+        assertEquals(0, rules.quote(items, null).discount());
+        assertEquals(0, rules.quote(items, Set.of("OTHER")).discount());
+        assertEquals(20_000, rules.quote(items, Set.of(PricingRules.normalizeVoucher("sale10"))).discount());
+    }
+
+    @Test
+    void minSubtotalCountsOnlyMatchingLines() {
+        PricingRules rules = compile(PricingRuleSet.Discount.builder()
+                .categoryId("shoes").amount(BigDecimal.valueOf(50_000)).minSubtotal(BigDecimal.valueOf(300_000)).build());
+
+        // 250k giày + 400k áo: chỉ dòng giày tính vào mức tối thiểu
+        assertEquals(0, rules.quote(List.of(line("s1", "shoes", 250_000), line("s1", "shirts", 400_000)), null)
+                .discount());
+        assertEquals(50_000, rules.quote(List.of(line("s1", "shoes", 250_000), line("s1", "shoes", 50_000)), null)
+                .discount());
+    }
+
+    @Test
+    void maxDiscountCapsPercent() {
+        PricingRules rules = compile(PricingRuleSet.Discount.builder()
+                .percent(BigDecimal.valueOf(20)).maxDiscount(BigDecimal.valueOf(30_000)).build());
+
+        assertEquals(20_000, rules.quote(List.of(line("s1", null, 100_000)), null).discount());
+        assertEquals(30_000, rules.quote(List.of(line("s1", null, 1_000_000)), null).discount());
+    }
+
+    @Test
+    void amountNeverExceedsMatchingLines() {
+        PricingRules rules = compile(PricingRuleSet.Discount.builder()
+                .sellerId("s1").amount(BigDecimal.valueOf(100_000)).build());
+
+        PriceQuote quote = rules.quote(List.of(line("s1", null, 40_000), line("s2", null, 500_000)), null);
+        assertEquals(40_000, quote.discount());
+        assertEquals(40_000, quote.seller("s1").discount());
+        assertEquals(0, quote.seller("s2").discount());
+    }
+
+    @Test
+    void categoryRuleMatchesOnlyItsCategory() {
+        PricingRules rules = compile(
+                PricingRuleSet.Discount.builder().sellerId("s1").categoryId("shoes").percent(BigDecimal.TEN).build(),
+                PricingRuleSet.Discount.builder().categoryId("bags").amount(BigDecimal.valueOf(5_000)).build());
+
+        PriceQuote quote = rules.quote(List.of(
+                line("s1", "shoes", 100_000),
+                line("s1", "shirts", 100_000),
+                line("s2", "shoes", 100_000),
+                line("s2", "bags", 100_000),
+                line("s2", null, 100_000)), null);
+        assertEquals(10_000 + 5_000, quote.discount());
+        assertEquals(10_000, quote.seller("s1").discount());
+        assertEquals(5_000, quote.seller("s2").discount());
+    }
+
+    @Test
+    void allSellerDiscountIsSplitBySellerBase() {
+        PricingRules rules = compile(
+                PricingRuleSet.Discount.builder().amount(BigDecimal.valueOf(10_000)).build(),
+                PricingRuleSet.Discount.builder().sellerId("s3").percent(BigDecimal.TEN).build());
+
+        PriceQuote quote = rules.quote(List.of(
+                line("s1", null, 100_000),
+                line("s2", null, 200_000),
+                line("s3", null, 0)), null);
+        // 10k chia 1:2, phần dư làm tròn thuộc s2
+        assertEquals(3_333, quote.seller("s1").discount());
+        assertEquals(6_667, quote.seller("s2").discount());
+        assertEquals(0, quote.seller("s3").discount());
+        assertEquals(10_000, quote.discount());
+        assertEquals(quote.discount(), quote.sellers().stream().mapToLong(PriceQuote.SellerQuote::discount).sum());
+    }
+
+    @Test
+    void sellerDiscountsAlwaysSumToTotal() {
+        PricingRules rules = compile(
+                PricingRuleSet.Discount.builder().percent(BigDecimal.valueOf(7.5)).build(),
+                PricingRuleSet.Discount.builder().categoryId("shoes").amount(BigDecimal.valueOf(99_999)).build(),
+                PricingRuleSet.Discount.builder().sellerId("s1").amount(BigDecimal.valueOf(1_000_000)).build());
+
+        PriceQuote quote = rules.quote(List.of(
+                line("s1", "shoes", 30_001),
+                line("s2", "shoes", 70_003),
+                line("s2", "bags", 12_345),
+                line("s3", null, 99)), null);
+        assertEquals(quote.discount(), quote.sellers().stream().mapToLong(PriceQuote.SellerQuote::discount).sum());
+        for (PriceQuote.SellerQuote seller : quote.sellers()) {
+            assertTrue(seller.discount() <= seller.subtotal(), seller.sellerId());
+        }
+        assertTrue(quote.discount() <= quote.subtotal());
+    }
+
+    private static void assertInvalid(PricingRuleSet.Discount discount) {
+        PricingRuleSet set = PricingRuleSet.builder().discounts(List.of(discount)).build();
+        assertThrows(IllegalArgumentException.class, () -> PricingRules.compile(set, FALLBACK), discount.getId());
+    }
+
+    private static PricingRules compile(PricingRuleSet.Discount... discounts) {
+        return PricingRules.compile(PricingRuleSet.builder().version(1L).discounts(List.of(discounts)).build(), FALLBACK);
+    }
+
+    private static CartItem line(String sellerId, String categoryId, long total) {
+        return CartItem.builder()
+                .productId("p-" + sellerId + "-" + categoryId + "-" + total)
+                .sellerId(sellerId)
+                .categoryId(categoryId)
+                .options(Map.of())
+                .totalPrice(BigDecimal.valueOf(total))
+                .build();
+    }
+}
@@ -0,0 +1,259 @@
+package iuh.fit.se.repository;
+
+import feign.Request;
+import iuh.fit.se.dto.request.AddToCartRequest;
+import iuh.fit.se.dto.request.CartItemRemoveRequest;
+import iuh.fit.se.dto.request.RemoveCartItemsRequest;
+import iuh.fit.se.dto.request.SearchSizeAndIDRequest;
+import iuh.fit.se.dto.request.UpdateCartItemRequest;
+import iuh.fit.se.dto.response.ApiResponse;
+import iuh.fit.se.dto.response.CheckoutSnapshotResponse;
+import iuh.fit.se.dto.response.OrderItemProductResponse;
+import iuh.fit.se.entity.CartItem;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.repository.httpclient.ProductClient;
+import iuh.fit.se.service.CartService;
+import iuh.fit.se.support.EmbeddedRedis;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Giữ hàng flash sale trên Redis nhúng: giữ/từ chối khi thiếu hàng, trả lượt giữ khi giỏ không được lưu, reaper trả
+ * lượt giữ hết hạn, checkout chỉ giữ lại hàng (checkout lại sau khi snapshot hết hạn hay giỏ đổi không bán thêm),
+ * đơn được xác nhận mới chốt bán để xoá dòng hay reaper sau đó không trả lại hàng đã bán.
+ */
+@SpringBootTest(properties = {
+        "product-client.hedge.enabled=false",
+        "cart.reservation.enabled=true",
+        "cart.reservation.hold-ttl=10m"
+})
+class StockReservationsTest {
+    private static final String SELLER = "seller-1";
+    private static final Map<String, String> SIZE_M = Map.of("Size", "M");
+
+    @MockBean
+    ProductClient productClient;
+
+    @SpyBean
+    CartWriter cartWriter;
+
+    @Autowired
+    StockReservations stockReservations;
+
+    @Autowired
+    CartService cartService;
+
+    @Autowired
+    CartRepository cartRepository;
+
+    @Autowired
+    CartKeys cartKeys;
+
+    @Autowired
+    CheckoutSnapshotStore checkoutSnapshotStore;
+
+    @Autowired
+    StringRedisTemplate stringRedisTemplate;
+
+    String productId;
+    String variantKey;
+
+    @DynamicPropertySource
+    static void redis(DynamicPropertyRegistry registry) {
+        EmbeddedRedis.register(registry);
+    }
+
+    @BeforeEach
+    void setUp() {
+        productId = "flash-" + UUID.randomUUID();
+        variantKey = StockReservations.variantKey(productId, SIZE_M);
+        stockReservations.seed(variantKey, 5);
+        doAnswer(invocation -> ApiResponse.<OrderItemProductResponse>builder()
+                .code(200)
+                .result(OrderItemProductResponse.builder()
+                        .productId(invocation.<SearchSizeAndIDRequest>getArgument(0).getId())
+                        .sellerId(SELLER)
+                        .name("Flash")
+                        .price(BigDecimal.valueOf(10_000))
+                        .available(true)
+                        .stock(5)
+                        .status("AVAILABLE")
+                        .build())
+                .build()).when(productClient).searchBySizeAndID(any(), any(Request.Options.class));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        stockReservations.unseed(variantKey);
+        for (String userId : List.of("alice", "bob")) {
+            cartRepository.deleteById(cartKeys.idFor(userId));
+            checkoutSnapshotStore.invalidate(userId);
+            stringRedisTemplate.delete(cartKeys.hashKey(userId) + ":committed");
+        }
+    }
+
+    @Test
+    void holdsStockAndRejectsBeyondAvailable() {
+        stockReservations.hold("alice", List.of(), List.of(line(3)));
+        assertEquals(2, available());
+
+        AppException rejected = assertThrows(AppException.class,
+                () -> stockReservations.hold("bob", List.of(), List.of(line(3))));
+        assertEquals(ErrorCode.OUT_OF_STOCK, rejected.getErrorCode());
+        assertEquals(2, available());
+        assertNull(held("bob"));
+
+        // lượt giữ là số tuyệt đối: đặt lại cùng số lượng không giữ thêm
+        stockReservations.hold("alice", List.of(), List.of(line(3)));
+        assertEquals(2, available());
+        stockReservations.hold("alice", List.of(line(3)), List.of(line(1)));
+        assertEquals(4, available());
+        assertEquals("1", held("alice"));
+    }
+
+    @Test
+    void failedSaveReleasesHold() {
+        doThrow(new QueryTimeoutException("redis timeout")).when(cartWriter).save(any(), any());
+
+        assertThrows(QueryTimeoutException.class, () -> cartService.addToCart(add("alice", 3)));
+        assertEquals(5, available());
+        assertNull(held("alice"));
+    }
+
+    @Test
+    void conflictRetryHoldsOnlyFinalQuantity() {
+        doThrow(cartWriter.conflict()).doCallRealMethod().when(cartWriter).save(any(), any());
+
+        cartService.addToCart(add("alice", 3));
+        assertEquals(2, available());
+        assertEquals("3", held("alice"));
+    }
+
+    @Test
+    void reaperReturnsExpiredHolds() {
+        cartService.addToCart(add("alice", 3));
+        assertEquals(2, available());
+
+        long later = System.currentTimeMillis() + Duration.ofMinutes(11).toMillis();
+        assertEquals(3, stockReservations.reap(variantKey, later, 100));
+        assertEquals(5, available());
+        assertNull(held("alice"));
+    }
+
+    @Test
+    void orderCommitsSoldUnitsOnce() {
+        cartService.addToCart(add("alice", 3));
+        CheckoutSnapshotResponse snapshot = cartService.checkout("alice");
+        assertEquals(2, available());
+        assertEquals("3", held("alice"), "checkout only extends the hold");
+
+        cartService.commitCheckout("alice", snapshot.getSnapshotId());
+        assertEquals(2, available());
+        assertNull(held("alice"), "the order consumes the hold");
+
+        // order-service thử lại: không chốt lần nữa
+        cartService.commitCheckout("alice", snapshot.getSnapshotId());
+        assertEquals(2, available());
+
+        // đơn đã đặt xoá dòng khỏi giỏ, reaper chạy sau đó: hàng đã bán không quay lại
+        cartService.removeCartItemsBatch("alice", RemoveCartItemsRequest.builder()
+                .items(List.of(CartItemRemoveRequest.builder()
+                        .productId(productId)
+                        .sellerId(SELLER)
+                        .options(SIZE_M)
+                        .build()))
+                .build());
+        stockReservations.reap(variantKey, System.currentTimeMillis() + Duration.ofMinutes(11).toMillis(), 100);
+        assertEquals(2, available());
+
+        AppException rejected = assertThrows(AppException.class, () -> cartService.addToCart(add("bob", 3)));
+        assertEquals(ErrorCode.OUT_OF_STOCK, rejected.getErrorCode());
+    }
+
+    @Test
+    void repeatedCheckoutDoesNotSellTwice() {
+        cartService.addToCart(add("alice", 3));
+        cartService.checkout("alice");
+
+        // snapshot hết hạn rồi checkout lại
+        checkoutSnapshotStore.invalidate("alice");
+        cartService.checkout("alice");
+        assertEquals(2, available());
+        assertEquals("3", held("alice"));
+
+        // giỏ đổi (snapshot bị xoá) rồi checkout lại
+        cartService.updateCartItem(UpdateCartItemRequest.builder()
+                .userId("alice")
+                .productId(productId)
+                .sellerId(SELLER)
+                .options(SIZE_M)
+                .originalOptions(SIZE_M)
+                .quantity(2)
+                .build());
+        CheckoutSnapshotResponse snapshot = cartService.checkout("alice");
+        assertEquals(3, available());
+        assertEquals("2", held("alice"));
+
+        cartService.commitCheckout("alice", snapshot.getSnapshotId());
+        assertEquals(3, available());
+        assertNull(held("alice"));
+    }
+
+    @Test
+    void abandonedCheckoutReleasesStock() {
+        cartService.addToCart(add("alice", 3));
+        CheckoutSnapshotResponse snapshot = cartService.checkout("alice");
+        checkoutSnapshotStore.invalidate("alice");
+
+        assertEquals(3, stockReservations.reap(variantKey, System.currentTimeMillis() + Duration.ofMinutes(11).toMillis(), 100));
+        assertEquals(5, available());
+
+        AppException missing = assertThrows(AppException.class,
+                () -> cartService.commitCheckout("alice", snapshot.getSnapshotId()));
+        assertEquals(ErrorCode.CHECKOUT_SNAPSHOT_NOT_FOUND, missing.getErrorCode());
+        assertEquals(5, available());
+    }
+
+    private long available() {
+        return Long.parseLong(stringRedisTemplate.opsForValue().get(StockReservations.PREFIX + "{" + variantKey + "}"));
+    }
+
+    private String held(String userId) {
+        return (String) stringRedisTemplate.opsForHash().get(StockReservations.PREFIX + "{" + variantKey + "}:holds", userId);
+    }
+
+    private CartItem line(int quantity) {
+        return CartItem.builder().productId(productId).sellerId(SELLER).options(SIZE_M).quantity(quantity).build();
+    }
+
+    private AddToCartRequest add(String userId, int quantity) {
+        return AddToCartRequest.builder()
+                .userId(userId)
+                .productId(productId)
+                .sellerId(SELLER)
+                .sellerName("Shop")
+                .options(SIZE_M)
+                .quantity(quantity)
+                .build();
+    }
+}
@@ -0,0 +1,235 @@
+package iuh.fit.se.service;
+
+import feign.Request;
+import iuh.fit.se.dto.request.AddToCartRequest;
+import iuh.fit.se.dto.request.CartItemRemoveRequest;
+import iuh.fit.se.dto.request.RemoveCartItemsRequest;
+import iuh.fit.se.dto.request.SearchSizeAndIDRequest;
+import iuh.fit.se.dto.request.UpdateCartItemRequest;
+import iuh.fit.se.dto.response.ApiResponse;
+import iuh.fit.se.dto.response.OrderItemProductResponse;
+import iuh.fit.se.entity.Cart;
+import iuh.fit.se.entity.CartItem;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.repository.CartKeys;
+import iuh.fit.se.repository.CartRepository;
+import iuh.fit.se.repository.httpclient.ProductClient;
+import iuh.fit.se.support.EmbeddedRedis;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Nhiều thread cùng thêm/sửa/xoá dòng trên vài giỏ dùng chung (Redis local, {@link ProductClient} giả), rồi kiểm
+ * tra: không mất số lượng đã thêm, mỗi thao tác thành công tăng version đúng 1, tổng tiền khớp các dòng, không
+ * có hai dòng trùng biến thể. In ra số thao tác mỗi giây. Chạy trên Redis nhúng ({@link EmbeddedRedis}), các giỏ
+ * tạo ra được xoá sau test.
+ */
+@SpringBootTest(properties = "product-client.hedge.enabled=false")
+class CartMutationStressTest {
+    private static final int CARTS = 4;
+    private static final int THREADS = 16;
+    private static final int OPS_PER_THREAD = 200;
+    private static final String SELLER = "seller-1";
+    // dòng chỉ được cộng thêm: số lượng cuối phải bằng tổng đã cộng
+    private static final List<String> COUNTED = List.of("counted-0", "counted-1", "counted-2");
+    // dòng bị thêm, đổi số lượng/đổi size và xoá xen kẽ
+    private static final List<String> CHURNED = List.of("churned-0", "churned-1", "churned-2");
+    private static final List<String> SIZES = List.of("S", "M", "L");
+
+    @MockBean
+    ProductClient productClient;
+
+    @Autowired
+    CartService cartService;
+
+    @Autowired
+    CartRepository cartRepository;
+
+    @Autowired
+    CartKeys cartKeys;
+
+    String runId;
+
+    @DynamicPropertySource
+    static void redis(DynamicPropertyRegistry registry) {
+        EmbeddedRedis.register(registry);
+    }
+
+    @BeforeEach
+    void setUp() {
+        runId = UUID.randomUUID().toString();
+        doAnswer(invocation -> {
+            String productId = invocation.<SearchSizeAndIDRequest>getArgument(0).getId();
+            return ApiResponse.<OrderItemProductResponse>builder()
+                    .code(200)
+                    .result(OrderItemProductResponse.builder()
+                            .productId(productId)
+                            .sellerId(SELLER)
+                            .name("Sản phẩm " + productId)
+                            .categoryId("c-" + productId.charAt(productId.length() - 1))
+                            .price(price(productId))
+                            .available(true)
+                            .stock(10_000)
+                            .status("AVAILABLE")
+                            .build())
+                    .build();
+        }).when(productClient).searchBySizeAndID(any(), any(Request.Options.class));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        for (int c = 0; c < CARTS; c++) {
+            cartRepository.deleteById(cartKeys.idFor(userId(c)));
+        }
+    }
+
+    @Test
+    void overlappingMutationsKeepCartsConsistent() throws Exception {
+        Map<String, AtomicLong> added = new ConcurrentHashMap<>();
+        Map<String, AtomicLong> succeeded = new ConcurrentHashMap<>();
+        Map<ErrorCode, AtomicLong> rejected = new ConcurrentHashMap<>();
+        for (int c = 0; c < CARTS; c++) {
+            succeeded.put(userId(c), new AtomicLong());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            workers.add(pool.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < OPS_PER_THREAD; i++) {
+                    String userId = userId(random.nextInt(CARTS));
+                    try {
+                        mutate(random, userId, added);
+                        succeeded.get(userId).incrementAndGet();
+                    } catch (AppException e) {
+                        // xoá dòng không còn trong giỏ... là kết quả hợp lệ, không phải lỗi đồng thời
+                        rejected.computeIfAbsent(e.getErrorCode(), code -> new AtomicLong()).incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get(2, TimeUnit.MINUTES);
+        }
+        double seconds = (System.nanoTime() - began) / 1e9;
+        pool.shutdown();
+
+        long operations = (long) THREADS * OPS_PER_THREAD;
+        System.out.printf("cart mutation stress: %d ops in %.2fs = %.0f ops/s over %d carts and %d threads, rejected=%s%n",
+                operations, seconds, operations / seconds, CARTS, THREADS, rejected);
+        assertFalse(rejected.containsKey(ErrorCode.UNCATEGORIZED_EXCEPTION));
+
+        for (int c = 0; c < CARTS; c++) {
+            String userId = userId(c);
+            Cart cart = cartService.getCartByUserId(userId);
+
+            assertEquals(succeeded.get(userId).get(), cart.getVersion(),
+                    "every successful mutation must bump the version exactly once");
+
+            Set<String> keys = new HashSet<>();
+            for (CartItem item : cart.getItems()) {
+                assertTrue(keys.add(item.getUniqueKey()), () -> "duplicate line " + item.getUniqueKey());
+                assertTrue(item.getQuantity() > 0, () -> "empty line " + item.getUniqueKey());
+                assertEquals(0, item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity()))
+                        .compareTo(item.getTotalPrice()), () -> "line total of " + item.getUniqueKey());
+            }
+
+            for (String productId : COUNTED) {
+                long expected = added.getOrDefault(userId + "/" + productId, new AtomicLong()).get();
+                int actual = cart.getItems().stream()
+                        .filter(item -> item.getProductId().equals(productId))
+                        .mapToInt(CartItem::getQuantity)
+                        .sum();
+                assertEquals(expected, actual, () -> "lost quantity on " + userId + "/" + productId);
+            }
+
+            BigDecimal subtotal = cart.getItems().stream()
+                    .map(CartItem::getTotalPrice)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            assertEquals(0, subtotal.compareTo(cart.getSubtotal()), "subtotal must equal the sum of lines");
+            assertEquals(0, cart.getSubtotal().add(cart.getEstimatedShipping()).subtract(cart.getTotalDiscount())
+                    .compareTo(cart.getTotalAmount()), "total must equal subtotal + shipping - discount");
+        }
+    }
+
+    private void mutate(Random random, String userId, Map<String, AtomicLong> added) {
+        int op = random.nextInt(10);
+        if (op < 5) {
+            String productId = COUNTED.get(random.nextInt(COUNTED.size()));
+            int quantity = 1 + random.nextInt(3);
+            cartService.addToCart(add(userId, productId, "M", quantity));
+            // chỉ tính khi đã ghi xong: nếu lỗi thì số lượng này không được có trong giỏ
+            added.computeIfAbsent(userId + "/" + productId, key -> new AtomicLong()).addAndGet(quantity);
+        } else if (op < 7) {
+            String productId = CHURNED.get(random.nextInt(CHURNED.size()));
+            cartService.addToCart(add(userId, productId, size(random), 1 + random.nextInt(3)));
+        } else if (op < 9) {
+            String productId = CHURNED.get(random.nextInt(CHURNED.size()));
+            cartService.updateCartItem(UpdateCartItemRequest.builder()
+                    .userId(userId)
+                    .productId(productId)
+                    .sellerId(SELLER)
+                    .sellerName("Shop")
+                    .originalOptions(Map.of("Size", size(random)))
+                    .options(Map.of("Size", size(random)))
+                    .quantity(1 + random.nextInt(5))
+                    .build());
+        } else {
+            String productId = CHURNED.get(random.nextInt(CHURNED.size()));
+            cartService.removeCartItemsBatch(userId, RemoveCartItemsRequest.builder()
+                    .items(List.of(CartItemRemoveRequest.builder()
+                            .productId(productId)
+                            .sellerId(SELLER)
+                            .options(Map.of("Size", size(random)))
+                            .build()))
+                    .build());
+        }
+    }
+
+    private static AddToCartRequest add(String userId, String productId, String size, int quantity) {
+        return AddToCartRequest.builder()
+                .userId(userId)
+                .productId(productId)
+                .sellerId(SELLER)
+                .sellerName("Shop")
+                .options(Map.of("Size", size))
+                .quantity(quantity)
+                .build();
+    }
+
+    private static String size(Random random) {
+        return SIZES.get(random.nextInt(SIZES.size()));
+    }
+
+    private static BigDecimal price(String productId) {
+        return BigDecimal.valueOf(10_000L * (1 + productId.charAt(productId.length() - 1) - '0'));
+    }
+
+    private String userId(int cart) {
+        return "stress-" + runId + "-" + cart;
+    }
+}
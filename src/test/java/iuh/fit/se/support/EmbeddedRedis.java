@@ -0,0 +1,63 @@
+package iuh.fit.se.support;
+
+import org.springframework.test.context.DynamicPropertyRegistry;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+
+/**
+ * Redis 6.2 nhúng cho các test cần Redis thật (script Lua, BITFIELD, HyperLogLog): chạy một lần cho cả JVM test
+ * trên cổng trống, dừng khi JVM thoát. Test đăng ký bằng {@code @DynamicPropertySource}:
+ * <pre>{@code
+ * @DynamicPropertySource
+ * static void redis(DynamicPropertyRegistry registry) {
+ *     EmbeddedRedis.register(registry);
+ * }
+ * }</pre>
+ */
+public final class EmbeddedRedis {
+    private static RedisServer server;
+    private static int port;
+
+    private EmbeddedRedis() {
+    }
+
+    public static void register(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", () -> "localhost");
+        registry.add("spring.data.redis.port", EmbeddedRedis::port);
+    }
+
+    public static synchronized int port() {
+        if (server == null) {
+            try {
+                port = freePort();
+                server = RedisServer.newRedisServer()
+                        .port(port)
+                        .setting("bind 127.0.0.1")
+                        .setting("save \"\"")
+                        .setting("appendonly no")
+                        .build();
+                server.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            RedisServer started = server;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    started.stop();
+                } catch (IOException ignored) {
+                    // JVM đang thoát
+                }
+            }));
+        }
+        return port;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}